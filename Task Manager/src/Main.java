@@ -1,8 +1,44 @@
 import taskmanager.console.ConsoleUI;
+import taskmanager.data.Durability;
+import taskmanager.data.StorageEngine;
+
+import java.util.Arrays;
 
 public class Main {
     public static void main(String[] args) {
-        ConsoleUI app = new ConsoleUI();
+        String storage = "text";
+        String durability = "batched";
+        String primaryPort = null;
+        String follow = null;
+        int port = 7070;
+        long heapBudgetMb = Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024);
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--storage")) storage = args[i + 1];
+            if (args[i].equals("--durability")) durability = args[i + 1];
+            if (args[i].equals("--primary")) primaryPort = args[i + 1];
+            if (args[i].equals("--follow")) follow = args[i + 1];
+            if (args[i].equals("--port")) port = Integer.parseInt(args[i + 1]);
+            if (args[i].equals("--heap-budget")) heapBudgetMb = Long.parseLong(args[i + 1]);
+        }
+        // --storage text|lsm|memory picks the storage engine of every project
+        if (!StorageEngine.KINDS.contains(storage.toLowerCase())) {
+            System.err.println("Unknown storage '" + storage + "'; use one of " + StorageEngine.KINDS);
+            System.exit(1);
+        }
+        // --durability none|always|batched[:<ms>:<changes>] says when changes are forced to disk
+        Durability sync;
+        try {
+            sync = Durability.parse(durability);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        // --heap-budget <MB> bounds the memory of loaded projects; the least recently used are closed beyond it
+        ConsoleUI app = new ConsoleUI(storage, heapBudgetMb * 1024 * 1024, sync);
+        // --primary <port> ships changes to followers; --follow host:port[,host:port...] replicates from a primary
+        if (primaryPort != null) app.enablePrimary(Integer.parseInt(primaryPort));
+        else if (follow != null) app.enableFollower(Arrays.asList(follow.split(",")), port);
         app.run();
     }
 }
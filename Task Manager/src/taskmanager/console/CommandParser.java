@@ -1,26 +1,56 @@
 package taskmanager.console;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.Scanner;
 import taskmanager.core.Category;
 import taskmanager.core.Status;
+import taskmanager.core.TextArena;
 import taskmanager.exceptions.InvalidCommandException;
 import taskmanager.services.TaskService;
+import taskmanager.services.replication.Replicator;
+import taskmanager.services.workspace.Workspace;
 
 public class CommandParser {
 
-    private final TaskService service;
+    private static final int SELECT_LIMIT = 20;
 
+    private TaskService service; // the current project's; null until the workspace has loaded it
+    private final QueryParser queryParser = new QueryParser();
+    private final RuleParser ruleParser = new RuleParser();
+    private Replicator replicator; // null when replication is off
+    private Workspace workspace;   // null when there is a single project
+
+    /**
+     * @param service the current project's service, or null to take it from the workspace
+     *                when the first command that needs data runs
+     */
     public CommandParser(TaskService service) {
         this.service = service;
     }
 
+    public void setReplicator(Replicator replicator) {
+        this.replicator = replicator;
+    }
+
+    public void setWorkspace(Workspace workspace) {
+        this.workspace = workspace;
+    }
+
     public void execute(String input, Scanner scanner) {
         String[] parts = input.split(" ", 2);
         String command = parts[0].toLowerCase();
         String args = parts.length > 1 ? parts[1].trim() : "";
 
+        if (service == null && needsData(command)) service = workspace.current(); // waits for a background load
+
+        // Reject before any interactive prompt rather than after it
+        if (isMutating(command) && service.isReadOnly()) {
+            throw new InvalidCommandException("This node is a read-only follower. Make changes on the primary, or 'promote' this node.");
+        }
+
         switch (command) {
             case "create":
             case "c":
@@ -42,6 +72,87 @@ public class CommandParser {
             case "s":
                 handleSort(args);
                 break;
+            case "find":
+                handleFind(args);
+                break;
+            case "search":
+                if (args.isEmpty()) throw new InvalidCommandException("Use 'search <keyword>'.");
+                printTasks(service.search(args), "matching");
+                break;
+            case "project":
+                handleProject(args);
+                break;
+            case "all":
+                handleAll(args);
+                break;
+            case "explain":
+                handleExplain(args);
+                break;
+            case "sweep":
+                handleSweep(args);
+                break;
+            case "asof":
+                handleAsOf(args);
+                break;
+            case "undo":
+                System.out.println(service.undo());
+                break;
+            case "redo":
+                System.out.println(service.redo());
+                break;
+            case "policy":
+                handlePolicy(args);
+                break;
+            case "memory":
+                handleMemory();
+                break;
+            case "cache":
+                System.out.println("Query cache: " + service.queryCacheStats());
+                break;
+            case "alerts":
+                handleAlerts();
+                break;
+            case "block":
+                handleBlock(args, true);
+                break;
+            case "unblock":
+                handleBlock(args, false);
+                break;
+            case "deps":
+                handleDeps(args);
+                break;
+            case "ready":
+                printTasks(service.getReadyTasks(), "ready");
+                break;
+            case "blocked":
+                printTasks(service.getBlockedTasks(), "blocked");
+                break;
+            case "critical":
+                handleCritical();
+                break;
+            case "complete":
+                handleComplete(args);
+                break;
+            case "next":
+                handleNext(args);
+                break;
+            case "verify":
+                handleVerify(args);
+                break;
+            case "import":
+                handleImport(args);
+                break;
+            case "export":
+                handleExport(args);
+                break;
+            case "replication":
+                handleReplication();
+                break;
+            case "promote":
+                if (replicator == null) throw new InvalidCommandException("Replication is not enabled.");
+                replicator.promote();
+                System.out.println("This node is now the primary.");
+                break;
             case "help":
             case "h":
                 showHelp();
@@ -98,14 +209,7 @@ public class CommandParser {
             System.out.print("Description: ");
             String description = scanner.nextLine().trim();
 
-            // List people with IDs
-            System.out.println("Available team members:");
-            service.listPeople().forEach(p -> System.out.println("  " + p.toString()));
-            System.out.print("Assignee ID: ");
-            String assigneeId = scanner.nextLine().trim();
-            if (!service.personExists(assigneeId)) {
-                throw new InvalidCommandException("No person with ID: " + assigneeId);
-            }
+            String assigneeId = promptAssignee(scanner, true);
 
             System.out.print("Due Date (dd MM yyyy) [Optional]: ");
             String dateStr = scanner.nextLine().trim();
@@ -162,14 +266,7 @@ public class CommandParser {
                 throw new InvalidCommandException("Invalid category selection.");
             }
 
-            // List people with IDs
-            System.out.println("Available team members:");
-            service.listPeople().forEach(p -> System.out.println("  " + p.toString()));
-            System.out.print("Assignee ID: ");
-            String assigneeId = scanner.nextLine().trim();
-            if (!service.personExists(assigneeId)) {
-                throw new InvalidCommandException("No person with ID: " + assigneeId);
-            }
+            String assigneeId = promptAssignee(scanner, false);
             System.out.print("Due Date (dd MM yyyy) [Optional]: ");
             String dateStr = scanner.nextLine().trim();
             LocalDate dueDate = null;
@@ -201,34 +298,63 @@ public class CommandParser {
         }
     }
 
+    // Lists the team only while it is small; otherwise the user types an ID or a name prefix.
+    private String promptAssignee(Scanner scanner, boolean allowAuto) {
+        java.util.List<taskmanager.core.Person> people = service.listPeople();
+        if (people.size() <= 20) {
+            System.out.println("Available team members:");
+            people.forEach(p -> System.out.println("  " + p.toString()));
+        }
+        if (allowAuto) {
+            System.out.print("Assignee ID or name [Optional, auto-assigned by '" + service.getAssignmentPolicyName() + "' policy]: ");
+        } else {
+            System.out.print("Assignee ID or name: ");
+        }
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty() && allowAuto) {
+            taskmanager.core.Person auto = service.autoAssignee();
+            System.out.println("Assigned to " + auto.getName() + " (ID: " + auto.getId() + ").");
+            return auto.getId();
+        }
+        return resolveAssignee(input, scanner);
+    }
+
+    private String resolveAssignee(String input, Scanner scanner) {
+        if (input.isEmpty()) throw new InvalidCommandException("Assignee ID cannot be empty.");
+        if (service.personExists(input)) return input;
+
+        java.util.List<taskmanager.core.Person> matches = service.findPeopleByName(input, 10);
+        if (matches.isEmpty()) throw new InvalidCommandException("No person with ID or name: " + input);
+        if (matches.size() == 1) {
+            System.out.println("Assigned to " + matches.get(0).getName() + " (ID: " + matches.get(0).getId() + ").");
+            return matches.get(0).getId();
+        }
+        System.out.println("Matching team members:");
+        for (int i = 0; i < matches.size(); i++) {
+            System.out.printf("  %d) %s\n", i+1, matches.get(i));
+        }
+        System.out.print("Enter number: ");
+        String sel = scanner.nextLine().trim();
+        try {
+            int idx = Integer.parseInt(sel);
+            if (idx < 1 || idx > matches.size()) throw new NumberFormatException();
+            return matches.get(idx-1).getId();
+        } catch (NumberFormatException e) {
+            throw new InvalidCommandException("Invalid selection.");
+        }
+    }
+
     private void handleRead(String args) {
         if (args.isEmpty()) {
-            service.readAll().forEach(System.out::println);
+            printAll(service.readAll());
         } else {
-            service.readByAssignee(args).forEach(System.out::println);
+            printAll(service.readByAssignee(args));
         }
     }
 
     private void handleUpdate(String args, Scanner scanner) {
-        String taskId = args;
-        if (taskId.isEmpty()) {
-            // prompt user to select
-            System.out.println("Select a task to update:");
-            java.util.List<taskmanager.core.Task> all = service.readAll();
-            if (all.isEmpty()) { System.out.println("No tasks available."); return; }
-            for (int i = 0; i < all.size(); i++) {
-                System.out.printf("  %d) %s (ID: %s)\n", i+1, all.get(i).getTitle(), all.get(i).getId());
-            }
-            System.out.print("Enter number: ");
-            String sel = scanner.nextLine().trim();
-            try {
-                int idx = Integer.parseInt(sel);
-                if (idx < 1 || idx > all.size()) throw new NumberFormatException();
-                taskId = all.get(idx-1).getId();
-            } catch (NumberFormatException e) {
-                throw new InvalidCommandException("Invalid selection.");
-            }
-        }
+        String taskId = args.isEmpty() ? selectTask("update", scanner) : service.resolveTaskId(args);
+        if (taskId == null) return;
         System.out.println("--- Update Task " + taskId + " ---");
         System.out.println("1. Update Status");
         System.out.println("2. Update Due Date");
@@ -304,9 +430,8 @@ public class CommandParser {
                 }
                 break;
             case "7":
-                System.out.print("New Assignee ID: ");
-                String assigneeId = scanner.nextLine().trim();
-                if (assigneeId.isEmpty()) throw new InvalidCommandException("Assignee ID cannot be empty.");
+                System.out.print("New Assignee ID or name: ");
+                String assigneeId = resolveAssignee(scanner.nextLine().trim(), scanner);
                 service.updateAssignee(taskId, assigneeId);
                 System.out.println("Assignee updated.");
                 break;
@@ -316,35 +441,47 @@ public class CommandParser {
     }
 
     private void handleDelete(String args, Scanner scanner) {
-        String taskId = args;
-        if (taskId.isEmpty()) {
-            System.out.println("Select a task to delete:");
-            java.util.List<taskmanager.core.Task> all = service.readAll();
-            if (all.isEmpty()) { System.out.println("No tasks available."); return; }
-            for (int i = 0; i < all.size(); i++) {
-                System.out.printf("  %d) %s (ID: %s)\n", i+1, all.get(i).getTitle(), all.get(i).getId());
-            }
-            System.out.print("Enter number: ");
-            String sel = scanner.nextLine().trim();
-            try {
-                int idx = Integer.parseInt(sel);
-                if (idx < 1 || idx > all.size()) throw new NumberFormatException();
-                taskId = all.get(idx-1).getId();
-            } catch (NumberFormatException e) {
-                throw new InvalidCommandException("Invalid selection.");
-            }
-        }
+        String taskId = args.isEmpty() ? selectTask("delete", scanner) : service.resolveTaskId(args);
+        if (taskId == null) return;
         service.deleteTask(taskId);
         System.out.println("Deleted task: " + taskId);
     }
 
+    // Narrows the choice by a prefix of the id or title first, so large lists are never printed whole.
+    private String selectTask(String verb, Scanner scanner) {
+        System.out.print("Task to " + verb + " (start of its ID or title, empty for the first " + SELECT_LIMIT + "): ");
+        String prefix = scanner.nextLine().trim();
+        java.util.List<taskmanager.core.Task> matches = service.completeTasks(prefix, SELECT_LIMIT);
+        if (matches.isEmpty()) { System.out.println("No tasks available."); return null; }
+        if (matches.size() == 1) return matches.get(0).getId();
+        for (int i = 0; i < matches.size(); i++) {
+            System.out.printf("  %d) %s (ID: %s)\n", i+1, matches.get(i).getTitle(), matches.get(i).getId());
+        }
+        System.out.print("Enter number: ");
+        String sel = scanner.nextLine().trim();
+        try {
+            int idx = Integer.parseInt(sel);
+            if (idx < 1 || idx > matches.size()) throw new NumberFormatException();
+            return matches.get(idx-1).getId();
+        } catch (NumberFormatException e) {
+            throw new InvalidCommandException("Invalid selection.");
+        }
+    }
+
+    private void handleComplete(String args) {
+        if (args.isEmpty()) throw new InvalidCommandException("Use 'complete <prefix>'.");
+        java.util.List<taskmanager.services.query.CompletionIndex.Match> matches = service.complete(args, SELECT_LIMIT);
+        matches.forEach(m -> System.out.println("  " + m.describe()));
+        if (matches.isEmpty()) System.out.println("No matches.");
+    }
+
     private void handleSort(String args) {
         switch (args.toLowerCase()) {
             case "due":
-                service.sortByDueDate().forEach(System.out::println);
+                printAll(service.sortByDueDate());
                 break;
             case "cat":
-                service.sortByCategory().forEach(System.out::println);
+                printAll(service.sortByCategory());
                 break;
             case "eisenhower":
                 System.out.println("Eisenhower mapping:");
@@ -353,13 +490,347 @@ public class CommandParser {
                 System.out.println("  III -> Not important, Urgent");
                 System.out.println("  IV  -> Not important, Not urgent");
                 System.out.println();
-                service.sortByEisenhower().forEach(System.out::println);
+                printAll(service.sortByEisenhower());
                 break;
             default:
                 throw new InvalidCommandException("Invalid sort criteria. Use 'due', 'cat', or 'eisenhower'.");
         }
     }
 
+    private void handleFind(String args) {
+        java.util.List<taskmanager.core.Task> result = service.find(queryParser.parse(args));
+        printAll(result);
+        System.out.println(result.size() + " task(s) found.");
+    }
+
+    private void handleSweep(String args) {
+        boolean apply = args.startsWith("--apply");
+        if (apply) args = args.substring("--apply".length()).trim();
+        java.util.List<taskmanager.services.rules.Rule> rules;
+        if (args.startsWith("--file")) {
+            String path = args.substring("--file".length()).trim();
+            if (path.isEmpty()) throw new InvalidCommandException("Use 'sweep [--apply] --file <path>'.");
+            try {
+                rules = ruleParser.parseLines(java.nio.file.Files.readAllLines(java.nio.file.Paths.get(path)));
+            } catch (java.io.IOException e) {
+                throw new InvalidCommandException("Cannot read rules from " + path + ".");
+            }
+        } else {
+            if (args.isEmpty()) throw new InvalidCommandException("Use 'sweep [--apply] <rule>[; <rule>...]', e.g. sweep if cat=BUG_FIX and overdue then eisenhower=I");
+            rules = ruleParser.parseAll(args);
+        }
+
+        taskmanager.services.rules.RuleEngine.Result result = service.sweep(rules, apply);
+        java.util.List<taskmanager.services.rules.RuleEngine.Change> changes = result.getChanges();
+        changes.stream().limit(100).forEach(c -> System.out.println("  " + c.describe()));
+        if (changes.size() > 100) System.out.println("  ... " + (changes.size() - 100) + " more");
+        for (int i = 0; i < rules.size(); i++) {
+            System.out.printf("Rule %d matched %d task(s): %s%n", i + 1, result.getMatches(i), rules.get(i));
+        }
+        System.out.printf("%d of %d task(s) %s; evaluated in %.0f ms on %d thread(s).%n", changes.size(), result.getTasks(),
+                apply ? "changed" : "would change", result.getNanos() / 1e6, result.getParallelism());
+        if (!apply && !changes.isEmpty()) System.out.println("Nothing was changed. Run again with --apply to make these changes.");
+    }
+
+    private void handleExplain(String args) {
+        String query = args.toLowerCase().startsWith("find") ? args.substring(4).trim() : args;
+        System.out.println(service.explain(queryParser.parse(query)).explain());
+    }
+
+    private void handleAsOf(String args) {
+        String[] parts = args.split("\\s+", 3);
+        if (parts.length < 2) {
+            throw new InvalidCommandException("Use 'asof <yyyy-MM-dd[THH:mm]> read [personID]' or 'asof <time> sort due|cat|eisenhower'.");
+        }
+        java.time.Instant when;
+        try {
+            if (parts[0].contains("T")) {
+                when = java.time.LocalDateTime.parse(parts[0]).atZone(java.time.ZoneId.systemDefault()).toInstant();
+            } else {
+                // A bare date means the end of that day
+                when = LocalDate.parse(parts[0]).plusDays(1).atStartOfDay(java.time.ZoneId.systemDefault()).toInstant().minusMillis(1);
+            }
+        } catch (DateTimeParseException e) {
+            throw new InvalidCommandException("Invalid time. Use yyyy-MM-dd or yyyy-MM-ddTHH:mm.");
+        }
+        java.time.Instant start = service.historyStart();
+        if (start == null || when.isBefore(start)) {
+            System.out.println("Note: history starts at " + (start == null ? "now" : start.atZone(java.time.ZoneId.systemDefault()).toLocalDateTime()) + ".");
+        }
+
+        String rest = parts.length > 2 ? parts[2].trim() : "";
+        java.util.List<taskmanager.core.Task> result;
+        switch (parts[1].toLowerCase()) {
+            case "read":
+            case "r":
+                result = rest.isEmpty() ? service.readAllAsOf(when) : service.readByAssigneeAsOf(when, rest);
+                break;
+            case "sort":
+            case "s":
+                switch (rest.toLowerCase()) {
+                    case "due": result = service.sortByDueDateAsOf(when); break;
+                    case "cat": result = service.sortByCategoryAsOf(when); break;
+                    case "eisenhower": result = service.sortByEisenhowerAsOf(when); break;
+                    default: throw new InvalidCommandException("Invalid sort criteria. Use 'due', 'cat', or 'eisenhower'.");
+                }
+                break;
+            default:
+                throw new InvalidCommandException("asof supports 'read' and 'sort'.");
+        }
+        printAll(result);
+    }
+
+    private void handlePolicy(String args) {
+        if (!args.isEmpty()) {
+            service.setAssignmentPolicy(args);
+        }
+        System.out.println("Assignment policy: " + service.getAssignmentPolicyName());
+    }
+
+    private void handleMemory() {
+        Runtime rt = Runtime.getRuntime();
+        long used = rt.totalMemory() - rt.freeMemory();
+        long collections = 0, gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        TextArena arena = TextArena.shared();
+        System.out.printf("Heap: %s MB used of %s MB (max %s MB)%n", mb(used), mb(rt.totalMemory()), mb(rt.maxMemory()));
+        System.out.printf("GC: %d collection(s), %d ms in total%n", collections, gcMillis);
+        System.out.printf("Descriptions: %d distinct, %s MB of text stored in %s MB off-heap (%s MB reserved)%n",
+                arena.texts(), mb(arena.rawBytes()), mb(arena.storedBytes()), mb(arena.reservedBytes()));
+        System.out.printf("Deduplicated: %d of %d stored description(s)%n", arena.sharedHits(), arena.internCalls());
+    }
+
+    private static String mb(long bytes) {
+        return String.format("%.1f", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Whether a command reads or changes tasks, and so has to wait for the current
+     * project to load. The others work from the first prompt.
+     */
+    public static boolean needsData(String command) {
+        switch (command.toLowerCase()) {
+            case "help":
+            case "h":
+            case "memory":
+            case "q":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Whether a command only lists tasks, never prompts, and may be stopped part-way
+     * with 'cancel'.
+     */
+    public static boolean isCancellable(String command) {
+        switch (command.toLowerCase()) {
+            case "read":
+            case "r":
+            case "sort":
+            case "s":
+            case "search":
+            case "find":
+            case "all":
+            case "asof":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isMutating(String command) {
+        switch (command) {
+            case "create":
+            case "c":
+            case "update":
+            case "u":
+            case "delete":
+            case "d":
+            case "undo":
+            case "redo":
+            case "block":
+            case "unblock":
+            case "import":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void handleBlock(String args, boolean add) {
+        String[] ids = args.split("\\s+");
+        if (ids.length != 2 || ids[0].isEmpty()) {
+            throw new InvalidCommandException("Use '" + (add ? "block" : "unblock") + " <blockerID> <blockedID>'.");
+        }
+        if (add) {
+            service.addDependency(ids[0], ids[1]);
+            System.out.println("Task " + ids[1] + " is now blocked by " + ids[0] + ".");
+        } else {
+            service.removeDependency(ids[0], ids[1]);
+            System.out.println("Task " + ids[1] + " is no longer blocked by " + ids[0] + ".");
+        }
+    }
+
+    private void handleDeps(String args) {
+        if (args.isEmpty()) throw new InvalidCommandException("Use 'deps <taskID>'.");
+        System.out.println("Blocked by:");
+        service.getBlockers(args).forEach(t -> System.out.println("  " + t.getId() + " " + t.getTitle() + " [" + t.getStatus() + "]"));
+        System.out.println("Blocks:");
+        service.getDependents(args).forEach(t -> System.out.println("  " + t.getId() + " " + t.getTitle() + " [" + t.getStatus() + "]"));
+    }
+
+    private void printTasks(java.util.List<taskmanager.core.Task> tasks, String what) {
+        printAll(tasks);
+        System.out.println(tasks.size() + " " + what + " task(s).");
+    }
+
+    // Long listings stop as soon as the console cancels the command (see ConsoleUI).
+    private static void printAll(java.util.List<?> items) {
+        for (Object item : items) {
+            if (Thread.currentThread().isInterrupted()) throw new java.util.concurrent.CancellationException();
+            System.out.println(item);
+        }
+    }
+
+    private void handleCritical() {
+        java.util.List<taskmanager.services.dependency.DependencyGraph.PathStep> path = service.getCriticalPath();
+        if (path.isEmpty()) {
+            System.out.println("No open tasks.");
+            return;
+        }
+        System.out.println("Critical path (one day per task, starting today):");
+        int i = 1;
+        for (taskmanager.services.dependency.DependencyGraph.PathStep step : path) {
+            taskmanager.core.Task t = step.getTask();
+            String slack = step.getSlackDays() == null ? "no deadline"
+                    : step.getSlackDays() < 0 ? "LATE by " + (-step.getSlackDays()) + " day(s)"
+                    : step.getSlackDays() + " day(s) of slack";
+            System.out.printf("  %d. %s %s - finishes %s, due %s, %s%n", i++, t.getId(), t.getTitle(),
+                    step.getEarliestFinish(), t.getDueDate() == null ? "-" : t.getDueDate(), slack);
+        }
+    }
+
+    private void handleNext(String args) {
+        String[] parts = args.split("\\s+");
+        if (args.isEmpty() || parts.length > 2) throw new InvalidCommandException("Use 'next <personID> [k]'.");
+        int k = 5;
+        if (parts.length == 2) {
+            try {
+                k = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new InvalidCommandException("Invalid number '" + parts[1] + "'.");
+            }
+        }
+        java.util.List<taskmanager.core.Task> tasks = service.nextFor(parts[0], k);
+        if (tasks.isEmpty()) {
+            System.out.println("Nothing to do for " + parts[0] + ".");
+            return;
+        }
+        int i = 1;
+        for (taskmanager.core.Task t : tasks) {
+            System.out.printf("  %d. %s %s - %s, quadrant %s, due %s, score %.2f%n", i++, t.getId(), t.getTitle(),
+                    t.getStatus(), t.getEisenhower() == null ? "-" : t.getEisenhower(),
+                    t.getDueDate() == null ? "-" : t.getDueDate(), service.priorityScore(t));
+        }
+    }
+
+    private void handleVerify(String args) {
+        taskmanager.data.TaskBlockFile.Report report = service.verifyStorage(args);
+        System.out.println(report.summary());
+        java.util.List<String> ranges = report.getCorruptRanges();
+        ranges.stream().limit(20).forEach(r -> System.out.println("  corrupt " + r));
+        if (ranges.size() > 20) System.out.println("  ... " + (ranges.size() - 20) + " more");
+    }
+
+    private void handleImport(String args) {
+        String[] parts = args.split("\\s+");
+        if (args.isEmpty() || parts.length > 2) throw new InvalidCommandException("Use 'import <file> [csv|json]'.");
+        taskmanager.services.transfer.ImportReport report = service.importTasks(parts[0], parts.length > 1 ? parts[1] : "");
+        System.out.println(report.summary());
+        report.getErrors().stream().limit(20).forEach(e -> System.out.println("  " + e));
+        if (report.getRejected() > 20) System.out.println("  ... " + (report.getRejected() - 20) + " more");
+    }
+
+    private void handleExport(String args) {
+        String[] parts = args.split("\\s+");
+        if (args.isEmpty() || parts.length > 2) throw new InvalidCommandException("Use 'export <file> [csv|json]'.");
+        long n = service.exportTasks(parts[0], parts.length > 1 ? parts[1] : "");
+        System.out.println("Exported " + n + " task(s) to " + parts[0] + ".");
+    }
+
+    private void handleProject(String args) {
+        if (workspace == null) throw new InvalidCommandException("Projects are not enabled.");
+        String[] parts = args.split("\\s+", 2);
+        String name = parts.length > 1 ? parts[1].trim() : "";
+        switch (parts[0].toLowerCase()) {
+            case "":
+            case "list":
+                workspace.describe().forEach(System.out::println);
+                break;
+            case "use":
+                if (name.isEmpty()) throw new InvalidCommandException("Use 'project use <name>'.");
+                service = workspace.use(name);
+                System.out.println("Now working in project " + name + ".");
+                break;
+            case "create":
+                if (name.isEmpty()) throw new InvalidCommandException("Use 'project create <name>'.");
+                workspace.create(name);
+                System.out.println("Created project " + name + ". Switch to it with 'project use " + name + "'.");
+                break;
+            default:
+                throw new InvalidCommandException("Use 'project [list]', 'project use <name>' or 'project create <name>'.");
+        }
+    }
+
+    // "all read [personID]" and "all search <keyword>" over every project at once.
+    private void handleAll(String args) {
+        if (workspace == null) throw new InvalidCommandException("Projects are not enabled.");
+        String[] parts = args.split("\\s+", 2);
+        String arg = parts.length > 1 ? parts[1].trim() : "";
+        java.util.function.Predicate<taskmanager.core.Task> filter;
+        switch (parts[0].toLowerCase()) {
+            case "read":
+            case "r":
+                filter = arg.isEmpty() ? t -> true : t -> t.getAssignee().getId().equals(arg);
+                break;
+            case "search":
+                if (arg.isEmpty()) throw new InvalidCommandException("Use 'all search <keyword>'.");
+                String lower = arg.toLowerCase();
+                filter = t -> t.getTitle().toLowerCase().contains(lower)
+                        || (t.getDescription() != null && t.getDescription().toLowerCase().contains(lower));
+                break;
+            default:
+                throw new InvalidCommandException("Use 'all read [personID]' or 'all search <keyword>'.");
+        }
+        int total = 0;
+        for (java.util.Map.Entry<String, java.util.List<taskmanager.core.Task>> e : workspace.acrossAll(filter).entrySet()) {
+            if (e.getValue().isEmpty()) continue;
+            System.out.println("=== Project " + e.getKey() + " (" + e.getValue().size() + ") ===");
+            printAll(e.getValue());
+            total += e.getValue().size();
+        }
+        System.out.println(total + " task(s) across all projects.");
+    }
+
+    private void handleReplication() {
+        System.out.println(replicator == null ? "Replication is not enabled." : replicator.status());
+    }
+
+    private void handleAlerts() {
+        service.checkDeadlines();
+        java.util.List<taskmanager.core.Task> overdue = service.getOverdueTasks();
+        java.util.List<taskmanager.core.Task> dueSoon = service.getDueSoonTasks();
+        System.out.println("Overdue (" + overdue.size() + "):");
+        overdue.forEach(System.out::println);
+        System.out.println("Due within 24 hours (" + dueSoon.size() + "):");
+        dueSoon.forEach(System.out::println);
+    }
+
     private void showHelp() {
         System.out.println("\n================================");
         System.out.println("   AVAILABLE COMMANDS");
@@ -369,15 +840,65 @@ public class CommandParser {
         System.out.printf("  %-35s - %s%n", "create /bug <title>", "Shortcut to create a bug");
         System.out.printf("  %-35s - %s%n", "read, r", "Show all tasks");
         System.out.printf("  %-35s - %s%n", "read <personID>, r <personID>", "Show tasks for a person");
-        System.out.printf("  %-35s - %s%n", "update <taskID>, u <taskID>", "Update a task");
-        System.out.printf("  %-35s - %s%n", "delete <taskID>, d <taskID>", "Delete a task");
+        System.out.printf("  %-35s - %s%n", "update <taskID>, u <taskID>", "Update a task (ID or a unique ID/title prefix)");
+        System.out.printf("  %-35s - %s%n", "delete <taskID>, d <taskID>", "Delete a task (ID or a unique ID/title prefix)");
         
         System.out.println("\nSORTING:");
         System.out.printf("  %-35s - %s%n", "sort due", "Sort by due date");
         System.out.printf("  %-35s - %s%n", "sort cat", "Sort by category");
         System.out.printf("  %-35s - %s%n", "sort eisenhower", "Sort by Eisenhower matrix");
         
+        System.out.println("\nPROJECTS:");
+        System.out.printf("  %-35s - %s%n", "project [list]", "Show projects, the current one and memory use");
+        System.out.printf("  %-35s - %s%n", "project use <name>", "Switch to another project");
+        System.out.printf("  %-35s - %s%n", "project create <name>", "Create an empty project");
+        System.out.printf("  %-35s - %s%n", "all read [personID]", "Tasks of every project, read in parallel");
+        System.out.printf("  %-35s - %s%n", "all search <keyword>", "Search titles and descriptions in every project");
+
+        System.out.println("\nQUERIES:");
+        System.out.printf("  %-35s - %s%n", "search <keyword>", "Tasks whose title or description contains keyword");
+        System.out.printf("  %-35s - %s%n", "complete <prefix>", "Tasks and people whose ID, title or name starts with prefix");
+        System.out.printf("  %-35s - %s%n", "find <query>", "Filter tasks, e.g. find status=TO_DO due<2026-11-01 order by due limit 20");
+        System.out.printf("  %-35s - %s%n", "explain <query>", "Show the plan chosen for a find query");
+
+        System.out.println("\nBULK CHANGES:");
+        System.out.printf("  %-35s - %s%n", "sweep <rule>[; <rule>...]", "Show what rules would change, e.g. sweep cat=BUG_FIX and overdue then eisenhower=I");
+        System.out.printf("  %-35s - %s%n", "sweep --file <path>", "The same with one rule per line of a file");
+        System.out.printf("  %-35s - %s%n", "sweep --apply ...", "Make the changes as one; a single undo reverts them");
+
+        System.out.println("\nHISTORY:");
+        System.out.printf("  %-35s - %s%n", "asof <date> read [personID]", "Tasks as they were at a date (yyyy-MM-dd[THH:mm])");
+        System.out.printf("  %-35s - %s%n", "asof <date> sort due|cat|eisenhower", "Sorted view as it was at a date");
+        System.out.printf("  %-35s - %s%n", "undo", "Revert the last create, update, delete or sweep (a deleted task gets its dependencies back)");
+        System.out.printf("  %-35s - %s%n", "redo", "Re-apply the last undone change");
+
+        System.out.println("\nPLANNING:");
+        System.out.printf("  %-35s - %s%n", "next <personID> [k]", "Top k (default 5) open tasks to pick up next");
+
+        System.out.println("\nDEADLINES:");
+        System.out.printf("  %-35s - %s%n", "alerts", "Show overdue and due-soon tasks");
+
+        System.out.println("\nDEPENDENCIES:");
+        System.out.printf("  %-35s - %s%n", "block <blockerID> <blockedID>", "Mark a task as blocked by another");
+        System.out.printf("  %-35s - %s%n", "unblock <blockerID> <blockedID>", "Remove that dependency");
+        System.out.printf("  %-35s - %s%n", "deps <taskID>", "Show what a task blocks and is blocked by");
+        System.out.printf("  %-35s - %s%n", "ready / blocked", "Open tasks that can start / are waiting");
+        System.out.printf("  %-35s - %s%n", "critical", "Chain of tasks with the least slack to their due dates");
+
+        System.out.println("\nSTORAGE:");
+        System.out.printf("  %-35s - %s%n", "verify [file]", "Check the block checksums of tasks.txt (or a file)");
+        System.out.printf("  %-35s - %s%n", "import <file> [csv|json]", "Add tasks from a CSV or JSON file");
+        System.out.printf("  %-35s - %s%n", "export <file> [csv|json]", "Write all tasks to a CSV or JSON file");
+
+        System.out.println("\nREPLICATION:");
+        System.out.printf("  %-35s - %s%n", "replication", "Show role, position and follower lag (default project)");
+        System.out.printf("  %-35s - %s%n", "promote", "Turn this follower into the primary");
+
         System.out.println("\nUTILITIES:");
+        System.out.printf("  %-35s - %s%n", "policy [round-robin|load]", "Show or set the auto-assignment policy");
+        System.out.printf("  %-35s - %s%n", "memory", "Show heap, GC time and description storage");
+        System.out.printf("  %-35s - %s%n", "cache", "Show hits and misses of the query result cache");
+        System.out.printf("  %-35s - %s%n", "cancel", "Stop a running read, sort, search, find, all or asof");
         System.out.printf("  %-35s - %s%n", "help", "Show this help menu");
         System.out.printf("  %-35s - %s%n", "exit, quit", "Exit the application");
         System.out.println("\n================================\n");
@@ -1,13 +1,26 @@
 package taskmanager.console;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.*;
 import taskmanager.exceptions.InvalidCommandException;
 import taskmanager.exceptions.InvalidDataException;
 import taskmanager.exceptions.NotFoundException;
 import taskmanager.exceptions.RepositoryException;
+import taskmanager.data.Durability;
 import taskmanager.data.PersonRepository;
 import taskmanager.data.TaskRepository;
+import taskmanager.core.Task;
+import taskmanager.services.DeadlineListener;
 import taskmanager.services.TaskService;
+import taskmanager.services.replication.Replicator;
+import taskmanager.services.workspace.Workspace;
 
 /**
  * ConsoleUI Class (Part C3)
@@ -17,19 +30,100 @@ import taskmanager.services.TaskService;
  * - Reading user input
  * - Displaying output
  * - Handling errors gracefully
+ *
+ * The current project is loaded on a background thread, so the prompt appears at once.
+ * Commands run one at a time on a worker thread; one that needs tasks waits for the load
+ * with a progress line. Input is read by its own thread into a queue, which lets the user
+ * type 'cancel' while a listing command (see CommandParser.isCancellable) is running.
  */
 public class ConsoleUI {
+    // Queued in place of a line once System.in is exhausted; compared by identity.
+    private static final String END_OF_INPUT = new String("<end of input>");
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
     private final CommandParser commandParser;
     private final Scanner scanner;
+    private final Workspace workspace;
+    private final PersonRepository personRepo;
+    private final BlockingDeque<String> inputLines = new LinkedBlockingDeque<>();
+    private final ExecutorService commands = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "console-command");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile Replicator replicator;
+    private Runnable pendingReplication; // started once the default project has loaded
+    private volatile boolean ready;      // the current project has loaded at least once
+    private volatile RuntimeException startupError;
+    private int progressWidth;           // of the progress line on screen, 0 if none
+    private final java.util.Set<TaskRepository> integrityReported =
+            java.util.Collections.newSetFromMap(new java.util.IdentityHashMap<>());
     private static final String SEPARATOR = "================================";
 
     public ConsoleUI() {
-        PersonRepository personRepo = new PersonRepository();
-        TaskRepository taskRepo = new TaskRepository(personRepo);
-        TaskService taskService = new TaskService(personRepo, taskRepo);
-        
-        this.commandParser = new CommandParser(taskService);
-        this.scanner = new Scanner(System.in);
+        this("text");
+    }
+
+    public ConsoleUI(String storage) {
+        this(storage, Runtime.getRuntime().maxMemory() / 2);
+    }
+
+    /**
+     * @param storage         "text" to keep each project's tasks in tasks.txt, "lsm" for the log-structured store in tasks.lsm/,
+     *                        "memory" to keep them in memory only
+     * @param heapBudgetBytes heap the loaded projects may use before the least recently used are closed
+     */
+    public ConsoleUI(String storage, long heapBudgetBytes) {
+        this(storage, heapBudgetBytes, Durability.NONE);
+    }
+
+    /**
+     * @param durability when changes are forced to disk: every change, in batches, or left to the OS
+     */
+    public ConsoleUI(String storage, long heapBudgetBytes, Durability durability) {
+        this.personRepo = new PersonRepository();
+        this.workspace = new Workspace(personRepo, new java.io.File("projects"), storage.toLowerCase(), durability, heapBudgetBytes);
+        workspace.addOpenListener(service -> service.addDeadlineListener(new DeadlineListener() {
+            @Override
+            public void dueSoon(Task task) {
+                displayInfo("Task " + task.getId() + " (" + task.getTitle() + ") is due within 24 hours.");
+            }
+
+            @Override
+            public void overdue(Task task) {
+                displayInfo("Task " + task.getId() + " (" + task.getTitle() + ") is overdue.");
+            }
+        }));
+
+        this.commandParser = new CommandParser(null); // takes the service once it has loaded
+        commandParser.setWorkspace(workspace);
+        this.scanner = new Scanner(new QueuedInput());
+    }
+
+    /**
+     * Makes this node a replication primary, shipping changes to the default project to followers on the given port.
+     * Replication starts once the project has loaded.
+     */
+    public synchronized void enablePrimary(int port) {
+        workspace.pin(Workspace.DEFAULT_PROJECT);
+        pendingReplication = () -> {
+            replicator = Replicator.primary(workspace.service(Workspace.DEFAULT_PROJECT), port);
+            commandParser.setReplicator(replicator);
+        };
+    }
+
+    /**
+     * Makes this node a read-only follower of the first reachable "host:port" address.
+     * Replication starts once the project has loaded.
+     *
+     * @param port the port to accept followers on after 'promote'
+     */
+    public synchronized void enableFollower(java.util.List<String> primaries, int port) {
+        workspace.pin(Workspace.DEFAULT_PROJECT);
+        pendingReplication = () -> {
+            replicator = Replicator.follower(workspace.service(Workspace.DEFAULT_PROJECT), personRepo, primaries, port, new java.io.File("replica.state"));
+            commandParser.setReplicator(replicator);
+        };
     }
 
     /**
@@ -38,15 +132,26 @@ public class ConsoleUI {
      * Gracefully handles all exceptions without crashing.
      */
     public void run() {
+        startReadingInput();
+        startLoading();
         displayWelcomeMessage();
 
         while (true) {
             try {
+                reportStartupError();
+                if (ready) {
+                    reportIntegrityProblems();
+                    TaskService current = workspace.current();
+                    synchronized (current) {
+                        current.checkDeadlines();
+                    }
+                }
                 System.out.print("> ");
-                if (!scanner.hasNextLine()) {
+                String line = inputLines.take();
+                if (line == END_OF_INPUT) {
                     break;
                 }
-                String input = scanner.nextLine().trim();
+                String input = line.trim();
 
                 // Skip empty input
                 if (input.isEmpty()) {
@@ -59,8 +164,12 @@ public class ConsoleUI {
                     break;
                 }
 
-                // Execute command through parser
-                commandParser.execute(input, scanner);
+                if (input.equalsIgnoreCase("cancel")) {
+                    displayInfo("Nothing is running.");
+                    continue;
+                }
+
+                execute(input);
 
             } catch (InvalidCommandException e) {
                 displayError("Invalid Command", e.getMessage());
@@ -78,6 +187,193 @@ public class ConsoleUI {
         }
 
         scanner.close();
+        commands.shutdownNow();
+        if (replicator != null) replicator.close();
+        workspace.close();
+    }
+
+    /**
+     * Runs a command on the worker thread and waits for it, showing load progress while
+     * it waits for tasks and, for listing commands, watching the input for 'cancel'.
+     * Anything else typed meanwhile is kept and runs next.
+     */
+    private void execute(String input) throws InterruptedException {
+        String command = input.split(" ", 2)[0];
+        boolean cancellable = CommandParser.isCancellable(command);
+        Future<?> running = commands.submit(() -> {
+            if (!CommandParser.needsData(command)) {
+                commandParser.execute(input, scanner);
+                return;
+            }
+            TaskService current = workspace.current(); // waits for the background load
+            onLoaded();
+            // Replication may apply changes from another thread
+            synchronized (current) {
+                if (Thread.currentThread().isInterrupted()) return; // cancelled while waiting
+                commandParser.execute(input, scanner);
+            }
+        });
+
+        List<String> typedAhead = new ArrayList<>();
+        try {
+            while (true) {
+                try {
+                    running.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    showProgress(cancellable);
+                    if (cancellable && watchForCancel(typedAhead)) {
+                        running.cancel(true);
+                        clearProgress();
+                        displayInfo("Cancelled.");
+                        return;
+                    }
+                } catch (CancellationException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    clearProgress();
+                    Throwable cause = e.getCause();
+                    if (cause instanceof CancellationException) {
+                        displayInfo("Cancelled.");
+                        return;
+                    }
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    throw new RepositoryException(String.valueOf(cause));
+                }
+            }
+        } finally {
+            clearProgress();
+            for (int i = typedAhead.size() - 1; i >= 0; i--) inputLines.addFirst(typedAhead.get(i));
+        }
+    }
+
+    // True if 'cancel' was typed; other lines are set aside in typedAhead.
+    private boolean watchForCancel(List<String> typedAhead) {
+        String line;
+        while ((line = inputLines.poll()) != null) {
+            if (line != END_OF_INPUT && line.trim().equalsIgnoreCase("cancel")) return true;
+            typedAhead.add(line);
+        }
+        return false;
+    }
+
+    private void showProgress(boolean cancellable) {
+        if (workspace.loadProgress().isFinished()) {
+            clearProgress();
+            return;
+        }
+        String text = "Loading tasks: " + workspace.loadProgress().describe() + (cancellable ? " - type 'cancel' to stop waiting" : "");
+        StringBuilder line = new StringBuilder("\r").append(text);
+        for (int i = text.length(); i < progressWidth; i++) line.append(' ');
+        System.out.print(line);
+        System.out.flush();
+        progressWidth = text.length();
+    }
+
+    private void clearProgress() {
+        if (progressWidth == 0) return;
+        System.out.print("\r" + " ".repeat(progressWidth) + "\r");
+        System.out.flush();
+        progressWidth = 0;
+    }
+
+    /**
+     * Loads the current project in the background, then starts replication if it was asked for.
+     */
+    private void startLoading() {
+        Thread loader = new Thread(() -> {
+            try {
+                workspace.current();
+                onLoaded();
+            } catch (RuntimeException e) {
+                // shown at the next prompt; the next command that needs tasks tries again
+                startupError = e;
+            }
+        }, "project-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // Called on whichever thread first finds the current project loaded.
+    private synchronized void onLoaded() {
+        ready = true;
+        if (pendingReplication == null) return;
+        Runnable start = pendingReplication;
+        pendingReplication = null;
+        start.run();
+    }
+
+    private void reportStartupError() {
+        RuntimeException e = startupError;
+        if (e == null) return;
+        startupError = null;
+        displayError("Startup Error", e.getMessage());
+    }
+
+    private void startReadingInput() {
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in))) {
+                String line;
+                while ((line = in.readLine()) != null) inputLines.add(line);
+            } catch (IOException e) {
+                // treated as the end of input
+            }
+            inputLines.add(END_OF_INPUT);
+        }, "console-input");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Feeds the queued lines to the Scanner that interactive commands prompt with.
+     */
+    private final class QueuedInput extends Reader {
+        private String pending = "";
+        private int pos;
+
+        @Override
+        public int read(char[] buf, int off, int len) throws IOException {
+            if (pos == pending.length()) {
+                String line;
+                try {
+                    line = inputLines.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                if (line == END_OF_INPUT) {
+                    inputLines.addFirst(line); // for the prompt loop too
+                    return -1;
+                }
+                pending = line + "\n";
+                pos = 0;
+            }
+            int n = Math.min(len, pending.length() - pos);
+            pending.getChars(pos, pos + n, buf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Print the result of the background integrity check once it has finished.
+     */
+    private void reportIntegrityProblems() {
+        TaskRepository repo = workspace.currentRepository();
+        if (integrityReported.contains(repo) || !repo.getIntegrityReport().isDone()) return;
+        integrityReported.add(repo);
+        java.util.List<String> problems = repo.getIntegrityReport().join();
+        if (problems.isEmpty()) return;
+        String project = workspace.currentName();
+        StringBuilder sb = new StringBuilder("Integrity check found " + problems.size() + " problem(s) in stored tasks"
+                + (project.equals(Workspace.DEFAULT_PROJECT) ? ":" : " of project " + project + ":"));
+        problems.stream().limit(10).forEach(p -> sb.append("\n  - ").append(p));
+        if (problems.size() > 10) sb.append("\n  ...");
+        displayInfo(sb.toString());
     }
 
     /**
@@ -90,6 +386,7 @@ public class ConsoleUI {
         System.out.println("Manage and track programming tasks for your team.");
         System.out.println("Type 'help' to see available commands.");
         System.out.println("Type 'exit' or 'quit' to close the application.");
+        if (!ready) System.out.println("Tasks are loading in the background; commands that need them will wait.");
         System.out.println(SEPARATOR + "\n");
     }
 
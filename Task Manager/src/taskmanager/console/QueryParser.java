@@ -0,0 +1,151 @@
+package taskmanager.console;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import taskmanager.core.Category;
+import taskmanager.core.Status;
+import taskmanager.exceptions.InvalidCommandException;
+import taskmanager.services.query.Condition;
+import taskmanager.services.query.TaskQuery;
+
+/**
+ * Parses the arguments of the "find" command, e.g.
+ *   find status=IN_PROCESS cat=BUG_FIX due<2026-11-01 order by due limit 20
+ *
+ * Conditions are field/operator/value with no spaces (quote values that contain spaces:
+ * title~"login page"). Fields: id, title, status, cat, assignee, due, eisenhower.
+ * Operators: = != < <= > >= and ~ (contains, text fields only). Dates are yyyy-MM-dd;
+ * "none" matches an unset due date or Eisenhower value. "overdue" is short for due<today.
+ */
+public class QueryParser {
+
+    private static final String[] OPERATORS = {"!=", "<=", ">=", "=", "<", ">", "~"};
+
+    public TaskQuery parse(String args) {
+        List<String> tokens = tokenize(args);
+        List<Condition> conditions = new ArrayList<>();
+        Condition.Field orderBy = null;
+        boolean descending = false;
+        int limit = -1;
+
+        int i = 0;
+        while (i < tokens.size()) {
+            String token = tokens.get(i);
+            String lower = token.toLowerCase();
+            if (lower.equals("and")) {
+                i++;
+            } else if (lower.equals("order")) {
+                if (i + 2 >= tokens.size() || !tokens.get(i + 1).equalsIgnoreCase("by")) {
+                    throw new InvalidCommandException("Expected 'order by <field>'.");
+                }
+                orderBy = parseField(tokens.get(i + 2));
+                i += 3;
+                if (i < tokens.size() && (tokens.get(i).equalsIgnoreCase("asc") || tokens.get(i).equalsIgnoreCase("desc"))) {
+                    descending = tokens.get(i).equalsIgnoreCase("desc");
+                    i++;
+                }
+            } else if (lower.equals("limit")) {
+                if (i + 1 >= tokens.size()) throw new InvalidCommandException("Expected a number after 'limit'.");
+                try {
+                    limit = Integer.parseInt(tokens.get(i + 1));
+                    if (limit < 0) throw new NumberFormatException();
+                } catch (NumberFormatException e) {
+                    throw new InvalidCommandException("Limit must be a non-negative number.");
+                }
+                i += 2;
+            } else {
+                conditions.add(parseCondition(token));
+                i++;
+            }
+        }
+        return new TaskQuery(conditions, orderBy, descending, limit);
+    }
+
+    /** One condition token, e.g. "status=TO_DO" or "overdue"; RuleParser uses the same syntax. */
+    Condition parseCondition(String token) {
+        if (token.equalsIgnoreCase("overdue")) return new Condition(Condition.Field.DUE, Condition.Op.LT, LocalDate.now());
+        // The first operator in the token splits field from value; two-character operators win ties.
+        for (int at = 1; at < token.length(); at++) {
+            for (String symbol : OPERATORS) {
+                if (!token.startsWith(symbol, at)) continue;
+                Condition.Field field = parseField(token.substring(0, at));
+                Condition.Op op = opFor(symbol);
+                String raw = token.substring(at + symbol.length());
+                if (raw.isEmpty()) throw new InvalidCommandException("Missing value in condition: " + token);
+                return new Condition(field, op, parseValue(field, op, raw));
+            }
+        }
+        throw new InvalidCommandException("Invalid condition: " + token + ". Use <field><op><value>, e.g. status=TO_DO.");
+    }
+
+    Condition.Field parseField(String name) {
+        switch (name.toLowerCase()) {
+            case "id": return Condition.Field.ID;
+            case "title": return Condition.Field.TITLE;
+            case "status": return Condition.Field.STATUS;
+            case "cat":
+            case "category": return Condition.Field.CATEGORY;
+            case "assignee":
+            case "person": return Condition.Field.ASSIGNEE;
+            case "due": return Condition.Field.DUE;
+            case "eisenhower":
+            case "priority": return Condition.Field.EISENHOWER;
+            default: throw new InvalidCommandException("Unknown field: " + name);
+        }
+    }
+
+    private Condition.Op opFor(String symbol) {
+        for (Condition.Op op : Condition.Op.values()) {
+            if (op.getSymbol().equals(symbol)) return op;
+        }
+        throw new InvalidCommandException("Unknown operator: " + symbol);
+    }
+
+    Object parseValue(Condition.Field field, Condition.Op op, String raw) {
+        boolean text = field == Condition.Field.ID || field == Condition.Field.TITLE || field == Condition.Field.ASSIGNEE;
+        if (op == Condition.Op.CONTAINS && !text) {
+            throw new InvalidCommandException("'~' only works on id, title and assignee.");
+        }
+        try {
+            switch (field) {
+                case STATUS:
+                    return Status.valueOf(raw.toUpperCase());
+                case CATEGORY:
+                    return Category.valueOf(raw.toUpperCase());
+                case DUE:
+                    return raw.equalsIgnoreCase("none") ? null : LocalDate.parse(raw);
+                case EISENHOWER:
+                    if (raw.equalsIgnoreCase("none")) return null;
+                    if (!raw.toUpperCase().matches("I|II|III|IV")) throw new InvalidCommandException("Eisenhower must be I, II, III, IV or none.");
+                    return raw.toUpperCase();
+                default:
+                    return raw;
+            }
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCommandException("Invalid value for " + field.name().toLowerCase() + ": " + raw);
+        } catch (DateTimeParseException e) {
+            throw new InvalidCommandException("Invalid date: " + raw + ". Use yyyy-MM-dd.");
+        }
+    }
+
+    List<String> tokenize(String args) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (char ch : args.toCharArray()) {
+            if (ch == '"') {
+                quoted = !quoted;
+            } else if (Character.isWhitespace(ch) && !quoted) {
+                if (current.length() > 0) tokens.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(ch);
+            }
+        }
+        if (quoted) throw new InvalidCommandException("Unterminated quote in query.");
+        if (current.length() > 0) tokens.add(current.toString());
+        return tokens;
+    }
+}
@@ -0,0 +1,122 @@
+package taskmanager.console;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import taskmanager.core.Category;
+import taskmanager.core.Status;
+import taskmanager.exceptions.InvalidCommandException;
+import taskmanager.services.query.Condition;
+import taskmanager.services.rules.Rule;
+
+/**
+ * Parses the rules of the "sweep" command, e.g.
+ *   if cat=BUG_FIX and overdue then eisenhower=I
+ *   assignee=7 then assignee=4|5|6
+ *
+ * Conditions are those of find (see QueryParser), at least one per rule. Actions follow
+ * "then" and are field=value, separated by spaces, "and" or commas:
+ *   status=TO_DO|IN_PROCESS   (not DONE: completing a task deletes it)
+ *   cat=<category>
+ *   eisenhower=I|II|III|IV|none
+ *   due=yyyy-MM-dd|+<n>d|none (+7d is a week from today)
+ *   assignee=<id>[|<id>...]   (several ids spread the tasks over those people by load)
+ */
+public class RuleParser {
+
+    private final QueryParser queryParser = new QueryParser();
+
+    /** Rules separated by ';'. */
+    public List<Rule> parseAll(String text) {
+        List<Rule> rules = new ArrayList<>();
+        for (String part : text.split(";")) {
+            if (!part.trim().isEmpty()) rules.add(parse(part.trim()));
+        }
+        if (rules.isEmpty()) throw new InvalidCommandException("No rules given.");
+        return rules;
+    }
+
+    /** One rule per line; blank lines and lines starting with '#' are skipped. */
+    public List<Rule> parseLines(List<String> lines) {
+        List<Rule> rules = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            try {
+                rules.add(parse(line));
+            } catch (InvalidCommandException e) {
+                throw new InvalidCommandException("Line " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        if (rules.isEmpty()) throw new InvalidCommandException("The file has no rules.");
+        return rules;
+    }
+
+    public Rule parse(String text) {
+        List<Condition> conditions = new ArrayList<>();
+        List<Rule.Action> actions = new ArrayList<>();
+        boolean then = false;
+        List<String> tokens = queryParser.tokenize(text.replace(",", " "));
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            String lower = token.toLowerCase();
+            if (lower.equals("and") || (i == 0 && lower.equals("if"))) continue;
+            if (lower.equals("then")) {
+                if (then) throw new InvalidCommandException("'then' appears twice in: " + text);
+                then = true;
+            } else if (then) {
+                actions.add(parseAction(token));
+            } else {
+                conditions.add(queryParser.parseCondition(token));
+            }
+        }
+        if (conditions.isEmpty()) throw new InvalidCommandException("A rule needs a condition before 'then', e.g. cat=BUG_FIX and overdue then eisenhower=I");
+        if (actions.isEmpty()) throw new InvalidCommandException("A rule needs at least one field=value after 'then'.");
+        return new Rule(text, conditions, actions);
+    }
+
+    private Rule.Action parseAction(String token) {
+        int eq = token.indexOf('=');
+        if (eq <= 0 || eq == token.length() - 1) throw new InvalidCommandException("Invalid action: " + token + ". Use <field>=<value>, e.g. eisenhower=I.");
+        Condition.Field field = queryParser.parseField(token.substring(0, eq));
+        String raw = token.substring(eq + 1);
+        try {
+            switch (field) {
+                case STATUS:
+                    Status status = Status.valueOf(raw.toUpperCase());
+                    if (status == Status.DONE) throw new InvalidCommandException("Rules cannot complete tasks; completing a task deletes it.");
+                    return new Rule.Action(field, status);
+                case CATEGORY:
+                    return new Rule.Action(field, Category.valueOf(raw.toUpperCase()));
+                case EISENHOWER:
+                    return new Rule.Action(field, queryParser.parseValue(field, Condition.Op.EQ, raw));
+                case DUE:
+                    return new Rule.Action(field, parseDue(raw));
+                case ASSIGNEE:
+                    return Rule.Action.assignTo(Arrays.asList(raw.split("\\|")));
+                default:
+                    throw new InvalidCommandException("Rules can set status, cat, eisenhower, due and assignee, not " + field.name().toLowerCase() + ".");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCommandException("Invalid value for " + field.name().toLowerCase() + ": " + raw);
+        }
+    }
+
+    private LocalDate parseDue(String raw) {
+        if (raw.equalsIgnoreCase("none")) return null;
+        LocalDate date;
+        if (raw.matches("\\+\\d{1,4}d")) {
+            date = LocalDate.now().plusDays(Integer.parseInt(raw.substring(1, raw.length() - 1)));
+        } else {
+            try {
+                date = LocalDate.parse(raw);
+            } catch (DateTimeParseException e) {
+                throw new InvalidCommandException("Invalid date: " + raw + ". Use yyyy-MM-dd, +<n>d or none.");
+            }
+        }
+        if (date.isBefore(LocalDate.now())) throw new InvalidCommandException("Due date cannot be in the past.");
+        return date;
+    }
+}
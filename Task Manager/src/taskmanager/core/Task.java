@@ -5,7 +5,7 @@ import java.time.LocalDate;
 public class Task {
     private String id;
     private String title;
-    private String description;
+    private TextArena.Text description; // off-heap, see TextArena
     private Category category;
     private Status status;
     private Person assignee;
@@ -24,7 +24,7 @@ public class Task {
         this.category = category;
         this.assignee = assignee;
         this.status = Status.TO_DO; // Default status
-        this.description = "";
+        this.description = TextArena.Text.EMPTY;
         this.eisenhower = "I"; // Default or null? Requirements say values: "I", "II", "III", "IV". Let's default to I or handle null.
     }
 
@@ -46,7 +46,7 @@ public class Task {
 
         this.id = id;
         this.title = title;
-        this.description = description == null ? "" : description;
+        this.description = TextArena.shared().intern(description == null ? "" : description);
         this.category = category;
         this.status = status;
         this.assignee = assignee;
@@ -54,10 +54,55 @@ public class Task {
         this.eisenhower = eisenhower;
     }
 
+    private Task() {
+    }
+
+    /**
+     * Rebuilds a task from data that was validated when it was first written.
+     * Skips every check the constructors make (including the past due date check,
+     * so old deadlines can be reloaded); callers must pass non-null id, title,
+     * category, status and assignee.
+     */
+    public static Task restore(String id, String title, String description, Category category, Status status, Person assignee, LocalDate dueDate, String eisenhower) {
+        return restore(id, title, TextArena.shared().intern(description), category, status, assignee, dueDate, eisenhower);
+    }
+
+    /**
+     * As restore() above, with a description already in the arena.
+     */
+    public static Task restore(String id, String title, TextArena.Text description, Category category, Status status, Person assignee, LocalDate dueDate, String eisenhower) {
+        Task t = new Task();
+        t.id = id;
+        t.title = title;
+        t.description = description;
+        t.category = category;
+        t.status = status;
+        t.assignee = assignee;
+        t.dueDate = dueDate;
+        t.eisenhower = eisenhower;
+        return t;
+    }
+
+    /**
+     * Puts every field back to the values in the snapshot (trusted, no validation).
+     * Used to undo changes, where the earlier state may hold an already past due date.
+     */
+    public void restoreState(TaskSnapshot snapshot, Person assignee) {
+        this.title = snapshot.getTitle();
+        this.description = snapshot.getDescriptionText();
+        this.category = snapshot.getCategory();
+        this.status = snapshot.getStatus();
+        this.assignee = assignee;
+        this.dueDate = snapshot.getDueDate();
+        this.eisenhower = snapshot.getEisenhower();
+    }
+
     // Getters
     public String getId() { return id; }
     public String getTitle() { return title; }
-    public String getDescription() { return description; }
+    /** Decodes the description from the arena; use getDescriptionText() to pass it on without decoding. */
+    public String getDescription() { return description == null ? null : description.toString(); }
+    public TextArena.Text getDescriptionText() { return description; }
     public Category getCategory() { return category; }
     public Status getStatus() { return status; }
     public Person getAssignee() { return assignee; }
@@ -71,7 +116,7 @@ public class Task {
     }
 
     public void setDescription(String description) {
-        this.description = description == null ? "" : description;
+        this.description = TextArena.shared().intern(description == null ? "" : description);
     }
 
     public void setCategory(Category category) {
@@ -115,7 +160,7 @@ public class Task {
             sb.append(String.format("Due Date: %s\n", dueDate.format(fmt)));
         }
         if (eisenhower != null) sb.append(String.format("Priority: %s\n", eisenhower));
-        if (description != null && !description.isEmpty()) sb.append(String.format("Description: %s\n", description));
+        if (description != null && !description.isEmpty()) sb.append(String.format("Description: %s\n", description.toString()));
         sb.append("--------------------------------------------------");
         return sb.toString();
     }
@@ -0,0 +1,102 @@
+package taskmanager.core;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Immutable copy of a task's fields at one point in time.
+ * The assignee is kept by ID so snapshots do not pin Person objects, and the
+ * description stays in the TextArena, shared with the task it was taken from.
+ */
+public final class TaskSnapshot {
+
+    public enum Field {
+        TITLE, DESCRIPTION, CATEGORY, STATUS, ASSIGNEE, DUE_DATE, EISENHOWER
+    }
+
+    private final String id;
+    private final String title;
+    private final TextArena.Text description;
+    private final Category category;
+    private final Status status;
+    private final String assigneeId;
+    private final LocalDate dueDate;
+    private final String eisenhower;
+
+    public TaskSnapshot(String id, String title, String description, Category category, Status status,
+                        String assigneeId, LocalDate dueDate, String eisenhower) {
+        this(id, title, TextArena.shared().intern(description), category, status, assigneeId, dueDate, eisenhower);
+    }
+
+    private TaskSnapshot(String id, String title, TextArena.Text description, Category category, Status status,
+                         String assigneeId, LocalDate dueDate, String eisenhower) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.category = category;
+        this.status = status;
+        this.assigneeId = assigneeId;
+        this.dueDate = dueDate;
+        this.eisenhower = eisenhower;
+    }
+
+    public static TaskSnapshot of(Task t) {
+        return new TaskSnapshot(t.getId(), t.getTitle(), t.getDescriptionText(), t.getCategory(), t.getStatus(),
+                t.getAssignee().getId(), t.getDueDate(), t.getEisenhower());
+    }
+
+    public String getId() { return id; }
+    public String getTitle() { return title; }
+    public String getDescription() { return description == null ? null : description.toString(); }
+    public TextArena.Text getDescriptionText() { return description; }
+    public Category getCategory() { return category; }
+    public Status getStatus() { return status; }
+    public String getAssigneeId() { return assigneeId; }
+    public LocalDate getDueDate() { return dueDate; }
+    public String getEisenhower() { return eisenhower; }
+
+    /**
+     * The value of one field. DESCRIPTION is returned as its TextArena.Text handle,
+     * whose toString() is the text; with() accepts either form back.
+     */
+    public Object get(Field field) {
+        switch (field) {
+            case TITLE: return title;
+            case DESCRIPTION: return description;
+            case CATEGORY: return category;
+            case STATUS: return status;
+            case ASSIGNEE: return assigneeId;
+            case DUE_DATE: return dueDate;
+            default: return eisenhower;
+        }
+    }
+
+    /**
+     * Returns a copy with one field replaced.
+     */
+    public TaskSnapshot with(Field field, Object value) {
+        return new TaskSnapshot(id,
+                field == Field.TITLE ? (String) value : title,
+                field == Field.DESCRIPTION ? text(value) : description,
+                field == Field.CATEGORY ? (Category) value : category,
+                field == Field.STATUS ? (Status) value : status,
+                field == Field.ASSIGNEE ? (String) value : assigneeId,
+                field == Field.DUE_DATE ? (LocalDate) value : dueDate,
+                field == Field.EISENHOWER ? (String) value : eisenhower);
+    }
+
+    private static TextArena.Text text(Object value) {
+        return value instanceof String ? TextArena.shared().intern((String) value) : (TextArena.Text) value;
+    }
+
+    /**
+     * Rebuilds a Task with the given assignee (trusted, no validation).
+     */
+    public Task toTask(Person assignee) {
+        return Task.restore(id, title, description, category, status, assignee, dueDate, eisenhower);
+    }
+
+    public boolean sameFieldAs(TaskSnapshot other, Field field) {
+        return Objects.equals(get(field), other.get(field));
+    }
+}
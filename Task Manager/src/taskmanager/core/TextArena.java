@@ -0,0 +1,359 @@
+package taskmanager.core;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps task descriptions outside the Java heap, each distinct text stored once.
+ *
+ * Text is encoded as UTF-8 into direct buffers of CHUNK_SIZE bytes; a text of COMPRESS_MIN
+ * bytes or more is deflated when that makes it smaller. Interning a text that is already
+ * stored returns the same handle, so tasks made from one template share their description.
+ * Texts shorter than INLINE_MAX bytes stay on the heap as UTF-8 bytes inside their handle,
+ * since tracking them in the arena would cost more than they take. A handle decodes on each
+ * toString(), which happens only when a task is shown, searched or written out.
+ *
+ * Each stored text has a slot that weakly refers to its handle. Once no task or snapshot
+ * holds the handle, the GC queues the slot and the next intern() releases its bytes. A chunk
+ * whose texts have all been released is reused. Live text is never moved, so a chunk stays
+ * allocated while any text in it is still referenced.
+ */
+public final class TextArena {
+    public static final int CHUNK_SIZE = 4 << 20;
+    public static final int COMPRESS_MIN = 1024;
+    public static final int INLINE_MAX = 64;
+    private static final int SPARE_CHUNKS = 2;
+
+    private static final TextArena SHARED = new TextArena();
+    private static final ThreadLocal<Codec> CODEC = ThreadLocal.withInitial(Codec::new);
+
+    // Distinct stored texts by hash of their UTF-8 bytes, chained through Slot.next
+    private Slot[] table = new Slot[1 << 12];
+    private int slots;
+    private final ReferenceQueue<Text> released = new ReferenceQueue<>();
+    private final ArrayDeque<Chunk> spare = new ArrayDeque<>();
+    private Chunk current;
+    private long storedBytes, rawBytes, reservedBytes, interned, shared;
+
+    /**
+     * A description. Stored handles with equal content are usually the same object,
+     * but equals() compares content in case one was already queued for release.
+     */
+    public static final class Text {
+        public static final Text EMPTY = new Text(null, null);
+
+        private Slot slot;  // set once, before the handle leaves intern()
+        private final byte[] inline;
+
+        private Text(Slot slot, byte[] inline) {
+            this.slot = slot;
+            this.inline = inline;
+        }
+
+        public boolean isEmpty() {
+            return slot == null && inline == null;
+        }
+
+        /** Bytes the text takes, after compression; on the heap if it is inline. */
+        public int storedLength() {
+            return slot != null ? slot.length : inline != null ? inline.length : 0;
+        }
+
+        @Override
+        public String toString() {
+            if (slot == null) return inline == null ? "" : new String(inline, StandardCharsets.UTF_8);
+            try {
+                return CODEC.get().decode(slot);
+            } finally {
+                // the slot must not be released while its bytes are being read
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Text)) return false;
+            Text other = (Text) o;
+            if (slot == null || other.slot == null) {
+                return slot == other.slot && Arrays.equals(inline, other.inline);
+            }
+            return slot.hash == other.slot.hash && slot.rawLength == other.slot.rawLength
+                    && toString().equals(other.toString());
+        }
+
+        @Override
+        public int hashCode() {
+            return slot != null ? slot.hash : Arrays.hashCode(inline);
+        }
+    }
+
+    // Being the weak reference itself saves a separate reference object per text.
+    private static final class Slot extends WeakReference<Text> {
+        final Chunk chunk;
+        final int offset;
+        final int length;     // stored bytes
+        final int rawLength;  // UTF-8 bytes before compression; larger than length if compressed
+        final int hash;
+        Slot next;
+
+        Slot(Chunk chunk, int offset, int length, int rawLength, int hash, Text text, ReferenceQueue<Text> queue) {
+            super(text, queue);
+            this.chunk = chunk;
+            this.offset = offset;
+            this.length = length;
+            this.rawLength = rawLength;
+            this.hash = hash;
+        }
+
+        boolean compressed() {
+            return length < rawLength;
+        }
+    }
+
+    private static final class Chunk {
+        final ByteBuffer buffer;
+        final boolean dedicated; // holds one oversized text
+        int used;
+        int live;
+
+        Chunk(int capacity, boolean dedicated) {
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+            this.dedicated = dedicated;
+        }
+    }
+
+    // Per-thread scratch buffers and zlib streams, so encoding and decoding allocate only the result.
+    private static final class Codec {
+        byte[] raw = new byte[1024];
+        byte[] packed = new byte[1024];
+        byte[] probe = new byte[1024];
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        final Inflater inflater = new Inflater();
+
+        int encode(CharSequence s, int start, int end) {
+            int n = 0;
+            for (int i = start; i < end; i++) {
+                if (n + 4 > raw.length) raw = grow(raw, n + 4);
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    raw[n++] = (byte) c;
+                } else if (c < 0x800) {
+                    raw[n++] = (byte) (0xC0 | (c >> 6));
+                    raw[n++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    raw[n++] = (byte) (0xF0 | (cp >> 18));
+                    raw[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    raw[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    raw[n++] = (byte) (0x80 | (cp & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    raw[n++] = '?'; // unpaired, as String.getBytes would do
+                } else {
+                    raw[n++] = (byte) (0xE0 | (c >> 12));
+                    raw[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    raw[n++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return n;
+        }
+
+        // Returns the compressed length, or -1 if compressing would not save anything.
+        int deflate(int rawLength) {
+            if (packed.length < rawLength) packed = new byte[rawLength];
+            deflater.reset();
+            deflater.setInput(raw, 0, rawLength);
+            deflater.finish();
+            int n = deflater.deflate(packed, 0, rawLength);
+            return deflater.finished() && n < rawLength ? n : -1;
+        }
+
+        boolean matches(Slot slot, byte[] bytes, int length) {
+            if (probe.length < length) probe = grow(probe, length);
+            slot.chunk.buffer.get(slot.offset, probe, 0, length);
+            return Arrays.equals(probe, 0, length, bytes, 0, length);
+        }
+
+        String decode(Slot slot) {
+            ByteBuffer buf = slot.chunk.buffer;
+            if (raw.length < slot.rawLength) raw = grow(raw, slot.rawLength);
+            if (!slot.compressed()) {
+                buf.get(slot.offset, raw, 0, slot.length);
+                return new String(raw, 0, slot.rawLength, StandardCharsets.UTF_8);
+            }
+            if (packed.length < slot.length) packed = grow(packed, slot.length);
+            buf.get(slot.offset, packed, 0, slot.length);
+            inflater.reset();
+            inflater.setInput(packed, 0, slot.length);
+            try {
+                int n = inflater.inflate(raw, 0, slot.rawLength);
+                if (n != slot.rawLength) throw new IllegalStateException("Corrupt text in arena");
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupt text in arena", e);
+            }
+            return new String(raw, 0, slot.rawLength, StandardCharsets.UTF_8);
+        }
+
+        private static byte[] grow(byte[] bytes, int min) {
+            return Arrays.copyOf(bytes, Math.max(min, bytes.length * 2));
+        }
+    }
+
+    /** The arena tasks are stored in. */
+    public static TextArena shared() {
+        return SHARED;
+    }
+
+    /** Null stays null, so a missing description stays missing. */
+    public Text intern(String s) {
+        return s == null ? null : intern(s, 0, s.length());
+    }
+
+    /**
+     * Stores s[start, end), or returns the handle of an equal text already stored.
+     * Taking a range lets a loader intern a field straight out of the line it read.
+     */
+    public Text intern(CharSequence s, int start, int end) {
+        if (start >= end) return Text.EMPTY;
+        Codec codec = CODEC.get();
+        int rawLength = codec.encode(s, start, end);
+        byte[] raw = codec.raw;
+        if (rawLength < INLINE_MAX) return new Text(null, Arrays.copyOf(raw, rawLength));
+        int hash = 1;
+        for (int i = 0; i < rawLength; i++) hash = 31 * hash + raw[i];
+
+        byte[] stored = raw;
+        int length = rawLength;
+        if (rawLength >= COMPRESS_MIN) {
+            int packed = codec.deflate(rawLength);
+            if (packed > 0) {
+                stored = codec.packed;
+                length = packed;
+            }
+        }
+
+        synchronized (this) {
+            drainReleased();
+            interned++;
+            for (Slot slot = table[index(hash)]; slot != null; slot = slot.next) {
+                if (slot.hash != hash || slot.rawLength != rawLength || slot.length != length) continue;
+                Text t = slot.get();
+                if (t != null && codec.matches(slot, stored, length)) { // null: waiting to be released
+                    shared++;
+                    return t;
+                }
+            }
+            return store(stored, length, rawLength, hash);
+        }
+    }
+
+    /** Distinct texts currently stored off the heap. */
+    public synchronized long texts() { drainReleased(); return slots; }
+    /** Bytes the stored texts take after compression. */
+    public synchronized long storedBytes() { drainReleased(); return storedBytes; }
+    /** UTF-8 bytes of the stored texts before compression. */
+    public synchronized long rawBytes() { drainReleased(); return rawBytes; }
+    /** Off-heap memory held by the arena's chunks, used or not. */
+    public synchronized long reservedBytes() { drainReleased(); return reservedBytes; }
+    /** Texts interned into the arena so far, and how many of them were already stored. */
+    public synchronized long internCalls() { return interned; }
+    public synchronized long sharedHits() { return shared; }
+
+    private Text store(byte[] stored, int length, int rawLength, int hash) {
+        Chunk chunk;
+        int offset;
+        if (length > CHUNK_SIZE / 4) {
+            chunk = new Chunk(length, true);
+            reservedBytes += length;
+            offset = 0;
+        } else {
+            if (current == null || current.used + length > CHUNK_SIZE) {
+                Chunk old = current;
+                current = spare.isEmpty() ? newChunk() : spare.pop();
+                if (old != null && old.live == 0) retire(old);
+            }
+            chunk = current;
+            offset = chunk.used;
+        }
+        chunk.buffer.put(offset, stored, 0, length);
+        chunk.used = offset + length;
+        chunk.live += length;
+
+        Text t = new Text(null, null);
+        Slot slot = new Slot(chunk, offset, length, rawLength, hash, t, released);
+        t.slot = slot;
+        int i = index(hash);
+        slot.next = table[i];
+        table[i] = slot;
+        if (++slots > table.length * 3 / 4) rehash();
+        storedBytes += length;
+        rawBytes += rawLength;
+        return t;
+    }
+
+    private void rehash() {
+        Slot[] old = table;
+        table = new Slot[old.length * 2];
+        for (Slot head : old) {
+            for (Slot slot = head; slot != null; ) {
+                Slot next = slot.next;
+                int i = index(slot.hash);
+                slot.next = table[i];
+                table[i] = slot;
+                slot = next;
+            }
+        }
+    }
+
+    private Chunk newChunk() {
+        reservedBytes += CHUNK_SIZE;
+        return new Chunk(CHUNK_SIZE, false);
+    }
+
+    private int index(int hash) {
+        return (hash ^ (hash >>> 16)) & (table.length - 1);
+    }
+
+    private void drainReleased() {
+        Reference<? extends Text> ref;
+        while ((ref = released.poll()) != null) release((Slot) ref);
+    }
+
+    private void release(Slot slot) {
+        int i = index(slot.hash);
+        if (table[i] == slot) {
+            table[i] = slot.next;
+        } else {
+            for (Slot s = table[i]; s != null; s = s.next) {
+                if (s.next == slot) {
+                    s.next = slot.next;
+                    break;
+                }
+            }
+        }
+        slots--;
+        storedBytes -= slot.length;
+        rawBytes -= slot.rawLength;
+        Chunk chunk = slot.chunk;
+        chunk.live -= slot.length;
+        if (chunk.live == 0 && chunk != current) retire(chunk);
+    }
+
+    // Keeps a few empty chunks for reuse and lets the GC free the rest.
+    private void retire(Chunk chunk) {
+        if (!chunk.dedicated && spare.size() < SPARE_CHUNKS) {
+            chunk.used = 0;
+            spare.push(chunk);
+        } else {
+            reservedBytes -= chunk.buffer.capacity();
+        }
+    }
+}
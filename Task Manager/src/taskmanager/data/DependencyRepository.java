@@ -0,0 +1,110 @@
+package taskmanager.data;
+
+import taskmanager.exceptions.RepositoryException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Stores "blocker blocks blocked" edges between task ids next to tasks.txt.
+ *
+ * The file is an append-only log of "+|blocker|blocked" and "-|blocker|blocked" lines,
+ * so adding or removing an edge writes one line. load() replays it and rewrites the
+ * file with only the live edges when removals make up a large part of it.
+ */
+public class DependencyRepository {
+    private final File storageFile; // null for an in-memory repository
+    private Writer log;
+
+    public DependencyRepository() {
+        this(new File("dependencies.txt"));
+    }
+
+    public DependencyRepository(File storageFile) {
+        this.storageFile = storageFile;
+    }
+
+    /**
+     * Live edges as {blocker, blocked} pairs, in the order they were first added.
+     * The same edge may appear more than once if it was added twice.
+     */
+    public List<String[]> load() {
+        if (storageFile == null || !storageFile.exists()) return new ArrayList<>();
+        List<String[]> ops = new ArrayList<>();
+        BitSet removals = new BitSet();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(storageFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int a = line.indexOf('|'), b = line.indexOf('|', a + 1);
+                if (a != 1 || b < 0 || b == a + 1 || b == line.length() - 1) continue;
+                char op = line.charAt(0);
+                if (op != '+' && op != '-') continue;
+                if (op == '-') removals.set(ops.size());
+                ops.add(new String[]{line.substring(a + 1, b), line.substring(b + 1)});
+            }
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to load dependencies: " + e.getMessage());
+        }
+        if (removals.isEmpty()) return ops; // callers ignore repeated edges
+
+        LinkedHashMap<String, String[]> edges = new LinkedHashMap<>();
+        for (int i = 0; i < ops.size(); i++) {
+            String key = ops.get(i)[0] + "|" + ops.get(i)[1];
+            if (removals.get(i)) edges.remove(key);
+            else edges.putIfAbsent(key, ops.get(i));
+        }
+        List<String[]> result = new ArrayList<>(edges.values());
+        if (ops.size() > 2 * result.size() + 1000) saveAll(result);
+        return result;
+    }
+
+    public void add(String blockerId, String blockedId) {
+        append("+|" + blockerId + "|" + blockedId);
+    }
+
+    public void remove(String blockerId, String blockedId) {
+        append("-|" + blockerId + "|" + blockedId);
+    }
+
+    /**
+     * Rewrites the file with exactly the given edges.
+     */
+    public void saveAll(Collection<String[]> edges) {
+        if (storageFile == null) return;
+        close();
+        File tmp = new File(storageFile.getPath() + ".tmp");
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (String[] e : edges) w.write("+|" + e[0] + "|" + e[1] + "\n");
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to save dependencies: " + e.getMessage());
+        }
+        if (!tmp.renameTo(storageFile) && !(storageFile.delete() && tmp.renameTo(storageFile))) {
+            throw new RepositoryException("Failed to replace " + storageFile);
+        }
+    }
+
+    private void append(String line) {
+        if (storageFile == null) return;
+        try {
+            if (log == null) {
+                log = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(storageFile, true), StandardCharsets.UTF_8));
+            }
+            log.write(line);
+            log.write('\n');
+            log.flush();
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to save dependency: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        if (log == null) return;
+        try {
+            log.close();
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to close dependencies: " + e.getMessage());
+        }
+        log = null;
+    }
+}
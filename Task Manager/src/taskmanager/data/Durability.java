@@ -0,0 +1,84 @@
+package taskmanager.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * When changes to the task store reach the disk.
+ *
+ * NONE writes every change as it happens and leaves it to the OS to put it on disk, as
+ * before: a crash of the machine can lose the last seconds of edits. ALWAYS forces every
+ * change to disk (FileChannel.force) before the command returns; the safest and the
+ * slowest. BATCHED is group commit: changes are collected and written with a single force
+ * once the oldest has waited intervalMillis or maxChanges have built up, whichever comes
+ * first, so a crash loses at most that window.
+ *
+ * In every mode files that are rewritten go to a temporary file that is renamed over the
+ * old one, so a crash mid-write leaves the previous version rather than a truncated file.
+ */
+public final class Durability {
+    public enum Mode { NONE, BATCHED, ALWAYS }
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 50;
+    public static final int DEFAULT_MAX_CHANGES = 256;
+    public static final Durability NONE = new Durability(Mode.NONE, 0, 1);
+    public static final Durability ALWAYS = new Durability(Mode.ALWAYS, 0, 1);
+
+    private final Mode mode;
+    private final long intervalMillis;
+    private final int maxChanges;
+
+    private Durability(Mode mode, long intervalMillis, int maxChanges) {
+        this.mode = mode;
+        this.intervalMillis = intervalMillis;
+        this.maxChanges = maxChanges;
+    }
+
+    public static Durability batched(long intervalMillis, int maxChanges) {
+        if (intervalMillis < 1 || maxChanges < 1) throw new IllegalArgumentException("Batch interval and size must be positive");
+        return new Durability(Mode.BATCHED, intervalMillis, maxChanges);
+    }
+
+    /**
+     * Parses "none", "always", "batched" (50 ms or 256 changes) or "batched:<ms>:<changes>".
+     *
+     * @throws IllegalArgumentException for anything else
+     */
+    public static Durability parse(String spec) {
+        String[] parts = spec.trim().toLowerCase().split(":");
+        try {
+            if (parts.length == 1 && parts[0].equals("none")) return NONE;
+            if (parts.length == 1 && parts[0].equals("always")) return ALWAYS;
+            if (parts[0].equals("batched") && parts.length == 1) return batched(DEFAULT_INTERVAL_MILLIS, DEFAULT_MAX_CHANGES);
+            if (parts[0].equals("batched") && parts.length == 3) return batched(Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Durability is none, always, batched or batched:<ms>:<changes>, not '" + spec + "'");
+    }
+
+    public Mode getMode() { return mode; }
+
+    public long getIntervalMillis() { return intervalMillis; }
+
+    public int getMaxChanges() { return maxChanges; }
+
+    /**
+     * Forces a directory's entries to disk, so that a rename into it survives a crash.
+     * Best effort: not every platform can open a directory for this.
+     */
+    public static void syncDirectory(File dir) {
+        try (FileChannel ch = FileChannel.open(dir.getAbsoluteFile().toPath(), StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // e.g. Windows; the rename itself is still atomic
+        }
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.BATCHED ? "batched:" + intervalMillis + ":" + maxChanges : mode.name().toLowerCase();
+    }
+}
@@ -0,0 +1,111 @@
+package taskmanager.data;
+
+import taskmanager.exceptions.RepositoryException;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a TaskRepository's recorded changes are written out, following its
+ * Durability. Every method is called holding the lock given to the constructor, and
+ * timed syncs take it too, so a sync never sees the task list mid-change. The fields of
+ * a stored Task are changed in place, so whoever changes them must hold the same lock
+ * (see TaskRepository) for a sync not to write a task with only some fields changed.
+ *
+ * A timed sync that fails cannot report to anyone, so its exception is kept and thrown
+ * from the next change; the changes stay pending and are retried with it.
+ */
+final class GroupCommit {
+    // One daemon thread serves every repository; a timed sync only writes one file.
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "group-commit");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Writes the recorded changes; force asks for them to be on disk before returning. */
+    interface Sync {
+        void run(boolean force);
+    }
+
+    private final Durability durability;
+    private final Object lock;
+    private final Sync sync;
+    private int pending;
+    private boolean scheduled;
+    private boolean closed;
+    private RuntimeException failure;
+    private long changes;
+    private long syncs;
+
+    GroupCommit(Durability durability, Object lock, Sync sync) {
+        this.durability = durability;
+        this.lock = lock;
+        this.sync = sync;
+    }
+
+    /** Records one change, and writes it out now unless the mode batches it. */
+    void changed() {
+        changes++;
+        switch (durability.getMode()) {
+            case NONE:
+                sync.run(false);
+                syncs++;
+                break;
+            case ALWAYS:
+                sync.run(true);
+                syncs++;
+                break;
+            default:
+                pending++;
+                if (pending >= durability.getMaxChanges()) {
+                    syncNow();
+                } else if (!scheduled) {
+                    scheduled = true;
+                    TIMER.schedule(this::timedSync, durability.getIntervalMillis(), TimeUnit.MILLISECONDS);
+                }
+                rethrowFailure();
+        }
+    }
+
+    /** Writes and forces any batched changes. */
+    void syncNow() {
+        if (pending == 0) return;
+        sync.run(true);
+        pending = 0;
+        syncs++;
+        failure = null; // whatever failed before is written now
+    }
+
+    /** Syncs what is pending; timed syncs still queued then do nothing. */
+    void close() {
+        syncNow();
+        closed = true;
+    }
+
+    /** Changes recorded so far. */
+    long getChanges() { return changes; }
+
+    /** Times the changes were written out; changes / syncs is the average batch. */
+    long getSyncs() { return syncs; }
+
+    private void timedSync() {
+        synchronized (lock) {
+            scheduled = false;
+            if (closed) return;
+            try {
+                syncNow();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+    }
+
+    private void rethrowFailure() {
+        if (failure == null) return;
+        RuntimeException e = failure;
+        failure = null;
+        throw new RepositoryException("Saving tasks in the background failed, retrying: " + e.getMessage());
+    }
+}
@@ -0,0 +1,161 @@
+package taskmanager.data;
+
+import taskmanager.core.Task;
+import taskmanager.exceptions.RepositoryException;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32C;
+
+/**
+ * Derived structures saved next to the task data, so that startup can reload them
+ * instead of rebuilding them from every task.
+ *
+ * File layout (DataOutputStream):
+ *   "TMIDX" format-version
+ *   stamp                    the data the structures were built from (UTF)
+ *   task count, id hash      a fold of the task ids in load order
+ *   section count
+ *   per section: name (UTF), length, crc32c, payload
+ *
+ * A section refers to a task by its position in the order TaskRepository loads tasks,
+ * so no ids are stored or looked up. The file is only used if its stamp equals the
+ * stamp of the data just loaded and the loaded ids fold to the same hash; a section
+ * whose checksum fails is ignored on its own. Sections are read on demand, so an
+ * unused structure costs nothing at startup. Writes go to a temporary file that is
+ * then renamed over the old one.
+ */
+public final class IndexSnapshotFile {
+    private static final String MAGIC = "TMIDX";
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final Task[] tasks;
+    private final Map<String, long[]> sections; // name -> offset, length, crc32c
+
+    /** Writes one section; ordinal gives a task's position in load order. */
+    public interface SectionWriter {
+        void write(DataOutputStream out, ToIntFunction<Task> ordinal) throws IOException;
+    }
+
+    private IndexSnapshotFile(File file, Task[] tasks, Map<String, long[]> sections) {
+        this.file = file;
+        this.tasks = tasks;
+        this.sections = sections;
+    }
+
+    /** The loaded tasks, indexed by the ordinals the sections use. */
+    public Task[] getTasks() {
+        return tasks;
+    }
+
+    /** The payload of a section, or null if it is missing, damaged or the file is gone. */
+    public DataInputStream section(String name) {
+        byte[] payload = payload(name);
+        return payload == null ? null : new DataInputStream(new ByteArrayInputStream(payload));
+    }
+
+    /**
+     * A section's raw payload, e.g. to carry it over unchanged into a new snapshot,
+     * or null if it is missing, damaged or the file is gone.
+     */
+    public byte[] payload(String name) {
+        long[] where = sections.get(name);
+        if (where == null) return null;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] payload = new byte[(int) where[1]];
+            in.seek(where[0]);
+            in.readFully(payload);
+            CRC32C check = new CRC32C();
+            check.update(payload, 0, payload.length);
+            return (int) check.getValue() == (int) where[2] ? payload : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a snapshot built from the data identified by stamp, for the tasks as just
+     * loaded. Returns null if the file is missing, unreadable or from other data. Only the
+     * header and the section table are read here.
+     */
+    public static IndexSnapshotFile read(File file, String stamp, List<Task> loaded) {
+        if (!file.exists()) return null;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (!MAGIC.equals(in.readUTF()) || in.readInt() != VERSION) return null;
+            if (!stamp.equals(in.readUTF())) return null;
+            if (in.readInt() != loaded.size() || in.readLong() != idHash(loaded)) return null;
+            Map<String, long[]> sections = new HashMap<>();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String name = in.readUTF();
+                long length = in.readInt() & 0xffffffffL;
+                long crc = in.readInt();
+                long offset = in.getFilePointer();
+                if (offset + length > in.length()) return null;
+                sections.put(name, new long[] {offset, length, crc});
+                in.seek(offset + length);
+            }
+            return new IndexSnapshotFile(file, loaded.toArray(new Task[0]), sections);
+        } catch (IOException | RuntimeException e) {
+            return null; // a damaged snapshot only costs a rebuild
+        }
+    }
+
+    /**
+     * Writes the sections in the given order.
+     *
+     * @param tasks the tasks in the order the next load will return them
+     */
+    public static void write(File file, String stamp, List<Task> tasks, Map<String, SectionWriter> sections) {
+        Map<Task, Integer> ordinals = new IdentityHashMap<>(tasks.size() * 2);
+        for (int i = 0; i < tasks.size(); i++) ordinals.put(tasks.get(i), i);
+        ToIntFunction<Task> ordinal = t -> {
+            Integer i = ordinals.get(t);
+            if (i == null) throw new IllegalStateException("Index refers to task " + t.getId() + " which is not stored");
+            return i;
+        };
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeUTF(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(stamp);
+            out.writeInt(tasks.size());
+            out.writeLong(idHash(tasks));
+            out.writeInt(sections.size());
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+            for (Map.Entry<String, SectionWriter> e : sections.entrySet()) {
+                buffer.reset();
+                DataOutputStream section = new DataOutputStream(buffer);
+                e.getValue().write(section, ordinal);
+                section.flush();
+                byte[] payload = buffer.toByteArray();
+                CRC32C crc = new CRC32C();
+                crc.update(payload, 0, payload.length);
+                out.writeUTF(e.getKey());
+                out.writeInt(payload.length);
+                out.writeInt((int) crc.getValue());
+                out.write(payload);
+            }
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            throw new RepositoryException("Failed to write " + file + ": " + e.getMessage());
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            tmp.delete();
+            throw new RepositoryException("Failed to replace " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Ids cache their hash code, so this is one pass over the list.
+    private static long idHash(List<Task> tasks) {
+        long h = 1;
+        for (Task t : tasks) h = 31 * h + t.getId().hashCode();
+        return h;
+    }
+}
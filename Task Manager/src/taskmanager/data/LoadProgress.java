@@ -0,0 +1,55 @@
+package taskmanager.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How far a project load has got, for showing while the user waits.
+ *
+ * The loading thread moves through named phases, each with an optional amount of work
+ * (bytes or tasks) that it advances as it goes; any other thread may read a description
+ * at any time. Updates are only counters, so they cost nothing noticeable when nobody looks.
+ */
+public final class LoadProgress {
+    private volatile String phase = "starting";
+    private volatile long total;
+    private final AtomicLong done = new AtomicLong();
+    private volatile long startedAt = System.currentTimeMillis();
+    private volatile boolean finished;
+
+    /** Starts a new load; the earlier one's counters are discarded. */
+    public void start(String what) {
+        startedAt = System.currentTimeMillis();
+        finished = false;
+        begin(what, 0);
+    }
+
+    /**
+     * Starts a phase.
+     *
+     * @param total the work the phase will report through advance(), or 0 if it reports none
+     */
+    public void begin(String phase, long total) {
+        this.phase = phase;
+        this.total = total;
+        done.set(0);
+    }
+
+    public void advance(long amount) {
+        done.addAndGet(amount);
+    }
+
+    public void finish() {
+        finished = true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /** E.g. "reading tasks.txt 42% (3 s)". */
+    public String describe() {
+        long t = total;
+        String percent = t > 0 ? " " + Math.min(100, done.get() * 100 / t) + "%" : "";
+        return phase + percent + " (" + (System.currentTimeMillis() - startedAt) / 1000 + " s)";
+    }
+}
@@ -0,0 +1,89 @@
+package taskmanager.data;
+
+import taskmanager.core.Task;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tasks kept only in memory, encoded as they would be on disk; nothing is read or
+ * written. For trying things out and as the baseline that the other engines are
+ * compared against. Everything is lost on close.
+ */
+public class MemoryStorageEngine implements StorageEngine {
+    private final LinkedHashMap<String, String> records = new LinkedHashMap<>();
+    private final String instance = UUID.randomUUID().toString();
+    private long version;
+
+    @Override
+    public String name() {
+        return MEMORY;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    @Override
+    public synchronized List<String> load(LoadProgress progress, List<String> problems) {
+        return new ArrayList<>(records.values());
+    }
+
+    /** Records stay where they are, undecodable or not. */
+    @Override
+    public void reject(List<String> records, List<String> problems) {
+    }
+
+    @Override
+    public synchronized void put(Task task, List<Task> all) {
+        records.put(task.getId(), TaskRecordCodec.encode(task));
+        version++;
+    }
+
+    @Override
+    public synchronized void putAll(List<Task> batch, List<Task> all) {
+        for (Task t : batch) records.put(t.getId(), TaskRecordCodec.encode(t));
+        version++;
+    }
+
+    @Override
+    public synchronized void delete(String id, List<Task> all) {
+        records.remove(id);
+        version++;
+    }
+
+    @Override
+    public synchronized void saveAll(List<Task> all) {
+        records.clear();
+        for (Task t : all) records.put(t.getId(), TaskRecordCodec.encode(t));
+        version++;
+    }
+
+    @Override
+    public void sync(List<Task> all, boolean force) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    // Unique per instance, so that nothing saved next to an earlier run is taken as matching.
+    @Override
+    public synchronized String stamp() {
+        return "memory:" + instance + ":" + version;
+    }
+
+    @Override
+    public boolean loadsInIdOrder() {
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        records.clear();
+    }
+}
@@ -3,52 +3,149 @@ package taskmanager.data;
 import taskmanager.core.Person;
 import taskmanager.exceptions.RepositoryException;
 
-import java.util.ArrayList;
+import java.io.*;
+import java.util.*;
 
+/**
+ * Stores team members, optionally persisted to a pipe separated file (id|name|phone).
+ *
+ * The file is read lazily on first access. Lookups go through a hash index on id,
+ * a sorted index on lower-cased name (and each word of the name) for prefix search,
+ * and a hash index on phone number. New people are appended to the file.
+ */
 public class PersonRepository {
-    private ArrayList<Person> people;
+    private final File storageFile; // null for an in-memory repository
+    private final ArrayList<Person> people = new ArrayList<>();
+    private final Map<String, Person> byId = new HashMap<>();
+    private final TreeMap<String, List<Person>> byName = new TreeMap<>();
+    private final Map<String, Person> byPhone = new HashMap<>();
+    private boolean loaded;
 
     public PersonRepository() {
-        people = new ArrayList<>();
-        // Preload 4 team members
-        people.add(new Person("1", "Filip", "1234567890"));
-        people.add(new Person("2", "Kristian", "0987654321"));
-        people.add(new Person("3", "Angelina", "1122334455"));
-        people.add(new Person("4", "Kaloyan", "5566778899"));
+        this(new File("people.txt"));
     }
 
+    public PersonRepository(File storageFile) {
+        this.storageFile = storageFile;
+    }
+
+    /**
+     * In-memory repository with the given people; nothing is persisted.
+     */
     public PersonRepository(ArrayList<Person> people) {
-        if(people.size() != 4) {
-            throw new IllegalArgumentException("People must have 4 elements");
+        this.storageFile = null;
+        this.loaded = true;
+        for (Person p : people) addPerson(p);
+    }
+
+    private synchronized void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (!storageFile.exists()) {
+            // Preload 4 team members until a people file exists
+            index(new Person("1", "Filip", "1234567890"));
+            index(new Person("2", "Kristian", "0987654321"));
+            index(new Person("3", "Angelina", "1122334455"));
+            index(new Person("4", "Kaloyan", "5566778899"));
+            return;
+        }
+        try (BufferedReader br = new BufferedReader(new FileReader(storageFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                String[] parts = line.split("\\|", -1);
+                if (parts.length < 2 || byId.containsKey(parts[0])) continue;
+                String phone = parts.length > 2 && !parts[2].isEmpty() ? parts[2] : null;
+                index(phone == null ? new Person(parts[0], parts[1]) : new Person(parts[0], parts[1], phone));
+            }
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to load people: " + e.getMessage());
         }
+    }
+
+    private void index(Person person) {
+        people.add(person);
+        byId.put(person.getId(), person);
+        String name = person.getName().toLowerCase();
+        byName.computeIfAbsent(name, k -> new ArrayList<>()).add(person);
+        for (String word : name.split("\\s+")) {
+            if (!word.isEmpty() && !word.equals(name)) byName.computeIfAbsent(word, k -> new ArrayList<>()).add(person);
+        }
+        if (person.getPhoneNumber() != null && !person.getPhoneNumber().equals("Unprovided")) byPhone.put(person.getPhoneNumber(), person);
+    }
 
-        this.people = people;
+    public synchronized boolean exists(String id) {
+        ensureLoaded();
+        return byId.containsKey(id);
     }
 
-    public boolean exists(String id) {
-        for(int i = 0; i < people.size(); i++) {
-            if(people.get(i).getId().equals(id)) {
-                return true;
+    public synchronized void addPerson(Person person) {
+        ensureLoaded();
+        if (byId.containsKey(person.getId())) throw new RepositoryException("Person already exists");
+        if (storageFile != null) append(person);
+        index(person);
+    }
+
+    private void append(Person person) {
+        boolean seedFirst = !storageFile.exists();
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(storageFile, true))) {
+            // The default members only live in memory until the file is first written.
+            if (seedFirst) {
+                for (Person p : people) writeLine(bw, p);
             }
+            writeLine(bw, person);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to save person: " + e.getMessage());
         }
-        return false;
     }
 
-    public void addPerson(Person person) {
-        if(!exists(person.getId())) people.add(person);
-        else throw new RepositoryException("Person already exists");
+    private static void writeLine(BufferedWriter bw, Person p) throws IOException {
+        String phone = p.getPhoneNumber() == null || p.getPhoneNumber().equals("Unprovided") ? "" : p.getPhoneNumber();
+        bw.write(String.join("|", p.getId(), p.getName().replace("|", " "), phone));
+        bw.newLine();
     }
 
-    public ArrayList<Person> getPeople() {
+    public synchronized ArrayList<Person> getPeople() {
+        ensureLoaded();
         return people;
     }
 
-    public Person findById(String id) {
-        for(int i = 0; i < people.size(); i++) {
-            if(people.get(i).getId().equals(id)) {
-                return people.get(i);
+    public synchronized Person findById(String id) {
+        ensureLoaded();
+        return byId.get(id);
+    }
+
+    /**
+     * Resolves many ids at once; unknown ids are left out of the result.
+     */
+    public synchronized Map<String, Person> findAllById(Collection<String> ids) {
+        ensureLoaded();
+        Map<String, Person> result = new HashMap<>();
+        for (String id : ids) {
+            Person p = byId.get(id);
+            if (p != null) result.put(id, p);
+        }
+        return result;
+    }
+
+    /**
+     * People whose name, or any word of it, starts with the prefix (case-insensitive), in name order.
+     */
+    public synchronized List<Person> findByNamePrefix(String prefix, int limit) {
+        ensureLoaded();
+        String from = prefix.toLowerCase();
+        LinkedHashSet<Person> result = new LinkedHashSet<>();
+        for (List<Person> bucket : byName.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            for (Person p : bucket) {
+                result.add(p);
+                if (result.size() >= limit) return new ArrayList<>(result);
             }
         }
-        return null;
+        return new ArrayList<>(result);
+    }
+
+    public synchronized Person findByPhone(String phoneNumber) {
+        ensureLoaded();
+        return byPhone.get(phoneNumber);
     }
 }
@@ -0,0 +1,107 @@
+package taskmanager.data;
+
+import taskmanager.core.Task;
+import taskmanager.data.lsm.LsmStorageEngine;
+import taskmanager.data.lsm.LsmTaskStore;
+import taskmanager.exceptions.RepositoryException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Where a TaskRepository keeps its tasks.
+ *
+ * The repository holds the decoded tasks and tells the engine about every change; the
+ * engine decides what to write. Each change also passes the full task list, for engines
+ * such as tasks.txt that can only rewrite everything. A change need not be written until
+ * the next sync(), which the repository calls as its Durability asks.
+ *
+ * Records are TaskRecordCodec lines: load() returns them undecoded, so that the
+ * repository can resolve assignees in bulk and report what does not decode.
+ *
+ * Engines are chosen by name with open(): "text", "lsm" or "memory".
+ */
+public interface StorageEngine extends Closeable {
+    String TEXT = "text";
+    String LSM = "lsm";
+    String MEMORY = "memory";
+    List<String> KINDS = Arrays.asList(TEXT, LSM, MEMORY);
+
+    /**
+     * The engine of the given kind for the project in dir (the working directory if dir is null).
+     *
+     * @throws IllegalArgumentException if kind is not one of KINDS
+     */
+    static StorageEngine open(String kind, File dir) {
+        switch (kind) {
+            case TEXT: return new TextFileStorageEngine(dir);
+            case LSM: return new LsmStorageEngine(new LsmTaskStore(new File(dir, "tasks.lsm")), dir);
+            case MEMORY: return new MemoryStorageEngine();
+            default: throw new IllegalArgumentException("Unknown storage '" + kind + "'; use one of " + KINDS);
+        }
+    }
+
+    /** One of KINDS. */
+    String name();
+
+    /** Whether the tasks outlive the engine, i.e. whether a new engine on the same directory loads them. */
+    boolean isPersistent();
+
+    /**
+     * Every stored record. Problems that do not stop the load, such as corrupt blocks,
+     * are added to problems.
+     */
+    List<String> load(LoadProgress progress, List<String> problems);
+
+    /**
+     * Called with loaded records that did not decode. Engines that would drop them on the
+     * next write move them aside, stop storing them and say so in problems; engines that
+     * keep them do nothing.
+     */
+    void reject(List<String> records, List<String> problems);
+
+    /** A task was added or changed; all holds every task, task included. */
+    void put(Task task, List<Task> all);
+
+    /** New tasks were added with one write; all holds every task, the batch included. */
+    void putAll(List<Task> batch, List<Task> all);
+
+    /** A task was removed; all no longer holds it. */
+    void delete(String id, List<Task> all);
+
+    /** All tasks are to be written out, replacing whatever is stored. */
+    void saveAll(List<Task> all);
+
+    /**
+     * Writes out the changes recorded since the last sync. With force they are on disk
+     * (FileChannel.force) before this returns; without, they are at least handed to the OS.
+     */
+    void sync(List<Task> all, boolean force);
+
+    /** Compacts buffered changes into their long-term form, e.g. the LSM memtable into a sorted run. */
+    void flush();
+
+    /**
+     * Identifies the stored data as it is now; equal stamps mean a reload would produce
+     * the same tasks.
+     */
+    String stamp();
+
+    /** Whether load() returns records in id order rather than in the order they were added. */
+    boolean loadsInIdOrder();
+
+    /**
+     * Verifies the checksums of the stored data.
+     *
+     * @throws RepositoryException if the engine keeps no checksummed file
+     */
+    default TaskBlockFile.Report verify() {
+        throw new RepositoryException("The " + name() + " storage has no task file to verify.");
+    }
+
+    /** Flushes and releases files and threads. */
+    @Override
+    void close();
+}
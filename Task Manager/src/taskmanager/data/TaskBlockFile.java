@@ -0,0 +1,452 @@
+package taskmanager.data;
+
+import taskmanager.exceptions.RepositoryException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+
+/**
+ * Task data file organised into checksummed blocks.
+ *
+ * File layout (UTF-8 text):
+ *   #TASKS blocks=crc32c
+ *   #BLOCK <lines> <bytes> <crc32c hex>
+ *   <lines, each ending in \n, exactly <bytes> bytes>
+ *   #BLOCK ...
+ *
+ * Block headers give the length of their payload, so all headers can be found by
+ * seeking without reading the data, and the blocks are then verified in parallel with
+ * positional reads. A header that does not parse, or points past the end of the file,
+ * is skipped by scanning forward for the next "#BLOCK" line; everything in between is
+ * reported as one corrupt range. Files without the #TASKS line are the older plain
+ * format and are read line by line.
+ */
+public final class TaskBlockFile {
+    static final String FILE_HEADER = "#TASKS blocks=crc32c";
+    private static final String BLOCK_HEADER = "#BLOCK ";
+    private static final int TARGET_BLOCK_BYTES = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 128;
+
+    private TaskBlockFile() {
+    }
+
+    /** Byte range of one block (or of an unreadable stretch between blocks). */
+    private static final class Block {
+        final long offset;       // start of the header line
+        final long dataOffset;   // start of the payload
+        final int dataBytes;
+        final int lines;
+        final int crc;
+        final boolean damaged;   // header unreadable: the range is corrupt as a whole
+
+        Block(long offset, long dataOffset, int dataBytes, int lines, int crc, boolean damaged) {
+            this.offset = offset;
+            this.dataOffset = dataOffset;
+            this.dataBytes = dataBytes;
+            this.lines = lines;
+            this.crc = crc;
+            this.damaged = damaged;
+        }
+
+        long end() {
+            return dataOffset + dataBytes;
+        }
+    }
+
+    /**
+     * Outcome of reading or verifying a file, with an exact account of what was lost.
+     */
+    public static final class Report {
+        private final long bytes;
+        private final int blocks;
+        private final long lines;
+        private final long linesLost;
+        private final List<String> corruptRanges;
+        private final long millis;
+        private final boolean legacy;
+
+        Report(long bytes, int blocks, long lines, long linesLost, List<String> corruptRanges, long millis, boolean legacy) {
+            this.bytes = bytes;
+            this.blocks = blocks;
+            this.lines = lines;
+            this.linesLost = linesLost;
+            this.corruptRanges = corruptRanges;
+            this.millis = millis;
+            this.legacy = legacy;
+        }
+
+        public boolean isClean() { return corruptRanges.isEmpty(); }
+        public boolean isLegacy() { return legacy; }
+        public int getBlocks() { return blocks; }
+        public long getLines() { return lines; }
+        public long getLinesLost() { return linesLost; }
+        public List<String> getCorruptRanges() { return corruptRanges; }
+
+        public String summary() {
+            if (legacy) return "Plain (unchecksummed) file, " + lines + " lines; it is converted on the next save.";
+            return String.format("%d blocks, %d bytes, %d lines verified in %d ms: %d corrupt range(s), %d line(s) lost.",
+                    blocks, bytes, lines, millis, corruptRanges.size(), linesLost);
+        }
+    }
+
+    /**
+     * Lines of a file plus the report. Lines from corrupt ranges are left out and
+     * their raw bytes are kept in quarantined, one entry per range.
+     */
+    public static final class Contents {
+        private final List<String> lines;
+        private final List<String> quarantined;
+        private final Report report;
+
+        Contents(List<String> lines, List<String> quarantined, Report report) {
+            this.lines = lines;
+            this.quarantined = quarantined;
+            this.report = report;
+        }
+
+        public List<String> getLines() { return lines; }
+        public List<String> getQuarantined() { return quarantined; }
+        public Report getReport() { return report; }
+    }
+
+    /**
+     * Writes the lines in blocks of about TARGET_BLOCK_BYTES.
+     */
+    public static void write(File file, Iterable<String> lines) {
+        write(file, lines, false);
+    }
+
+    /**
+     * Writes the lines to a temporary file that then replaces the file in one rename, so
+     * a crash leaves either the old contents or the new. With force, the data and the
+     * rename are on disk before this returns.
+     */
+    public static void write(File file, Iterable<String> lines, boolean force) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             OutputStream out = new BufferedOutputStream(fos, 1 << 16)) {
+            out.write((FILE_HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+            writeBlocks(out, lines);
+            out.flush();
+            if (force) fos.getChannel().force(true);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to save tasks: " + e.getMessage());
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to replace " + file + ": " + e.getMessage());
+        }
+        if (force) Durability.syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Adds lines as new blocks at the end of a block file, creating it if it is missing.
+     * Returns false without writing if the file is in the older plain format.
+     */
+    public static boolean append(File file, Iterable<String> lines) {
+        return append(file, lines, false);
+    }
+
+    /**
+     * Like append(file, lines), forcing the new blocks to disk if force is set. A crash
+     * mid-append can only damage the new blocks, which then fail their checksum.
+     */
+    public static boolean append(File file, Iterable<String> lines, boolean force) {
+        if (!file.exists() || file.length() == 0) {
+            write(file, lines, force);
+            return true;
+        }
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (!FILE_HEADER.equals(readLineAt(ch, 0))) return false;
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to read " + file + ": " + e.getMessage());
+        }
+        try (FileOutputStream fos = new FileOutputStream(file, true);
+             OutputStream out = new BufferedOutputStream(fos, 1 << 16)) {
+            writeBlocks(out, lines);
+            out.flush();
+            if (force) fos.getChannel().force(true);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to save tasks: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Forces what has been written to the file to disk.
+     */
+    public static void force(File file) {
+        if (!file.exists()) return;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            ch.force(true);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to sync " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeBlocks(OutputStream out, Iterable<String> lines) throws IOException {
+        ByteArrayOutputStream block = new ByteArrayOutputStream(TARGET_BLOCK_BYTES + 1024);
+        int count = 0;
+        for (String line : lines) {
+            block.write(line.getBytes(StandardCharsets.UTF_8));
+            block.write('\n');
+            count++;
+            if (block.size() >= TARGET_BLOCK_BYTES) {
+                writeBlock(out, block, count);
+                count = 0;
+            }
+        }
+        if (count > 0) writeBlock(out, block, count);
+    }
+
+    private static void writeBlock(OutputStream out, ByteArrayOutputStream block, int count) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] data = block.toByteArray();
+        crc.update(data, 0, data.length);
+        String header = BLOCK_HEADER + count + " " + data.length + " " + Long.toHexString(crc.getValue()) + "\n";
+        out.write(header.getBytes(StandardCharsets.UTF_8));
+        out.write(data);
+        block.reset();
+    }
+
+    /**
+     * Identifies the file's contents without reading them: a fold of every block header
+     * (line count, length and checksum), which any rewrite or appended block changes.
+     * Files in the older plain format fall back to their length and modification time.
+     */
+    public static String stamp(File file) {
+        if (!file.exists()) return "none";
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (!FILE_HEADER.equals(readLineAt(ch, 0))) return "plain:" + ch.size() + ":" + file.lastModified();
+            List<Block> blocks = findBlocks(ch, FILE_HEADER.length() + 1);
+            long h = 1125899906842597L;
+            for (Block b : blocks) {
+                h = 31 * h + b.lines;
+                h = 31 * h + b.dataBytes;
+                h = 31 * h + b.crc;
+                h = 31 * h + (b.damaged ? 1 : 0);
+            }
+            return "blocks:" + blocks.size() + ":" + ch.size() + ":" + Long.toHexString(h);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to read " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks every block's checksum on all available cores without keeping the data.
+     */
+    public static Report verify(File file) {
+        return scan(file, false, null).report;
+    }
+
+    /**
+     * Reads all lines, verifying blocks in parallel.
+     */
+    public static Contents read(File file) {
+        return read(file, null);
+    }
+
+    /**
+     * Like read(File), advancing progress by the bytes read.
+     */
+    public static Contents read(File file, LoadProgress progress) {
+        return scan(file, true, progress);
+    }
+
+    private static Contents scan(File file, boolean keepLines, LoadProgress progress) {
+        long start = System.currentTimeMillis();
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (!FILE_HEADER.equals(readLineAt(ch, 0))) return readLegacy(file, keepLines, progress);
+            List<Block> blocks = findBlocks(ch, FILE_HEADER.length() + 1);
+            String[][] decoded = keepLines ? new String[blocks.size()][] : null;
+            boolean[] ok = checkAll(ch, blocks, decoded, progress);
+
+            List<String> lines = new ArrayList<>();
+            List<String> quarantined = new ArrayList<>();
+            List<String> ranges = new ArrayList<>();
+            long good = 0, lost = 0;
+            for (int i = 0; i < blocks.size(); i++) {
+                Block b = blocks.get(i);
+                if (ok[i]) {
+                    good += b.lines;
+                    if (keepLines) for (String l : decoded[i]) lines.add(l);
+                    continue;
+                }
+                byte[] raw = readRange(ch, b.offset, b.end());
+                long count = countLines(raw) - 1; // every range starts with a (possibly damaged) header line
+                lost += count;
+                ranges.add("bytes " + b.offset + "-" + b.end() + " (" + (b.damaged ? "unreadable block header" : "checksum mismatch")
+                        + ", " + count + " line(s))");
+                if (keepLines) quarantined.add(new String(raw, StandardCharsets.UTF_8));
+            }
+            Report report = new Report(ch.size(), blocks.size(), good, lost, ranges, System.currentTimeMillis() - start, false);
+            return new Contents(lines, quarantined, report);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to read " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static Contents readLegacy(File file, boolean keepLines, LoadProgress progress) throws IOException {
+        List<String> lines = new ArrayList<>();
+        long count = 0;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                count++;
+                if (keepLines) lines.add(line);
+                if (progress != null) progress.advance(line.length() + 1); // chars, close enough to bytes
+            }
+        }
+        return new Contents(lines, new ArrayList<>(), new Report(file.length(), 0, count, 0, new ArrayList<>(), 0, true));
+    }
+
+    // Walks the headers by seeking over each payload.
+    private static List<Block> findBlocks(FileChannel ch, long pos) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        long size = ch.size();
+        while (pos < size) {
+            Block b = parseHeader(ch, pos, size);
+            if (b == null) {
+                long next = findNextHeader(ch, pos + 1, size);
+                blocks.add(new Block(pos, pos, (int) Math.min(Integer.MAX_VALUE, next - pos), 0, 0, true));
+                pos = next;
+            } else {
+                blocks.add(b);
+                pos = b.end();
+            }
+        }
+        return blocks;
+    }
+
+    private static Block parseHeader(FileChannel ch, long pos, long size) throws IOException {
+        String header = readLineAt(ch, pos);
+        if (header == null || !header.startsWith(BLOCK_HEADER)) return null;
+        String[] parts = header.substring(BLOCK_HEADER.length()).split(" ");
+        if (parts.length != 3) return null;
+        try {
+            int lines = Integer.parseInt(parts[0]);
+            int bytes = Integer.parseInt(parts[1]);
+            int crc = (int) Long.parseLong(parts[2], 16);
+            long dataOffset = pos + header.length() + 1;
+            if (lines < 0 || bytes < 0 || dataOffset + bytes > size) return null;
+            return new Block(pos, dataOffset, bytes, lines, crc, false);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Position of the next line starting with "#BLOCK ", or the end of the file.
+    private static long findNextHeader(FileChannel ch, long from, long size) throws IOException {
+        byte[] marker = ("\n" + BLOCK_HEADER).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(1 << 20);
+        long pos = from - 1; // the marker starts with the newline ending the previous line
+        while (pos < size) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) break;
+            byte[] a = buf.array();
+            for (int i = 0; i + marker.length <= n; i++) {
+                int j = 0;
+                while (j < marker.length && a[i + j] == marker[j]) j++;
+                if (j == marker.length && pos + i + 1 >= from) return pos + i + 1;
+            }
+            if (pos + n >= size) break;
+            pos += n - marker.length + 1; // overlap so a marker across the boundary is found
+        }
+        return size;
+    }
+
+    // Verifies (and optionally decodes) blocks on a pool of one thread per core.
+    private static boolean[] checkAll(FileChannel ch, List<Block> blocks, String[][] decoded, LoadProgress progress) throws IOException {
+        boolean[] ok = new boolean[blocks.size()];
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), blocks.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "block-verify");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            AtomicInteger next = new AtomicInteger();
+            List<Future<Void>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(pool.submit(() -> {
+                    ByteBuffer buf = ByteBuffer.allocate(TARGET_BLOCK_BYTES * 2);
+                    CRC32C crc = new CRC32C();
+                    int i;
+                    while ((i = next.getAndIncrement()) < ok.length) {
+                        Block b = blocks.get(i);
+                        if (progress != null) progress.advance(b.end() - b.offset);
+                        if (b.damaged) continue;
+                        if (buf.capacity() < b.dataBytes) buf = ByteBuffer.allocate(b.dataBytes);
+                        buf.clear().limit(b.dataBytes);
+                        while (buf.hasRemaining()) {
+                            if (ch.read(buf, b.dataOffset + buf.position()) < 0) break;
+                        }
+                        if (buf.hasRemaining()) continue;
+                        crc.reset();
+                        crc.update(buf.array(), 0, b.dataBytes);
+                        if ((int) crc.getValue() != b.crc) continue;
+                        String[] lines = splitLines(buf.array(), b.dataBytes);
+                        if (lines == null || lines.length != b.lines) continue;
+                        if (decoded != null) decoded[i] = lines;
+                        ok[i] = true;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> f : workers) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Verification interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.toString());
+        } finally {
+            pool.shutdownNow();
+        }
+        return ok;
+    }
+
+    // Lines of a payload that ends in \n, or null if it does not.
+    private static String[] splitLines(byte[] data, int length) {
+        if (length == 0) return new String[0];
+        if (data[length - 1] != '\n') return null;
+        return new String(data, 0, length - 1, StandardCharsets.UTF_8).split("\n", -1);
+    }
+
+    private static long countLines(byte[] raw) {
+        long n = 0;
+        for (byte b : raw) if (b == '\n') n++;
+        return n;
+    }
+
+    private static String readLineAt(FileChannel ch, long pos) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(MAX_HEADER_BYTES);
+        int n = ch.read(buf, pos);
+        if (n <= 0) return null;
+        byte[] a = buf.array();
+        for (int i = 0; i < n; i++) {
+            if (a[i] == '\n') return new String(a, 0, i, StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    private static byte[] readRange(FileChannel ch, long from, long to) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) (to - from));
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, from + buf.position()) < 0) break;
+        }
+        return buf.array();
+    }
+}
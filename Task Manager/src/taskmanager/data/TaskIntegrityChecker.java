@@ -0,0 +1,88 @@
+package taskmanager.data;
+
+import taskmanager.core.Task;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Re-checks tasks loaded through the trusted decode path against the rules the
+ * Task constructor enforces for new tasks. Past due dates are not reported,
+ * since an old deadline is a legitimate state for a stored task.
+ *
+ * The trusted decoder loads a task whose due date or Eisenhower value does not
+ * parse without that field; the raw lines of such records are checked here too.
+ */
+public class TaskIntegrityChecker {
+
+    private TaskIntegrityChecker() {
+    }
+
+    /**
+     * Returns one message per problem found; empty if everything is valid.
+     */
+    public static List<String> check(List<Task> tasks) {
+        List<String> problems = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Task t : tasks) {
+            String id = t.getId();
+            if (id == null || id.trim().isEmpty()) {
+                problems.add("Task with empty ID (title: " + t.getTitle() + ")");
+                continue;
+            }
+            if (!seen.add(id)) problems.add("Duplicate task ID " + id);
+            if (t.getTitle() == null || t.getTitle().trim().isEmpty()) problems.add("Task " + id + " has an empty title");
+            String q = t.getEisenhower();
+            if (q != null && !q.matches("I|II|III|IV")) problems.add("Task " + id + " has invalid Eisenhower value " + q);
+        }
+        return problems;
+    }
+
+    /**
+     * Returns one message per due date or Eisenhower value that does not parse in the
+     * given encoded lines, naming the value that was dropped on load.
+     */
+    public static List<String> checkRecords(List<String> lines) {
+        List<String> problems = new ArrayList<>();
+        for (String line : lines) {
+            int[] seps = TaskRecordCodec.separators(line);
+            if (seps == null) continue;
+            String id = line.substring(0, seps[0]);
+            String due = line.substring(seps[5] + 1, seps[6]);
+            if (!due.isEmpty()) {
+                try {
+                    LocalDate.parse(due);
+                } catch (DateTimeParseException e) {
+                    problems.add("Task " + id + " has invalid due date " + due + " (loaded without one)");
+                }
+            }
+            String q = line.substring(seps[6] + 1);
+            if (!q.isEmpty() && !q.matches("I|II|III|IV")) {
+                problems.add("Task " + id + " has invalid Eisenhower value " + q + " (loaded without one)");
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Runs check() on a snapshot of the tasks on a background thread.
+     */
+    public static CompletableFuture<List<String>> checkInBackground(List<Task> tasks) {
+        return checkInBackground(tasks, Collections.emptyList());
+    }
+
+    /**
+     * Like checkInBackground(tasks), also running checkRecords() on the given lines.
+     */
+    public static CompletableFuture<List<String>> checkInBackground(List<Task> tasks, List<String> dropped) {
+        List<Task> snapshot = new ArrayList<>(tasks);
+        List<String> lines = new ArrayList<>(dropped);
+        return CompletableFuture.supplyAsync(() -> {
+            List<String> problems = check(snapshot);
+            problems.addAll(checkRecords(lines));
+            return problems;
+        });
+    }
+}
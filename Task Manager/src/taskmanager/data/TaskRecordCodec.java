@@ -0,0 +1,158 @@
+package taskmanager.data;
+
+import taskmanager.core.Category;
+import taskmanager.core.Person;
+import taskmanager.core.Status;
+import taskmanager.core.Task;
+import taskmanager.core.TextArena;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.function.Function;
+
+/**
+ * Encodes tasks to and from the pipe separated line format used by tasks.txt:
+ * id|title|description|category|status|assigneeId|dueDate|eisenhower
+ */
+public final class TaskRecordCodec {
+    // values() clones the array on every call, so keep one copy for the trusted decoder
+    private static final Category[] CATEGORIES = Category.values();
+    private static final Status[] STATUSES = Status.values();
+    private static final String[] QUADRANTS = {"I", "II", "III", "IV"};
+    private static final int DATE_CACHE_SIZE = 4096;
+
+    private TaskRecordCodec() {
+    }
+
+    public static String encode(Task t) {
+        String due = t.getDueDate() == null ? "" : t.getDueDate().toString();
+        String desc = t.getDescription() == null ? "" : t.getDescription().replace("\n", "\\n");
+        return String.join("|",
+                t.getId(),
+                t.getTitle().replace("|", " "),
+                desc.replace("|", " "),
+                t.getCategory().name(),
+                t.getStatus().name(),
+                t.getAssignee().getId(),
+                due,
+                t.getEisenhower() == null ? "" : t.getEisenhower()
+        );
+    }
+
+    /**
+     * Returns the id (first field) of an encoded line without decoding the rest.
+     */
+    public static String idOf(String line) {
+        int end = line.indexOf('|');
+        return end < 0 ? line : line.substring(0, end);
+    }
+
+    /**
+     * Returns the positions of the 7 field separators of a line, or null if it has a different shape.
+     * Used with decodeTrusted so a line is scanned for separators only once.
+     */
+    public static int[] separators(String line) {
+        int[] seps = new int[7];
+        int found = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '|') {
+                if (found == 7) return null;
+                seps[found++] = i;
+            }
+        }
+        return found == 7 ? seps : null;
+    }
+
+    public static String assigneeIdOf(String line, int[] seps) {
+        return line.substring(seps[4] + 1, seps[5]);
+    }
+
+    /**
+     * Trusted fast path for lines this application wrote itself: no regex split,
+     * no Task validation, no clock access and no exceptions for control flow.
+     * Enum values and quadrants resolve to shared constants, and due dates are
+     * shared through the caller's cache (see newDateCache()).
+     * Lines that do not decode (unknown enum, unknown assignee) return null.
+     * A due date or quadrant that does not parse is left unset rather than
+     * rejecting the task; droppedField() tells the caller which records those were.
+     */
+    public static Task decodeTrusted(String line, int[] seps, Function<String, Person> assignees, LocalDate[] dateCache) {
+        Category category = lookup(CATEGORIES, line, seps[2] + 1, seps[3]);
+        Status status = lookup(STATUSES, line, seps[3] + 1, seps[4]);
+        if (category == null || status == null || seps[0] == 0) return null;
+        Person assignee = assignees.apply(line.substring(seps[4] + 1, seps[5]));
+        if (assignee == null) return null;
+
+        // interned straight from the line; only an escaped newline needs a copy first
+        int descStart = seps[1] + 1, descEnd = seps[2];
+        int escape = line.indexOf('\\', descStart);
+        TextArena.Text description = escape < 0 || escape >= descEnd
+                ? TextArena.shared().intern(line, descStart, descEnd)
+                : TextArena.shared().intern(line.substring(descStart, descEnd).replace("\\n", "\n"));
+        return Task.restore(
+                line.substring(0, seps[0]),
+                line.substring(seps[0] + 1, seps[1]),
+                description,
+                category,
+                status,
+                assignee,
+                parseDate(line, seps[5] + 1, seps[6], dateCache),
+                quadrant(line, seps[6] + 1, line.length()));
+    }
+
+    /**
+     * Whether decodeTrusted() left the due date or quadrant of t unset although the line has one,
+     * i.e. the stored value was not a valid date or not I to IV.
+     */
+    public static boolean droppedField(Task t, String line, int[] seps) {
+        return (t.getDueDate() == null && seps[6] > seps[5] + 1)
+                || (t.getEisenhower() == null && line.length() > seps[6] + 1);
+    }
+
+    public static LocalDate[] newDateCache() {
+        return new LocalDate[DATE_CACHE_SIZE];
+    }
+
+    private static <E extends Enum<E>> E lookup(E[] values, String line, int start, int end) {
+        int len = end - start;
+        for (E e : values) {
+            String name = e.name();
+            if (name.length() == len && line.regionMatches(start, name, 0, len)) return e;
+        }
+        return null;
+    }
+
+    private static String quadrant(String line, int start, int end) {
+        for (String q : QUADRANTS) {
+            if (q.length() == end - start && line.regionMatches(start, q, 0, q.length())) return q;
+        }
+        return null;
+    }
+
+    // yyyy-MM-dd without going through the DateTimeFormatter machinery
+    private static LocalDate parseDate(String line, int start, int end, LocalDate[] cache) {
+        if (end - start != 10 || line.charAt(start + 4) != '-' || line.charAt(start + 7) != '-') return null;
+        int y = digits(line, start, 4), m = digits(line, start + 5, 2), d = digits(line, start + 8, 2);
+        if (y < 0 || m < 1 || m > 12 || d < 1 || d > 31) return null;
+        int slot = ((y * 13 + m) * 32 + d) % cache.length;
+        LocalDate cached = cache[slot];
+        if (cached != null && cached.getYear() == y && cached.getMonthValue() == m && cached.getDayOfMonth() == d) return cached;
+        try {
+            cached = LocalDate.of(y, m, d);
+        } catch (DateTimeException e) {
+            return null; // e.g. 31st of a short month
+        }
+        cache[slot] = cached;
+        return cached;
+    }
+
+    private static int digits(String s, int start, int count) {
+        int v = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+}
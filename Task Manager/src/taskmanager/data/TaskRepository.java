@@ -1,69 +1,203 @@
 package taskmanager.data;
 
+import taskmanager.core.Person;
 import taskmanager.core.Task;
+import taskmanager.data.lsm.LsmStorageEngine;
+import taskmanager.data.lsm.LsmTaskStore;
 import taskmanager.exceptions.RepositoryException;
-import taskmanager.core.Person;
 
-import java.io.*;
+import java.io.File;
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * The tasks of one project, held in memory and persisted through a StorageEngine.
+ *
+ * Changes are synced to the engine as the repository's Durability asks. Methods that
+ * change the tasks are synchronized, and so are batched syncs from the timer thread.
+ * Callers that change the fields of a stored task in place must do so synchronized on
+ * the repository too, before calling update(), or a timed sync may write the task
+ * half changed. Lookups by id use an in-memory map, never the engine.
+ */
 public class TaskRepository {
     private ArrayList<Task> tasks;
+    private final Map<String, Task> byId = new HashMap<>();
     private final PersonRepository personRepo;
-    private final File storageFile;
+    private final StorageEngine engine;
+    private final GroupCommit commit;
+    private final List<String> loadProblems = new ArrayList<>();
+    private final List<String> droppedFields = new ArrayList<>(); // lines whose due date or quadrant did not parse
+    private CompletableFuture<List<String>> integrityReport = CompletableFuture.completedFuture(Collections.emptyList());
 
     public TaskRepository(PersonRepository personRepo) {
-        this.personRepo = personRepo;
-        this.tasks = new ArrayList<>();
-        this.storageFile = new File("tasks.txt");
-        loadFromFile();
+        this(personRepo, (File) null);
+    }
+
+    /**
+     * Repository kept in tasks.txt inside dir (the working directory if dir is null).
+     */
+    public TaskRepository(PersonRepository personRepo, File dir) {
+        this(personRepo, dir, new LoadProgress());
+    }
+
+    /**
+     * Like TaskRepository(personRepo, dir), reporting how far the load has got to progress.
+     */
+    public TaskRepository(PersonRepository personRepo, File dir, LoadProgress progress) {
+        this(personRepo, new TextFileStorageEngine(dir), progress);
     }
 
     public TaskRepository(ArrayList<Task> tasks, PersonRepository personRepo) {
         this.tasks = tasks;
+        for (Task t : tasks) byId.put(t.getId(), t);
         this.personRepo = personRepo;
-        this.storageFile = new File("tasks.txt");
+        this.engine = new TextFileStorageEngine(null);
+        this.commit = new GroupCommit(Durability.NONE, this, force -> engine.sync(this.tasks, force));
     }
 
-    public boolean exists(String id) {
-        for (int i = 0; i < tasks.size(); i++) {
-            if (tasks.get(i).getId().equals(id)) {
-                return true;
+    /**
+     * Repository holding the tasks of the given engine, which it closes on close().
+     */
+    public TaskRepository(PersonRepository personRepo, StorageEngine engine) {
+        this(personRepo, engine, new LoadProgress());
+    }
+
+    /**
+     * Like TaskRepository(personRepo, engine), reporting how far the load has got to progress.
+     */
+    public TaskRepository(PersonRepository personRepo, StorageEngine engine, LoadProgress progress) {
+        this(personRepo, engine, Durability.NONE, progress);
+    }
+
+    /**
+     * Repository holding the tasks of the given engine, syncing changes to it as durability asks.
+     */
+    public TaskRepository(PersonRepository personRepo, StorageEngine engine, Durability durability, LoadProgress progress) {
+        this.personRepo = personRepo;
+        this.tasks = new ArrayList<>();
+        this.engine = engine;
+        this.commit = new GroupCommit(durability, this, force -> engine.sync(tasks, force));
+        decodeAll(engine.load(progress, loadProblems), progress);
+        startIntegrityCheck();
+    }
+
+    public TaskRepository(PersonRepository personRepo, LsmTaskStore store) {
+        this(personRepo, store, null);
+    }
+
+    /**
+     * Repository backed by a log-structured store instead of rewriting tasks.txt on every change.
+     * If the store is empty and tasks.txt exists in dir, its tasks are imported once.
+     */
+    public TaskRepository(PersonRepository personRepo, LsmTaskStore store, File dir) {
+        this(personRepo, store, dir, new LoadProgress());
+    }
+
+    /**
+     * Like TaskRepository(personRepo, store, dir), reporting how far the load has got to progress.
+     */
+    public TaskRepository(PersonRepository personRepo, LsmTaskStore store, File dir, LoadProgress progress) {
+        this(personRepo, new LsmStorageEngine(store, dir), progress);
+    }
+
+    /**
+     * Reads the tasks stored in dir without keeping a repository open: nothing is
+     * quarantined or rewritten and no integrity check runs. Records that do not
+     * decode are skipped. Uses dir/tasks.lsm if lsm is set and it exists.
+     */
+    public static List<Task> loadSnapshot(PersonRepository personRepo, File dir, boolean lsm) {
+        File lsmDir = new File(dir, "tasks.lsm");
+        List<String> lines;
+        if (lsm && lsmDir.isDirectory()) {
+            try (LsmTaskStore store = new LsmTaskStore(lsmDir)) {
+                lines = store.scanAll();
             }
+        } else {
+            File file = new File(dir, "tasks.txt");
+            if (!file.exists()) return new ArrayList<>();
+            lines = TaskBlockFile.read(file).getLines();
+        }
+        Set<String> assigneeIds = new HashSet<>();
+        int[][] seps = new int[lines.size()][];
+        for (int i = 0; i < seps.length; i++) {
+            seps[i] = TaskRecordCodec.separators(lines.get(i));
+            if (seps[i] != null) assigneeIds.add(TaskRecordCodec.assigneeIdOf(lines.get(i), seps[i]));
         }
-        return false;
+        Map<String, Person> assignees = personRepo.findAllById(assigneeIds);
+        LocalDate[] dates = TaskRecordCodec.newDateCache();
+        List<Task> result = new ArrayList<>(lines.size());
+        for (int i = 0; i < seps.length; i++) {
+            Task t = seps[i] == null ? null : TaskRecordCodec.decodeTrusted(lines.get(i), seps[i], assignees::get, dates);
+            if (t != null) result.add(t);
+        }
+        return result;
+    }
+
+    public boolean exists(String id) {
+        return byId.containsKey(id);
     }
 
-    public void add(Task task) {
+    public synchronized void add(Task task) {
         if(!exists(task.getId())) {
             tasks.add(task);
-            saveAll();
+            byId.put(task.getId(), task);
+            engine.put(task, tasks);
+            commit.changed();
         } else throw new RepositoryException("Task already exists");
     }
 
+    /**
+     * Adds many new tasks with one write, e.g. appended blocks for tasks.txt or one log flush for the LSM store.
+     * Fails without adding anything if any id is already present.
+     */
+    public synchronized void addAll(List<Task> batch) {
+        Set<String> ids = new HashSet<>(batch.size() * 2);
+        for (Task t : batch) {
+            if (!ids.add(t.getId())) throw new RepositoryException("Task " + t.getId() + " appears twice in the batch");
+        }
+        for (Task t : batch) {
+            if (byId.containsKey(t.getId())) throw new RepositoryException("Task " + t.getId() + " already exists");
+        }
+        tasks.addAll(batch);
+        for (Task t : batch) byId.put(t.getId(), t);
+        engine.putAll(batch, tasks);
+        commit.changed();
+    }
+
+    /**
+     * Persists changes made to a task that is already in the repository.
+     */
+    public synchronized void update(Task task) {
+        engine.put(task, tasks);
+        commit.changed();
+    }
+
+    /**
+     * Persists changes made to many tasks already in the repository as one change, so that
+     * they are written by a single sync whatever the durability mode.
+     */
+    public synchronized void updateAll(List<Task> changed) {
+        if (changed.isEmpty()) return;
+        for (Task t : changed) engine.put(t, tasks);
+        commit.changed();
+    }
+
     public ArrayList<Task> getAll() {
         return tasks;
     }
 
     public Task findById(String id) {
-        for(int i = 0; i < tasks.size(); i++) {
-            if(tasks.get(i).getId().equals(id)) {
-                return tasks.get(i);
-            }
-        }
-        return null;
+        return byId.get(id);
     }
 
-    public boolean delete(String id) {
-        for(int i = 0; i < tasks.size(); i++) {
-            if(tasks.get(i).getId().equals(id)) {
-                tasks.remove(i);
-                saveAll();
-                return true;
-            }
-        }
-        return false;
+    public synchronized boolean delete(String id) {
+        Task task = byId.remove(id);
+        if (task == null) return false;
+        tasks.remove(task);
+        engine.delete(id, tasks);
+        commit.changed();
+        return true;
     }
 
     public ArrayList<Task> getByAssignee(String personId) {
@@ -76,69 +210,116 @@ public class TaskRepository {
         return result;
     }
 
-    public void saveAll() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(storageFile))) {
-            for (Task t : tasks) {
-                String due = t.getDueDate() == null ? "" : t.getDueDate().toString();
-                String desc = t.getDescription() == null ? "" : t.getDescription().replace("\n", "\\n");
-                String line = String.join("|",
-                        t.getId(),
-                        t.getTitle().replace("|", " "),
-                        desc.replace("|", " "),
-                        t.getCategory().name(),
-                        t.getStatus().name(),
-                        t.getAssignee().getId(),
-                        due,
-                        t.getEisenhower() == null ? "" : t.getEisenhower()
-                );
-                bw.write(line);
-                bw.newLine();
-            }
-        } catch (IOException e) {
-            throw new RepositoryException("Failed to save tasks: " + e.getMessage());
-        }
+    public synchronized void saveAll() {
+        engine.saveAll(tasks);
+        commit.changed();
     }
 
-    private void loadFromFile() {
-        if (!storageFile.exists()) return;
-        try (BufferedReader br = new BufferedReader(new FileReader(storageFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] parts = line.split("\\|", -1);
-                // id|title|description|category|status|assigneeId|dueDate|eisenhower
-                if (parts.length < 8) continue;
-                String id = parts[0];
-                String title = parts[1];
-                String description = parts[2].replace("\\n", "\n");
-                String cat = parts[3];
-                String status = parts[4];
-                String assigneeId = parts[5];
-                String due = parts[6];
-                String eisenhower = parts[7].isEmpty() ? null : parts[7];
-
-                taskmanager.core.Category category;
-                taskmanager.core.Status st;
-                try {
-                    category = taskmanager.core.Category.valueOf(cat);
-                    st = taskmanager.core.Status.valueOf(status);
-                } catch (IllegalArgumentException e) {
-                    continue;
-                }
-
-                Person assignee = personRepo.findById(assigneeId);
-                if (assignee == null) continue; // skip tasks with unknown people
-
-                LocalDate dueDate = null;
-                if (!due.isEmpty()) {
-                    try { dueDate = LocalDate.parse(due); } catch (Exception ex) { dueDate = null; }
-                }
-
-                Task t = new Task(id, title, description, category, st, assignee, dueDate, eisenhower);
+    // Stored lines were validated when written, so they go through the trusted decoder;
+    // TaskIntegrityChecker re-validates in the background, with the raw lines of tasks
+    // that lost a due date or quadrant that did not parse. Assignees are resolved with
+    // one bulk lookup instead of one findById per line.
+    private void decodeAll(List<String> lines, LoadProgress progress) {
+        progress.begin("decoding tasks", 2L * lines.size());
+        int[][] seps = new int[lines.size()][];
+        Set<String> assigneeIds = new HashSet<>();
+        for (int i = 0; i < seps.length; i++) {
+            seps[i] = TaskRecordCodec.separators(lines.get(i));
+            if (seps[i] != null) assigneeIds.add(TaskRecordCodec.assigneeIdOf(lines.get(i), seps[i]));
+            if ((i & 4095) == 4095) progress.advance(4096);
+        }
+        Map<String, Person> assignees = personRepo.findAllById(assigneeIds);
+        LocalDate[] dates = TaskRecordCodec.newDateCache();
+        tasks.ensureCapacity(tasks.size() + seps.length);
+        List<String> rejected = new ArrayList<>();
+        for (int i = 0; i < seps.length; i++) {
+            Task t = seps[i] == null ? null : TaskRecordCodec.decodeTrusted(lines.get(i), seps[i], assignees::get, dates);
+            if (t != null) {
                 tasks.add(t);
+                byId.put(t.getId(), t);
+                if (TaskRecordCodec.droppedField(t, lines.get(i), seps[i])) droppedFields.add(lines.get(i));
+            } else if (!lines.get(i).trim().isEmpty()) {
+                loadProblems.add("Record " + (i + 1) + " skipped (" + (seps[i] == null ? "malformed" : "unknown category, status or assignee") + ")");
+                rejected.add(lines.get(i));
             }
-        } catch (IOException e) {
-            throw new RepositoryException("Failed to load tasks: " + e.getMessage());
+            if ((i & 4095) == 4095) progress.advance(4096);
         }
+        engine.reject(rejected, loadProblems);
+    }
+
+    private void startIntegrityCheck() {
+        List<String> fromLoad = new ArrayList<>(loadProblems);
+        integrityReport = TaskIntegrityChecker.checkInBackground(tasks, droppedFields).thenApply(problems -> {
+            List<String> all = new ArrayList<>(fromLoad);
+            all.addAll(problems);
+            return all;
+        });
+    }
+
+    /**
+     * Verifies the checksums of the stored data, e.g. the blocks of tasks.txt on all cores.
+     */
+    public TaskBlockFile.Report verifyStorage() {
+        return engine.verify();
+    }
+
+    /**
+     * Problems found while loading (corrupt blocks, skipped records) followed by
+     * those found by the background integrity pass over the loaded tasks.
+     */
+    public CompletableFuture<List<String>> getIntegrityReport() {
+        return integrityReport;
+    }
+
+    /**
+     * The tasks in the order a fresh load would return them: list order, as tasks.txt is
+     * kept, or id order for engines such as the LSM store.
+     */
+    public List<Task> inLoadOrder() {
+        if (!engine.loadsInIdOrder()) return tasks;
+        List<Task> sorted = new ArrayList<>(tasks);
+        sorted.sort(Comparator.comparing(Task::getId));
+        return sorted;
+    }
+
+    /**
+     * Identifies the stored data as it is now, for derived structures saved alongside it.
+     * Equal stamps mean a reload would produce the same tasks.
+     */
+    public synchronized String dataStamp() {
+        commit.syncNow(); // the stamp is of what is on disk
+        return engine.stamp();
+    }
+
+    /**
+     * Syncs batched changes and has the engine write out what it buffers, e.g. the LSM
+     * memtable as a sorted run.
+     */
+    public synchronized void flush() {
+        commit.syncNow();
+        engine.flush();
+    }
+
+    /** E.g. "1200 change(s) written in 35 sync(s)", how well changes are being batched. */
+    public synchronized String syncStats() {
+        return commit.getChanges() + " change(s) written in " + commit.getSyncs() + " sync(s)";
+    }
+
+    /** The name of the storage engine, one of StorageEngine.KINDS. */
+    public String storageName() {
+        return engine.name();
+    }
+
+    /** Whether the tasks survive close(); false for the in-memory engine. */
+    public boolean isPersistent() {
+        return engine.isPersistent();
+    }
+
+    /**
+     * Syncs batched changes, then flushes and releases the storage engine.
+     */
+    public synchronized void close() {
+        commit.close();
+        engine.close();
     }
 }
@@ -0,0 +1,156 @@
+package taskmanager.data;
+
+import taskmanager.core.Task;
+import taskmanager.exceptions.RepositoryException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tasks in tasks.txt, a TaskBlockFile rewritten through a temporary file on sync after
+ * any change. New tasks added in a batch are appended as blocks instead, unless a rewrite
+ * is pending anyway.
+ *
+ * Blocks that fail their checksum, and records that do not decode, are moved to
+ * tasks.quarantine and tasks.txt is rewritten without them straight away, so each
+ * is quarantined once rather than again on every load.
+ */
+public class TextFileStorageEngine implements StorageEngine {
+    private final File storageFile;
+    private final File quarantineFile;
+    private boolean rewrite;  // a change since the last sync needs the whole file rewritten
+    private boolean unforced; // appended or written without force since the last forced sync
+
+    /** Keeps tasks.txt inside dir (the working directory if dir is null). */
+    public TextFileStorageEngine(File dir) {
+        this.storageFile = new File(dir, "tasks.txt");
+        this.quarantineFile = new File(dir, "tasks.quarantine");
+    }
+
+    @Override
+    public String name() {
+        return TEXT;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public List<String> load(LoadProgress progress, List<String> problems) {
+        if (!storageFile.exists()) return new ArrayList<>();
+        progress.begin("reading " + storageFile.getName(), storageFile.length());
+        TaskBlockFile.Contents contents = TaskBlockFile.read(storageFile, progress);
+        TaskBlockFile.Report report = contents.getReport();
+        if (!report.isClean()) {
+            problems.add(storageFile + ": " + report.summary());
+            for (String range : report.getCorruptRanges()) problems.add("Corrupt " + range + ", moved to " + quarantineFile);
+            quarantine(contents.getQuarantined());
+            TaskBlockFile.write(storageFile, contents.getLines(), true);
+        }
+        return contents.getLines();
+    }
+
+    @Override
+    public void reject(List<String> records, List<String> problems) {
+        if (records.isEmpty()) return;
+        quarantine(records);
+        Map<String, Integer> left = new HashMap<>();
+        for (String r : records) left.merge(r, 1, Integer::sum);
+        List<String> kept = new ArrayList<>();
+        for (String line : TaskBlockFile.read(storageFile).getLines()) {
+            Integer n = left.get(line);
+            if (n == null) kept.add(line);
+            else if (n == 1) left.remove(line);
+            else left.put(line, n - 1);
+        }
+        TaskBlockFile.write(storageFile, kept, true);
+        problems.add(records.size() + " skipped record(s) moved to " + quarantineFile);
+    }
+
+    @Override
+    public void put(Task task, List<Task> all) {
+        rewrite = true;
+    }
+
+    @Override
+    public void putAll(List<Task> batch, List<Task> all) {
+        if (rewrite) return; // the rewrite will include the batch
+        if (TaskBlockFile.append(storageFile, () -> batch.stream().map(TaskRecordCodec::encode).iterator())) {
+            unforced = true;
+        } else {
+            rewrite = true; // plain file from an older version; rewrite it in blocks
+        }
+    }
+
+    @Override
+    public void delete(String id, List<Task> all) {
+        rewrite = true;
+    }
+
+    @Override
+    public void saveAll(List<Task> all) {
+        rewrite = true;
+    }
+
+    @Override
+    public void sync(List<Task> all, boolean force) {
+        if (rewrite) {
+            TaskBlockFile.write(storageFile, () -> all.stream().map(TaskRecordCodec::encode).iterator(), force);
+            rewrite = false;
+            unforced = !force;
+        } else if (force && unforced) {
+            TaskBlockFile.force(storageFile);
+            unforced = false;
+        }
+    }
+
+    /** Nothing is buffered besides what sync() writes. */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public String stamp() {
+        return TaskBlockFile.stamp(storageFile);
+    }
+
+    @Override
+    public boolean loadsInIdOrder() {
+        return false;
+    }
+
+    /** Verifies the block checksums of tasks.txt on all cores. */
+    @Override
+    public TaskBlockFile.Report verify() {
+        if (!storageFile.exists()) throw new RepositoryException("No task file to verify: " + storageFile);
+        return TaskBlockFile.verify(storageFile);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    // Forced, since tasks.txt is rewritten without the entries right after.
+    private void quarantine(List<String> entries) {
+        if (entries.isEmpty()) return;
+        try (FileOutputStream out = new FileOutputStream(quarantineFile, true);
+             Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (String entry : entries) {
+                w.write("# quarantined from " + storageFile + " at " + LocalDateTime.now() + "\n");
+                w.write(entry);
+                if (!entry.endsWith("\n")) w.write('\n');
+            }
+            w.flush();
+            out.getFD().sync();
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to write quarantine file: " + e.getMessage());
+        }
+    }
+}
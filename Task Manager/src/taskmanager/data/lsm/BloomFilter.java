@@ -0,0 +1,61 @@
+package taskmanager.data.lsm;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Simple Bloom filter over string keys.
+ * Sized for roughly 1% false positives using double hashing (Kirsch-Mitzenmacher).
+ */
+public class BloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+    private final int bitCount;
+
+    public BloomFilter(int expectedKeys) {
+        int n = Math.max(1, expectedKeys);
+        long size = (long) n * BITS_PER_KEY;
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, size));
+        this.bits = new long[(bitCount + 63) / 64];
+    }
+
+    public void add(String key) {
+        long h = hash(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            bits[bit >>> 6] |= 1L << (bit & 63);
+        }
+    }
+
+    /**
+     * Returns false if the key is definitely absent, true if it may be present.
+     */
+    public boolean mightContain(String key) {
+        long h = hash(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            if ((bits[bit >>> 6] & (1L << (bit & 63))) == 0) return false;
+        }
+        return true;
+    }
+
+    // 64-bit FNV-1a followed by a murmur style finalizer
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
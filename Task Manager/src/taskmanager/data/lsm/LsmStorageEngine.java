@@ -0,0 +1,111 @@
+package taskmanager.data.lsm;
+
+import taskmanager.core.Task;
+import taskmanager.data.LoadProgress;
+import taskmanager.data.StorageEngine;
+import taskmanager.data.TaskRecordCodec;
+import taskmanager.data.TextFileStorageEngine;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tasks in an LsmTaskStore: each change appends only the task it touches to the log,
+ * and a forced sync is one force of the log however many changes it covers.
+ *
+ * If the store is empty and tasks.txt exists next to it, the tasks are imported once on
+ * load, records that do not decode included; the store keeps those as they are.
+ */
+public class LsmStorageEngine implements StorageEngine {
+    private final LsmTaskStore store;
+    private final File dir;
+
+    /**
+     * @param dir where to look for a tasks.txt to import (the working directory if null)
+     */
+    public LsmStorageEngine(LsmTaskStore store, File dir) {
+        this.store = store;
+        this.dir = dir;
+    }
+
+    @Override
+    public String name() {
+        return LSM;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public List<String> load(LoadProgress progress, List<String> problems) {
+        progress.begin("reading tasks.lsm", 0);
+        List<String> records = store.scanAll();
+        if (records.isEmpty() && new File(dir, "tasks.txt").exists()) {
+            records = new TextFileStorageEngine(dir).load(progress, problems);
+            Map<String, String> imported = new LinkedHashMap<>(records.size() * 2);
+            for (String r : records) {
+                if (!r.trim().isEmpty()) imported.put(TaskRecordCodec.idOf(r), r);
+            }
+            store.putAll(imported);
+            store.flush();
+        }
+        return records;
+    }
+
+    @Override
+    public void reject(List<String> records, List<String> problems) {
+    }
+
+    @Override
+    public void put(Task task, List<Task> all) {
+        store.put(task.getId(), TaskRecordCodec.encode(task));
+    }
+
+    @Override
+    public void putAll(List<Task> batch, List<Task> all) {
+        Map<String, String> records = new LinkedHashMap<>(batch.size() * 2);
+        for (Task t : batch) records.put(t.getId(), TaskRecordCodec.encode(t));
+        store.putAll(records);
+    }
+
+    @Override
+    public void delete(String id, List<Task> all) {
+        store.delete(id);
+    }
+
+    @Override
+    public void saveAll(List<Task> all) {
+        for (Task t : all) store.put(t.getId(), TaskRecordCodec.encode(t));
+        store.flush();
+    }
+
+    @Override
+    public void sync(List<Task> all, boolean force) {
+        if (force) store.sync();
+    }
+
+    /** Writes the memtable out as a sorted run. */
+    @Override
+    public void flush() {
+        store.flush();
+    }
+
+    @Override
+    public String stamp() {
+        return store.stamp();
+    }
+
+    @Override
+    public boolean loadsInIdOrder() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+}
@@ -0,0 +1,462 @@
+package taskmanager.data.lsm;
+
+import taskmanager.exceptions.RepositoryException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Log-structured store for encoded task lines, keyed by task id.
+ *
+ * Writes are appended to a write-ahead log and applied to an in-memory sorted memtable.
+ * When the memtable reaches its limit it is flushed to an immutable SortedRun file and
+ * the log is truncated. Once enough runs accumulate, a background thread merges them
+ * into a single run. Reads check the memtable first, then the runs from newest to oldest,
+ * skipping any run whose Bloom filter rules the key out.
+ *
+ * Recovery after an unclean shutdown: leftover .tmp files are deleted, runs made obsolete
+ * by a compaction that did not finish cleaning up are removed, and the log is replayed.
+ * A torn last log line is dropped and cut off the file before anything is appended.
+ */
+public class LsmTaskStore implements Closeable {
+    public static final int DEFAULT_MEMTABLE_LIMIT = 4096;
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 4;
+    private static final String WAL_NAME = "wal.log";
+
+    private final File dir;
+    private final int memtableLimit;
+    private final int compactionThreshold;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService compactor;
+    private final Object compactionLock = new Object();
+
+    private TreeMap<String, String> memtable = new TreeMap<>();
+    private List<SortedRun> runs = new ArrayList<>(); // oldest first
+    private long nextSeq;
+    private FileOutputStream walOut;
+    private Writer wal;
+    private boolean compacting;
+
+    public LsmTaskStore(File dir) {
+        this(dir, DEFAULT_MEMTABLE_LIMIT, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    public LsmTaskStore(File dir, int memtableLimit, int compactionThreshold) {
+        if (memtableLimit < 1) throw new IllegalArgumentException("Memtable limit must be positive");
+        if (compactionThreshold < 2) throw new IllegalArgumentException("Compaction threshold must be at least 2");
+        this.dir = dir;
+        this.memtableLimit = memtableLimit;
+        this.compactionThreshold = compactionThreshold;
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "lsm-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        recover();
+    }
+
+    private void recover() {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new RepositoryException("Cannot create store directory " + dir);
+        }
+        File[] files = dir.listFiles();
+        if (files == null) throw new RepositoryException("Cannot list store directory " + dir);
+
+        List<SortedRun> opened = new ArrayList<>();
+        for (File f : files) {
+            if (f.getName().endsWith(".tmp")) {
+                f.delete();
+            } else if (f.getName().startsWith("run-") && f.getName().endsWith(".sst")) {
+                opened.add(SortedRun.open(f));
+            }
+        }
+        // A compacted run covers [base, top]; anything inside that range is a leftover input.
+        opened.sort(Comparator.comparingLong(SortedRun::getTop).thenComparingLong(SortedRun::getBase));
+        List<SortedRun> live = new ArrayList<>();
+        for (SortedRun run : opened) {
+            boolean covered = false;
+            for (SortedRun other : opened) {
+                if (other != run && other.getBase() <= run.getBase() && other.getTop() >= run.getTop()
+                        && (other.getTop() - other.getBase()) > (run.getTop() - run.getBase())) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (covered) run.delete();
+            else live.add(run);
+        }
+        runs = live;
+        nextSeq = live.isEmpty() ? 1 : live.get(live.size() - 1).getTop() + 1;
+
+        long intact = replayWal();
+        try {
+            truncateWal(intact);
+            openWal(true);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to open write-ahead log: " + e.getMessage());
+        }
+    }
+
+    private void openWal(boolean append) throws IOException {
+        walOut = new FileOutputStream(new File(dir, WAL_NAME), append);
+        wal = new BufferedWriter(new OutputStreamWriter(walOut, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Applies the log to the memtable and returns the length of its intact part, i.e. the
+     * offset just past the last complete line.
+     */
+    private long replayWal() {
+        File walFile = new File(dir, WAL_NAME);
+        if (!walFile.exists()) return 0;
+        try (SortedRun.LineReader in = new SortedRun.LineReader(new FileInputStream(walFile), 0)) {
+            String line;
+            long intact = 0;
+            while ((line = in.readLine()) != null) {
+                intact = in.position();
+                if (line.startsWith("P|")) {
+                    String value = line.substring(2);
+                    int end = value.indexOf('|');
+                    if (end > 0) memtable.put(value.substring(0, end), value);
+                } else if (line.startsWith("D|") && line.length() > 2) {
+                    memtable.put(line.substring(2), SortedRun.TOMBSTONE);
+                }
+            }
+            return intact;
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to replay write-ahead log: " + e.getMessage());
+        }
+    }
+
+    // Cuts off a torn last line, so that the next record starts on a line of its own.
+    private void truncateWal(long length) throws IOException {
+        File walFile = new File(dir, WAL_NAME);
+        if (!walFile.exists() || walFile.length() <= length) return;
+        try (RandomAccessFile raf = new RandomAccessFile(walFile, "rw")) {
+            raf.getChannel().truncate(length);
+            raf.getChannel().force(true);
+        }
+    }
+
+    public void put(String id, String record) {
+        write(id, record, "P|" + record);
+    }
+
+    /**
+     * Writes several records with a single log flush.
+     */
+    public void putAll(Map<String, String> records) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, String> e : records.entrySet()) {
+                wal.write("P|" + e.getValue());
+                wal.write('\n');
+            }
+            wal.flush();
+            memtable.putAll(records);
+            if (memtable.size() >= memtableLimit) flushLocked();
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to append to write-ahead log: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(String id) {
+        write(id, SortedRun.TOMBSTONE, "D|" + id);
+    }
+
+    private void write(String id, String value, String logLine) {
+        lock.writeLock().lock();
+        try {
+            wal.write(logLine);
+            wal.write('\n');
+            wal.flush();
+            memtable.put(id, value);
+            if (memtable.size() >= memtableLimit) flushLocked();
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to append to write-ahead log: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the encoded task line for the id, or null if absent or deleted.
+     */
+    public String get(String id) {
+        lock.readLock().lock();
+        try {
+            String v = memtable.get(id);
+            if (v != null) return v == SortedRun.TOMBSTONE ? null : v;
+            for (int i = runs.size() - 1; i >= 0; i--) {
+                v = runs.get(i).get(id);
+                if (v != null) return v == SortedRun.TOMBSTONE ? null : v;
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Returns encoded task lines with fromId <= id < toId in id order.
+     * Either bound may be null for an open range.
+     */
+    public List<String> scan(String fromId, String toId) {
+        lock.readLock().lock();
+        try {
+            List<String> result = new ArrayList<>();
+            mergeRange(runs, memtable, fromId, toId, (k, v) -> result.add(v));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<String> scanAll() {
+        return scan(null, null);
+    }
+
+    /**
+     * Forces the write-ahead log to disk. Every write reaches the OS as it is made; after
+     * this it also survives a crash of the machine. Several writes can share one sync.
+     */
+    public void sync() {
+        lock.readLock().lock(); // holds off a flush, which replaces the log
+        try {
+            walOut.getChannel().force(false);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to sync write-ahead log: " + e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the memtable to a new sorted run.
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            flushLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void flushLocked() {
+        if (memtable.isEmpty()) return;
+        long seq = nextSeq++;
+        SortedRun run = SortedRun.write(dir, seq, seq, memtable.entrySet().iterator());
+        List<SortedRun> next = new ArrayList<>(runs);
+        next.add(run);
+        runs = next;
+        memtable = new TreeMap<>();
+        resetWal();
+        if (runs.size() >= compactionThreshold && !compacting) {
+            compacting = true;
+            compactor.submit(this::compactQuietly);
+        }
+    }
+
+    private void resetWal() {
+        try {
+            wal.close();
+            openWal(false);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to truncate write-ahead log: " + e.getMessage());
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RepositoryException e) {
+            System.err.println("Compaction failed: " + e.getMessage());
+        } finally {
+            lock.writeLock().lock();
+            compacting = false;
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Merges every current run into one, dropping overwritten values and tombstones.
+     * Runs flushed while the merge is in progress are left untouched.
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            compactRuns();
+        }
+    }
+
+    private void compactRuns() {
+        List<SortedRun> inputs;
+        lock.readLock().lock();
+        try {
+            inputs = runs;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (inputs.size() < 2) return;
+
+        long base = inputs.get(0).getBase();
+        long top = inputs.get(inputs.size() - 1).getTop();
+        List<Map.Entry<String, String>> merged = new ArrayList<>();
+        // The oldest run is part of the merge, so tombstones have nothing left to shadow.
+        mergeRange(inputs, Collections.emptyNavigableMap(), null, null,
+                (k, v) -> merged.add(new AbstractMap.SimpleImmutableEntry<>(k, v)));
+        SortedRun output = SortedRun.write(dir, base, top, merged.iterator());
+
+        lock.writeLock().lock();
+        try {
+            List<SortedRun> next = new ArrayList<>();
+            next.add(output);
+            next.addAll(runs.subList(inputs.size(), runs.size()));
+            runs = next;
+            for (SortedRun old : inputs) old.delete();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Identifies the stored contents: every flush takes a new sequence number, which a
+     * compaction keeps as the top of its output, and unflushed changes grow the log.
+     */
+    public String stamp() {
+        lock.readLock().lock();
+        try {
+            return "lsm:" + (nextSeq - 1) + ":" + new File(dir, WAL_NAME).length(); // the log is flushed on every write
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int runCount() {
+        lock.readLock().lock();
+        try {
+            return runs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int memtableSize() {
+        lock.readLock().lock();
+        try {
+            return memtable.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private interface EntrySink {
+        void accept(String key, String value);
+    }
+
+    /**
+     * K-way merge of the given runs (oldest first) and a memtable. The newest value
+     * for each key wins and deleted keys are skipped.
+     */
+    private static void mergeRange(List<SortedRun> sources, NavigableMap<String, String> mem,
+                                   String fromId, String toId, EntrySink sink) {
+        List<SortedRun.Cursor> cursors = new ArrayList<>();
+        PriorityQueue<int[]> heap = new PriorityQueue<>((a, b) -> {
+            int cmp = currentKey(cursors, a[0]).compareTo(currentKey(cursors, b[0]));
+            return cmp != 0 ? cmp : Integer.compare(b[0], a[0]); // newer source first
+        });
+        try {
+            for (SortedRun run : sources) {
+                cursors.add(run.cursor(fromId));
+            }
+            for (int i = 0; i < cursors.size(); i++) {
+                if (cursors.get(i).key() != null) heap.add(new int[]{i});
+            }
+            NavigableMap<String, String> memRange = fromId == null ? mem : mem.tailMap(fromId, true);
+            if (toId != null) memRange = memRange.headMap(toId, false);
+            Iterator<Map.Entry<String, String>> memIt = memRange.entrySet().iterator();
+            Map.Entry<String, String> memNext = memIt.hasNext() ? memIt.next() : null;
+
+            while (!heap.isEmpty() || memNext != null) {
+                String runKey = heap.isEmpty() ? null : currentKey(cursors, heap.peek()[0]);
+                String key;
+                String value;
+                if (memNext != null && (runKey == null || memNext.getKey().compareTo(runKey) <= 0)) {
+                    key = memNext.getKey();
+                    value = memNext.getValue();
+                    memNext = memIt.hasNext() ? memIt.next() : null;
+                } else {
+                    int[] top = heap.poll();
+                    SortedRun.Cursor c = cursors.get(top[0]);
+                    key = c.key();
+                    value = c.value();
+                    c.advance();
+                    if (c.key() != null) heap.add(top);
+                }
+                // The memtable view is already bounded, so only a run key can leave the range.
+                if (toId != null && key.compareTo(toId) >= 0) break;
+                // Skip older versions of the same key still waiting in the heap.
+                while (!heap.isEmpty() && currentKey(cursors, heap.peek()[0]).equals(key)) {
+                    int[] dup = heap.poll();
+                    SortedRun.Cursor c = cursors.get(dup[0]);
+                    c.advance();
+                    if (c.key() != null) heap.add(dup);
+                }
+                if (value == SortedRun.TOMBSTONE) continue;
+                sink.accept(key, value);
+            }
+        } finally {
+            for (SortedRun.Cursor c : cursors) c.close();
+        }
+    }
+
+    private static String currentKey(List<SortedRun.Cursor> cursors, int index) {
+        return cursors.get(index).key();
+    }
+
+    /**
+     * Flushes the memtable, waits for any running compaction and releases all files.
+     */
+    @Override
+    public void close() {
+        flush();
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            wal.close();
+            for (SortedRun run : runs) run.close();
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to close store: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every file of the store in the given directory.
+     */
+    public static void destroy(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            try { Files.deleteIfExists(f.toPath()); } catch (IOException ignored) {}
+        }
+    }
+}
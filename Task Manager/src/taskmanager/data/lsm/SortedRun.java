@@ -0,0 +1,313 @@
+package taskmanager.data.lsm;
+
+import taskmanager.data.Durability;
+import taskmanager.exceptions.RepositoryException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Immutable sorted run file produced by flushing a memtable or by compaction.
+ *
+ * File layout (UTF-8 text, one entry per line, sorted by key):
+ *   #LSM-RUN base=<seq> top=<seq>
+ *   P|<encoded task line>     (put)
+ *   D|<task id>               (tombstone)
+ *
+ * base..top is the range of flush sequence numbers the run covers. A flushed run
+ * has base == top, a compacted run covers all the runs it was merged from.
+ * A sparse index (every INDEX_INTERVAL keys) and a Bloom filter are built when the
+ * run is opened, so a point lookup is one read of at most INDEX_INTERVAL lines.
+ */
+public class SortedRun implements Closeable {
+    static final String TOMBSTONE = new String("<deleted>");
+    private static final int INDEX_INTERVAL = 16;
+    private static final String HEADER = "#LSM-RUN";
+
+    private final File file;
+    private final long base;
+    private final long top;
+    private final RandomAccessFile raf;
+    private final BloomFilter bloom;
+    private final String[] indexKeys;
+    private final long[] indexOffsets;
+    private final long end; // just past the last intact entry
+    private final int count;
+
+    private SortedRun(File file, long base, long top, BloomFilter bloom, String[] indexKeys, long[] indexOffsets, long end, int count) throws IOException {
+        this.file = file;
+        this.base = base;
+        this.top = top;
+        this.bloom = bloom;
+        this.indexKeys = indexKeys;
+        this.indexOffsets = indexOffsets;
+        this.end = end;
+        this.count = count;
+        this.raf = new RandomAccessFile(file, "r");
+    }
+
+    public static String fileName(long base, long top) {
+        return String.format("run-%08d-%08d.sst", top, base);
+    }
+
+    /**
+     * Writes sorted entries (value == TOMBSTONE for deletes) to a new run file atomically
+     * and opens it. The iterator must be in ascending key order. The run is forced to disk
+     * before it is published, since the log it replaces is truncated next.
+     */
+    static SortedRun write(File dir, long base, long top, Iterator<Map.Entry<String, String>> entries) {
+        File target = new File(dir, fileName(base, top));
+        File tmp = new File(dir, target.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            bw.write(HEADER + " base=" + base + " top=" + top);
+            bw.newLine();
+            while (entries.hasNext()) {
+                Map.Entry<String, String> e = entries.next();
+                if (e.getValue() == TOMBSTONE) bw.write("D|" + e.getKey());
+                else bw.write("P|" + e.getValue());
+                bw.write('\n');
+            }
+            bw.flush();
+            fos.getChannel().force(true);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to write sorted run: " + e.getMessage());
+        }
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to publish sorted run: " + e.getMessage());
+        }
+        Durability.syncDirectory(dir);
+        return open(target);
+    }
+
+    /**
+     * Opens an existing run, rebuilding its sparse index and Bloom filter with one sequential read.
+     */
+    static SortedRun open(File file) {
+        try (LineReader in = new LineReader(new FileInputStream(file), 0)) {
+            String header = in.readLine();
+            if (header == null || !header.startsWith(HEADER)) {
+                throw new RepositoryException("Not a sorted run: " + file.getName());
+            }
+            long base = -1, top = -1;
+            for (String token : header.split(" ")) {
+                if (token.startsWith("base=")) base = Long.parseLong(token.substring(5));
+                if (token.startsWith("top=")) top = Long.parseLong(token.substring(4));
+            }
+            if (base < 0 || top < base) throw new RepositoryException("Corrupt run header: " + file.getName());
+
+            ArrayList<String> keys = new ArrayList<>();
+            ArrayList<String> sparseKeys = new ArrayList<>();
+            ArrayList<Long> sparseOffsets = new ArrayList<>();
+            long offset = in.position();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String key = keyOf(line);
+                if (key == null) break; // torn tail, everything before it is intact
+                if (keys.size() % INDEX_INTERVAL == 0) {
+                    sparseKeys.add(key);
+                    sparseOffsets.add(offset);
+                }
+                keys.add(key);
+                offset = in.position();
+            }
+
+            BloomFilter bloom = new BloomFilter(keys.size());
+            for (String k : keys) bloom.add(k);
+            long[] offsets = new long[sparseOffsets.size()];
+            for (int i = 0; i < offsets.length; i++) offsets[i] = sparseOffsets.get(i);
+            return new SortedRun(file, base, top, bloom, sparseKeys.toArray(new String[0]), offsets, offset, keys.size());
+        } catch (IOException | NumberFormatException e) {
+            throw new RepositoryException("Failed to open sorted run " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    public long getBase() { return base; }
+    public long getTop() { return top; }
+    public int size() { return count; }
+    File getFile() { return file; }
+
+    /**
+     * Point lookup. Returns the encoded task, TOMBSTONE if deleted in this run,
+     * or null if this run has no entry for the key.
+     */
+    synchronized String get(String key) {
+        if (!bloom.mightContain(key)) return null;
+        int slot = floorSlot(key);
+        if (slot < 0) return null;
+        long start = indexOffsets[slot];
+        long stop = slot + 1 < indexOffsets.length ? indexOffsets[slot + 1] : end;
+        try {
+            ByteBuffer interval = ByteBuffer.allocate((int) (stop - start));
+            FileChannel channel = raf.getChannel();
+            while (interval.hasRemaining()) {
+                if (channel.read(interval, start + interval.position()) < 0) break;
+            }
+            byte[] bytes = interval.array();
+            int from = 0, length = interval.position();
+            while (from < length) {
+                int newline = from;
+                while (newline < length && bytes[newline] != '\n') newline++;
+                if (newline == length) return null;
+                String line = new String(bytes, from, newline - from, StandardCharsets.UTF_8);
+                String k = keyOf(line);
+                if (k == null) return null;
+                int cmp = k.compareTo(key);
+                if (cmp == 0) return valueOf(line);
+                if (cmp > 0) return null;
+                from = newline + 1;
+            }
+            return null;
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to read sorted run " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    boolean mightContain(String key) {
+        return bloom.mightContain(key);
+    }
+
+    /**
+     * Opens a cursor positioned at the first key >= fromKey (or the start when fromKey is null).
+     */
+    Cursor cursor(String fromKey) {
+        long start;
+        if (fromKey == null || indexKeys.length == 0) {
+            start = indexOffsets.length == 0 ? 0 : indexOffsets[0];
+        } else {
+            int slot = floorSlot(fromKey);
+            start = indexOffsets[Math.max(slot, 0)];
+        }
+        try {
+            Cursor c = new Cursor(new LineReader(new FileInputStream(file), start));
+            if (indexOffsets.length == 0) {
+                c.close();
+                return c;
+            }
+            while (c.key() != null && fromKey != null && c.key().compareTo(fromKey) < 0) c.advance();
+            return c;
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to scan sorted run " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private int floorSlot(String key) {
+        int lo = 0, hi = indexKeys.length - 1, found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexKeys[mid].compareTo(key) <= 0) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private static String keyOf(String line) {
+        if (line.length() < 2 || line.charAt(1) != '|') return null;
+        char kind = line.charAt(0);
+        if (kind == 'D') return line.substring(2);
+        if (kind != 'P') return null;
+        int end = line.indexOf('|', 2);
+        return end < 0 ? null : line.substring(2, end);
+    }
+
+    private static String valueOf(String line) {
+        return line.charAt(0) == 'D' ? TOMBSTONE : line.substring(2);
+    }
+
+    @Override
+    public synchronized void close() {
+        try { raf.close(); } catch (IOException ignored) {}
+    }
+
+    void delete() {
+        close();
+        if (!file.delete() && file.exists()) {
+            throw new RepositoryException("Failed to delete obsolete run " + file.getName());
+        }
+    }
+
+    /**
+     * Forward cursor over the entries of a run. key() is null once exhausted.
+     */
+    static class Cursor implements Closeable {
+        private final LineReader in;
+        private String key;
+        private String value;
+
+        private Cursor(LineReader in) throws IOException {
+            this.in = in;
+            advance();
+        }
+
+        String key() { return key; }
+        String value() { return value; }
+
+        void advance() {
+            try {
+                String line = in.readLine();
+                String k = line == null ? null : keyOf(line);
+                if (k == null) {
+                    key = null;
+                    value = null;
+                    close();
+                    return;
+                }
+                key = k;
+                value = valueOf(line);
+            } catch (IOException e) {
+                throw new RepositoryException("Failed to scan sorted run: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            try { in.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Buffered UTF-8 line reader that tracks its byte position in the file.
+     * Only lines terminated by '\n' are returned, so a torn last line is ignored.
+     */
+    static class LineReader implements Closeable {
+        private final InputStream in;
+        private long position;
+
+        LineReader(FileInputStream in, long start) throws IOException {
+            in.getChannel().position(start);
+            this.in = new BufferedInputStream(in, 1 << 16);
+            this.position = start;
+        }
+
+        long position() { return position; }
+
+        String readLine() throws IOException {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(128);
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b == '\n') return buf.toString(StandardCharsets.UTF_8);
+                buf.write(b);
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
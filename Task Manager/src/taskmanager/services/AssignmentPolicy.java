@@ -0,0 +1,18 @@
+package taskmanager.services;
+
+import taskmanager.core.Person;
+
+import java.util.List;
+
+/**
+ * Chooses an assignee for tasks created without one (e.g. shortcut creation).
+ */
+public interface AssignmentPolicy {
+    /** Short name used by the console "policy" command. */
+    String getName();
+
+    /**
+     * @param people the people eligible for assignment, never empty
+     */
+    Person choose(List<Person> people);
+}
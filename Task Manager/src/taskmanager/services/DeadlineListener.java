@@ -0,0 +1,14 @@
+package taskmanager.services;
+
+import taskmanager.core.Task;
+
+/**
+ * Callback fired by DeadlineMonitor when a task crosses a deadline threshold.
+ */
+public interface DeadlineListener {
+    /** The task is due within the next 24 hours. */
+    void dueSoon(Task task);
+
+    /** The task's due date has passed and it is not done. */
+    void overdue(Task task);
+}
@@ -0,0 +1,151 @@
+package taskmanager.services;
+
+import taskmanager.core.Status;
+import taskmanager.core.Task;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Tracks upcoming deadlines in a priority queue keyed by the instant each
+ * threshold is crossed, so check() only touches tasks whose thresholds have passed.
+ *
+ * A task due on day D counts as due soon from the start of D (24h before the
+ * end of the day) and as overdue from the start of D + 1.
+ * Entries are never removed from the middle of the queue: a change bumps the
+ * task's generation and the stale entries are discarded when they reach the head.
+ */
+public class DeadlineMonitor implements TaskChangeListener {
+
+    private enum Stage { NONE, DUE_SOON, OVERDUE }
+
+    private static class Tracked {
+        final Task task;
+        final LocalDate dueDate;
+        final int generation;
+        Stage fired = Stage.NONE;
+
+        Tracked(Task task, LocalDate dueDate, int generation) {
+            this.task = task;
+            this.dueDate = dueDate;
+            this.generation = generation;
+        }
+    }
+
+    private static class Event {
+        final long fireAt;
+        final Stage stage;
+        final String taskId;
+        final int generation;
+
+        Event(long fireAt, Stage stage, String taskId, int generation) {
+            this.fireAt = fireAt;
+            this.stage = stage;
+            this.taskId = taskId;
+            this.generation = generation;
+        }
+    }
+
+    private final Clock clock;
+    private final PriorityQueue<Event> queue = new PriorityQueue<>(Comparator.comparingLong(e -> e.fireAt));
+    private final Map<String, Tracked> tracked = new HashMap<>();
+    private final Map<String, Task> dueSoon = new LinkedHashMap<>();
+    private final Map<String, Task> overdue = new LinkedHashMap<>();
+    private final List<DeadlineListener> listeners = new ArrayList<>();
+    private int nextGeneration;
+
+    public DeadlineMonitor() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public DeadlineMonitor(Clock clock) {
+        this.clock = clock;
+    }
+
+    public void addListener(DeadlineListener listener) {
+        listeners.add(listener);
+    }
+
+    public void trackAll(Collection<Task> tasks) {
+        for (Task t : tasks) track(t);
+    }
+
+    /**
+     * Fires callbacks for every threshold crossed since the last check.
+     * Runs in O(k log n) for k expired or stale entries.
+     */
+    public void check() {
+        long now = clock.millis();
+        while (!queue.isEmpty() && queue.peek().fireAt <= now) {
+            Event e = queue.poll();
+            Tracked t = tracked.get(e.taskId);
+            if (t == null || t.generation != e.generation) continue; // stale
+            if (t.fired.compareTo(e.stage) >= 0) continue;
+            t.fired = e.stage;
+            if (e.stage == Stage.DUE_SOON) {
+                dueSoon.put(e.taskId, t.task);
+                for (DeadlineListener l : listeners) l.dueSoon(t.task);
+            } else {
+                dueSoon.remove(e.taskId);
+                overdue.put(e.taskId, t.task);
+                for (DeadlineListener l : listeners) l.overdue(t.task);
+            }
+        }
+        // Drop stale entries once they dominate the queue, so it stays O(tracked).
+        if (queue.size() > 64 && queue.size() > 4 * tracked.size()) {
+            queue.removeIf(e -> {
+                Tracked t = tracked.get(e.taskId);
+                return t == null || t.generation != e.generation;
+            });
+        }
+    }
+
+    /** Tasks currently due within 24 hours, as of the last check. */
+    public List<Task> getDueSoon() {
+        return new ArrayList<>(dueSoon.values());
+    }
+
+    /** Tasks currently overdue, as of the last check. */
+    public List<Task> getOverdue() {
+        return new ArrayList<>(overdue.values());
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        track(task);
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        Tracked current = tracked.get(task.getId());
+        boolean active = task.getStatus() != Status.DONE && task.getDueDate() != null;
+        if (current != null && active && current.dueDate.equals(task.getDueDate())) return;
+        track(task);
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        untrack(task.getId());
+    }
+
+    private void track(Task task) {
+        untrack(task.getId());
+        LocalDate due = task.getDueDate();
+        if (due == null || task.getStatus() == Status.DONE) return;
+
+        int generation = nextGeneration++;
+        tracked.put(task.getId(), new Tracked(task, due, generation));
+        long dueSoonAt = due.atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        long overdueAt = due.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        // An already overdue task only reports as overdue.
+        if (overdueAt > clock.millis()) queue.add(new Event(dueSoonAt, Stage.DUE_SOON, task.getId(), generation));
+        queue.add(new Event(overdueAt, Stage.OVERDUE, task.getId(), generation));
+    }
+
+    private void untrack(String taskId) {
+        tracked.remove(taskId);
+        dueSoon.remove(taskId);
+        overdue.remove(taskId);
+    }
+}
@@ -0,0 +1,196 @@
+package taskmanager.services;
+
+import taskmanager.core.Person;
+import taskmanager.core.Status;
+import taskmanager.core.Task;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Assigns to the person with the lowest weighted workload.
+ *
+ * Each open task contributes a weight based on its status, Eisenhower quadrant and
+ * how close its due date is. Per-person totals live in an indexed min-heap that is
+ * updated in O(log n) whenever a task is added, reassigned, changed or completed,
+ * so choosing never rescans the tasks. Due-date proximity is evaluated when the
+ * task last changed.
+ *
+ * Assignees of tasks who are not among the people, e.g. people since removed from the
+ * list, stay in the heap flagged as not eligible and order after everyone eligible, so
+ * choosing reads the root. The flags are worked out again only when the number of
+ * people passed to choose() changes, i.e. someone was added.
+ */
+public class LoadBalancedAssignmentPolicy implements AssignmentPolicy, TaskChangeListener {
+
+    private static class Load {
+        Person person;
+        final int order;
+        boolean eligible;
+        double total;
+        int heapIndex;
+
+        Load(Person person, int order) {
+            this.person = person;
+            this.order = order;
+        }
+    }
+
+    private static class Contribution {
+        final String personId;
+        final double weight;
+
+        Contribution(String personId, double weight) {
+            this.personId = personId;
+            this.weight = weight;
+        }
+    }
+
+    private final Clock clock;
+    private final ArrayList<Load> heap = new ArrayList<>();
+    private final Map<String, Load> byPerson = new HashMap<>();
+    private final Map<String, Contribution> byTask = new HashMap<>();
+    private int eligibleFrom; // size of the people list the eligible flags were set from
+
+    public LoadBalancedAssignmentPolicy(Collection<Person> people, Collection<Task> tasks) {
+        this(people, tasks, Clock.systemDefaultZone());
+    }
+
+    public LoadBalancedAssignmentPolicy(Collection<Person> people, Collection<Task> tasks, Clock clock) {
+        this.clock = clock;
+        for (Person p : people) register(p, true);
+        eligibleFrom = people.size();
+        for (Task t : tasks) taskAdded(t);
+    }
+
+    @Override
+    public String getName() {
+        return "load";
+    }
+
+    @Override
+    public Person choose(List<Person> people) {
+        if (people.size() != eligibleFrom) markEligible(people);
+        return heap.get(0).person;
+    }
+
+    /** Current weighted workload of a person, 0 if unknown. */
+    public double getLoad(String personId) {
+        Load l = byPerson.get(personId);
+        return l == null ? 0 : l.total;
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        apply(task);
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        apply(task);
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        Contribution old = byTask.remove(task.getId());
+        if (old != null) adjust(old.personId, -old.weight);
+    }
+
+    private void apply(Task task) {
+        Contribution old = byTask.remove(task.getId());
+        if (old != null) adjust(old.personId, -old.weight);
+        double weight = weightOf(task);
+        if (weight <= 0) return;
+        register(task.getAssignee(), false); // only people passed in are eligible
+        byTask.put(task.getId(), new Contribution(task.getAssignee().getId(), weight));
+        adjust(task.getAssignee().getId(), weight);
+    }
+
+    double weightOf(Task task) {
+        double w;
+        if (task.getStatus() == Status.DONE) return 0;
+        else if (task.getStatus() == Status.IN_PROCESS) w = 1.5;
+        else w = 1.0;
+
+        String q = task.getEisenhower();
+        if ("I".equals(q)) w *= 2.0;
+        else if ("II".equals(q)) w *= 1.5;
+        else if ("III".equals(q)) w *= 1.25;
+
+        if (task.getDueDate() != null) {
+            long days = ChronoUnit.DAYS.between(LocalDate.now(clock), task.getDueDate());
+            if (days <= 3) w *= 1.5;
+            else if (days <= 7) w *= 1.2;
+        }
+        return w;
+    }
+
+    private Load register(Person p, boolean eligible) {
+        Load l = byPerson.get(p.getId());
+        if (l != null) return l;
+        l = new Load(p, byPerson.size());
+        l.eligible = eligible;
+        byPerson.put(p.getId(), l);
+        l.heapIndex = heap.size();
+        heap.add(l);
+        siftUp(l.heapIndex);
+        return l;
+    }
+
+    // Flags exactly the given people as eligible and restores the heap order.
+    private void markEligible(List<Person> people) {
+        for (Load l : heap) l.eligible = false;
+        for (Person p : people) {
+            Load l = register(p, true);
+            l.person = p;
+            l.eligible = true;
+        }
+        for (int i = heap.size() / 2 - 1; i >= 0; i--) siftDown(i);
+        eligibleFrom = people.size();
+    }
+
+    private void adjust(String personId, double delta) {
+        Load l = byPerson.get(personId);
+        if (l == null) return;
+        l.total = Math.max(0, l.total + delta);
+        if (delta < 0) siftUp(l.heapIndex);
+        else siftDown(l.heapIndex);
+    }
+
+    private boolean less(Load a, Load b) {
+        if (a.eligible != b.eligible) return a.eligible;
+        if (a.total != b.total) return a.total < b.total;
+        return a.order < b.order;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!less(heap.get(i), heap.get(parent))) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        int n = heap.size();
+        while (true) {
+            int left = 2 * i + 1, right = left + 1, smallest = i;
+            if (left < n && less(heap.get(left), heap.get(smallest))) smallest = left;
+            if (right < n && less(heap.get(right), heap.get(smallest))) smallest = right;
+            if (smallest == i) return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Load a = heap.get(i), b = heap.get(j);
+        heap.set(i, b);
+        heap.set(j, a);
+        a.heapIndex = j;
+        b.heapIndex = i;
+    }
+}
@@ -0,0 +1,212 @@
+package taskmanager.services;
+
+import taskmanager.core.Status;
+import taskmanager.core.Task;
+import taskmanager.services.query.PresortedTrees;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keeps every assignee's open tasks ordered by what they should work on next.
+ *
+ * The score multiplies a status weight (work in progress first), the Eisenhower
+ * quadrant and how close the due date is; ties go to the earlier due date. Each
+ * person has a sorted set that is updated in O(log n) when one of their tasks is
+ * added, changed, reassigned or removed, so top(k) only walks k entries. Due-date
+ * proximity depends on today's date, so the sets are rebuilt once when the day changes.
+ * For the same reason an index snapshot is only restored on the day it was scored.
+ */
+public class NextTaskQueue implements TaskChangeListener {
+
+    private static class Entry {
+        final Task task;
+        final String personId;
+        final double score;
+        final LocalDate dueDate;
+
+        Entry(Task task, double score) {
+            this.task = task;
+            this.personId = task.getAssignee().getId();
+            this.score = score;
+            this.dueDate = task.getDueDate();
+        }
+    }
+
+    // Highest score first, then earliest due date (undated last), then id.
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        int c = Double.compare(b.score, a.score);
+        if (c != 0) return c;
+        if (a.dueDate != b.dueDate) {
+            if (a.dueDate == null) return 1;
+            if (b.dueDate == null) return -1;
+            c = a.dueDate.compareTo(b.dueDate);
+            if (c != 0) return c;
+        }
+        return a.task.getId().compareTo(b.task.getId());
+    };
+
+    private final Clock clock;
+    private final Map<String, TreeSet<Entry>> byPerson = new HashMap<>();
+    private final Map<String, Entry> byTask = new HashMap<>();
+    private LocalDate scoredOn;
+
+    public NextTaskQueue(Collection<Task> tasks) {
+        this(tasks, Clock.systemDefaultZone());
+    }
+
+    public NextTaskQueue(Collection<Task> tasks, Clock clock) {
+        this.clock = clock;
+        this.scoredOn = LocalDate.now(clock);
+        for (Task t : tasks) apply(t);
+    }
+
+    private NextTaskQueue(Clock clock, LocalDate scoredOn) {
+        this.clock = clock;
+        this.scoredOn = scoredOn;
+    }
+
+    /**
+     * Writes the day the scores are for, then each person's queue in order as task ordinals and scores.
+     */
+    public void writeSnapshot(DataOutput out, ToIntFunction<Task> ordinal) throws IOException {
+        out.writeLong(scoredOn.toEpochDay());
+        out.writeInt(byPerson.size());
+        for (Map.Entry<String, TreeSet<Entry>> e : byPerson.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeInt(e.getValue().size());
+            for (Entry entry : e.getValue()) {
+                out.writeInt(ordinal.applyAsInt(entry.task));
+                out.writeDouble(entry.score);
+            }
+        }
+    }
+
+    /**
+     * Reads a queue written by writeSnapshot(), or returns null if it was scored on another
+     * day and has to be rebuilt anyway.
+     *
+     * @param tasks the tasks by the ordinals the snapshot was written with
+     * @throws IOException if the data is truncated, out of order or does not match the tasks
+     */
+    public static NextTaskQueue restore(DataInput in, Task[] tasks, Clock clock) throws IOException {
+        LocalDate scoredOn = LocalDate.ofEpochDay(in.readLong());
+        if (!scoredOn.equals(LocalDate.now(clock))) return null;
+        NextTaskQueue queue = new NextTaskQueue(clock, scoredOn);
+        int people = in.readInt();
+        try {
+            for (int p = 0; p < people; p++) {
+                String personId = in.readUTF();
+                int n = in.readInt();
+                List<Entry> entries = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    Entry e = new Entry(tasks[in.readInt()], in.readDouble());
+                    if (!e.personId.equals(personId)) throw new IOException("Task queued for the wrong person");
+                    entries.add(e);
+                    queue.byTask.put(e.task.getId(), e);
+                }
+                queue.byPerson.put(personId, PresortedTrees.treeSet(entries, ORDER));
+            }
+        } catch (IndexOutOfBoundsException | IllegalStateException e) {
+            throw new IOException("Damaged index snapshot: " + e.getMessage());
+        }
+        return queue;
+    }
+
+    /**
+     * Up to k of the person's open tasks, best first, leaving out those the filter rejects.
+     */
+    public List<Task> top(String personId, int k, Predicate<Task> skip) {
+        refreshIfNewDay();
+        List<Task> result = new ArrayList<>(Math.min(k, 64));
+        TreeSet<Entry> set = byPerson.get(personId);
+        if (set == null) return result;
+        for (Entry e : set) {
+            if (result.size() >= k) break;
+            if (!skip.test(e.task)) result.add(e.task);
+        }
+        return result;
+    }
+
+    /** Number of open tasks queued for a person. */
+    public int size(String personId) {
+        TreeSet<Entry> set = byPerson.get(personId);
+        return set == null ? 0 : set.size();
+    }
+
+    /** The score a task is ranked by, 0 for a finished task. */
+    public double scoreOf(Task task) {
+        return scoreOf(task, scoredOn);
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        apply(task);
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        apply(task);
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        unlink(task.getId());
+    }
+
+    private void apply(Task task) {
+        unlink(task.getId());
+        if (task.getStatus() == Status.DONE || task.getAssignee() == null) return;
+        Entry e = new Entry(task, scoreOf(task, scoredOn));
+        byTask.put(task.getId(), e);
+        byPerson.computeIfAbsent(e.personId, id -> new TreeSet<>(ORDER)).add(e);
+    }
+
+    private void unlink(String taskId) {
+        Entry old = byTask.remove(taskId);
+        if (old == null) return;
+        TreeSet<Entry> set = byPerson.get(old.personId);
+        set.remove(old);
+        if (set.isEmpty()) byPerson.remove(old.personId);
+    }
+
+    private void refreshIfNewDay() {
+        LocalDate today = LocalDate.now(clock);
+        if (today.equals(scoredOn)) return;
+        scoredOn = today;
+        List<Task> tasks = new ArrayList<>(byTask.size());
+        for (Entry e : byTask.values()) tasks.add(e.task);
+        byTask.clear();
+        byPerson.clear();
+        for (Task t : tasks) apply(t);
+    }
+
+    static double scoreOf(Task task, LocalDate today) {
+        double s;
+        if (task.getStatus() == Status.DONE) return 0;
+        else if (task.getStatus() == Status.IN_PROCESS) s = 1.5;
+        else s = 1.0;
+
+        String q = task.getEisenhower();
+        if ("I".equals(q)) s *= 4.0;
+        else if ("II".equals(q)) s *= 3.0;
+        else if ("III".equals(q)) s *= 2.0;
+
+        if (task.getDueDate() != null) {
+            long days = ChronoUnit.DAYS.between(today, task.getDueDate());
+            if (days < 0) s *= 3.0;
+            else if (days <= 1) s *= 2.5;
+            else if (days <= 3) s *= 2.0;
+            else if (days <= 7) s *= 1.5;
+            else if (days <= 14) s *= 1.2;
+        }
+        return s;
+    }
+}
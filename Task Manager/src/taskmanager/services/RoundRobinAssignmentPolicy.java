@@ -0,0 +1,24 @@
+package taskmanager.services;
+
+import taskmanager.core.Person;
+
+import java.util.List;
+
+/**
+ * Hands out people in list order, wrapping around at the end.
+ */
+public class RoundRobinAssignmentPolicy implements AssignmentPolicy {
+    private int next;
+
+    @Override
+    public String getName() {
+        return "round-robin";
+    }
+
+    @Override
+    public Person choose(List<Person> people) {
+        Person p = people.get(next % people.size());
+        next = (next + 1) % people.size();
+        return p;
+    }
+}
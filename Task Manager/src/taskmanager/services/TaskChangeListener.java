@@ -0,0 +1,15 @@
+package taskmanager.services;
+
+import taskmanager.core.Task;
+
+/**
+ * Notified by TaskService after every successful mutation, so derived
+ * structures can be kept up to date without rescanning the repository.
+ */
+public interface TaskChangeListener {
+    void taskAdded(Task task);
+
+    void taskUpdated(Task task);
+
+    void taskRemoved(Task task);
+}
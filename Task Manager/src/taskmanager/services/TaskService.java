@@ -1,29 +1,239 @@
 package taskmanager.services;
 
 import taskmanager.core.*;
+import taskmanager.data.DependencyRepository;
+import taskmanager.data.IndexSnapshotFile;
+import taskmanager.data.LoadProgress;
 import taskmanager.data.PersonRepository;
+import taskmanager.data.TaskBlockFile;
 import taskmanager.data.TaskRepository;
 import taskmanager.exceptions.InvalidDataException;
 import taskmanager.exceptions.NotFoundException;
-
+import taskmanager.exceptions.RepositoryException;
+import taskmanager.services.dependency.DependencyGraph;
+import taskmanager.services.history.TaskHistory;
+import taskmanager.services.history.UndoLog;
+import taskmanager.services.query.CompletionIndex;
+import taskmanager.services.query.DueDateIndex;
+import taskmanager.services.query.QueryCache;
+import taskmanager.services.query.QueryPlan;
+import taskmanager.services.query.QueryPlanner;
+import taskmanager.services.query.TaskQuery;
+import taskmanager.services.rules.Rule;
+import taskmanager.services.rules.RuleEngine;
+import taskmanager.services.transfer.ImportReport;
+import taskmanager.services.transfer.TaskExporter;
+import taskmanager.services.transfer.TaskImporter;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+/**
+ * Every public method is synchronized on the service, and so are the listeners it calls,
+ * which are not thread-safe themselves. Replication applies changes from a network
+ * thread through the same methods. Readers may return the live task list (readAll())
+ * or cached results shared between calls, so a caller on another thread that iterates
+ * one, or needs several calls to see the same state, holds the service's monitor
+ * while it does, as the console, PrimaryServer and FollowerClient do.
+ * The read-only flag is volatile and its accessors take no lock.
+ */
 public class TaskService
 {
 
     private final PersonRepository personRepo;
     private final TaskRepository taskRepo;
+    private final List<TaskChangeListener> listeners = new ArrayList<>();
+    private final DeadlineMonitor deadlines = new DeadlineMonitor();
+    private final DueDateIndex dueIndex;
+    private final QueryPlanner planner;
+    private final TaskHistory history;
+    private final UndoLog undoLog;
+    private final DependencyGraph dependencies;
+    private final QueryCache queryCache = new QueryCache(QUERY_CACHE_ENTRIES, QUERY_CACHE_TASKS);
+    private final RuleEngine ruleEngine = new RuleEngine();
+    private NextTaskQueue nextQueue;      // built on first use, see nextQueue()
+    private CompletionIndex completions;  // built on first use, see completions()
+    private final File indexFile;
+    private final String peopleStamp;
+    private IndexSnapshotFile snapshot;   // null once the tasks differ from it
+    private boolean tasksChanged;
+    private boolean indexRebuilt;
+    private AssignmentPolicy assignmentPolicy;
+    private volatile boolean readOnly;
+    private List<Task> storedTogether;    // tasks updated inside storeTogether(), written at its end
+
+    // A few full sorts of a million tasks fit, at 4-8 bytes per reference.
+    private static final int QUERY_CACHE_ENTRIES = 64;
+    private static final long QUERY_CACHE_TASKS = 4_000_000;
+
+    private static final String NEXT_QUEUE_SECTION = "next-queue";
+    private static final String COMPLETION_SECTION = "completion";
+
+    private interface SnapshotReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
 
     public TaskService(PersonRepository personRepo, TaskRepository taskRepo)
+    {
+        this(personRepo, taskRepo, null);
+    }
+
+    /**
+     * The next-task queue and the completion index are built on first use: restored from
+     * dir/indexes.snap if its stamp matches the data loaded and no task has changed since,
+     * and rebuilt from the tasks otherwise. Startup itself only compares the stamps.
+     *
+     * @param dir where history, undo, dependency and index snapshot files are kept; the working directory if null
+     */
+    public TaskService(PersonRepository personRepo, TaskRepository taskRepo, File dir)
+    {
+        this(personRepo, taskRepo, dir, new LoadProgress());
+    }
+
+    /**
+     * Like TaskService(personRepo, taskRepo, dir), naming each structure in progress as it is built.
+     */
+    public TaskService(PersonRepository personRepo, TaskRepository taskRepo, File dir, LoadProgress progress)
     {
         this.personRepo = personRepo;
         this.taskRepo = taskRepo;
+        progress.begin("tracking deadlines", 0);
+        deadlines.trackAll(taskRepo.getAll());
+        addListener(deadlines);
+        progress.begin("indexing due dates", 0);
+        this.dueIndex = new DueDateIndex(taskRepo.getAll());
+        addListener(dueIndex);
+        this.planner = new QueryPlanner(taskRepo, dueIndex);
+        progress.begin("replaying history", 0);
+        this.history = new TaskHistory(taskRepo.getAll(), new File(dir, "history.log"));
+        addListener(history);
+        progress.begin("loading undo log", 0);
+        this.undoLog = new UndoLog(taskRepo.getAll(), new File(dir, "undo.spill"));
+        addListener(undoLog);
+        progress.begin("loading dependencies", 0);
+        this.dependencies = new DependencyGraph(taskRepo.getAll(), new DependencyRepository(new File(dir, "dependencies.txt")));
+        addListener(dependencies);
+        addListener(queryCache);
+
+        this.indexFile = new File(dir, "indexes.snap");
+        this.peopleStamp = peopleStamp(personRepo.getPeople());
+        this.snapshot = IndexSnapshotFile.read(indexFile, taskRepo.dataStamp() + "|" + peopleStamp, taskRepo.inLoadOrder());
+        setAssignmentPolicy("load");
+    }
+
+    private NextTaskQueue nextQueue() {
+        if (nextQueue == null) {
+            nextQueue = restore(NEXT_QUEUE_SECTION, in -> NextTaskQueue.restore(in, snapshot.getTasks(), Clock.systemDefaultZone()));
+            if (nextQueue == null) {
+                nextQueue = new NextTaskQueue(taskRepo.getAll());
+                indexRebuilt = true;
+            }
+            addListener(nextQueue);
+        }
+        return nextQueue;
+    }
+
+    private CompletionIndex completions() {
+        if (completions == null) {
+            completions = restore(COMPLETION_SECTION, in -> CompletionIndex.restore(in, snapshot.getTasks(), peopleById(personRepo.getPeople())));
+            if (completions == null) {
+                completions = new CompletionIndex(personRepo.getPeople(), taskRepo.getAll());
+                indexRebuilt = true;
+            }
+            addListener(completions);
+        }
+        return completions;
+    }
+
+    // Null when there is no usable section; the caller then rebuilds.
+    private <T> T restore(String section, SnapshotReader<T> reader) {
+        DataInputStream in = snapshot == null ? null : snapshot.section(section);
+        if (in == null) return null;
+        try {
+            return reader.read(in);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Person> peopleById(Collection<Person> people) {
+        Map<String, Person> byId = new HashMap<>();
+        for (Person p : people) byId.put(p.getId(), p);
+        return byId;
+    }
+
+    // The completion index holds people's names, so a snapshot is only valid for the same people.
+    private static String peopleStamp(Collection<Person> people) {
+        long h = people.size();
+        for (Person p : people) h = 31 * (31 * h + p.getId().hashCode()) + p.getName().hashCode();
+        return "people:" + Long.toHexString(h);
+    }
+
+    public synchronized void addListener(TaskChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized void removeListener(TaskChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireAdded(Task task) {
+        tasksChanged = true;
+        snapshot = null;
+        for (TaskChangeListener l : listeners) l.taskAdded(task);
+    }
+
+    private void fireUpdated(Task task) {
+        tasksChanged = true;
+        snapshot = null;
+        for (TaskChangeListener l : listeners) l.taskUpdated(task);
+    }
+
+    /**
+     * Makes a change to a stored task holding the repository's lock, which timed syncs
+     * also take, so a sync never writes the task with only some of its fields changed.
+     */
+    private void edit(Runnable change) {
+        synchronized (taskRepo) {
+            change.run();
+        }
+    }
+
+    /**
+     * Stores a change already made to a task and tells the listeners. A failed write
+     * (e.g. a sync in ALWAYS mode, or a failed background sync in BATCHED mode) is thrown
+     * to the caller; the change stays in memory for the next sync to retry, so the
+     * listeners are told about it either way.
+     */
+    private void storeUpdate(Task task) {
+        if (storedTogether != null) {
+            storedTogether.add(task);
+            fireUpdated(task);
+            return;
+        }
+        try {
+            taskRepo.update(task);
+        } finally {
+            fireUpdated(task);
+        }
+    }
+
+    private void fireRemoved(Task task) {
+        tasksChanged = true;
+        snapshot = null;
+        for (TaskChangeListener l : listeners) l.taskRemoved(task);
     }
 
-    public Task createTask(String title, String description, Category category, String assigneeId, LocalDate dueDate, String eisenhower)
+    public synchronized Task createTask(String title, String description, Category category, String assigneeId, LocalDate dueDate, String eisenhower)
     {
+        checkWritable();
         Person assignee = null;
         if (assigneeId != null)
         {
@@ -39,14 +249,14 @@ public class TaskService
         String id = UUID.randomUUID().toString().substring(0, 8); // Simple ID generation
         Task task = new Task(id, title, description, category, Status.TO_DO, assignee, dueDate, eisenhower);
 
-        taskRepo.add(task);
-        // persist
-        try { taskRepo.saveAll(); } catch (Exception ignored) {}
+        taskRepo.add(task); // add() persists
+        fireAdded(task);
         return task;
     }
 
-    public Task createTaskShortcut(String shortcut)
+    public synchronized Task createTaskShortcut(String shortcut)
     {
+        checkWritable();
         if (shortcut == null || shortcut.isEmpty())
         {
             throw new InvalidDataException("Shortcut command is empty.");
@@ -95,41 +305,81 @@ public class TaskService
 
         String id = UUID.randomUUID().toString().substring(0, 8);
         
-        // Assign to first available person for shortcut or throw if empty
-        if (personRepo.getPeople().isEmpty()) {
-             throw new InvalidDataException("No people available to assign task to.");
-        }
-        Person defaultAssignee = personRepo.getPeople().get(0);
+        Person defaultAssignee = autoAssignee();
 
         Task task = new Task(id, title, category, defaultAssignee);
         taskRepo.add(task);
-        try { taskRepo.saveAll(); } catch (Exception ignored) {}
+        fireAdded(task);
         return task;
     }
 
+    /**
+     * Picks an assignee using the current assignment policy.
+     */
+    public synchronized Person autoAssignee() {
+        if (personRepo.getPeople().isEmpty()) {
+             throw new InvalidDataException("No people available to assign task to.");
+        }
+        return assignmentPolicy.choose(personRepo.getPeople());
+    }
+
+    /**
+     * Switches the policy used by autoAssignee(): "round-robin" (or "rr") or "load".
+     */
+    public synchronized void setAssignmentPolicy(String name) {
+        AssignmentPolicy next;
+        switch (name.toLowerCase()) {
+            case "round-robin":
+            case "rr":
+                next = new RoundRobinAssignmentPolicy();
+                break;
+            case "load":
+                next = new LoadBalancedAssignmentPolicy(personRepo.getPeople(), taskRepo.getAll());
+                break;
+            default:
+                throw new InvalidDataException("Unknown assignment policy: " + name + ". Use 'round-robin' or 'load'.");
+        }
+        if (assignmentPolicy instanceof TaskChangeListener) removeListener((TaskChangeListener) assignmentPolicy);
+        if (next instanceof TaskChangeListener) addListener((TaskChangeListener) next);
+        assignmentPolicy = next;
+    }
+
+    public synchronized String getAssignmentPolicyName() {
+        return assignmentPolicy.getName();
+    }
+
     // Expose people list for Console UI
-    public List<Person> listPeople() {
+    public synchronized List<Person> listPeople() {
         return Collections.unmodifiableList(personRepo.getPeople());
     }
 
-    public boolean personExists(String id) {
+    /**
+     * People whose name (or a word of it) starts with the prefix, at most limit of them.
+     */
+    public synchronized List<Person> findPeopleByName(String prefix, int limit) {
+        return personRepo.findByNamePrefix(prefix, limit);
+    }
+
+    public synchronized boolean personExists(String id) {
         return personRepo.exists(id);
     }
 
-    public List<Task> readAll() {return taskRepo.getAll();}
+    public synchronized List<Task> readAll() {return taskRepo.getAll();}
 
-    public List<Task> readByAssignee(String personId)
+    public synchronized List<Task> readByAssignee(String personId)
     {
         if (!personRepo.exists(personId))
         {
             throw new NotFoundException("Person with ID " + personId + " is not found.");
         }
 
-        return taskRepo.getByAssignee(personId);
+        return queryCache.get("read " + personId, t -> t.getAssignee() != null && t.getAssignee().getId().equals(personId),
+                () -> taskRepo.getByAssignee(personId));
     }
 
-    public Task updateTask(String id, String title, String description, Category category, String assigneeId, LocalDate dueDate, String eisenhower, Status status)
+    public synchronized Task updateTask(String id, String title, String description, Category category, String assigneeId, LocalDate dueDate, String eisenhower, Status status)
     {
+        checkWritable();
         Task task = taskRepo.findById(id);
         if (task == null)
         {
@@ -146,52 +396,284 @@ public class TaskService
             }
         }
 
-        task.setTitle(title);
-        task.setDescription(description);
-        task.setCategory(category);
-        task.assignPerson(assignee);
-        task.setDueDate(dueDate);
-        task.setEisenhower(eisenhower);
-        task.updateStatus(status);
+        // A setter that rejects its value must not leave the earlier fields changed
+        // without storeUpdate telling the listeners, so put them all back
+        TaskSnapshot before = TaskSnapshot.of(task);
+        Person previous = task.getAssignee();
+        Person newAssignee = assignee;
+        edit(() -> {
+            try
+            {
+                task.setTitle(title);
+                task.setDescription(description);
+                task.setCategory(category);
+                task.assignPerson(newAssignee);
+                task.setDueDate(dueDate);
+                task.setEisenhower(eisenhower);
+                task.updateStatus(status);
+            }
+            catch (IllegalArgumentException e)
+            {
+                task.restoreState(before, previous);
+                throw e;
+            }
+        });
 
-        try { taskRepo.saveAll(); } catch (Exception ignored) {}
+        storeUpdate(task);
         return task;
     }
 
-    public void deleteTask(String id)
+    public synchronized void deleteTask(String id)
     {
+        checkWritable();
+        Task task = taskRepo.findById(id);
         boolean result = taskRepo.delete(id);
         if (!result)
         {
             throw new NotFoundException("No task with ID " + id + " for deletion.");
         }
-        try { taskRepo.saveAll(); } catch (Exception ignored) {}
+        fireRemoved(task);
+    }
+
+    public synchronized List<Task> sortByDueDate()
+    {
+        return queryCache.get("sort due", QueryCache.ALL_TASKS, () -> sortByDueDate(taskRepo.getAll()));
+    }
+
+    public synchronized List<Task> sortByCategory()
+    {
+        return queryCache.get("sort cat", QueryCache.ALL_TASKS, () -> sortByCategory(taskRepo.getAll()));
+    }
+
+    public synchronized List<Task> sortByEisenhower()
+    {
+        return queryCache.get("sort eisenhower", QueryCache.ALL_TASKS, () -> sortByEisenhower(taskRepo.getAll()));
     }
 
-    public List<Task> sortByDueDate()
+    private static List<Task> sortByDueDate(List<Task> tasks)
     {
-        return taskRepo.getAll().stream().sorted(Comparator.comparing(Task::getDueDate, Comparator.nullsLast(Comparator.naturalOrder()))).collect(Collectors.toList());
+        return tasks.stream().sorted(Comparator.comparing(Task::getDueDate, Comparator.nullsLast(Comparator.naturalOrder()))).collect(Collectors.toList());
     }
 
-    public List<Task> sortByCategory()
+    private static List<Task> sortByCategory(List<Task> tasks)
     {
-        return taskRepo.getAll().stream().sorted(Comparator.comparing(Task::getCategory, Comparator.nullsLast(Comparator.naturalOrder()))).collect(Collectors.toList());
+        return tasks.stream().sorted(Comparator.comparing(Task::getCategory, Comparator.nullsLast(Comparator.naturalOrder()))).collect(Collectors.toList());
     }
 
-    public List<Task> sortByEisenhower()
+    private static List<Task> sortByEisenhower(List<Task> tasks)
     {
         Map<String, Integer> priority = Map.of("I",   1, "II",  2, "III", 3, "IV",  4);
-        return taskRepo.getAll().stream().sorted(Comparator.comparing(t -> priority.getOrDefault(t.getEisenhower(), 99))).collect(Collectors.toList());
+        // Map.of rejects a null key, so tasks without a quadrant are ranked before the lookup
+        return tasks.stream().sorted(Comparator.comparing(t -> t.getEisenhower() == null ? 99 : priority.getOrDefault(t.getEisenhower(), 99))).collect(Collectors.toList());
+    }
+
+    // Time-travel reads over the task history
+
+    public synchronized List<Task> readAllAsOf(Instant when)
+    {
+        return tasksAsOf(when);
+    }
+
+    public synchronized List<Task> readByAssigneeAsOf(Instant when, String personId)
+    {
+        if (!personRepo.exists(personId))
+        {
+            throw new NotFoundException("Person with ID " + personId + " is not found.");
+        }
+        return tasksAsOf(when).stream().filter(t -> t.getAssignee().getId().equals(personId)).collect(Collectors.toList());
+    }
+
+    public synchronized List<Task> sortByDueDateAsOf(Instant when) { return sortByDueDate(tasksAsOf(when)); }
+
+    public synchronized List<Task> sortByCategoryAsOf(Instant when) { return sortByCategory(tasksAsOf(when)); }
+
+    public synchronized List<Task> sortByEisenhowerAsOf(Instant when) { return sortByEisenhower(tasksAsOf(when)); }
+
+    /**
+     * Time of the first recorded change, or null if the history is empty.
+     */
+    public synchronized Instant historyStart()
+    {
+        Long ts = history.getEarliestTimestamp();
+        return ts == null ? null : Instant.ofEpochMilli(ts);
+    }
+
+    private List<Task> tasksAsOf(Instant when)
+    {
+        List<TaskSnapshot> snapshots = history.asOf(when.toEpochMilli());
+        Set<String> ids = new HashSet<>();
+        for (TaskSnapshot s : snapshots) ids.add(s.getAssigneeId());
+        Map<String, Person> people = personRepo.findAllById(ids);
+        List<Task> result = new ArrayList<>(snapshots.size());
+        for (TaskSnapshot s : snapshots) {
+            Person p = people.get(s.getAssigneeId());
+            result.add(s.toTask(p != null ? p : new Person(s.getAssigneeId(), "(unknown)")));
+        }
+        return result;
+    }
+
+    public synchronized void close()
+    {
+        history.close();
+        undoLog.close();
+        dependencies.close();
+        saveIndexSnapshot();
+    }
+
+    /**
+     * Saves the derived indexes for the next startup if the file no longer matches them.
+     * An index that was never built is carried over from the old file while the tasks are
+     * unchanged, and left out otherwise, to be rebuilt when it is next used.
+     * The tasks are flushed first, so the stamp describes what the next load will read.
+     * The people stamp is the one taken at startup: people added since are not in the
+     * completion index, and a different stamp makes the next startup rebuild it with them.
+     */
+    private void saveIndexSnapshot() {
+        if (!tasksChanged && !indexRebuilt) return;
+        try {
+            taskRepo.flush();
+            Map<String, IndexSnapshotFile.SectionWriter> sections = new LinkedHashMap<>();
+            section(sections, NEXT_QUEUE_SECTION, nextQueue == null ? null : nextQueue::writeSnapshot);
+            section(sections, COMPLETION_SECTION, completions == null ? null : completions::writeSnapshot);
+            IndexSnapshotFile.write(indexFile, taskRepo.dataStamp() + "|" + peopleStamp, taskRepo.inLoadOrder(), sections);
+            tasksChanged = false;
+            indexRebuilt = false;
+        } catch (RepositoryException e) {
+            // only costs a rebuild at the next startup
+            System.err.println("Index snapshot not saved: " + e.getMessage());
+        }
+    }
+
+    private void section(Map<String, IndexSnapshotFile.SectionWriter> sections, String name, IndexSnapshotFile.SectionWriter built) {
+        byte[] old = built == null && snapshot != null ? snapshot.payload(name) : null;
+        if (built != null) sections.put(name, built);
+        else if (old != null) sections.put(name, (out, ordinal) -> out.write(old));
+    }
+
+    // Undo/redo
+
+    /**
+     * Reverts the most recent change and returns a description of it.
+     */
+    public synchronized String undo()
+    {
+        checkWritable();
+        UndoLog.Entry e = undoLog.undo(undoApplier);
+        if (e == null) throw new NotFoundException("Nothing to undo.");
+        return "Undid " + e.describe();
+    }
+
+    public synchronized String redo()
+    {
+        checkWritable();
+        UndoLog.Entry e = undoLog.redo(undoApplier);
+        if (e == null) throw new NotFoundException("Nothing to redo.");
+        return "Redid " + e.describe();
+    }
+
+    // Batches, such as a sweep, are undone and redone as one change, as they were made.
+    private final UndoLog.Applier undoApplier = new UndoLog.Applier() {
+        @Override
+        public void apply(TaskSnapshot from, TaskSnapshot to) {
+            applySnapshot(from, to);
+        }
+
+        @Override
+        public void applyAll(Runnable parts) {
+            storeTogether(parts);
+        }
+    };
+
+    // Moves a single task from state "from" to state "to" (null meaning absent).
+    private void applySnapshot(TaskSnapshot from, TaskSnapshot to)
+    {
+        if (to == null)
+        {
+            deleteTask(from.getId());
+            return;
+        }
+        Person assignee = personRepo.findById(to.getAssigneeId());
+        if (assignee == null)
+        {
+            throw new NotFoundException("Person with ID " + to.getAssigneeId() + " doesn't exist.");
+        }
+        if (from == null)
+        {
+            Task task = to.toTask(assignee);
+            taskRepo.add(task);
+            fireAdded(task);
+            dependencies.restoreEdges(task.getId()); // a deletion being undone
+            return;
+        }
+        Task task = taskRepo.findById(to.getId());
+        if (task == null)
+        {
+            throw new NotFoundException("Task with ID " + to.getId() + " is not found.");
+        }
+        edit(() -> task.restoreState(to, assignee));
+        storeUpdate(task);
+    }
+
+    /**
+     * Tasks and people whose id, title or name (or a word of it) starts with the prefix.
+     */
+    public synchronized List<CompletionIndex.Match> complete(String prefix, int k) {
+        return completions().complete(prefix, k);
+    }
+
+    /**
+     * Up to k tasks whose id, title or a title word starts with the prefix.
+     */
+    public synchronized List<Task> completeTasks(String prefix, int k) {
+        return completions().completeTasks(prefix, k);
+    }
+
+    /**
+     * The id of the task named by an exact id or by a prefix that matches exactly one task.
+     */
+    public synchronized String resolveTaskId(String idOrPrefix) {
+        if (taskRepo.findById(idOrPrefix) != null) return idOrPrefix;
+        List<Task> matches = completions().completeTasks(idOrPrefix, 6);
+        if (matches.isEmpty()) throw new NotFoundException("No task matches '" + idOrPrefix + "'.");
+        if (matches.size() > 1) {
+            StringBuilder sb = new StringBuilder("'" + idOrPrefix + "' matches several tasks:");
+            for (int i = 0; i < Math.min(5, matches.size()); i++) {
+                sb.append("\n  ").append(matches.get(i).getId()).append("  ").append(matches.get(i).getTitle());
+            }
+            if (matches.size() > 5) sb.append("\n  ...");
+            throw new InvalidDataException(sb.toString());
+        }
+        return matches.get(0).getId();
     }
 
-    public List<Task> search(String keyword)
+    public synchronized List<Task> search(String keyword)
     {
         if (keyword == null || keyword.isEmpty()) {return readAll();}
         String lower = keyword.toLowerCase();
-        return taskRepo.getAll().stream().filter(t -> t.getTitle().toLowerCase().contains(lower) || t.getDescription().toLowerCase().contains(lower)).collect(Collectors.toList());
+        Predicate<Task> matches = t -> t.getTitle().toLowerCase().contains(lower) || t.getDescription().toLowerCase().contains(lower);
+        return queryCache.get("search " + lower, matches, () -> taskRepo.getAll().stream().filter(matches).collect(Collectors.toList()));
+    }
+
+    /**
+     * Runs a query through the cost-based planner.
+     */
+    public synchronized List<Task> find(TaskQuery query) {
+        return queryCache.get(query.toString(), TaskQuery.compile(query.getConditions()), () -> planner.execute(planner.plan(query)));
+    }
+
+    /**
+     * Hit and miss counts of the cache behind sort, read by person, search and find.
+     */
+    public synchronized String queryCacheStats() {
+        return queryCache.stats();
+    }
+
+    public synchronized QueryPlan explain(TaskQuery query) {
+        return planner.plan(query);
     }
 
-    public boolean updateStatus(String id, Status status) {
+    public synchronized boolean updateStatus(String id, Status status) {
+        checkWritable();
         Task task = taskRepo.findById(id);
         if (task == null) throw new NotFoundException("Task with ID " + id + " is not found.");
 
@@ -201,54 +683,241 @@ public class TaskService
             return true;
         }
 
-        task.updateStatus(status);
-        try { taskRepo.saveAll(); } catch (Exception ignored) {}
+        edit(() -> task.updateStatus(status));
+        storeUpdate(task);
         return false;
     }
 
-    public void updateDueDate(String id, LocalDate date) {
+    public synchronized void updateDueDate(String id, LocalDate date) {
+        checkWritable();
         Task task = taskRepo.findById(id);
         if (task == null) throw new NotFoundException("Task with ID " + id + " is not found.");
-        task.setDueDate(date);
-        try { taskRepo.saveAll(); } catch (Exception ignored) {}
+        edit(() -> task.setDueDate(date));
+        storeUpdate(task);
     }
 
-    public void updateEisenhower(String id, String eisenhower) {
+    public synchronized void updateEisenhower(String id, String eisenhower) {
+        checkWritable();
         Task task = taskRepo.findById(id);
         if (task == null) throw new NotFoundException("Task with ID " + id + " is not found.");
-        task.setEisenhower(eisenhower);
-        try { taskRepo.saveAll(); } catch (Exception ignored) {}
+        edit(() -> task.setEisenhower(eisenhower));
+        storeUpdate(task);
     }
 
-    public void updateTitle(String id, String title) {
+    public synchronized void updateTitle(String id, String title) {
+        checkWritable();
         Task task = taskRepo.findById(id);
         if (task == null) throw new NotFoundException("Task with ID " + id + " is not found.");
-        task.setTitle(title);
-        try { taskRepo.saveAll(); } catch (Exception ignored) {}
+        edit(() -> task.setTitle(title));
+        storeUpdate(task);
     }
 
-    public void updateDescription(String id, String description) {
+    public synchronized void updateDescription(String id, String description) {
+        checkWritable();
         Task task = taskRepo.findById(id);
         if (task == null) throw new NotFoundException("Task with ID " + id + " is not found.");
-        task.setDescription(description);
-        try { taskRepo.saveAll(); } catch (Exception ignored) {}
+        edit(() -> task.setDescription(description));
+        storeUpdate(task);
     }
 
-    public void updateCategory(String id, Category category) {
+    public synchronized void updateCategory(String id, Category category) {
+        checkWritable();
         Task task = taskRepo.findById(id);
         if (task == null) throw new NotFoundException("Task with ID " + id + " is not found.");
-        task.setCategory(category);
-        try { taskRepo.saveAll(); } catch (Exception ignored) {}
+        edit(() -> task.setCategory(category));
+        storeUpdate(task);
     }
 
-    public void updateAssignee(String id, String assigneeId) {
+    public synchronized void updateAssignee(String id, String assigneeId) {
+        checkWritable();
         Task task = taskRepo.findById(id);
         if (task == null) throw new NotFoundException("Task with ID " + id + " is not found.");
         
         Person assignee = personRepo.findById(assigneeId);
         if (assignee == null) throw new NotFoundException("Person with ID " + assigneeId + " doesn't exist.");
         
-        task.assignPerson(assignee);
-        try { taskRepo.saveAll(); } catch (Exception ignored) {}
+        edit(() -> task.assignPerson(assignee));
+        storeUpdate(task);
+    }
+
+    /**
+     * Runs rules over every task. Without apply nothing changes and the result is the diff;
+     * with apply the changes are made as one: one write, one history commit and one undo
+     * entry, so a single undo reverts the whole sweep.
+     */
+    public synchronized RuleEngine.Result sweep(List<Rule> rules, boolean apply) {
+        if (apply) checkWritable();
+        RuleEngine.Result result = ruleEngine.evaluate(taskRepo.getAll(), rules, personRepo::findById);
+        if (!apply) return result;
+        undoLog.beginBatch("sweep");
+        try {
+            storeTogether(() -> {
+                for (RuleEngine.Change c : result.getChanges()) {
+                    edit(c::apply);
+                    storeUpdate(c.getTask());
+                }
+            });
+        } finally {
+            undoLog.endBatch();
+        }
+        return result;
+    }
+
+    /**
+     * Runs a change to many tasks as one: the tasks it updates are stored with a single
+     * write at the end, and history records them as one commit.
+     */
+    private void storeTogether(Runnable change) {
+        storedTogether = new ArrayList<>();
+        history.beginBatch();
+        try {
+            change.run();
+        } finally {
+            List<Task> changed = storedTogether;
+            storedTogether = null;
+            history.endBatch();
+            taskRepo.updateAll(changed);
+        }
+    }
+
+    // Dependencies
+
+    /**
+     * Records that blockerId has to be done before blockedId can start.
+     */
+    public synchronized void addDependency(String blockerId, String blockedId) {
+        checkWritable();
+        dependencies.addEdge(blockerId, blockedId);
+    }
+
+    public synchronized void removeDependency(String blockerId, String blockedId) {
+        checkWritable();
+        dependencies.removeEdge(blockerId, blockedId);
+    }
+
+    public synchronized List<Task> getBlockers(String id) {
+        return dependencies.blockersOf(id);
+    }
+
+    public synchronized List<Task> getDependents(String id) {
+        return dependencies.dependentsOf(id);
+    }
+
+    public synchronized List<Task> getReadyTasks() {
+        return dependencies.readyTasks();
+    }
+
+    public synchronized List<Task> getBlockedTasks() {
+        return dependencies.blockedTasks();
+    }
+
+    public synchronized List<DependencyGraph.PathStep> getCriticalPath() {
+        return dependencies.criticalPath(LocalDate.now());
+    }
+
+    /**
+     * The k open tasks the person should pick up next, best first. Tasks still
+     * waiting on an open blocker are left out.
+     */
+    public synchronized List<Task> nextFor(String personId, int k) {
+        if (!personRepo.exists(personId)) throw new NotFoundException("Person with ID " + personId + " is not found.");
+        if (k < 1) throw new InvalidDataException("The number of tasks must be at least 1.");
+        return nextQueue().top(personId, k, t -> dependencies.isBlocked(t.getId()));
+    }
+
+    public synchronized double priorityScore(Task task) {
+        return nextQueue().scoreOf(task);
+    }
+
+    /**
+     * Verifies the block checksums of a task data file, or of this repository's file if path is empty.
+     */
+    public synchronized TaskBlockFile.Report verifyStorage(String path) {
+        if (path == null || path.isEmpty()) return taskRepo.verifyStorage();
+        File file = new File(path);
+        if (!file.isFile()) throw new NotFoundException("File " + path + " is not found.");
+        return TaskBlockFile.verify(file);
+    }
+
+    /**
+     * Adds the tasks in a CSV or JSON file, batch by batch. Rejected records are listed in the report.
+     *
+     * @param format "csv", "json", or empty to go by the file extension
+     */
+    public synchronized ImportReport importTasks(String path, String format) {
+        checkWritable();
+        File file = new File(path);
+        if (!file.isFile()) throw new NotFoundException("File " + path + " is not found.");
+        TaskImporter importer = new TaskImporter(personRepo::findById, taskRepo.getAll(), batch -> {
+            taskRepo.addAll(batch);
+            for (Task t : batch) fireAdded(t);
+        });
+        return importer.run(file, format);
+    }
+
+    /**
+     * Writes every task to a CSV or JSON file and returns how many were written.
+     */
+    public synchronized long exportTasks(String path, String format) {
+        return TaskExporter.export(taskRepo.getAll(), new File(path), format);
+    }
+
+    // Replication
+
+    /**
+     * A read-only service (a replication follower) rejects every mutation except
+     * the replicated ones below.
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    private void checkWritable() {
+        if (readOnly) throw new InvalidDataException("This node is a read-only follower; make changes on the primary.");
+    }
+
+    /**
+     * Inserts or overwrites a task received from the primary.
+     */
+    public synchronized void applyReplicated(Task task) {
+        Task existing = taskRepo.findById(task.getId());
+        if (existing == null) {
+            taskRepo.add(task);
+            fireAdded(task);
+            return;
+        }
+        edit(() -> existing.restoreState(TaskSnapshot.of(task), task.getAssignee()));
+        storeUpdate(existing);
+    }
+
+    /**
+     * Removes a task deleted on the primary; does nothing if it is already gone.
+     */
+    public synchronized void applyReplicatedRemove(String id) {
+        Task task = taskRepo.findById(id);
+        if (task != null && taskRepo.delete(id)) fireRemoved(task);
+    }
+
+    /**
+     * Fires due-soon/overdue callbacks for thresholds crossed since the last check.
+     */
+    public synchronized void checkDeadlines() {
+        deadlines.check();
+    }
+
+    public synchronized void addDeadlineListener(DeadlineListener listener) {
+        deadlines.addListener(listener);
+    }
+
+    public synchronized List<Task> getOverdueTasks() {
+        return deadlines.getOverdue();
+    }
+
+    public synchronized List<Task> getDueSoonTasks() {
+        return deadlines.getDueSoon();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,494 @@
+package taskmanager.services.dependency;
+
+import taskmanager.core.Status;
+import taskmanager.core.Task;
+import taskmanager.data.DependencyRepository;
+import taskmanager.exceptions.InvalidDataException;
+import taskmanager.exceptions.NotFoundException;
+import taskmanager.services.TaskChangeListener;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * "A blocks B" edges between tasks, kept acyclic and in topological order.
+ *
+ * Each task id maps to a dense node number. Edges are adjacency arrays in both
+ * directions; every node keeps a count of its open (not DONE) blockers, and the ready
+ * and blocked sets are bit sets updated whenever a count or a status changes.
+ *
+ * The topological order is maintained incrementally (Pearce-Kelly): inserting x -> y
+ * only does work when y currently comes before x, and then only searches the nodes
+ * between the two positions, forward from y and backward from x. Reaching x from y
+ * means the edge would close a cycle, and it is rejected.
+ *
+ * Removing a task removes its edges, but they are remembered for the session so that
+ * undoing the deletion (or completion) can put them back with restoreEdges().
+ */
+public class DependencyGraph implements TaskChangeListener {
+
+    /**
+     * One task on the critical path.
+     */
+    public static class PathStep {
+        private final Task task;
+        private final LocalDate earliestFinish;
+        private final Long slackDays; // null when no due date constrains the task
+
+        PathStep(Task task, LocalDate earliestFinish, Long slackDays) {
+            this.task = task;
+            this.earliestFinish = earliestFinish;
+            this.slackDays = slackDays;
+        }
+
+        public Task getTask() { return task; }
+        public LocalDate getEarliestFinish() { return earliestFinish; }
+        public Long getSlackDays() { return slackDays; }
+    }
+
+    private static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final DependencyRepository repo;
+    private final Map<String, Integer> nodes = new HashMap<>();
+    private final Set<Long> edges = new HashSet<>();
+    private final Map<String, List<String[]>> detached = new HashMap<>(); // removed task id -> its edges
+    private final BitSet ready = new BitSet();
+    private final BitSet blocked = new BitSet();
+    private String[] ids = new String[16];
+    private Task[] tasks = new Task[16];      // null once the task is deleted
+    private boolean[] open = new boolean[16]; // live and not DONE
+    private int[][] out = new int[16][];
+    private int[][] in = new int[16][];
+    private int[] outSize = new int[16];
+    private int[] inSize = new int[16];
+    private int[] openBlockers = new int[16];
+    private int[] ord = new int[16];          // node -> position in the topological order
+    private int[] nodeAt = new int[16];       // position -> node
+    private int[] mark = new int[16];
+    private int[] parent = new int[16];
+    private int markEpoch;
+    private int nodeCount;
+
+    /**
+     * Builds the graph from the stored edges and sorts it once. Edges naming a task that
+     * no longer exists, or closing a cycle (e.g. after a hand edit), are dropped and the
+     * file is rewritten.
+     */
+    public DependencyGraph(Collection<Task> tasks, DependencyRepository repo) {
+        this.repo = repo;
+        for (Task t : tasks) {
+            int n = node(t.getId());
+            this.tasks[n] = t;
+            setOpen(n, t.getStatus() != Status.DONE);
+        }
+        List<String[]> stored = repo.load();
+        List<int[]> valid = new ArrayList<>(stored.size());
+        for (String[] e : stored) {
+            Integer x = nodes.get(e[0]), y = nodes.get(e[1]);
+            if (x != null && y != null && !x.equals(y) && edges.add(key(x, y))) valid.add(new int[]{x, y});
+        }
+        edges.clear();
+        for (int[] e : valid) link(e[0], e[1]);
+        if (!sortAll()) {
+            // Only a hand-edited file gets here: insert one by one and drop what closes a cycle
+            for (int[] e : valid) unlink(e[0], e[1]);
+            for (int n = 0; n < nodeCount; n++) place(n, n);
+            List<int[]> kept = new ArrayList<>();
+            for (int[] e : valid) {
+                if (reorder(e[0], e[1]) == null) {
+                    link(e[0], e[1]);
+                    kept.add(e);
+                }
+            }
+            valid = kept;
+        }
+        if (valid.size() != stored.size()) repo.saveAll(edgeList());
+    }
+
+    /**
+     * Orders all nodes at once (Kahn's algorithm). Returns false, leaving the order
+     * unchanged, if there is a cycle.
+     */
+    private boolean sortAll() {
+        int[] indegree = new int[nodeCount];
+        int[] order = new int[nodeCount]; // doubles as the queue: [head, k) is pending
+        int k = 0;
+        for (int n = 0; n < nodeCount; n++) {
+            indegree[n] = inSize[n];
+            if (indegree[n] == 0) order[k++] = n;
+        }
+        for (int head = 0; head < k; head++) {
+            int n = order[head];
+            for (int i = 0; i < outSize[n]; i++) {
+                if (--indegree[out[n][i]] == 0) order[k++] = out[n][i];
+            }
+        }
+        if (k < nodeCount) return false;
+        for (int p = 0; p < nodeCount; p++) place(order[p], p);
+        return true;
+    }
+
+    public int edgeCount() {
+        return edges.size();
+    }
+
+    /**
+     * Records that blocker must be done before blocked can start.
+     *
+     * @throws InvalidDataException if the edge exists, is a self-loop, or would close a cycle
+     */
+    public void addEdge(String blockerId, String blockedId) {
+        int x = liveNode(blockerId), y = liveNode(blockedId);
+        if (x == y) throw new InvalidDataException("A task cannot block itself.");
+        if (edges.contains(key(x, y))) throw new InvalidDataException("Task " + blockerId + " already blocks " + blockedId + ".");
+        List<Integer> cycle = reorder(x, y);
+        if (cycle != null) {
+            StringBuilder sb = new StringBuilder(blockerId);
+            for (int n : cycle) sb.append(" -> ").append(ids[n]);
+            throw new InvalidDataException("That dependency would create a cycle: " + sb.append(" -> ").append(blockerId));
+        }
+        link(x, y);
+        repo.add(blockerId, blockedId);
+    }
+
+    public void removeEdge(String blockerId, String blockedId) {
+        Integer x = nodes.get(blockerId), y = nodes.get(blockedId);
+        if (x == null || y == null || !edges.contains(key(x, y))) {
+            throw new NotFoundException("Task " + blockerId + " does not block " + blockedId + ".");
+        }
+        unlink(x, y);
+        repo.remove(blockerId, blockedId);
+    }
+
+    public List<Task> blockersOf(String id) {
+        int n = liveNode(id);
+        return tasksOf(in[n], inSize[n]);
+    }
+
+    public List<Task> dependentsOf(String id) {
+        int n = liveNode(id);
+        return tasksOf(out[n], outSize[n]);
+    }
+
+    /**
+     * Whether the task is open and waits on at least one open blocker.
+     */
+    public boolean isBlocked(String id) {
+        Integer n = nodes.get(id);
+        return n != null && blocked.get(n);
+    }
+
+    /**
+     * Open tasks with no open blockers.
+     */
+    public List<Task> readyTasks() {
+        List<Task> result = new ArrayList<>(ready.cardinality());
+        for (int n = ready.nextSetBit(0); n >= 0; n = ready.nextSetBit(n + 1)) result.add(tasks[n]);
+        return result;
+    }
+
+    /**
+     * Open tasks waiting on at least one open blocker, in topological order.
+     */
+    public List<Task> blockedTasks() {
+        List<Integer> list = new ArrayList<>(blocked.cardinality());
+        for (int n = blocked.nextSetBit(0); n >= 0; n = blocked.nextSetBit(n + 1)) list.add(n);
+        list.sort(Comparator.comparingInt(n -> ord[n]));
+        List<Task> result = new ArrayList<>(list.size());
+        for (int n : list) result.add(tasks[n]);
+        return result;
+    }
+
+    /**
+     * The chain of open tasks with the least slack, assuming each task takes one day
+     * and work starts today. A task's latest finish is the earlier of its due date and
+     * the day before its dependents must finish; slack is latest minus earliest finish.
+     * Without any due dates this is simply the longest chain. One pass each way over the
+     * maintained topological order, O(tasks + edges).
+     */
+    public List<PathStep> criticalPath(LocalDate today) {
+        int[] ef = new int[nodeCount];
+        long[] lf = new long[nodeCount];
+        for (int p = 0; p < nodeCount; p++) {
+            int n = nodeAt[p];
+            if (!open[n]) continue;
+            int e = 1;
+            for (int i = 0; i < inSize[n]; i++) {
+                int b = in[n][i];
+                if (open[b]) e = Math.max(e, ef[b] + 1);
+            }
+            ef[n] = e;
+        }
+        for (int p = nodeCount - 1; p >= 0; p--) {
+            int n = nodeAt[p];
+            if (!open[n]) continue;
+            LocalDate due = tasks[n].getDueDate();
+            long l = due == null ? UNBOUNDED : ChronoUnit.DAYS.between(today, due) + 1;
+            for (int i = 0; i < outSize[n]; i++) {
+                int d = out[n][i];
+                if (open[d] && lf[d] != UNBOUNDED) l = Math.min(l, lf[d] - 1);
+            }
+            lf[n] = l;
+        }
+
+        int end = -1;
+        for (int n = 0; n < nodeCount; n++) {
+            if (open[n] && (end < 0 || isMoreCritical(n, end, ef, lf))) end = n;
+        }
+        if (end < 0) return new ArrayList<>();
+        LinkedList<PathStep> path = new LinkedList<>();
+        for (int cur = end; cur >= 0; ) {
+            Long slack = lf[cur] == UNBOUNDED ? null : lf[cur] - ef[cur];
+            path.addFirst(new PathStep(tasks[cur], today.plusDays(ef[cur] - 1), slack));
+            int prev = -1;
+            for (int i = 0; i < inSize[cur]; i++) {
+                int b = in[cur][i];
+                if (open[b] && ef[b] == ef[cur] - 1 && (prev < 0 || slackOf(b, ef, lf) < slackOf(prev, ef, lf))) prev = b;
+            }
+            cur = prev;
+        }
+        return new ArrayList<>(path);
+    }
+
+    // Less slack wins; on equal slack the later finish (the end of the chain) wins.
+    private boolean isMoreCritical(int a, int b, int[] ef, long[] lf) {
+        long sa = slackOf(a, ef, lf), sb = slackOf(b, ef, lf);
+        return sa != sb ? sa < sb : ef[a] > ef[b];
+    }
+
+    private static long slackOf(int n, int[] ef, long[] lf) {
+        return lf[n] == UNBOUNDED ? UNBOUNDED : lf[n] - ef[n];
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        int n = node(task.getId());
+        tasks[n] = task;
+        setOpen(n, task.getStatus() != Status.DONE);
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        taskAdded(task);
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        Integer n = nodes.get(task.getId());
+        if (n == null) return;
+        setOpen(n, false);
+        List<String[]> removed = new ArrayList<>();
+        while (inSize[n] > 0) {
+            int b = in[n][inSize[n] - 1];
+            unlink(b, n);
+            repo.remove(ids[b], ids[n]);
+            removed.add(new String[]{ids[b], ids[n]});
+        }
+        while (outSize[n] > 0) {
+            int d = out[n][outSize[n] - 1];
+            unlink(n, d);
+            repo.remove(ids[n], ids[d]);
+            removed.add(new String[]{ids[n], ids[d]});
+        }
+        tasks[n] = null;
+        if (!removed.isEmpty()) detached.put(task.getId(), removed);
+    }
+
+    /**
+     * Puts back the edges a task had when it was removed, for undo after the task itself
+     * is back. Edges whose other task is gone, or that would now close a cycle, stay
+     * removed. Returns how many were restored.
+     */
+    public int restoreEdges(String id) {
+        List<String[]> removed = detached.remove(id);
+        if (removed == null) return 0;
+        int restored = 0;
+        for (String[] e : removed) {
+            Integer x = nodes.get(e[0]), y = nodes.get(e[1]);
+            if (x == null || y == null || tasks[x] == null || tasks[y] == null || edges.contains(key(x, y))) continue;
+            if (reorder(x, y) != null) continue;
+            link(x, y);
+            repo.add(e[0], e[1]);
+            restored++;
+        }
+        return restored;
+    }
+
+    public void close() {
+        repo.close();
+    }
+
+    /**
+     * Makes ord[x] < ord[y] if needed, moving only the nodes in between that have to move.
+     * Returns null on success, or the nodes y .. (last before x) if y already reaches x.
+     */
+    private List<Integer> reorder(int x, int y) {
+        int lb = ord[y], ub = ord[x];
+        if (lb > ub) return null;
+
+        int forwardMark = ++markEpoch;
+        List<Integer> forward = new ArrayList<>();
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        mark[y] = forwardMark;
+        parent[y] = -1;
+        stack.push(y);
+        while (!stack.isEmpty()) {
+            int n = stack.pop();
+            forward.add(n);
+            for (int i = 0; i < outSize[n]; i++) {
+                int w = out[n][i];
+                if (w == x) {
+                    LinkedList<Integer> cycle = new LinkedList<>();
+                    for (int c = n; c >= 0; c = parent[c]) cycle.addFirst(c);
+                    return cycle;
+                }
+                if (mark[w] != forwardMark && ord[w] < ub) {
+                    mark[w] = forwardMark;
+                    parent[w] = n;
+                    stack.push(w);
+                }
+            }
+        }
+
+        int backwardMark = ++markEpoch;
+        List<Integer> backward = new ArrayList<>();
+        mark[x] = backwardMark;
+        stack.push(x);
+        while (!stack.isEmpty()) {
+            int n = stack.pop();
+            backward.add(n);
+            for (int i = 0; i < inSize[n]; i++) {
+                int w = in[n][i];
+                if (mark[w] != backwardMark && ord[w] > lb) {
+                    mark[w] = backwardMark;
+                    stack.push(w);
+                }
+            }
+        }
+
+        // The moved nodes reuse their own positions: everything that reaches x first,
+        // then everything y reaches, each group keeping its relative order.
+        Comparator<Integer> byOrd = Comparator.comparingInt(n -> ord[n]);
+        backward.sort(byOrd);
+        forward.sort(byOrd);
+        int[] slots = new int[backward.size() + forward.size()];
+        int k = 0;
+        for (int n : backward) slots[k++] = ord[n];
+        for (int n : forward) slots[k++] = ord[n];
+        Arrays.sort(slots);
+        k = 0;
+        for (int n : backward) place(n, slots[k++]);
+        for (int n : forward) place(n, slots[k++]);
+        return null;
+    }
+
+    private void place(int n, int position) {
+        ord[n] = position;
+        nodeAt[position] = n;
+    }
+
+    private void link(int x, int y) {
+        out[x] = append(out[x], outSize[x]++, y);
+        in[y] = append(in[y], inSize[y]++, x);
+        edges.add(key(x, y));
+        if (open[x]) {
+            openBlockers[y]++;
+            refresh(y);
+        }
+    }
+
+    private void unlink(int x, int y) {
+        removeValue(out[x], outSize[x]--, y);
+        removeValue(in[y], inSize[y]--, x);
+        edges.remove(key(x, y));
+        if (open[x]) {
+            openBlockers[y]--;
+            refresh(y);
+        }
+    }
+
+    private void setOpen(int n, boolean isOpen) {
+        if (open[n] != isOpen) {
+            open[n] = isOpen;
+            for (int i = 0; i < outSize[n]; i++) {
+                int d = out[n][i];
+                openBlockers[d] += isOpen ? 1 : -1;
+                refresh(d);
+            }
+        }
+        refresh(n);
+    }
+
+    private void refresh(int n) {
+        ready.set(n, open[n] && openBlockers[n] == 0);
+        blocked.set(n, open[n] && openBlockers[n] > 0);
+    }
+
+    private int node(String id) {
+        Integer existing = nodes.get(id);
+        if (existing != null) return existing;
+        int n = nodeCount++;
+        if (n == ids.length) grow();
+        ids[n] = id;
+        place(n, n); // a new node has no edges, so the end of the order is fine
+        nodes.put(id, n);
+        return n;
+    }
+
+    private int liveNode(String id) {
+        Integer n = nodes.get(id);
+        if (n == null || tasks[n] == null) throw new NotFoundException("Task with ID " + id + " is not found.");
+        return n;
+    }
+
+    private void grow() {
+        int size = ids.length * 2;
+        ids = Arrays.copyOf(ids, size);
+        tasks = Arrays.copyOf(tasks, size);
+        open = Arrays.copyOf(open, size);
+        out = Arrays.copyOf(out, size);
+        in = Arrays.copyOf(in, size);
+        outSize = Arrays.copyOf(outSize, size);
+        inSize = Arrays.copyOf(inSize, size);
+        openBlockers = Arrays.copyOf(openBlockers, size);
+        ord = Arrays.copyOf(ord, size);
+        nodeAt = Arrays.copyOf(nodeAt, size);
+        mark = Arrays.copyOf(mark, size);
+        parent = Arrays.copyOf(parent, size);
+    }
+
+    private List<Task> tasksOf(int[] adj, int size) {
+        List<Task> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) result.add(tasks[adj[i]]);
+        return result;
+    }
+
+    private List<String[]> edgeList() {
+        List<String[]> result = new ArrayList<>(edges.size());
+        for (int x = 0; x < nodeCount; x++) {
+            for (int i = 0; i < outSize[x]; i++) result.add(new String[]{ids[x], ids[out[x][i]]});
+        }
+        return result;
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    private static int[] append(int[] a, int size, int v) {
+        if (a == null) a = new int[4];
+        else if (size == a.length) a = Arrays.copyOf(a, size * 2);
+        a[size] = v;
+        return a;
+    }
+
+    private static void removeValue(int[] a, int size, int v) {
+        for (int i = 0; i < size; i++) {
+            if (a[i] == v) {
+                a[i] = a[size - 1];
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package taskmanager.services.history;
+
+import taskmanager.core.Category;
+import taskmanager.core.Status;
+import taskmanager.core.TaskSnapshot;
+
+import java.time.LocalDate;
+
+/**
+ * Tab separated text encoding for snapshot values, shared by the history log and the undo spill file.
+ * Tabs, newlines and backslashes are escaped; NULL_VALUE stands for a missing value.
+ */
+final class SnapshotCodec {
+    static final String NULL_VALUE = "\\0";
+
+    private SnapshotCodec() {
+    }
+
+    static String encode(TaskSnapshot s) {
+        if (s == null) return NULL_VALUE;
+        StringBuilder sb = new StringBuilder(escape(s.getId()));
+        for (TaskSnapshot.Field f : TaskSnapshot.Field.values()) {
+            sb.append('\t').append(encodeValue(s.get(f)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes the snapshot starting at parts[offset], as written by encode().
+     */
+    static TaskSnapshot decode(String[] parts, int offset) {
+        if (parts[offset].equals(NULL_VALUE)) return null;
+        TaskSnapshot s = new TaskSnapshot(unescape(parts[offset]), null, null, null, null, null, null, null);
+        TaskSnapshot.Field[] fields = TaskSnapshot.Field.values();
+        for (int i = 0; i < fields.length; i++) {
+            s = s.with(fields[i], decodeValue(fields[i], parts[offset + 1 + i]));
+        }
+        return s;
+    }
+
+    static int width() {
+        return 1 + TaskSnapshot.Field.values().length;
+    }
+
+    static String encodeValue(Object v) {
+        return v == null ? NULL_VALUE : escape(v.toString());
+    }
+
+    static Object decodeValue(TaskSnapshot.Field field, String raw) {
+        if (raw.equals(NULL_VALUE)) return null;
+        String value = unescape(raw);
+        switch (field) {
+            case CATEGORY: return Category.valueOf(value);
+            case STATUS: return Status.valueOf(value);
+            case DUE_DATE: return LocalDate.parse(value);
+            default: return value;
+        }
+    }
+
+    static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    static String unescape(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
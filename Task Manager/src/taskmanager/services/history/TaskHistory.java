@@ -0,0 +1,392 @@
+package taskmanager.services.history;
+
+import taskmanager.core.Task;
+import taskmanager.core.TaskSnapshot;
+import taskmanager.data.Durability;
+import taskmanager.exceptions.RepositoryException;
+import taskmanager.services.TaskChangeListener;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.*;
+
+/**
+ * Multi-version history of all tasks.
+ *
+ * Every committed change is recorded as a delta holding only the fields that changed,
+ * stamped with a commit time. After every checkpointInterval deltas, or as many deltas
+ * as there are tasks if that is more, a full snapshot of the state is kept in memory, so
+ * a read as of any time starts at the nearest earlier checkpoint and replays about one
+ * interval of deltas. Spacing checkpoints by the task count keeps their total size linear
+ * in the number of deltas when many tasks are added at once.
+ *
+ * Changes made between beginBatch() and endBatch(), such as a sweep, are one commit:
+ * they share a commit time, so no checkpoint splits them and an as-of read sees all
+ * or none of them, and the log is flushed once at the end.
+ *
+ * Deltas are appended to a log file (one line per delta, tab separated) and replayed on
+ * startup; any difference between the replayed state and the loaded tasks, e.g. edits
+ * made to tasks.txt by hand, is recorded as a new commit.
+ *
+ * Once there are twice retainedDeltas deltas, the history is compacted: the newest
+ * checkpoint with at least retainedDeltas deltas after it becomes the base, earlier
+ * deltas and checkpoints are dropped, and the log is rewritten as one BASE line per task
+ * followed by the deltas kept. That bounds both memory and the startup replay. History
+ * then starts at the base's commit time: getEarliestTimestamp() returns it, and a read
+ * as of any earlier time returns the state at the base.
+ */
+public class TaskHistory implements TaskChangeListener {
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+    public static final int DEFAULT_RETAINED_DELTAS = 100_000;
+
+    private enum Kind { ADD, UPDATE, REMOVE, BASE } // BASE: a task's full state at the base checkpoint
+
+    private static class Delta {
+        final long timestamp;
+        final Kind kind;
+        final String taskId;
+        final TaskSnapshot.Field[] fields;
+        final Object[] values;
+
+        Delta(long timestamp, Kind kind, String taskId, TaskSnapshot.Field[] fields, Object[] values) {
+            this.timestamp = timestamp;
+            this.kind = kind;
+            this.taskId = taskId;
+            this.fields = fields;
+            this.values = values;
+        }
+    }
+
+    private static class Checkpoint {
+        final long timestamp;   // commit time of the last delta included
+        final int deltaIndex;   // number of deltas applied
+        final Map<String, TaskSnapshot> state;
+
+        Checkpoint(long timestamp, int deltaIndex, Map<String, TaskSnapshot> state) {
+            this.timestamp = timestamp;
+            this.deltaIndex = deltaIndex;
+            this.state = state;
+        }
+    }
+
+    private final Clock clock;
+    private final File logFile; // null keeps history in memory only
+    private final int checkpointInterval;
+    private final int retainedDeltas;
+    private final ArrayList<Delta> deltas = new ArrayList<>();
+    private final ArrayList<Checkpoint> checkpoints = new ArrayList<>();
+    private final LinkedHashMap<String, TaskSnapshot> current = new LinkedHashMap<>();
+    private long lastTimestamp = Long.MIN_VALUE;
+    private Long batchTimestamp; // commit time of the open batch, null outside one
+    private Writer log;
+
+    public TaskHistory(Collection<Task> tasks, File logFile) {
+        this(tasks, logFile, DEFAULT_CHECKPOINT_INTERVAL, Clock.systemDefaultZone());
+    }
+
+    public TaskHistory(Collection<Task> tasks, File logFile, int checkpointInterval, Clock clock) {
+        this(tasks, logFile, checkpointInterval, DEFAULT_RETAINED_DELTAS, clock);
+    }
+
+    public TaskHistory(Collection<Task> tasks, File logFile, int checkpointInterval, int retainedDeltas, Clock clock) {
+        if (checkpointInterval < 1) throw new IllegalArgumentException("Checkpoint interval must be positive");
+        if (retainedDeltas < 1) throw new IllegalArgumentException("Retained deltas must be positive");
+        this.clock = clock;
+        this.logFile = logFile;
+        this.checkpointInterval = checkpointInterval;
+        this.retainedDeltas = retainedDeltas;
+        checkpoints.add(new Checkpoint(Long.MIN_VALUE, 0, new LinkedHashMap<>()));
+        if (logFile != null && logFile.exists()) replayLog();
+        openLog();
+        reconcile(tasks);
+        compactIfDue();
+    }
+
+    /**
+     * Commit time of the base left by the last compaction, else of the first recorded
+     * change, or null if nothing was recorded yet.
+     */
+    public Long getEarliestTimestamp() {
+        long base = checkpoints.get(0).timestamp;
+        if (base != Long.MIN_VALUE) return base;
+        return deltas.isEmpty() ? null : deltas.get(0).timestamp;
+    }
+
+    public int getDeltaCount() {
+        return deltas.size();
+    }
+
+    /**
+     * State of every task as it was at the given time (epoch millis), in creation order.
+     * Replays only the deltas since the nearest earlier checkpoint. Times before
+     * getEarliestTimestamp() get the oldest state kept (none before anything was recorded).
+     */
+    public List<TaskSnapshot> asOf(long timestamp) {
+        int lo = 0, hi = checkpoints.size() - 1, found = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (checkpoints.get(mid).timestamp <= timestamp) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        Checkpoint cp = checkpoints.get(found);
+        LinkedHashMap<String, TaskSnapshot> state = new LinkedHashMap<>(cp.state);
+        for (int i = cp.deltaIndex; i < deltas.size() && deltas.get(i).timestamp <= timestamp; i++) {
+            apply(state, deltas.get(i));
+        }
+        return new ArrayList<>(state.values());
+    }
+
+    /** Records the changes until endBatch() as one commit. */
+    public void beginBatch() {
+        if (batchTimestamp != null) throw new IllegalStateException("A batch is already open");
+        batchTimestamp = nextTimestamp();
+    }
+
+    public void endBatch() {
+        if (batchTimestamp == null) return;
+        batchTimestamp = null;
+        flushLog();
+        compactIfDue();
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        record(TaskSnapshot.of(task), commitTimestamp(), batchTimestamp == null);
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        record(TaskSnapshot.of(task), commitTimestamp(), batchTimestamp == null);
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        if (!current.containsKey(task.getId())) return;
+        commit(new Delta(commitTimestamp(), Kind.REMOVE, task.getId(), new TaskSnapshot.Field[0], new Object[0]), batchTimestamp == null);
+    }
+
+    private long commitTimestamp() {
+        return batchTimestamp != null ? batchTimestamp : nextTimestamp();
+    }
+
+    // Records the difference between the replayed history and the tasks actually loaded.
+    private void reconcile(Collection<Task> tasks) {
+        Set<String> live = new HashSet<>();
+        long ts = nextTimestamp(); // one commit for the whole sync
+        for (Task t : tasks) {
+            live.add(t.getId());
+            record(TaskSnapshot.of(t), ts, false);
+        }
+        for (String id : new ArrayList<>(current.keySet())) {
+            if (!live.contains(id)) {
+                commit(new Delta(ts, Kind.REMOVE, id, new TaskSnapshot.Field[0], new Object[0]), false);
+            }
+        }
+        flushLog();
+    }
+
+    private void record(TaskSnapshot now, long timestamp, boolean flush) {
+        TaskSnapshot old = current.get(now.getId());
+        List<TaskSnapshot.Field> changed = new ArrayList<>();
+        for (TaskSnapshot.Field f : TaskSnapshot.Field.values()) {
+            if (old == null || !old.sameFieldAs(now, f)) changed.add(f);
+        }
+        if (old != null && changed.isEmpty()) return;
+        TaskSnapshot.Field[] fields = changed.toArray(new TaskSnapshot.Field[0]);
+        Object[] values = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) values[i] = now.get(fields[i]);
+        commit(new Delta(timestamp, old == null ? Kind.ADD : Kind.UPDATE, now.getId(), fields, values), flush);
+    }
+
+    private void commit(Delta d, boolean flush) {
+        append(d);
+        if (log != null) {
+            try {
+                log.write(encode(d));
+                log.write('\n');
+                if (flush) log.flush();
+            } catch (IOException e) {
+                throw new RepositoryException("Failed to write history: " + e.getMessage());
+            }
+        }
+        if (flush) compactIfDue();
+    }
+
+    private static void apply(Map<String, TaskSnapshot> state, Delta d) {
+        if (d.kind == Kind.REMOVE) {
+            state.remove(d.taskId);
+            return;
+        }
+        TaskSnapshot s = state.get(d.taskId);
+        if (s == null) s = new TaskSnapshot(d.taskId, null, null, null, null, null, null, null);
+        for (int i = 0; i < d.fields.length; i++) s = s.with(d.fields[i], d.values[i]);
+        state.put(d.taskId, s);
+    }
+
+    /**
+     * Adds a delta to the in-memory history, first taking a checkpoint if a full interval
+     * has passed. Checkpoints only fall between different commit times, so a bulk commit
+     * (such as the startup sync) is never split and costs one snapshot, not one per interval.
+     */
+    private void append(Delta d) {
+        if (!deltas.isEmpty()) {
+            Delta last = deltas.get(deltas.size() - 1);
+            int sinceCheckpoint = deltas.size() - checkpoints.get(checkpoints.size() - 1).deltaIndex;
+            if (d.timestamp > last.timestamp && sinceCheckpoint >= Math.max(checkpointInterval, current.size())) {
+                checkpoints.add(new Checkpoint(last.timestamp, deltas.size(), new LinkedHashMap<>(current)));
+            }
+        }
+        deltas.add(d);
+        apply(current, d);
+    }
+
+    /**
+     * Drops the deltas before the newest checkpoint that still leaves retainedDeltas after
+     * it, once twice that many have built up, so the work is spread over as many commits.
+     */
+    private void compactIfDue() {
+        if (deltas.size() < 2L * retainedDeltas) return;
+        int base = 0;
+        for (int i = checkpoints.size() - 1; i > 0; i--) {
+            if (checkpoints.get(i).deltaIndex <= deltas.size() - retainedDeltas) {
+                base = i;
+                break;
+            }
+        }
+        if (base == 0) return;
+        int dropped = checkpoints.get(base).deltaIndex;
+        List<Checkpoint> kept = new ArrayList<>();
+        for (Checkpoint cp : checkpoints.subList(base, checkpoints.size())) {
+            kept.add(new Checkpoint(cp.timestamp, cp.deltaIndex - dropped, cp.state));
+        }
+        checkpoints.clear();
+        checkpoints.addAll(kept);
+        deltas.subList(0, dropped).clear();
+        rewriteLog();
+    }
+
+    // Through a forced temporary file and a rename, so a crash leaves the old log or the new.
+    private void rewriteLog() {
+        if (logFile == null) return;
+        close();
+        File tmp = new File(logFile.getPath() + ".tmp");
+        Checkpoint base = checkpoints.get(0);
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             Writer w = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            TaskSnapshot.Field[] all = TaskSnapshot.Field.values();
+            for (TaskSnapshot s : base.state.values()) {
+                Object[] values = new Object[all.length];
+                for (int i = 0; i < all.length; i++) values[i] = s.get(all[i]);
+                w.write(encode(new Delta(base.timestamp, Kind.BASE, s.getId(), all, values)));
+                w.write('\n');
+            }
+            for (Delta d : deltas) {
+                w.write(encode(d));
+                w.write('\n');
+            }
+            w.flush();
+            fos.getChannel().force(true);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to compact history: " + e.getMessage());
+        }
+        try {
+            Files.move(tmp.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to replace " + logFile + ": " + e.getMessage());
+        }
+        Durability.syncDirectory(logFile.getAbsoluteFile().getParentFile());
+        openLog();
+    }
+
+    // Commit times never go backwards, even if the wall clock does.
+    private long nextTimestamp() {
+        lastTimestamp = Math.max(lastTimestamp, clock.millis());
+        return lastTimestamp;
+    }
+
+    private void replayLog() {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                Delta d = decode(line);
+                if (d == null || d.timestamp < lastTimestamp) continue; // torn or unreadable line
+                if (d.kind == Kind.BASE) {
+                    if (!deltas.isEmpty()) continue; // only valid at the start of a compacted log
+                    Map<String, TaskSnapshot> state = checkpoints.get(0).state;
+                    apply(state, d);
+                    apply(current, d);
+                    checkpoints.set(0, new Checkpoint(d.timestamp, 0, state));
+                    lastTimestamp = d.timestamp;
+                    continue;
+                }
+                append(d);
+                lastTimestamp = d.timestamp;
+            }
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to read history: " + e.getMessage());
+        }
+    }
+
+    private void openLog() {
+        if (logFile == null) return;
+        try {
+            log = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to open history: " + e.getMessage());
+        }
+    }
+
+    private void flushLog() {
+        if (log == null) return;
+        try {
+            log.flush();
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to write history: " + e.getMessage());
+        }
+    }
+
+    // timestamp \t kind \t taskId [\t FIELD \t value]*
+    private static String encode(Delta d) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(d.timestamp).append('\t').append(d.kind).append('\t').append(SnapshotCodec.escape(d.taskId));
+        for (int i = 0; i < d.fields.length; i++) {
+            sb.append('\t').append(d.fields[i]).append('\t').append(SnapshotCodec.encodeValue(d.values[i]));
+        }
+        return sb.toString();
+    }
+
+    private static Delta decode(String line) {
+        String[] parts = line.split("\t", -1);
+        if (parts.length < 3 || parts.length % 2 == 0) return null;
+        try {
+            long ts = Long.parseLong(parts[0]);
+            Kind kind = Kind.valueOf(parts[1]);
+            int n = (parts.length - 3) / 2;
+            TaskSnapshot.Field[] fields = new TaskSnapshot.Field[n];
+            Object[] values = new Object[n];
+            for (int i = 0; i < n; i++) {
+                fields[i] = TaskSnapshot.Field.valueOf(parts[3 + 2 * i]);
+                values[i] = SnapshotCodec.decodeValue(fields[i], parts[4 + 2 * i]);
+            }
+            return new Delta(ts, kind, SnapshotCodec.unescape(parts[2]), fields, values);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public void close() {
+        if (log == null) return;
+        try {
+            log.close();
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to close history: " + e.getMessage());
+        }
+    }
+}
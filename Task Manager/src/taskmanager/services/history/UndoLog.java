@@ -0,0 +1,331 @@
+package taskmanager.services.history;
+
+import taskmanager.core.Task;
+import taskmanager.core.TaskSnapshot;
+import taskmanager.exceptions.RepositoryException;
+import taskmanager.services.TaskChangeListener;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Undo and redo stacks over every task mutation.
+ *
+ * Each entry keeps the task's state before and after one change, so undoing or
+ * redoing touches only that task. Changes made between beginBatch() and endBatch(),
+ * such as a sweep, form one BATCH entry that is undone and redone as a whole. Entries are kept in memory up to a byte budget
+ * (estimated from string lengths); past it the oldest undo entries spill to a file
+ * and are read back from its tail, newest first, once the in-memory ones run out.
+ * The spill file only lives as long as the session.
+ */
+public class UndoLog implements TaskChangeListener {
+    public static final long DEFAULT_MEMORY_BUDGET = 4L * 1024 * 1024;
+
+    public enum Kind { ADD, UPDATE, REMOVE, BATCH }
+
+    public static class Entry {
+        private final Kind kind;
+        private final TaskSnapshot before; // null for ADD and BATCH
+        private final TaskSnapshot after;  // null for REMOVE and BATCH
+        private final String label;        // BATCH only
+        private final List<Entry> parts;   // BATCH only, in the order they were made
+        private final long size;
+
+        Entry(Kind kind, TaskSnapshot before, TaskSnapshot after) {
+            this.kind = kind;
+            this.before = before;
+            this.after = after;
+            this.label = null;
+            this.parts = Collections.emptyList();
+            this.size = 64 + estimate(before) + estimate(after);
+        }
+
+        Entry(String label, List<Entry> parts) {
+            this.kind = Kind.BATCH;
+            this.before = null;
+            this.after = null;
+            this.label = label;
+            this.parts = parts;
+            long size = 64 + 2L * label.length();
+            for (Entry p : parts) size += p.size;
+            this.size = size;
+        }
+
+        public Kind getKind() { return kind; }
+        public TaskSnapshot getBefore() { return before; }
+        public TaskSnapshot getAfter() { return after; }
+        public List<Entry> getParts() { return parts; }
+
+        public String describe() {
+            if (kind == Kind.BATCH) return label + " of " + parts.size() + " task(s)";
+            TaskSnapshot s = after != null ? after : before;
+            String what = kind == Kind.ADD ? "creation" : kind == Kind.REMOVE ? "deletion" : "update";
+            return what + " of task " + s.getId() + " (" + s.getTitle() + ")";
+        }
+
+        private static long estimate(TaskSnapshot s) {
+            if (s == null) return 0;
+            // the description is a handle into the TextArena, off the heap
+            return 112 + 2L * (len(s.getId()) + len(s.getTitle()) + len(s.getAssigneeId()));
+        }
+
+        private static int len(String s) {
+            return s == null ? 0 : s.length();
+        }
+    }
+
+    /**
+     * Applies a change to the live tasks: from == null means create "to",
+     * to == null means delete "from", otherwise put "from" back into state "to".
+     */
+    public interface Applier {
+        void apply(TaskSnapshot from, TaskSnapshot to);
+
+        /**
+         * Runs the apply() calls of one BATCH entry, e.g. so that they are stored together.
+         */
+        default void applyAll(Runnable parts) {
+            parts.run();
+        }
+    }
+
+    private final Map<String, TaskSnapshot> known = new HashMap<>();
+    private final ArrayDeque<Entry> undo = new ArrayDeque<>(); // newest last
+    private final ArrayDeque<Entry> redo = new ArrayDeque<>(); // newest last
+    private final ArrayList<Long> spillOffsets = new ArrayList<>();
+    private final File spillFile; // null drops entries past the budget instead of spilling
+    private final long memoryBudget;
+    private RandomAccessFile spill;
+    private long memoryBytes;
+    private boolean applying;
+    private List<Entry> batch;   // changes since beginBatch(), null outside a batch
+    private String batchLabel;
+
+    public UndoLog(Collection<Task> tasks, File spillFile) {
+        this(tasks, spillFile, DEFAULT_MEMORY_BUDGET);
+    }
+
+    public UndoLog(Collection<Task> tasks, File spillFile, long memoryBudget) {
+        if (memoryBudget < 1) throw new IllegalArgumentException("Memory budget must be positive");
+        this.spillFile = spillFile;
+        this.memoryBudget = memoryBudget;
+        for (Task t : tasks) known.put(t.getId(), TaskSnapshot.of(t));
+        if (spillFile != null && spillFile.exists() && !spillFile.delete()) {
+            throw new RepositoryException("Failed to clear undo spill file " + spillFile);
+        }
+    }
+
+    /**
+     * Collects the changes recorded until endBatch() into one entry, described by label
+     * (e.g. "sweep").
+     */
+    public void beginBatch(String label) {
+        if (batch != null) throw new IllegalStateException("A batch is already open");
+        batch = new ArrayList<>();
+        batchLabel = label;
+    }
+
+    /** Records the batch as one entry, unless nothing changed. */
+    public void endBatch() {
+        List<Entry> parts = batch;
+        batch = null;
+        if (parts != null && !parts.isEmpty()) record(new Entry(batchLabel, parts));
+    }
+
+    public boolean canUndo() {
+        return !undo.isEmpty() || !spillOffsets.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    public int undoDepth() {
+        return undo.size() + spillOffsets.size();
+    }
+
+    public int redoDepth() {
+        return redo.size();
+    }
+
+    /**
+     * Reverts the most recent change through the applier and moves it to the redo stack.
+     * Returns the entry, or null if there is nothing to undo. If the applier throws,
+     * the entry stays on the undo stack; the parts of a batch already undone are
+     * updates that can simply be applied again.
+     */
+    public Entry undo(Applier applier) {
+        if (undo.isEmpty()) unspill();
+        Entry e = undo.pollLast();
+        if (e == null) return null;
+        memoryBytes -= e.size;
+        try {
+            run(applier, e, false);
+        } catch (RuntimeException ex) {
+            push(undo, e);
+            throw ex;
+        }
+        push(redo, e);
+        trim();
+        return e;
+    }
+
+    /**
+     * Re-applies the most recently undone change. Returns null if there is nothing to redo.
+     */
+    public Entry redo(Applier applier) {
+        Entry e = redo.pollLast();
+        if (e == null) return null;
+        memoryBytes -= e.size;
+        try {
+            run(applier, e, true);
+        } catch (RuntimeException ex) {
+            push(redo, e);
+            throw ex;
+        }
+        push(undo, e);
+        trim();
+        return e;
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        TaskSnapshot now = TaskSnapshot.of(task);
+        known.put(task.getId(), now);
+        record(new Entry(Kind.ADD, null, now));
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        TaskSnapshot now = TaskSnapshot.of(task);
+        TaskSnapshot old = known.put(task.getId(), now);
+        record(old == null ? new Entry(Kind.ADD, null, now) : new Entry(Kind.UPDATE, old, now));
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        TaskSnapshot old = known.remove(task.getId());
+        record(new Entry(Kind.REMOVE, old != null ? old : TaskSnapshot.of(task), null));
+    }
+
+    // Changes made while an undo or redo is applied are not new history.
+    private void record(Entry e) {
+        if (applying) return;
+        if (batch != null && e.kind != Kind.BATCH) {
+            batch.add(e);
+            return;
+        }
+        for (Entry r : redo) memoryBytes -= r.size;
+        redo.clear();
+        push(undo, e);
+        trim();
+    }
+
+    // Undoes (forward == false) or redoes an entry; a batch is undone last part first.
+    private void run(Applier applier, Entry e, boolean forward) {
+        applying = true;
+        try {
+            if (e.kind != Kind.BATCH) {
+                applier.apply(forward ? e.before : e.after, forward ? e.after : e.before);
+                return;
+            }
+            applier.applyAll(() -> {
+                for (int i = 0; i < e.parts.size(); i++) {
+                    Entry p = e.parts.get(forward ? i : e.parts.size() - 1 - i);
+                    applier.apply(forward ? p.before : p.after, forward ? p.after : p.before);
+                }
+            });
+        } finally {
+            applying = false;
+        }
+    }
+
+    private void push(ArrayDeque<Entry> stack, Entry e) {
+        stack.addLast(e);
+        memoryBytes += e.size;
+    }
+
+    // Spills the oldest undo entries, then drops the oldest redo entries, until under budget.
+    private void trim() {
+        while (memoryBytes > memoryBudget && undo.size() > 1) {
+            Entry oldest = undo.pollFirst();
+            memoryBytes -= oldest.size;
+            if (spillFile != null) spillOut(oldest);
+        }
+        while (memoryBytes > memoryBudget && redo.size() > 1) {
+            memoryBytes -= redo.pollFirst().size;
+        }
+    }
+
+    // kind \t before \t after, appended; spilled entries are older than every in-memory one.
+    // A batch is a line "BATCH \t <parts> \t <label>" followed by a line per part.
+    private void spillOut(Entry e) {
+        StringBuilder lines = new StringBuilder();
+        if (e.kind == Kind.BATCH) {
+            lines.append(Kind.BATCH).append('\t').append(e.parts.size()).append('\t').append(SnapshotCodec.escape(e.label)).append('\n');
+            for (Entry p : e.parts) appendLine(lines, p);
+        } else {
+            appendLine(lines, e);
+        }
+        try {
+            if (spill == null) spill = new RandomAccessFile(spillFile, "rw");
+            long offset = spill.length();
+            spill.seek(offset);
+            spill.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+            spillOffsets.add(offset);
+        } catch (IOException ex) {
+            throw new RepositoryException("Failed to write undo spill file: " + ex.getMessage());
+        }
+    }
+
+    private static void appendLine(StringBuilder lines, Entry e) {
+        lines.append(e.kind).append('\t').append(SnapshotCodec.encode(e.before)).append('\t').append(SnapshotCodec.encode(e.after)).append('\n');
+    }
+
+    // Moves the newest spilled entry back into memory and cuts it off the file.
+    private void unspill() {
+        if (spillOffsets.isEmpty()) return;
+        long offset = spillOffsets.remove(spillOffsets.size() - 1);
+        try {
+            byte[] bytes = new byte[(int) (spill.length() - offset)];
+            spill.seek(offset);
+            spill.readFully(bytes);
+            spill.setLength(offset);
+            String[] lines = new String(bytes, 0, bytes.length - 1, StandardCharsets.UTF_8).split("\n", -1);
+            if (!lines[0].startsWith(Kind.BATCH + "\t")) {
+                push(undo, decodeLine(lines[0]));
+                return;
+            }
+            String[] header = lines[0].split("\t", -1);
+            List<Entry> parts = new ArrayList<>(Integer.parseInt(header[1]));
+            for (int i = 1; i < lines.length; i++) parts.add(decodeLine(lines[i]));
+            push(undo, new Entry(SnapshotCodec.unescape(header[2]), parts));
+        } catch (IOException ex) {
+            throw new RepositoryException("Failed to read undo spill file: " + ex.getMessage());
+        }
+    }
+
+    private static Entry decodeLine(String line) {
+        String[] parts = line.split("\t", -1);
+        int w = SnapshotCodec.width();
+        TaskSnapshot before = SnapshotCodec.decode(parts, 1);
+        TaskSnapshot after = SnapshotCodec.decode(parts, parts[1].equals(SnapshotCodec.NULL_VALUE) ? 2 : 1 + w);
+        return new Entry(Kind.valueOf(parts[0]), before, after);
+    }
+
+    /**
+     * Discards the spill file; undo history does not outlive the session.
+     */
+    public void close() {
+        if (spill == null) return;
+        try {
+            spill.close();
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to close undo spill file: " + e.getMessage());
+        }
+        spill = null;
+        spillOffsets.clear();
+        spillFile.delete();
+    }
+}
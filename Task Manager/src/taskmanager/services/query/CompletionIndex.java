@@ -0,0 +1,241 @@
+package taskmanager.services.query;
+
+import taskmanager.core.Person;
+import taskmanager.core.Task;
+import taskmanager.services.TaskChangeListener;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * Prefix index for completing task ids, task titles and people's names.
+ *
+ * Keys are lower-cased: a task's id, its whole title and each word of the title,
+ * and a person's whole name and each word of it. They live in one sorted map, so a
+ * completion is a range scan from the prefix that stops after k distinct matches,
+ * O(log n + k) whatever the number of tasks. Kept current through TaskChangeListener events.
+ *
+ * The index can be written to an index snapshot and read back (see IndexSnapshotFile),
+ * which skips lower-casing and splitting every title and lays out the sorted map in
+ * linear time.
+ */
+public class CompletionIndex implements TaskChangeListener {
+
+    public static class Match {
+        private final Task task;
+        private final Person person;
+
+        private Match(Task task, Person person) {
+            this.task = task;
+            this.person = person;
+        }
+
+        /** The matched task, or null for a person. */
+        public Task getTask() { return task; }
+
+        /** The matched person, or null for a task. */
+        public Person getPerson() { return person; }
+
+        public boolean isTask() { return task != null; }
+
+        public String describe() {
+            if (task != null) return "task   " + task.getId() + "  " + task.getTitle();
+            return "person " + person.getId() + "  " + person.getName();
+        }
+    }
+
+    private static class Indexed {
+        final Match match;
+        final List<String> keys;
+
+        Indexed(Match match, List<String> keys) {
+            this.match = match;
+            this.keys = keys;
+        }
+    }
+
+    // Bucket entries are keyed by task id, or by "@" + person id.
+    private final TreeMap<String, LinkedHashMap<String, Match>> byKey;
+    private final Map<String, Indexed> byTask = new HashMap<>();
+
+    public CompletionIndex(Collection<Person> people, Collection<Task> tasks) {
+        this.byKey = new TreeMap<>();
+        for (Person p : people) {
+            Match m = new Match(null, p);
+            for (String key : keysOf(p.getName(), null)) put(key, "@" + p.getId(), m);
+        }
+        for (Task t : tasks) taskAdded(t);
+    }
+
+    private CompletionIndex(TreeMap<String, LinkedHashMap<String, Match>> byKey) {
+        this.byKey = byKey;
+    }
+
+    /**
+     * Writes the keys in order with their buckets, then each task's keys.
+     * Tasks are written as ordinals; people as negative indexes into a table of their ids.
+     */
+    public void writeSnapshot(DataOutput out, ToIntFunction<Task> ordinal) throws IOException {
+        Map<Person, Integer> people = new IdentityHashMap<>();
+        List<Person> peopleTable = new ArrayList<>();
+        for (LinkedHashMap<String, Match> bucket : byKey.values()) {
+            for (Match m : bucket.values()) {
+                if (!m.isTask() && people.putIfAbsent(m.person, people.size()) == null) peopleTable.add(m.person);
+            }
+        }
+        out.writeInt(peopleTable.size());
+        for (Person p : peopleTable) out.writeUTF(p.getId());
+
+        Map<String, Integer> keyIndex = new HashMap<>(byKey.size() * 2);
+        out.writeInt(byKey.size());
+        for (Map.Entry<String, LinkedHashMap<String, Match>> e : byKey.entrySet()) {
+            keyIndex.put(e.getKey(), keyIndex.size());
+            out.writeUTF(e.getKey());
+            out.writeInt(e.getValue().size());
+            for (Match m : e.getValue().values()) out.writeInt(m.isTask() ? ordinal.applyAsInt(m.task) : -1 - people.get(m.person));
+        }
+
+        out.writeInt(byTask.size());
+        for (Indexed indexed : byTask.values()) {
+            out.writeInt(ordinal.applyAsInt(indexed.match.task));
+            out.writeInt(indexed.keys.size());
+            for (String key : indexed.keys) out.writeInt(keyIndex.get(key));
+        }
+    }
+
+    /**
+     * Reads an index written by writeSnapshot().
+     *
+     * @param tasks  the snapshot's task table
+     * @param people lookup for the people the index names
+     * @throws IOException if the data is truncated or refers to a missing task or person
+     */
+    public static CompletionIndex restore(DataInput in, Task[] tasks, Map<String, Person> people) throws IOException {
+        Match[] personMatches = new Match[in.readInt()];
+        for (int i = 0; i < personMatches.length; i++) {
+            Person p = people.get(in.readUTF());
+            if (p == null) throw new IOException("Unknown person in index snapshot");
+            personMatches[i] = new Match(null, p);
+        }
+
+        Match[] taskMatches = new Match[tasks.length];
+        int keyCount = in.readInt();
+        List<String> keys = new ArrayList<>(keyCount);
+        List<LinkedHashMap<String, Match>> buckets = new ArrayList<>(keyCount);
+        try {
+            for (int k = 0; k < keyCount; k++) {
+                keys.add(in.readUTF());
+                int n = in.readInt();
+                LinkedHashMap<String, Match> bucket = new LinkedHashMap<>(Math.max(2, n * 2));
+                for (int j = 0; j < n; j++) {
+                    int ref = in.readInt();
+                    if (ref >= 0) {
+                        Match m = taskMatches[ref];
+                        if (m == null) m = taskMatches[ref] = new Match(tasks[ref], null);
+                        bucket.put(m.task.getId(), m);
+                    } else {
+                        Match m = personMatches[-1 - ref];
+                        bucket.put("@" + m.person.getId(), m);
+                    }
+                }
+                buckets.add(bucket);
+            }
+            CompletionIndex index = new CompletionIndex(PresortedTrees.treeMap(keys, buckets, null));
+
+            int indexed = in.readInt();
+            for (int i = 0; i < indexed; i++) {
+                Match m = taskMatches[in.readInt()];
+                if (m == null) throw new IOException("Task without keys in index snapshot");
+                String[] taskKeys = new String[in.readInt()];
+                for (int j = 0; j < taskKeys.length; j++) taskKeys[j] = keys.get(in.readInt());
+                index.byTask.put(m.task.getId(), new Indexed(m, Arrays.asList(taskKeys)));
+            }
+            return index;
+        } catch (IndexOutOfBoundsException | IllegalStateException e) {
+            throw new IOException("Damaged index snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Up to k distinct tasks and people with a key starting with the prefix
+     * (case-insensitive), in key order.
+     */
+    public List<Match> complete(String prefix, int k) {
+        return collect(prefix, k, false);
+    }
+
+    /**
+     * Like complete() but only tasks.
+     */
+    public List<Task> completeTasks(String prefix, int k) {
+        List<Task> result = new ArrayList<>();
+        for (Match m : collect(prefix, k, true)) result.add(m.getTask());
+        return result;
+    }
+
+    private List<Match> collect(String prefix, int k, boolean tasksOnly) {
+        String from = prefix.toLowerCase();
+        LinkedHashSet<Match> result = new LinkedHashSet<>();
+        if (k < 1) return new ArrayList<>(result);
+        for (LinkedHashMap<String, Match> bucket : byKey.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            for (Match m : bucket.values()) {
+                if (tasksOnly && !m.isTask()) continue;
+                result.add(m);
+                if (result.size() >= k) return new ArrayList<>(result);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        remove(task.getId());
+        Match m = new Match(task, null);
+        List<String> keys = keysOf(task.getTitle(), task.getId());
+        for (String key : keys) put(key, task.getId(), m);
+        byTask.put(task.getId(), new Indexed(m, keys));
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        Indexed current = byTask.get(task.getId());
+        if (current != null && current.match.task == task
+                && current.keys.equals(keysOf(task.getTitle(), task.getId()))) return;
+        taskAdded(task);
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        remove(task.getId());
+    }
+
+    private void remove(String id) {
+        Indexed old = byTask.remove(id);
+        if (old == null) return;
+        for (String key : old.keys) {
+            LinkedHashMap<String, Match> bucket = byKey.get(key);
+            bucket.remove(id);
+            if (bucket.isEmpty()) byKey.remove(key);
+        }
+    }
+
+    private void put(String key, String entryId, Match m) {
+        byKey.computeIfAbsent(key, x -> new LinkedHashMap<>(2)).put(entryId, m);
+    }
+
+    private static List<String> keysOf(String text, String id) {
+        List<String> keys = new ArrayList<>();
+        if (id != null) keys.add(id.toLowerCase());
+        if (text == null) return keys;
+        String whole = text.trim().toLowerCase();
+        if (whole.isEmpty()) return keys;
+        if (!keys.contains(whole)) keys.add(whole);
+        for (String word : whole.split("\\s+")) {
+            if (!word.isEmpty() && !keys.contains(word)) keys.add(word);
+        }
+        return keys;
+    }
+}
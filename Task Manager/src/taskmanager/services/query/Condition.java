@@ -0,0 +1,121 @@
+package taskmanager.services.query;
+
+import taskmanager.core.Task;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * One "field op value" term of a query, e.g. status=IN_PROCESS or due<2026-11-01.
+ * Values are already converted to the field's type (Status, Category, LocalDate or String);
+ * a null value for DUE or EISENHOWER means "not set".
+ */
+public class Condition {
+
+    public enum Field {
+        ID, TITLE, STATUS, CATEGORY, ASSIGNEE, DUE, EISENHOWER
+    }
+
+    public enum Op {
+        EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="), CONTAINS("~");
+
+        private final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+
+    static final Map<String, Integer> EISENHOWER_RANK = Map.of("I", 1, "II", 2, "III", 3, "IV", 4);
+
+    /** 1 to 4 for quadrants I to IV; null for none or an unknown value (Map.of rejects a null key). */
+    static Integer rankOf(String quadrant) {
+        return quadrant == null ? null : EISENHOWER_RANK.get(quadrant);
+    }
+
+    private final Field field;
+    private final Op op;
+    private final Object value;
+
+    public Condition(Field field, Op op, Object value) {
+        this.field = field;
+        this.op = op;
+        this.value = value;
+    }
+
+    public Field getField() { return field; }
+    public Op getOp() { return op; }
+    public Object getValue() { return value; }
+
+    public Predicate<Task> toPredicate() {
+        switch (field) {
+            case ID:
+                return t -> compareText(t.getId());
+            case TITLE:
+                return t -> compareText(t.getTitle());
+            case ASSIGNEE:
+                return t -> compareText(t.getAssignee().getId());
+            case STATUS:
+                return t -> compareEnum(t.getStatus());
+            case CATEGORY:
+                return t -> compareEnum(t.getCategory());
+            case EISENHOWER:
+                return t -> compareRank(t.getEisenhower());
+            case DUE:
+                return t -> compareDate(t.getDueDate());
+            default:
+                throw new IllegalStateException("Unhandled field " + field);
+        }
+    }
+
+    private boolean compareText(String actual) {
+        String expected = (String) value;
+        if (op == Op.CONTAINS) return actual.toLowerCase().contains(expected.toLowerCase());
+        return test(actual.compareToIgnoreCase(expected));
+    }
+
+    private boolean compareEnum(Enum<?> actual) {
+        return test(Integer.compare(actual.ordinal(), ((Enum<?>) value).ordinal()));
+    }
+
+    private boolean compareRank(String actual) {
+        Integer rank = rankOf(actual);
+        if (rank == null || value == null) return nullMatch(rank == null);
+        return test(Integer.compare(rank, EISENHOWER_RANK.get((String) value)));
+    }
+
+    private boolean compareDate(LocalDate actual) {
+        if (actual == null || value == null) return nullMatch(actual == null);
+        return test(actual.compareTo((LocalDate) value));
+    }
+
+    // Only = and != are meaningful against "not set"; ordering never matches a missing value.
+    private boolean nullMatch(boolean actualIsNull) {
+        boolean same = actualIsNull && value == null;
+        if (op == Op.EQ) return same;
+        if (op == Op.NE) return !same;
+        return false;
+    }
+
+    private boolean test(int cmp) {
+        switch (op) {
+            case EQ: return cmp == 0;
+            case NE: return cmp != 0;
+            case LT: return cmp < 0;
+            case LE: return cmp <= 0;
+            case GT: return cmp > 0;
+            case GE: return cmp >= 0;
+            default: return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return field.name().toLowerCase() + op.getSymbol() + (value == null ? "none" : value);
+    }
+}
@@ -0,0 +1,108 @@
+package taskmanager.services.query;
+
+import taskmanager.core.Task;
+import taskmanager.services.TaskChangeListener;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Ordered index of tasks by due date, kept current through TaskChangeListener events.
+ * Tasks without a due date are kept separately and always come last.
+ */
+public class DueDateIndex implements TaskChangeListener {
+    private final TreeMap<LocalDate, LinkedHashMap<String, Task>> byDate = new TreeMap<>();
+    private final LinkedHashMap<String, Task> undated = new LinkedHashMap<>();
+    private final Map<String, LocalDate> indexedDate = new HashMap<>();
+    private int size;
+
+    public DueDateIndex(Collection<Task> tasks) {
+        for (Task t : tasks) taskAdded(t);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of dated tasks with from <= due < to (either bound may be null).
+     * Costs O(distinct dates in range), not O(tasks).
+     */
+    public int countRange(LocalDate from, LocalDate to) {
+        int n = 0;
+        for (LinkedHashMap<String, Task> bucket : range(from, to, false).values()) n += bucket.size();
+        return n;
+    }
+
+    public int countUndated() {
+        return undated.size();
+    }
+
+    /**
+     * Iterates dated tasks with from <= due < to in due order, optionally
+     * followed by the undated tasks.
+     */
+    public Iterator<Task> iterate(LocalDate from, LocalDate to, boolean descending, boolean includeUndated) {
+        Iterator<LinkedHashMap<String, Task>> buckets = range(from, to, descending).values().iterator();
+        Iterator<Task> tail = includeUndated ? undated.values().iterator() : Collections.emptyIterator();
+        return new Iterator<Task>() {
+            private Iterator<Task> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && buckets.hasNext()) current = buckets.next().values().iterator();
+                return current.hasNext() || tail.hasNext();
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.hasNext() ? current.next() : tail.next();
+            }
+        };
+    }
+
+    private NavigableMap<LocalDate, LinkedHashMap<String, Task>> range(LocalDate from, LocalDate to, boolean descending) {
+        NavigableMap<LocalDate, LinkedHashMap<String, Task>> view = byDate;
+        if (from != null) view = view.tailMap(from, true);
+        if (to != null) view = view.headMap(to, false);
+        return descending ? view.descendingMap() : view;
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        remove(task.getId());
+        LocalDate due = task.getDueDate();
+        if (due == null) {
+            undated.put(task.getId(), task);
+        } else {
+            byDate.computeIfAbsent(due, d -> new LinkedHashMap<>()).put(task.getId(), task);
+        }
+        indexedDate.put(task.getId(), due);
+        size++;
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        if (indexedDate.containsKey(task.getId()) && Objects.equals(indexedDate.get(task.getId()), task.getDueDate())) return;
+        taskAdded(task);
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        remove(task.getId());
+    }
+
+    private void remove(String id) {
+        if (!indexedDate.containsKey(id)) return;
+        LocalDate due = indexedDate.remove(id);
+        if (due == null) {
+            undated.remove(id);
+        } else {
+            LinkedHashMap<String, Task> bucket = byDate.get(due);
+            bucket.remove(id);
+            if (bucket.isEmpty()) byDate.remove(due);
+        }
+        size--;
+    }
+}
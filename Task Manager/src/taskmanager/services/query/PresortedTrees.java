@@ -0,0 +1,127 @@
+package taskmanager.services.query;
+
+import java.util.*;
+
+/**
+ * Builds TreeMaps and TreeSets from data that is already in order, as read back from an
+ * index snapshot. TreeMap(SortedMap) and TreeSet(SortedSet) lay out a balanced tree from
+ * an ordered source in linear time without comparing elements; these wrap a list as such
+ * a source. The order is checked first (n - 1 comparisons), since a tree built from
+ * misordered input would silently answer lookups wrong.
+ */
+public final class PresortedTrees {
+
+    private PresortedTrees() {
+    }
+
+    /**
+     * @throws IllegalStateException if the keys are not strictly ascending
+     */
+    public static <K, V> TreeMap<K, V> treeMap(List<K> keys, List<V> values, Comparator<? super K> comparator) {
+        if (keys.size() != values.size()) throw new IllegalStateException("Keys and values differ in number");
+        checkAscending(keys, comparator);
+        return new TreeMap<>(new ListMap<>(keys, values, comparator));
+    }
+
+    /**
+     * @throws IllegalStateException if the elements are not strictly ascending
+     */
+    public static <E> TreeSet<E> treeSet(List<E> elements, Comparator<? super E> comparator) {
+        checkAscending(elements, comparator);
+        return new TreeSet<>(new ListSet<>(elements, comparator));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void checkAscending(List<T> items, Comparator<? super T> comparator) {
+        T prev = null;
+        boolean first = true;
+        for (T item : items) {
+            int c = first ? -1 : comparator != null ? comparator.compare(prev, item) : ((Comparable<? super T>) prev).compareTo(item);
+            if (c >= 0) throw new IllegalStateException("Snapshot entries out of order");
+            prev = item;
+            first = false;
+        }
+    }
+
+    // Only what the TreeMap and TreeSet copy constructors read: comparator, size and iteration.
+
+    private static final class ListMap<K, V> extends AbstractMap<K, V> implements SortedMap<K, V> {
+        private final List<K> keys;
+        private final List<V> values;
+        private final Comparator<? super K> comparator;
+
+        ListMap(List<K> keys, List<V> values, Comparator<? super K> comparator) {
+            this.keys = keys;
+            this.values = values;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public Comparator<? super K> comparator() { return comparator; }
+
+        @Override
+        public int size() { return keys.size(); }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+                @Override
+                public int size() { return keys.size(); }
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    Iterator<K> k = keys.iterator();
+                    Iterator<V> v = values.iterator();
+                    return new Iterator<Entry<K, V>>() {
+                        @Override
+                        public boolean hasNext() { return k.hasNext(); }
+
+                        @Override
+                        public Entry<K, V> next() { return new SimpleImmutableEntry<>(k.next(), v.next()); }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) { throw new UnsupportedOperationException(); }
+        @Override
+        public SortedMap<K, V> headMap(K toKey) { throw new UnsupportedOperationException(); }
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) { throw new UnsupportedOperationException(); }
+        @Override
+        public K firstKey() { return keys.get(0); }
+        @Override
+        public K lastKey() { return keys.get(keys.size() - 1); }
+    }
+
+    private static final class ListSet<E> extends AbstractSet<E> implements SortedSet<E> {
+        private final List<E> elements;
+        private final Comparator<? super E> comparator;
+
+        ListSet(List<E> elements, Comparator<? super E> comparator) {
+            this.elements = elements;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public Comparator<? super E> comparator() { return comparator; }
+
+        @Override
+        public int size() { return elements.size(); }
+
+        @Override
+        public Iterator<E> iterator() { return elements.iterator(); }
+
+        @Override
+        public SortedSet<E> subSet(E fromElement, E toElement) { throw new UnsupportedOperationException(); }
+        @Override
+        public SortedSet<E> headSet(E toElement) { throw new UnsupportedOperationException(); }
+        @Override
+        public SortedSet<E> tailSet(E fromElement) { throw new UnsupportedOperationException(); }
+        @Override
+        public E first() { return elements.get(0); }
+        @Override
+        public E last() { return elements.get(elements.size() - 1); }
+    }
+}
@@ -0,0 +1,143 @@
+package taskmanager.services.query;
+
+import taskmanager.core.Task;
+import taskmanager.services.TaskChangeListener;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Results of repeated read-only queries, kept until a change could affect them.
+ *
+ * Each entry is a query key, the result and the query's predicate. When a task is added,
+ * changed or removed, only the entries whose predicate matches the task as it is now, or
+ * whose result holds the task, are dropped; the rest stay valid, since the task can
+ * neither have entered nor left them. Results hold the tasks themselves, so a change that
+ * keeps an entry valid shows up in it anyway.
+ *
+ * Every change also bumps a version. A result is only stored if the version has not moved
+ * while it was computed, so a change that lands mid-query cannot leave a stale entry.
+ * Entries are evicted least recently used first, by count and by the number of task
+ * references they hold together. A hit costs O(1) and the caller then walks O(result).
+ */
+public class QueryCache implements TaskChangeListener {
+    /** Predicate of queries over every task, e.g. sorts: any change drops them. */
+    public static final Predicate<Task> ALL_TASKS = t -> true;
+
+    private static final class Entry {
+        final List<Task> result;
+        final Predicate<Task> predicate;
+        final Set<Task> members; // null when the predicate is ALL_TASKS, which already covers membership
+
+        Entry(List<Task> result, Predicate<Task> predicate) {
+            this.result = Collections.unmodifiableList(result);
+            this.predicate = predicate;
+            if (predicate == ALL_TASKS) {
+                this.members = null;
+            } else {
+                this.members = Collections.newSetFromMap(new IdentityHashMap<>(result.size()));
+                this.members.addAll(result);
+            }
+        }
+
+        boolean affectedBy(Task task) {
+            return predicate.test(task) || (members != null && members.contains(task));
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxTasks;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long heldTasks;
+    private long version;
+    private long hits, misses, invalidations, evictions;
+
+    /**
+     * @param maxEntries most queries kept at once
+     * @param maxTasks   most task references kept across all results
+     */
+    public QueryCache(int maxEntries, long maxTasks) {
+        this.maxEntries = maxEntries;
+        this.maxTasks = maxTasks;
+    }
+
+    /**
+     * The cached result of the query, or the result of compute, which is cached.
+     *
+     * @param key       identifies the query, including all its parameters
+     * @param predicate true for every task that could be in the result; ALL_TASKS for queries over all tasks
+     * @return an unmodifiable list
+     */
+    public List<Task> get(String key, Predicate<Task> predicate, Supplier<List<Task>> compute) {
+        long before;
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null) {
+                hits++;
+                return e.result;
+            }
+            misses++;
+            before = version;
+        }
+        List<Task> result = compute.get(); // outside the lock, so changes are not held up by a long query
+        synchronized (this) {
+            if (version != before || result.size() > maxTasks) return Collections.unmodifiableList(result);
+            Entry e = new Entry(new ArrayList<>(result), predicate);
+            Entry old = entries.put(key, e);
+            if (old != null) heldTasks -= old.result.size();
+            heldTasks += e.result.size();
+            evictOverLimits();
+            return e.result;
+        }
+    }
+
+    /** E.g. "12 queries cached (350000 tasks), 40 hits, 12 misses, 3 invalidated, 0 evicted". */
+    public synchronized String stats() {
+        long lookups = hits + misses;
+        return entries.size() + " queries cached (" + heldTasks + " tasks), " + hits + " hits, " + misses + " misses"
+                + (lookups == 0 ? "" : " (" + (100 * hits / lookups) + "% hit rate)")
+                + ", " + invalidations + " invalidated, " + evictions + " evicted";
+    }
+
+    public synchronized long getHits() { return hits; }
+
+    public synchronized long getMisses() { return misses; }
+
+    @Override
+    public void taskAdded(Task task) {
+        invalidate(task);
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        invalidate(task);
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        invalidate(task);
+    }
+
+    private synchronized void invalidate(Task task) {
+        version++;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next();
+            if (!e.affectedBy(task)) continue;
+            it.remove();
+            heldTasks -= e.result.size();
+            invalidations++;
+        }
+    }
+
+    private void evictOverLimits() {
+        Iterator<Entry> it = entries.values().iterator();
+        while ((entries.size() > maxEntries || heldTasks > maxTasks) && it.hasNext()) {
+            Entry e = it.next();
+            it.remove();
+            heldTasks -= e.result.size();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package taskmanager.services.query;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Access path chosen by QueryPlanner for a query, with the estimates that led to it.
+ */
+public class QueryPlan {
+
+    public enum AccessPath {
+        ID_LOOKUP, DUE_RANGE, FULL_SCAN
+    }
+
+    final TaskQuery query;
+    final AccessPath path;
+    final String id;                 // ID_LOOKUP
+    final LocalDate from, to;        // DUE_RANGE, [from, to), null = open
+    final boolean includeUndated;    // DUE_RANGE used only for ordering
+    final List<Condition> residual;  // conditions still checked per row
+    final boolean ordered;           // access path already yields query order
+    final boolean limitPushed;       // scan stops after `limit` matches
+    final double cost;
+    final Map<AccessPath, Double> candidates;
+
+    QueryPlan(TaskQuery query, AccessPath path, String id, LocalDate from, LocalDate to, boolean includeUndated,
+              List<Condition> residual, boolean ordered, boolean limitPushed, double cost, Map<AccessPath, Double> candidates) {
+        this.query = query;
+        this.path = path;
+        this.id = id;
+        this.from = from;
+        this.to = to;
+        this.includeUndated = includeUndated;
+        this.residual = residual;
+        this.ordered = ordered;
+        this.limitPushed = limitPushed;
+        this.cost = cost;
+        this.candidates = candidates;
+    }
+
+    public AccessPath getAccessPath() { return path; }
+    public double getEstimatedCost() { return cost; }
+    public TaskQuery getQuery() { return query; }
+
+    /**
+     * Human readable description of the plan, shown by the "explain" command.
+     */
+    public String explain() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Query: ").append(query).append('\n');
+        sb.append("Plan:  ");
+        switch (path) {
+            case ID_LOOKUP:
+                sb.append("IdLookup(id=").append(id).append(')');
+                break;
+            case DUE_RANGE:
+                sb.append("DueRange[").append(from == null ? "-inf" : from).append(", ")
+                        .append(to == null ? "+inf" : to).append(')');
+                if (includeUndated) sb.append(" + undated");
+                if (query.isDescending() && ordered) sb.append(" desc");
+                break;
+            default:
+                sb.append("FullScan");
+        }
+        sb.append('\n');
+        sb.append("  filter:  ").append(residual.isEmpty() ? "none" : join(residual)).append('\n');
+        if (query.getOrderBy() != null) {
+            sb.append("  order:   ").append(ordered ? "provided by access path" : "sort " + (query.hasLimit() ? "top-" + query.getLimit() : "all")).append('\n');
+        }
+        if (query.hasLimit()) {
+            sb.append("  limit:   ").append(query.getLimit()).append(limitPushed ? " (pushed into scan)" : " (applied after sort)").append('\n');
+        }
+        sb.append("  cost:    ").append(String.format("%.1f", cost)).append('\n');
+        sb.append("  considered:");
+        for (Map.Entry<AccessPath, Double> e : candidates.entrySet()) {
+            sb.append(' ').append(e.getKey()).append('=').append(String.format("%.1f", e.getValue()));
+        }
+        return sb.toString();
+    }
+
+    private static String join(List<Condition> conditions) {
+        StringJoiner j = new StringJoiner(" AND ");
+        for (Condition c : conditions) j.add(c.toString());
+        return j.toString();
+    }
+}
@@ -0,0 +1,215 @@
+package taskmanager.services.query;
+
+import taskmanager.core.Category;
+import taskmanager.core.Status;
+import taskmanager.core.Task;
+import taskmanager.data.TaskRepository;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Chooses the cheapest access path for a TaskQuery and executes it.
+ *
+ * Costs are estimated in rows touched: an id lookup touches one row, a due-date
+ * range touches the tasks in the range (counted from the index), a full scan
+ * touches every task. When the access path already produces the requested order
+ * (or none is requested) the limit is pushed into the scan, which stops after
+ * enough matches; otherwise matches are sorted, keeping only the top `limit`.
+ */
+public class QueryPlanner {
+    private final TaskRepository taskRepo;
+    private final DueDateIndex dueIndex;
+
+    public QueryPlanner(TaskRepository taskRepo, DueDateIndex dueIndex) {
+        this.taskRepo = taskRepo;
+        this.dueIndex = dueIndex;
+    }
+
+    public QueryPlan plan(TaskQuery query) {
+        int n = taskRepo.getAll().size();
+        Map<QueryPlan.AccessPath, Double> candidates = new LinkedHashMap<>();
+        List<QueryPlan> plans = new ArrayList<>();
+        boolean orderIsDue = query.getOrderBy() == Condition.Field.DUE;
+
+        // Id lookup
+        for (Condition c : query.getConditions()) {
+            if (c.getField() == Condition.Field.ID && c.getOp() == Condition.Op.EQ) {
+                List<Condition> residual = without(query.getConditions(), c);
+                plans.add(new QueryPlan(query, QueryPlan.AccessPath.ID_LOOKUP, (String) c.getValue(), null, null, false,
+                        residual, true, false, 1, candidates));
+                candidates.put(QueryPlan.AccessPath.ID_LOOKUP, 1.0);
+                break;
+            }
+        }
+
+        // Due-date range
+        LocalDate from = null, to = null;
+        List<Condition> rangeResidual = new ArrayList<>();
+        boolean bounded = false;
+        for (Condition c : query.getConditions()) {
+            if (c.getField() != Condition.Field.DUE || c.getValue() == null || c.getOp() == Condition.Op.NE) {
+                rangeResidual.add(c);
+                continue;
+            }
+            LocalDate v = (LocalDate) c.getValue();
+            LocalDate lo = null, hi = null;
+            switch (c.getOp()) {
+                case EQ: lo = v; hi = v.plusDays(1); break;
+                case LT: hi = v; break;
+                case LE: hi = v.plusDays(1); break;
+                case GT: lo = v.plusDays(1); break;
+                case GE: lo = v; break;
+                default: rangeResidual.add(c); continue;
+            }
+            if (lo != null && (from == null || lo.isAfter(from))) from = lo;
+            if (hi != null && (to == null || hi.isBefore(to))) to = hi;
+            bounded = true;
+        }
+        if (bounded || orderIsDue) {
+            boolean includeUndated = !bounded;
+            double rows = (from != null && to != null && !from.isBefore(to)) ? 0 : dueIndex.countRange(from, to);
+            if (includeUndated) rows += dueIndex.countUndated();
+            boolean ordered = query.getOrderBy() == null || orderIsDue;
+            double sel = selectivity(rangeResidual, n);
+            boolean pushed = query.hasLimit() && ordered;
+            double touched = pushed ? Math.min(rows, Math.ceil(query.getLimit() / sel)) : rows;
+            double cost = touched + (ordered ? 0 : sortCost(rows * sel, query));
+            plans.add(new QueryPlan(query, QueryPlan.AccessPath.DUE_RANGE, null, from, to, includeUndated,
+                    rangeResidual, ordered, pushed, cost, candidates));
+            candidates.put(QueryPlan.AccessPath.DUE_RANGE, cost);
+        }
+
+        // Full scan
+        double sel = selectivity(query.getConditions(), n);
+        boolean ordered = query.getOrderBy() == null;
+        boolean pushed = query.hasLimit() && ordered;
+        double touched = pushed ? Math.min(n, Math.ceil(query.getLimit() / sel)) : n;
+        double cost = touched + (ordered ? 0 : sortCost(n * sel, query));
+        plans.add(new QueryPlan(query, QueryPlan.AccessPath.FULL_SCAN, null, null, null, false,
+                query.getConditions(), ordered, pushed, cost, candidates));
+        candidates.put(QueryPlan.AccessPath.FULL_SCAN, cost);
+
+        QueryPlan best = plans.get(0);
+        for (QueryPlan p : plans) {
+            if (p.cost < best.cost) best = p;
+        }
+        return best;
+    }
+
+    public List<Task> execute(QueryPlan plan) {
+        TaskQuery query = plan.query;
+        Predicate<Task> filter = TaskQuery.compile(plan.residual);
+        int limit = query.hasLimit() ? query.getLimit() : Integer.MAX_VALUE;
+        if (limit == 0) return new ArrayList<>();
+
+        Iterator<Task> source;
+        switch (plan.path) {
+            case ID_LOOKUP:
+                Task t = taskRepo.findById(plan.id);
+                source = t == null ? Collections.emptyIterator() : Collections.singletonList(t).iterator();
+                break;
+            case DUE_RANGE:
+                if (plan.from != null && plan.to != null && !plan.from.isBefore(plan.to)) {
+                    source = Collections.emptyIterator();
+                } else {
+                    boolean desc = plan.ordered && query.isDescending();
+                    source = dueIndex.iterate(plan.from, plan.to, desc, plan.includeUndated);
+                }
+                break;
+            default:
+                source = taskRepo.getAll().iterator();
+        }
+
+        if (plan.ordered) {
+            List<Task> result = new ArrayList<>();
+            while (source.hasNext() && result.size() < limit) {
+                Task task = source.next();
+                if (filter.test(task)) result.add(task);
+            }
+            return result;
+        }
+
+        Comparator<Task> order = comparator(query.getOrderBy(), query.isDescending());
+        if (!query.hasLimit()) {
+            List<Task> result = new ArrayList<>();
+            while (source.hasNext()) {
+                Task task = source.next();
+                if (filter.test(task)) result.add(task);
+            }
+            result.sort(order);
+            return result;
+        }
+        // Bounded top-k: the heap head is the worst of the current best `limit`.
+        PriorityQueue<Task> top = new PriorityQueue<>(order.reversed());
+        while (source.hasNext()) {
+            Task task = source.next();
+            if (!filter.test(task)) continue;
+            top.add(task);
+            if (top.size() > limit) top.poll();
+        }
+        List<Task> result = new ArrayList<>(top);
+        result.sort(order);
+        return result;
+    }
+
+    static Comparator<Task> comparator(Condition.Field field, boolean descending) {
+        Comparator<Task> c;
+        switch (field) {
+            case DUE:
+                return Comparator.comparing(Task::getDueDate,
+                        Comparator.nullsLast(descending ? Comparator.<LocalDate>reverseOrder() : Comparator.<LocalDate>naturalOrder()));
+            case EISENHOWER:
+                return Comparator.comparing(t -> Condition.rankOf(t.getEisenhower()),
+                        Comparator.nullsLast(descending ? Comparator.<Integer>reverseOrder() : Comparator.<Integer>naturalOrder()));
+            case STATUS:
+                c = Comparator.comparing(Task::getStatus);
+                break;
+            case CATEGORY:
+                c = Comparator.comparing(Task::getCategory);
+                break;
+            case TITLE:
+                c = Comparator.comparing(Task::getTitle, String.CASE_INSENSITIVE_ORDER);
+                break;
+            case ASSIGNEE:
+                c = Comparator.comparing(t -> t.getAssignee().getId());
+                break;
+            default:
+                c = Comparator.comparing(Task::getId);
+        }
+        return descending ? c.reversed() : c;
+    }
+
+    private static double sortCost(double rows, TaskQuery query) {
+        double k = query.hasLimit() ? Math.min(rows, query.getLimit()) : rows;
+        return rows * (Math.log(Math.max(2, k)) / Math.log(2));
+    }
+
+    // Rough fraction of rows that pass the conditions, assuming independence.
+    private static double selectivity(List<Condition> conditions, int n) {
+        double sel = 1.0;
+        for (Condition c : conditions) {
+            double s;
+            boolean eq = c.getOp() == Condition.Op.EQ;
+            switch (c.getField()) {
+                case ID: s = eq ? 1.0 / Math.max(1, n) : 0.5; break;
+                case STATUS: s = eq ? 1.0 / Status.values().length : 0.5; break;
+                case CATEGORY: s = eq ? 1.0 / Category.values().length : 0.5; break;
+                case EISENHOWER: s = eq ? 0.25 : 0.5; break;
+                case ASSIGNEE: s = eq ? 0.1 : 0.9; break;
+                case TITLE: s = c.getOp() == Condition.Op.CONTAINS ? 0.1 : 0.5; break;
+                default: s = eq ? 0.05 : 0.33;
+            }
+            if (c.getOp() == Condition.Op.NE) s = 1 - s;
+            sel *= s;
+        }
+        return Math.max(sel, 1.0 / Math.max(1, n));
+    }
+
+    private static List<Condition> without(List<Condition> conditions, Condition removed) {
+        List<Condition> result = new ArrayList<>(conditions);
+        result.remove(removed);
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+package taskmanager.services.query;
+
+import taskmanager.core.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Parsed form of a "find" query: a conjunction of conditions, an optional
+ * ordering and an optional row limit.
+ */
+public class TaskQuery {
+    private final List<Condition> conditions;
+    private final Condition.Field orderBy;
+    private final boolean descending;
+    private final int limit;
+
+    /**
+     * @param orderBy null for no ordering
+     * @param limit   negative for no limit
+     */
+    public TaskQuery(List<Condition> conditions, Condition.Field orderBy, boolean descending, int limit) {
+        this.conditions = Collections.unmodifiableList(new ArrayList<>(conditions));
+        this.orderBy = orderBy;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    public List<Condition> getConditions() { return conditions; }
+    public Condition.Field getOrderBy() { return orderBy; }
+    public boolean isDescending() { return descending; }
+    public int getLimit() { return limit; }
+    public boolean hasLimit() { return limit >= 0; }
+
+    /**
+     * Compiles the given conditions into a single predicate (true when empty).
+     */
+    public static Predicate<Task> compile(List<Condition> conditions) {
+        Predicate<Task> p = t -> true;
+        for (Condition c : conditions) p = p.and(c.toPredicate());
+        return p;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("find");
+        for (Condition c : conditions) sb.append(' ').append(c);
+        if (orderBy != null) sb.append(" order by ").append(orderBy.name().toLowerCase()).append(descending ? " desc" : "");
+        if (hasLimit()) sb.append(" limit ").append(limit);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,220 @@
+package taskmanager.services.replication;
+
+import taskmanager.core.Person;
+import taskmanager.core.Task;
+import taskmanager.data.PersonRepository;
+import taskmanager.data.TaskRecordCodec;
+import taskmanager.exceptions.RepositoryException;
+import taskmanager.services.TaskService;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Follows a primary: receives the journal and applies it to the local TaskService.
+ *
+ * Applying is idempotent (PUT is an upsert, DEL of a missing task is a no-op), so the
+ * position saved in the state file may lag the tasks on disk after a crash without
+ * harm; the entries in between are simply applied again. Addresses are tried in turn,
+ * which lets a follower find a promoted peer after the primary goes away.
+ */
+final class FollowerClient implements Closeable {
+    static final int READ_TIMEOUT_MILLIS = 5000;
+    static final long RETRY_MILLIS = 1000;
+
+    private final TaskService service;
+    private final PersonRepository people;
+    private final ReplicationJournal journal;
+    private final List<InetSocketAddress> addresses;
+    private final File stateFile;
+    private final LocalDate[] dateCache = TaskRecordCodec.newDateCache();
+    private volatile boolean closed;
+    private volatile Socket socket;
+    private volatile String connectedTo;
+    private volatile long primarySeq;
+    private volatile long lastLagMillis;
+    private volatile long lastContactMillis;
+
+    FollowerClient(TaskService service, PersonRepository people, ReplicationJournal journal,
+                   List<InetSocketAddress> addresses, File stateFile) {
+        this.service = service;
+        this.people = people;
+        this.journal = journal;
+        this.addresses = addresses;
+        this.stateFile = stateFile;
+        PrimaryServer.daemon("replication-follow", this::followLoop).start();
+    }
+
+    /**
+     * Reads the saved (epoch, seq) position, or returns a journal that asks for a snapshot.
+     */
+    static ReplicationJournal loadJournal(File stateFile) {
+        if (stateFile != null && stateFile.exists()) {
+            try {
+                String[] parts = new String(Files.readAllBytes(stateFile.toPath()), StandardCharsets.UTF_8).trim().split(" ");
+                if (parts.length == 2) return new ReplicationJournal(parts[0], Long.parseLong(parts[1]));
+            } catch (IOException | NumberFormatException e) {
+                // unreadable position: start over from a snapshot
+            }
+        }
+        return new ReplicationJournal("-", 0);
+    }
+
+    private void followLoop() {
+        int next = 0;
+        while (!closed) {
+            InetSocketAddress address = addresses.get(next);
+            next = (next + 1) % addresses.size();
+            try (Socket s = new Socket()) {
+                s.connect(address, READ_TIMEOUT_MILLIS);
+                s.setSoTimeout(READ_TIMEOUT_MILLIS);
+                socket = s;
+                connectedTo = address.getHostString() + ":" + address.getPort();
+                next = addresses.indexOf(address); // stay with a working primary
+                follow(s);
+            } catch (IOException | RuntimeException e) {
+                // primary unreachable, silent or gone: try the next address
+            } finally {
+                socket = null;
+                connectedTo = null;
+            }
+            if (!closed) PrimaryServer.sleepQuietly(RETRY_MILLIS);
+        }
+    }
+
+    private void follow(Socket s) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+        out.write("HELLO " + journal.epoch() + " " + journal.lastSeq() + "\n");
+        out.flush();
+
+        String line;
+        while (!closed && (line = in.readLine()) != null) {
+            lastContactMillis = System.currentTimeMillis();
+            String[] parts = line.split(" ", 4);
+            switch (parts[0]) {
+                case "SNAPSHOT":
+                    installSnapshot(in, parts[1], Long.parseLong(parts[2]), Integer.parseInt(parts[3]));
+                    ack(out);
+                    break;
+                case "PUT":
+                case "DEL":
+                    long seq = Long.parseLong(parts[1]);
+                    if (seq <= journal.lastSeq()) break; // already applied
+                    if (seq != journal.lastSeq() + 1) throw new SocketException("Gap in replication stream");
+                    ReplicationJournal.Entry e = new ReplicationJournal.Entry(seq, Long.parseLong(parts[2]), parts[0], parts[3]);
+                    apply(e);
+                    lastLagMillis = Math.max(0, System.currentTimeMillis() - e.millis);
+                    primarySeq = Math.max(primarySeq, seq);
+                    ack(out);
+                    break;
+                case "HB":
+                    if (journal.adoptEpoch(parts[1])) saveState();
+                    primarySeq = Long.parseLong(parts[2]);
+                    if (primarySeq == journal.lastSeq()) lastLagMillis = 0;
+                    ack(out); // keeps the primary's view of this follower fresh while idle
+                    break;
+                default:
+                    throw new SocketException("Unexpected message from primary: " + parts[0]);
+            }
+        }
+    }
+
+    // close() runs under the service lock, so checking closed here means nothing is
+    // applied once this node has been promoted.
+    private void apply(ReplicationJournal.Entry e) throws IOException {
+        synchronized (service) {
+            if (closed) throw new SocketException("Follower closed");
+            if (e.op.equals("DEL")) {
+                service.applyReplicatedRemove(e.payload);
+            } else {
+                Task t = decode(e.payload);
+                if (t == null) throw new SocketException("Malformed task line: " + e.payload);
+                service.applyReplicated(t);
+            }
+            journal.record(e);
+        }
+        saveState();
+    }
+
+    private void installSnapshot(BufferedReader in, String epoch, long seq, int count) throws IOException {
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String line = in.readLine();
+            if (line == null) throw new SocketException("Snapshot cut short");
+            Task t = decode(line);
+            if (t != null) tasks.add(t);
+        }
+        if (!"END".equals(in.readLine())) throw new SocketException("Snapshot cut short");
+        synchronized (service) {
+            if (closed) throw new SocketException("Follower closed");
+            Set<String> keep = new HashSet<>();
+            for (Task t : tasks) keep.add(t.getId());
+            for (Task t : new ArrayList<>(service.readAll())) {
+                if (!keep.contains(t.getId())) service.applyReplicatedRemove(t.getId());
+            }
+            for (Task t : tasks) service.applyReplicated(t);
+            journal.reset(epoch, seq);
+        }
+        primarySeq = seq;
+        lastLagMillis = 0;
+        saveState();
+    }
+
+    // Unknown people get a placeholder so the task is still kept.
+    private Task decode(String line) {
+        int[] seps = TaskRecordCodec.separators(line);
+        if (seps == null) return null;
+        return TaskRecordCodec.decodeTrusted(line, seps, id -> {
+            Person p = people.findById(id);
+            return p != null ? p : new Person(id, "(unknown)");
+        }, dateCache);
+    }
+
+    private void ack(Writer out) throws IOException {
+        out.write("ACK " + journal.lastSeq() + "\n");
+        out.flush();
+    }
+
+    // Written to a temp file and renamed, so a crash leaves the old or the new position.
+    private void saveState() {
+        if (stateFile == null) return;
+        File tmp = new File(stateFile.getPath() + ".tmp");
+        try {
+            Files.write(tmp.toPath(), (journal.epoch() + " " + journal.lastSeq()).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to save replication position: " + e.getMessage());
+        }
+    }
+
+    String describe() {
+        long applied = journal.lastSeq();
+        if (connectedTo == null) {
+            return "Follower, not connected (retrying " + addresses.size() + " address(es)); applied up to " + applied;
+        }
+        long behind = Math.max(0, primarySeq - applied);
+        return "Follower of " + connectedTo + ": applied " + applied + " of " + primarySeq + " (" + behind
+                + " behind), lag " + lastLagMillis + " ms, last contact "
+                + (System.currentTimeMillis() - lastContactMillis) + " ms ago";
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package taskmanager.services.replication;
+
+import taskmanager.core.Task;
+import taskmanager.data.TaskRecordCodec;
+import taskmanager.exceptions.RepositoryException;
+import taskmanager.services.TaskService;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Accepts follower connections and ships the journal to each of them.
+ *
+ * Protocol (one UTF-8 line per message):
+ *   follower -> primary: HELLO epoch seq, then ACK seq after each applied entry
+ *   primary -> follower: SNAPSHOT epoch seq count + count task lines + END,
+ *                        PUT seq millis line, DEL seq millis id, HB epoch seq millis
+ * A heartbeat goes out whenever a follower has been idle for HEARTBEAT_MILLIS.
+ */
+final class PrimaryServer implements Closeable {
+    static final long HEARTBEAT_MILLIS = 1000;
+
+    private final TaskService service;
+    private final ReplicationJournal journal;
+    private final ServerSocket server;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    private final class Session {
+        final Socket socket;
+        final String address;
+        volatile long ackedSeq = -1;
+        volatile long lastAckMillis = System.currentTimeMillis();
+
+        Session(Socket socket) {
+            this.socket = socket;
+            this.address = socket.getRemoteSocketAddress().toString();
+        }
+    }
+
+    PrimaryServer(TaskService service, ReplicationJournal journal, int port) {
+        this.service = service;
+        this.journal = journal;
+        try {
+            this.server = new ServerSocket(port);
+        } catch (IOException e) {
+            throw new RepositoryException("Cannot listen for followers on port " + port + ": " + e.getMessage());
+        }
+        daemon("replication-accept", this::acceptLoop).start();
+    }
+
+    int getPort() {
+        return server.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Session s = new Session(server.accept());
+                sessions.add(s);
+                daemon("replication-ship " + s.address, () -> ship(s)).start();
+            } catch (IOException e) {
+                if (!closed) sleepQuietly(100);
+            }
+        }
+    }
+
+    private void ship(Session s) {
+        try (Socket socket = s.socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            String[] hello = readLine(in).split(" ");
+            if (hello.length != 3 || !hello[0].equals("HELLO")) return;
+            long sent = Long.parseLong(hello[2]);
+            if (journal.canResume(hello[1], sent)) {
+                heartbeat(out); // tells the follower the current epoch
+            } else {
+                sent = sendSnapshot(out);
+            }
+            daemon("replication-acks " + s.address, () -> readAcks(s, in)).start();
+
+            while (!closed && !socket.isClosed()) {
+                List<ReplicationJournal.Entry> batch = journal.awaitAfter(sent, HEARTBEAT_MILLIS);
+                if (batch == null) {
+                    sent = sendSnapshot(out); // fell behind the journal
+                } else if (batch.isEmpty()) {
+                    heartbeat(out);
+                } else {
+                    for (ReplicationJournal.Entry e : batch) {
+                        out.write(e.line());
+                        out.write('\n');
+                    }
+                    out.flush();
+                    sent = batch.get(batch.size() - 1).seq;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // follower went away or sent garbage; it reconnects with HELLO
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sessions.remove(s);
+        }
+    }
+
+    private void heartbeat(Writer out) throws IOException {
+        out.write("HB " + journal.epoch() + " " + journal.lastSeq() + " " + System.currentTimeMillis() + "\n");
+        out.flush();
+    }
+
+    // The position and the task list are read under the service lock, so they match.
+    private long sendSnapshot(Writer out) throws IOException {
+        String epoch;
+        long seq;
+        List<String> lines;
+        synchronized (service) {
+            epoch = journal.epoch();
+            seq = journal.lastSeq();
+            List<Task> tasks = service.readAll();
+            lines = new ArrayList<>(tasks.size());
+            for (Task t : tasks) lines.add(TaskRecordCodec.encode(t));
+        }
+        out.write("SNAPSHOT " + epoch + " " + seq + " " + lines.size() + "\n");
+        for (String line : lines) {
+            out.write(line);
+            out.write('\n');
+        }
+        out.write("END\n");
+        out.flush();
+        return seq;
+    }
+
+    private void readAcks(Session s, BufferedReader in) {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("ACK ")) {
+                    s.ackedSeq = Long.parseLong(line.substring(4).trim());
+                    s.lastAckMillis = System.currentTimeMillis();
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // fall through and drop the session
+        }
+        try {
+            s.socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * One line per connected follower: acknowledged position and how far behind it is.
+     */
+    List<String> describeFollowers() {
+        long last = journal.lastSeq();
+        long now = System.currentTimeMillis();
+        List<String> result = new ArrayList<>();
+        for (Session s : sessions) {
+            String acked = s.ackedSeq < 0 ? "none yet" : String.valueOf(s.ackedSeq);
+            long behind = s.ackedSeq < 0 ? last : last - s.ackedSeq;
+            result.add(s.address + ": acked " + acked + ", " + behind + " entries behind, last ack "
+                    + (now - s.lastAckMillis) + " ms ago");
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        for (Session s : sessions) {
+            try {
+                s.socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static String readLine(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (line == null) throw new SocketException("Connection closed");
+        return line;
+    }
+
+    static Thread daemon(String name, Runnable r) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package taskmanager.services.replication;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded in-memory journal of committed mutations, numbered by a sequence that
+ * only grows. The primary appends to it; a follower copies every entry it applies,
+ * so a promoted follower can keep serving the other followers incrementally.
+ *
+ * Each primary term has its own epoch. A follower can resume from (epoch, seq) if the
+ * entries after seq are still here and seq belongs to this node's history: either the
+ * current epoch, or the previous one up to the point where this node took over.
+ * Anything else needs a full snapshot.
+ */
+final class ReplicationJournal {
+    static final int DEFAULT_CAPACITY = 10_000;
+
+    static final class Entry {
+        final long seq;
+        final long millis; // commit time on the primary
+        final String op;   // PUT or DEL
+        final String payload;
+
+        Entry(long seq, long millis, String op, String payload) {
+            this.seq = seq;
+            this.millis = millis;
+            this.op = op;
+            this.payload = payload;
+        }
+
+        String line() {
+            return op + " " + seq + " " + millis + " " + payload;
+        }
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private String epoch;
+    private long lastSeq;
+    private String previousEpoch;
+    private long handoverSeq = -1;
+
+    ReplicationJournal(String epoch, long lastSeq) {
+        this(epoch, lastSeq, DEFAULT_CAPACITY);
+    }
+
+    ReplicationJournal(String epoch, long lastSeq, int capacity) {
+        this.epoch = epoch;
+        this.lastSeq = lastSeq;
+        this.capacity = capacity;
+    }
+
+    synchronized String epoch() {
+        return epoch;
+    }
+
+    synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Appends a new mutation on the primary and wakes up the shipping threads.
+     */
+    synchronized Entry append(String op, String payload) {
+        return add(new Entry(lastSeq + 1, System.currentTimeMillis(), op, payload));
+    }
+
+    /**
+     * Copies an entry received from the primary, keeping its sequence number.
+     */
+    synchronized void record(Entry e) {
+        add(e);
+    }
+
+    private Entry add(Entry e) {
+        entries.addLast(e);
+        if (entries.size() > capacity) entries.removeFirst();
+        lastSeq = e.seq;
+        notifyAll();
+        return e;
+    }
+
+    /**
+     * Starts over at the given position, e.g. after installing a snapshot.
+     */
+    synchronized void reset(String epoch, long seq) {
+        entries.clear();
+        this.epoch = epoch;
+        this.lastSeq = seq;
+        this.previousEpoch = null;
+        this.handoverSeq = -1;
+    }
+
+    /**
+     * Begins a new primary term that continues the sequence of the current one.
+     */
+    synchronized void startEpoch(String newEpoch) {
+        previousEpoch = epoch;
+        handoverSeq = lastSeq;
+        epoch = newEpoch;
+    }
+
+    /**
+     * Takes over the primary's epoch on a follower that resumed without a snapshot.
+     * Returns false if it already had it.
+     */
+    synchronized boolean adoptEpoch(String primaryEpoch) {
+        if (primaryEpoch.equals(epoch)) return false;
+        epoch = primaryEpoch;
+        return true;
+    }
+
+    synchronized boolean canResume(String followerEpoch, long seq) {
+        long first = entries.isEmpty() ? lastSeq + 1 : entries.peekFirst().seq;
+        if (seq < first - 1) return false;
+        if (followerEpoch.equals(epoch)) return seq <= lastSeq;
+        return followerEpoch.equals(previousEpoch) && seq <= handoverSeq;
+    }
+
+    /**
+     * Entries with a sequence above seq, waiting up to timeoutMillis for one to arrive.
+     * An empty list means nothing new; null means the entries right after seq were
+     * already dropped and the follower needs a snapshot.
+     */
+    synchronized List<Entry> awaitAfter(long seq, long timeoutMillis) throws InterruptedException {
+        if (lastSeq <= seq) wait(timeoutMillis);
+        if (lastSeq > seq && (entries.isEmpty() || entries.peekFirst().seq > seq + 1)) return null;
+        List<Entry> result = new ArrayList<>();
+        for (Entry e : entries) {
+            if (e.seq > seq) result.add(e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,140 @@
+package taskmanager.services.replication;
+
+import taskmanager.core.Task;
+import taskmanager.data.PersonRepository;
+import taskmanager.data.TaskRecordCodec;
+import taskmanager.exceptions.InvalidDataException;
+import taskmanager.services.TaskChangeListener;
+import taskmanager.services.TaskService;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Warm-standby replication of the task store.
+ *
+ * The primary journals every committed mutation (PUT with the encoded task, or DEL with
+ * its id) and streams the journal to its followers over TCP. Followers apply it to their
+ * own repository, serve reads only, and report how far behind they are. promote() turns a
+ * follower into a primary on its own port, continuing the same sequence; the remaining
+ * followers reach it by listing its address after the old primary's.
+ *
+ * Replication is asynchronous: a change is acknowledged to the user once it is stored
+ * locally, so a primary crash can lose whatever its followers had not received yet.
+ */
+public class Replicator implements TaskChangeListener {
+    private final TaskService service;
+    private final ReplicationJournal journal;
+    private final int port;
+    private FollowerClient follower;
+    private PrimaryServer primary;
+
+    private Replicator(TaskService service, ReplicationJournal journal, int port) {
+        this.service = service;
+        this.journal = journal;
+        this.port = port;
+    }
+
+    /**
+     * Starts shipping this node's changes to followers that connect on the given port.
+     */
+    public static Replicator primary(TaskService service, int port) {
+        Replicator r = new Replicator(service, new ReplicationJournal(newEpoch(), 0), port);
+        r.primary = new PrimaryServer(service, r.journal, port);
+        service.addListener(r);
+        return r;
+    }
+
+    /**
+     * Follows the first reachable primary among the "host:port" addresses and makes the
+     * service read-only. The position reached is kept in stateFile across restarts.
+     *
+     * @param port the port to listen on if this node is promoted
+     */
+    public static Replicator follower(TaskService service, PersonRepository people, List<String> addresses,
+                                      int port, File stateFile) {
+        List<InetSocketAddress> parsed = new ArrayList<>();
+        for (String a : addresses) parsed.add(parseAddress(a));
+        if (parsed.isEmpty()) throw new InvalidDataException("At least one primary address is required.");
+        Replicator r = new Replicator(service, FollowerClient.loadJournal(stateFile), port);
+        service.setReadOnly(true);
+        service.addListener(r);
+        r.follower = new FollowerClient(service, people, r.journal, parsed, stateFile);
+        return r;
+    }
+
+    private static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        try {
+            if (colon < 1) throw new NumberFormatException();
+            return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidDataException("Invalid primary address '" + address + "'. Use host:port.");
+        }
+    }
+
+    private static String newEpoch() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public synchronized boolean isPrimary() {
+        return primary != null;
+    }
+
+    /**
+     * Stops following and starts accepting followers on this node's port.
+     * Call while holding the TaskService lock so no replicated change lands afterwards.
+     */
+    public synchronized void promote() {
+        if (primary != null) throw new InvalidDataException("This node is already the primary.");
+        PrimaryServer server = new PrimaryServer(service, journal, port);
+        follower.close();
+        follower = null;
+        journal.startEpoch(newEpoch());
+        primary = server;
+        service.setReadOnly(false);
+    }
+
+    /**
+     * Role, position and lag, one line per follower on a primary.
+     */
+    public synchronized String status() {
+        if (primary == null) return follower.describe();
+        StringBuilder sb = new StringBuilder("Primary on port " + primary.getPort() + ", epoch " + journal.epoch()
+                + ", at " + journal.lastSeq());
+        List<String> followers = primary.describeFollowers();
+        if (followers.isEmpty()) sb.append("\n  no followers connected");
+        for (String f : followers) sb.append("\n  ").append(f);
+        return sb.toString();
+    }
+
+    // Followers apply replicated changes through the service too; only a primary journals them.
+
+    @Override
+    public void taskAdded(Task task) {
+        if (isPrimary()) journal.append("PUT", TaskRecordCodec.encode(task));
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        if (isPrimary()) journal.append("PUT", TaskRecordCodec.encode(task));
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        if (isPrimary()) journal.append("DEL", task.getId());
+    }
+
+    // Leaves the service before taking this lock: the service calls the listener methods
+    // holding its own lock, and those take this one through isPrimary().
+    public void close() {
+        service.removeListener(this);
+        synchronized (this) {
+            if (follower != null) follower.close();
+            if (primary != null) primary.close();
+        }
+    }
+}
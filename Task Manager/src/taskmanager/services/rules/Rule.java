@@ -0,0 +1,80 @@
+package taskmanager.services.rules;
+
+import taskmanager.core.Task;
+import taskmanager.services.query.Condition;
+import taskmanager.services.query.TaskQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * "If these conditions hold, set these fields", e.g.
+ *   if cat=BUG_FIX and overdue then eisenhower=I
+ *
+ * The conditions are the same as those of a find query. Each action sets one field;
+ * an assignee action may name several people, and the tasks are then spread over them,
+ * each going to whoever has the fewest tasks at that point.
+ */
+public class Rule {
+    private final String text;
+    private final List<Condition> conditions;
+    private final List<Action> actions;
+
+    /** Sets one field: STATUS, CATEGORY, ASSIGNEE, DUE or EISENHOWER. */
+    public static class Action {
+        private final Condition.Field field;
+        private final Object value;               // Status, Category, LocalDate or String; null clears DUE and EISENHOWER
+        private final List<String> assigneeIds;   // for ASSIGNEE, in order of preference on equal load
+
+        public Action(Condition.Field field, Object value) {
+            this(field, value, Collections.emptyList());
+        }
+
+        private Action(Condition.Field field, Object value, List<String> assigneeIds) {
+            this.field = field;
+            this.value = value;
+            this.assigneeIds = assigneeIds;
+        }
+
+        public static Action assignTo(List<String> personIds) {
+            if (personIds.isEmpty()) throw new IllegalArgumentException("An assignee action needs at least one person");
+            return new Action(Condition.Field.ASSIGNEE, null, Collections.unmodifiableList(new ArrayList<>(personIds)));
+        }
+
+        public Condition.Field getField() { return field; }
+        public Object getValue() { return value; }
+        public List<String> getAssigneeIds() { return assigneeIds; }
+
+        @Override
+        public String toString() {
+            String v = field == Condition.Field.ASSIGNEE ? String.join("|", assigneeIds) : value == null ? "none" : value.toString();
+            return field.name().toLowerCase() + "=" + v;
+        }
+    }
+
+    /**
+     * @param text as written, for reports
+     */
+    public Rule(String text, List<Condition> conditions, List<Action> actions) {
+        if (actions.isEmpty()) throw new IllegalArgumentException("A rule needs at least one action");
+        this.text = text;
+        this.conditions = Collections.unmodifiableList(new ArrayList<>(conditions));
+        this.actions = Collections.unmodifiableList(new ArrayList<>(actions));
+    }
+
+    public String getText() { return text; }
+    public List<Condition> getConditions() { return conditions; }
+    public List<Action> getActions() { return actions; }
+
+    /** True for the tasks the rule applies to. */
+    public Predicate<Task> predicate() {
+        return TaskQuery.compile(conditions);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
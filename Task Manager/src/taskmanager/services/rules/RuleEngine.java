@@ -0,0 +1,275 @@
+package taskmanager.services.rules;
+
+import taskmanager.core.Category;
+import taskmanager.core.Person;
+import taskmanager.core.Status;
+import taskmanager.core.Task;
+import taskmanager.exceptions.InvalidDataException;
+import taskmanager.exceptions.NotFoundException;
+import taskmanager.services.query.Condition;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Works out what a set of rules would change across all tasks, without changing anything.
+ *
+ * The tasks are split into ranges on a fork-join pool, and each range tests every rule's
+ * predicate on each of its tasks. A range yields the positions of the tasks that matched
+ * any rule, with one bit per matching rule, and the ranges are joined in order. The new
+ * values are then worked out on the calling thread in task order: that is cheap next to
+ * the scan, and spreading tasks over people by load has to see them one after another
+ * to give the same answer every time.
+ *
+ * Every rule tests the tasks as they were before the sweep. When several rules set the
+ * same field of a task the last one wins, and a value equal to the current one is no change.
+ */
+public class RuleEngine {
+    public static final int MAX_RULES = 64;
+    private static final int LEAF_SIZE = 16_384;
+
+    private final ForkJoinPool pool;
+
+    public RuleEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public RuleEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** The fields one task would get, with their current values. */
+    public static class Change {
+        private final Task task;
+        private final long rules; // bit i set when rule i matched
+        private final EnumMap<Condition.Field, Object> before = new EnumMap<>(Condition.Field.class);
+        private final EnumMap<Condition.Field, Object> after = new EnumMap<>(Condition.Field.class);
+
+        Change(Task task, long rules) {
+            this.task = task;
+            this.rules = rules;
+        }
+
+        public Task getTask() { return task; }
+        public Map<Condition.Field, Object> getBefore() { return Collections.unmodifiableMap(before); }
+        public Map<Condition.Field, Object> getAfter() { return Collections.unmodifiableMap(after); }
+
+        /** Whether rule number index (from 0, in the order given) matched the task. */
+        public boolean matched(int index) {
+            return (rules & (1L << index)) != 0;
+        }
+
+        /** Sets the new values on the task. */
+        public void apply() {
+            for (Map.Entry<Condition.Field, Object> e : after.entrySet()) {
+                Object v = e.getValue();
+                switch (e.getKey()) {
+                    case STATUS: task.updateStatus((Status) v); break;
+                    case CATEGORY: task.setCategory((Category) v); break;
+                    case ASSIGNEE: task.assignPerson((Person) v); break;
+                    case DUE: task.setDueDate((LocalDate) v); break;
+                    case EISENHOWER: task.setEisenhower((String) v); break;
+                    default: throw new IllegalStateException("Rules cannot set " + e.getKey());
+                }
+            }
+        }
+
+        /** E.g. "T42 (Fix login): eisenhower II -> I, assignee 7 -> 4". */
+        public String describe() {
+            StringBuilder sb = new StringBuilder(task.getId()).append(" (").append(task.getTitle()).append("):");
+            String sep = " ";
+            for (Condition.Field f : after.keySet()) {
+                sb.append(sep).append(f.name().toLowerCase()).append(' ')
+                        .append(format(before.get(f))).append(" -> ").append(format(after.get(f)));
+                sep = ", ";
+            }
+            return sb.toString();
+        }
+
+        private static String format(Object v) {
+            if (v == null) return "none";
+            return v instanceof Person ? ((Person) v).getId() : v.toString();
+        }
+    }
+
+    public static class Result {
+        private final List<Change> changes;
+        private final int[] matches;
+        private final int tasks;
+        private final long nanos;
+        private final int parallelism;
+
+        Result(List<Change> changes, int[] matches, int tasks, long nanos, int parallelism) {
+            this.changes = changes;
+            this.matches = matches;
+            this.tasks = tasks;
+            this.nanos = nanos;
+            this.parallelism = parallelism;
+        }
+
+        /** In task order; only tasks with at least one field that would change. */
+        public List<Change> getChanges() { return changes; }
+
+        /** How many tasks rule number index matched, changed or not. */
+        public int getMatches(int index) { return matches[index]; }
+
+        public int getTasks() { return tasks; }
+        public long getNanos() { return nanos; }
+        public int getParallelism() { return parallelism; }
+    }
+
+    /**
+     * @param people resolves the ids of assignee actions
+     * @throws InvalidDataException if there are more than MAX_RULES rules
+     * @throws NotFoundException if an assignee action names an unknown person
+     */
+    public Result evaluate(List<Task> tasks, List<Rule> rules, Function<String, Person> people) {
+        if (rules.size() > MAX_RULES) throw new InvalidDataException("At most " + MAX_RULES + " rules can run in one sweep.");
+        long start = System.nanoTime();
+        Map<String, Person> assignees = new HashMap<>();
+        for (Rule r : rules) {
+            for (Rule.Action a : r.getActions()) {
+                for (String id : a.getAssigneeIds()) {
+                    Person p = people.apply(id);
+                    if (p == null) throw new NotFoundException("Person with ID " + id + " is not found.");
+                    assignees.put(id, p);
+                }
+            }
+        }
+        List<Predicate<Task>> predicates = new ArrayList<>();
+        for (Rule r : rules) predicates.add(r.predicate());
+        Task[] all = tasks.toArray(new Task[0]);
+        Matches found = pool.invoke(new Scan(all, predicates, 0, all.length));
+
+        Map<String, Integer> load = new HashMap<>();
+        if (!assignees.isEmpty()) {
+            for (String id : assignees.keySet()) load.put(id, 0);
+            for (Task t : all) load.computeIfPresent(t.getAssignee().getId(), (k, n) -> n + 1);
+        }
+        int[] matches = new int[rules.size()];
+        List<Change> changes = new ArrayList<>();
+        for (int m = 0; m < found.size; m++) {
+            Task task = all[found.indexes[m]];
+            long mask = found.rules[m];
+            EnumMap<Condition.Field, Object> wanted = new EnumMap<>(Condition.Field.class);
+            List<String> spread = null;
+            for (int r = 0; r < rules.size(); r++) {
+                if ((mask & (1L << r)) == 0) continue;
+                matches[r]++;
+                for (Rule.Action a : rules.get(r).getActions()) {
+                    if (a.getField() == Condition.Field.ASSIGNEE) spread = a.getAssigneeIds();
+                    else wanted.put(a.getField(), a.getValue());
+                }
+            }
+            if (spread != null) wanted.put(Condition.Field.ASSIGNEE, leastLoaded(spread, assignees, load));
+            Change c = new Change(task, mask);
+            for (Map.Entry<Condition.Field, Object> e : wanted.entrySet()) {
+                Object current = valueOf(task, e.getKey());
+                if (same(current, e.getValue())) continue;
+                c.before.put(e.getKey(), current);
+                c.after.put(e.getKey(), e.getValue());
+            }
+            if (c.after.isEmpty()) continue;
+            if (c.after.containsKey(Condition.Field.ASSIGNEE)) {
+                load.computeIfPresent(task.getAssignee().getId(), (k, n) -> n - 1);
+                load.merge(((Person) c.after.get(Condition.Field.ASSIGNEE)).getId(), 1, Integer::sum);
+            }
+            changes.add(c);
+        }
+        return new Result(changes, matches, all.length, System.nanoTime() - start, pool.getParallelism());
+    }
+
+    // First on the list among those with the fewest tasks.
+    private static Person leastLoaded(List<String> ids, Map<String, Person> assignees, Map<String, Integer> load) {
+        String best = ids.get(0);
+        for (String id : ids) {
+            if (load.get(id) < load.get(best)) best = id;
+        }
+        return assignees.get(best);
+    }
+
+    private static Object valueOf(Task t, Condition.Field field) {
+        switch (field) {
+            case STATUS: return t.getStatus();
+            case CATEGORY: return t.getCategory();
+            case ASSIGNEE: return t.getAssignee();
+            case DUE: return t.getDueDate();
+            case EISENHOWER: return t.getEisenhower();
+            default: throw new IllegalStateException("Rules cannot set " + field);
+        }
+    }
+
+    private static boolean same(Object current, Object wanted) {
+        if (current instanceof Person && wanted instanceof Person) {
+            return ((Person) current).getId().equals(((Person) wanted).getId());
+        }
+        return Objects.equals(current, wanted);
+    }
+
+    /** Positions of matching tasks with their rule bits, in ascending order. */
+    private static final class Matches {
+        int[] indexes = new int[16];
+        long[] rules = new long[16];
+        int size;
+
+        void add(int index, long mask) {
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+                rules = Arrays.copyOf(rules, size * 2);
+            }
+            indexes[size] = index;
+            rules[size++] = mask;
+        }
+
+        Matches append(Matches later) {
+            if (later.size == 0) return this;
+            if (size + later.size > indexes.length) {
+                indexes = Arrays.copyOf(indexes, size + later.size);
+                rules = Arrays.copyOf(rules, size + later.size);
+            }
+            System.arraycopy(later.indexes, 0, indexes, size, later.size);
+            System.arraycopy(later.rules, 0, rules, size, later.size);
+            size += later.size;
+            return this;
+        }
+    }
+
+    private static final class Scan extends RecursiveTask<Matches> {
+        private static final long serialVersionUID = 1L;
+
+        private final Task[] tasks;
+        private final List<Predicate<Task>> predicates;
+        private final int from, to;
+
+        Scan(Task[] tasks, List<Predicate<Task>> predicates, int from, int to) {
+            this.tasks = tasks;
+            this.predicates = predicates;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Matches compute() {
+            if (to - from <= LEAF_SIZE) {
+                Matches m = new Matches();
+                for (int i = from; i < to; i++) {
+                    long mask = 0;
+                    for (int r = 0; r < predicates.size(); r++) {
+                        if (predicates.get(r).test(tasks[i])) mask |= 1L << r;
+                    }
+                    if (mask != 0) m.add(i, mask);
+                }
+                return m;
+            }
+            int mid = (from + to) >>> 1;
+            Scan left = new Scan(tasks, predicates, from, mid);
+            left.fork();
+            Matches right = new Scan(tasks, predicates, mid, to).compute();
+            return left.join().append(right);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package taskmanager.services.transfer;
+
+import taskmanager.exceptions.InvalidDataException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * RFC 4180 style CSV: comma separated, fields with commas, quotes or line breaks are
+ * quoted and quotes inside them doubled. The first record names the columns; unknown
+ * columns are an error so a misspelt header does not silently drop data.
+ */
+final class CsvFormat extends RecordFormat {
+    private String[] columns; // canonical field per column
+
+    @Override
+    RawReader open(Reader in) throws IOException {
+        RecordSplitter splitter = new RecordSplitter(in);
+        Raw header = splitter.next();
+        if (header == null) throw new InvalidDataException("The file is empty; the first line must name the columns.");
+        List<String> names = split(header.text);
+        columns = new String[names.size()];
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = field(names.get(i));
+            if (columns[i] == null) throw new InvalidDataException("Unknown column '" + names.get(i) + "'.");
+            if (!seen.add(columns[i])) throw new InvalidDataException("Column '" + names.get(i) + "' appears twice.");
+        }
+        return splitter;
+    }
+
+    @Override
+    Map<String, String> parse(String raw) {
+        List<String> values = split(raw);
+        if (values.size() != columns.length) {
+            throw new InvalidDataException("expected " + columns.length + " fields, found " + values.size());
+        }
+        Map<String, String> record = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) record.put(columns[i], values.get(i));
+        return record;
+    }
+
+    private static List<String> split(String raw) {
+        List<String> values = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (quoted) {
+                if (c != '"') sb.append(c);
+                else if (i + 1 < raw.length() && raw.charAt(i + 1) == '"') sb.append(raw.charAt(++i));
+                else quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        if (quoted) throw new InvalidDataException("unterminated quote");
+        values.add(sb.toString());
+        return values;
+    }
+
+    @Override
+    void begin(Writer out) throws IOException {
+        out.write(String.join(",", FIELDS));
+        out.write('\n');
+    }
+
+    @Override
+    void write(Writer out, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.write(',');
+            if (values[i] != null) out.write(quote(values[i]));
+        }
+        out.write('\n');
+    }
+
+    @Override
+    void end(Writer out) {
+    }
+
+    private static String quote(String value) {
+        boolean plain = true;
+        for (int i = 0; i < value.length() && plain; i++) {
+            char c = value.charAt(i);
+            plain = c != ',' && c != '"' && c != '\n' && c != '\r';
+        }
+        return plain ? value : "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Cuts the input into records at line breaks outside quotes. Blank lines are skipped.
+     */
+    private static final class RecordSplitter implements RawReader {
+        private final Reader in;
+        private final char[] buf = new char[1 << 16];
+        private int pos, limit;
+        private long line = 1;
+
+        RecordSplitter(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public Raw next() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                long start = line;
+                boolean quoted = false;
+                int c;
+                while ((c = read()) >= 0) {
+                    if (c == '\n') {
+                        line++;
+                        if (!quoted) break;
+                    }
+                    if (c == '"') quoted = !quoted;
+                    sb.append((char) c);
+                }
+                int end = sb.length();
+                if (end > 0 && sb.charAt(end - 1) == '\r') sb.setLength(end - 1);
+                if (sb.length() > 0) return new Raw(start, sb.toString());
+                if (c < 0) return null;
+            }
+        }
+
+        private int read() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buf[pos++];
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package taskmanager.services.transfer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of an import: counts, and the first rejected records with their reasons.
+ */
+public final class ImportReport {
+    private final long read;
+    private final long imported;
+    private final long rejected;
+    private final int batches;
+    private final List<String> errors;
+    private final long millis;
+
+    ImportReport(long read, long imported, long rejected, int batches, List<String> errors, long millis) {
+        this.read = read;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.batches = batches;
+        this.errors = Collections.unmodifiableList(errors);
+        this.millis = millis;
+    }
+
+    public long getRead() { return read; }
+    public long getImported() { return imported; }
+    public long getRejected() { return rejected; }
+    public int getBatches() { return batches; }
+
+    /** "line N: reason" for at most the first TaskImporter.MAX_ERRORS rejected records. */
+    public List<String> getErrors() { return errors; }
+
+    public String summary() {
+        return "Read " + read + " record(s): imported " + imported + " in " + batches + " batch(es), rejected "
+                + rejected + " (" + millis + " ms)";
+    }
+}
@@ -0,0 +1,228 @@
+package taskmanager.services.transfer;
+
+import taskmanager.exceptions.InvalidDataException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JSON records: either one array of objects or one object per line (JSON Lines).
+ * Objects are flat; values are strings, numbers, booleans or null. Export writes an array.
+ */
+final class JsonFormat extends RecordFormat {
+    private boolean first = true; // no comma before the first exported object
+
+    @Override
+    RawReader open(Reader in) {
+        return new ObjectSplitter(in);
+    }
+
+    @Override
+    Map<String, String> parse(String raw) {
+        Parser p = new Parser(raw);
+        Map<String, String> record = new HashMap<>();
+        p.expect('{');
+        if (!p.consume('}')) {
+            do {
+                String key = p.string();
+                p.expect(':');
+                String value = p.value();
+                String name = field(key);
+                if (name == null) throw new InvalidDataException("unknown key \"" + key + "\"");
+                record.put(name, value);
+            } while (p.consume(','));
+            p.expect('}');
+        }
+        p.skipSpace();
+        if (!p.atEnd()) throw new InvalidDataException("unexpected text after the object");
+        return record;
+    }
+
+    @Override
+    void begin(Writer out) throws IOException {
+        out.write("[\n");
+    }
+
+    @Override
+    void write(Writer out, String[] values) throws IOException {
+        if (!first) out.write(",\n");
+        first = false;
+        out.write('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.write(',');
+            out.write('"');
+            out.write(FIELDS[i]);
+            out.write("\":");
+            if (values[i] == null) out.write("null");
+            else quote(out, values[i]);
+        }
+        out.write('}');
+    }
+
+    @Override
+    void end(Writer out) throws IOException {
+        out.write(first ? "]\n" : "\n]\n");
+    }
+
+    private static void quote(Writer out, String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+                    else out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Finds each top-level object by matching braces outside strings. Whatever lies
+     * between objects must be whitespace, commas or the enclosing array brackets.
+     */
+    private static final class ObjectSplitter implements RawReader {
+        private final Reader in;
+        private final char[] buf = new char[1 << 16];
+        private int pos, limit;
+        private long line = 1;
+
+        ObjectSplitter(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public Raw next() throws IOException {
+            int c;
+            while ((c = read()) >= 0) {
+                if (c == '{') break;
+                if (c == '\n') line++;
+                else if (!Character.isWhitespace(c) && c != ',' && c != '[' && c != ']') {
+                    throw new InvalidDataException("line " + line + ": expected an object, found '" + (char) c + "'");
+                }
+            }
+            if (c < 0) return null;
+            long start = line;
+            StringBuilder sb = new StringBuilder("{");
+            int depth = 1;
+            boolean inString = false, escaped = false;
+            while (depth > 0 && (c = read()) >= 0) {
+                sb.append((char) c);
+                if (c == '\n') line++;
+                if (inString) {
+                    if (escaped) escaped = false;
+                    else if (c == '\\') escaped = true;
+                    else if (c == '"') inString = false;
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            }
+            if (depth > 0) throw new InvalidDataException("line " + start + ": object is not closed");
+            return new Raw(start, sb.toString());
+        }
+
+        private int read() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buf[pos++];
+        }
+    }
+
+    private static final class Parser {
+        private final String s;
+        private int i;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        void skipSpace() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        }
+
+        boolean atEnd() {
+            return i >= s.length();
+        }
+
+        boolean consume(char c) {
+            skipSpace();
+            if (i < s.length() && s.charAt(i) == c) {
+                i++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) throw new InvalidDataException("expected '" + c + "' at offset " + i);
+        }
+
+        // The value as text, or null for JSON null.
+        String value() {
+            skipSpace();
+            if (i >= s.length()) throw new InvalidDataException("missing value");
+            char c = s.charAt(i);
+            if (c == '"') return string();
+            if (c == '{' || c == '[') throw new InvalidDataException("nested objects and arrays are not supported");
+            int start = i;
+            while (i < s.length() && ",}] \t\r\n".indexOf(s.charAt(i)) < 0) i++;
+            String token = s.substring(start, i);
+            if (token.equals("null")) return null;
+            if (token.equals("true") || token.equals("false") || token.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) return token;
+            throw new InvalidDataException("invalid value '" + token + "'");
+        }
+
+        String string() {
+            skipSpace();
+            if (i >= s.length() || s.charAt(i) != '"') throw new InvalidDataException("expected a string at offset " + i);
+            i++;
+            StringBuilder sb = new StringBuilder();
+            while (i < s.length()) {
+                char c = s.charAt(i++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (i >= s.length()) break;
+                char e = s.charAt(i++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (i + 4 > s.length()) throw new InvalidDataException("bad \\u escape");
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw new InvalidDataException("bad \\u escape");
+                        }
+                        i += 4;
+                        break;
+                    default: sb.append(e); // \" \\ \/
+                }
+            }
+            throw new InvalidDataException("unterminated string");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package taskmanager.services.transfer;
+
+import taskmanager.exceptions.InvalidDataException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * A flat record format for import and export. Records are read one at a time as raw
+ * text by a single reader, then parsed into field maps, possibly on other threads.
+ */
+abstract class RecordFormat {
+    static final String[] FIELDS = {"id", "title", "description", "category", "status", "assignee", "due", "eisenhower"};
+
+    /** A record as it appears in the file, and the line it starts on. */
+    static final class Raw {
+        final long line;
+        final String text;
+
+        Raw(long line, String text) {
+            this.line = line;
+            this.text = text;
+        }
+    }
+
+    interface RawReader {
+        /** The next record, or null at the end of the input. */
+        Raw next() throws IOException;
+    }
+
+    /**
+     * "csv" or "json"; an empty name is taken from the file extension (.csv, .json or .jsonl).
+     */
+    static RecordFormat forName(String name, File file) {
+        String n = name == null ? "" : name.toLowerCase();
+        if (n.isEmpty()) {
+            String f = file.getName().toLowerCase();
+            if (f.endsWith(".csv")) n = "csv";
+            else if (f.endsWith(".json") || f.endsWith(".jsonl")) n = "json";
+            else throw new InvalidDataException("Cannot tell the format of " + file.getName() + "; add 'csv' or 'json'.");
+        }
+        switch (n) {
+            case "csv": return new CsvFormat();
+            case "json": return new JsonFormat();
+            default: throw new InvalidDataException("Unknown format '" + name + "'. Use 'csv' or 'json'.");
+        }
+    }
+
+    /**
+     * Starts reading; a CSV header is consumed here.
+     */
+    abstract RawReader open(Reader in) throws IOException;
+
+    /**
+     * Field name to value for one record, with names normalized by field().
+     * Safe to call from several threads once open() has returned.
+     */
+    abstract Map<String, String> parse(String raw);
+
+    abstract void begin(Writer out) throws IOException;
+
+    /** Writes one record; values line up with FIELDS, null for absent. */
+    abstract void write(Writer out, String[] values) throws IOException;
+
+    abstract void end(Writer out) throws IOException;
+
+    /**
+     * Canonical field name for a column or key, e.g. "Due Date" -> "due", or null if unknown.
+     */
+    static String field(String name) {
+        String n = name.trim().toLowerCase().replace("_", "").replace(" ", "").replace("-", "");
+        switch (n) {
+            case "id": case "taskid": return "id";
+            case "title": case "summary": return "title";
+            case "description": return "description";
+            case "category": case "type": return "category";
+            case "status": return "status";
+            case "assignee": case "assigneeid": return "assignee";
+            case "due": case "duedate": return "due";
+            case "eisenhower": case "quadrant": return "eisenhower";
+            default: return null;
+        }
+    }
+}
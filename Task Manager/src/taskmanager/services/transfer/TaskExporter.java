@@ -0,0 +1,47 @@
+package taskmanager.services.transfer;
+
+import taskmanager.core.Task;
+import taskmanager.exceptions.RepositoryException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Writes tasks as CSV or JSON, one record at a time through a fixed-size buffer.
+ * The columns are those TaskImporter reads, so an export can be imported again.
+ */
+public final class TaskExporter {
+
+    private TaskExporter() {
+    }
+
+    /**
+     * @param formatName "csv", "json", or empty to go by the file extension
+     * @return the number of tasks written
+     */
+    public static long export(Collection<Task> tasks, File file, String formatName) {
+        RecordFormat format = RecordFormat.forName(formatName, file);
+        long n = 0;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            format.begin(out);
+            for (Task t : tasks) {
+                format.write(out, new String[]{
+                        t.getId(),
+                        t.getTitle(),
+                        t.getDescription(),
+                        t.getCategory().name(),
+                        t.getStatus().name(),
+                        t.getAssignee().getId(),
+                        t.getDueDate() == null ? null : t.getDueDate().toString(),
+                        t.getEisenhower()
+                });
+                n++;
+            }
+            format.end(out);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to write " + file + ": " + e.getMessage());
+        }
+        return n;
+    }
+}
@@ -0,0 +1,235 @@
+package taskmanager.services.transfer;
+
+import taskmanager.core.Category;
+import taskmanager.core.Person;
+import taskmanager.core.Status;
+import taskmanager.core.Task;
+import taskmanager.exceptions.InvalidDataException;
+import taskmanager.exceptions.RepositoryException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Streams tasks from a CSV or JSON file into the repository.
+ *
+ * One thread cuts the input into raw records and groups them into batches of BATCH_SIZE.
+ * Batches are parsed and validated on a worker pool, at most two per worker in flight,
+ * so memory stays bounded by the batch size whatever the length of the file. Parsed
+ * batches are committed in file order on the calling thread, which also rejects ids
+ * that already exist, with one repository write per batch.
+ *
+ * Unlike tasks created at the prompt, imported tasks may carry a past due date, since
+ * migrated tickets are often overdue. A missing id is generated; a missing status is TO_DO.
+ * Records with status DONE are rejected, since completing a task deletes it.
+ */
+public class TaskImporter {
+    public static final int BATCH_SIZE = 5000;
+    public static final int MAX_ERRORS = 100;
+    private static final Pattern ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+    private static final Pattern LINE_BREAKS = Pattern.compile("[\\r\\n]+");
+
+    private final Function<String, Person> assignees;
+    private final Set<String> ids = new HashSet<>();
+    private final Consumer<List<Task>> commit;
+    private final List<String> errors = new ArrayList<>();
+    private long read, imported, rejected;
+    private int batches;
+
+    private static final class Parsed {
+        final Task[] tasks;       // null where the record was rejected
+        final String[] problems;  // why it was
+        final long[] lines;
+        final boolean[] generatedId;
+
+        Parsed(int n) {
+            tasks = new Task[n];
+            problems = new String[n];
+            lines = new long[n];
+            generatedId = new boolean[n];
+        }
+    }
+
+    /**
+     * @param existing tasks already stored, whose ids an imported record may not reuse
+     * @param commit   stores one batch of validated tasks
+     */
+    public TaskImporter(Function<String, Person> assignees, Collection<Task> existing, Consumer<List<Task>> commit) {
+        this.assignees = assignees;
+        this.commit = commit;
+        for (Task t : existing) ids.add(t.getId());
+    }
+
+    /**
+     * @param formatName "csv", "json", or empty to go by the file extension
+     */
+    public ImportReport run(File file, String formatName) {
+        long start = System.currentTimeMillis();
+        RecordFormat format = RecordFormat.forName(formatName, file);
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "task-import");
+            t.setDaemon(true);
+            return t;
+        });
+        ArrayDeque<Future<Parsed>> inFlight = new ArrayDeque<>();
+        try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            RecordFormat.RawReader records = format.open(in);
+            List<RecordFormat.Raw> batch = new ArrayList<>(BATCH_SIZE);
+            try {
+                RecordFormat.Raw raw;
+                while ((raw = records.next()) != null) {
+                    read++;
+                    batch.add(raw);
+                    if (batch.size() < BATCH_SIZE) continue;
+                    List<RecordFormat.Raw> full = batch;
+                    inFlight.add(pool.submit(() -> parse(format, full)));
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    if (inFlight.size() >= 2 * workers) commit(inFlight.poll());
+                }
+            } catch (InvalidDataException e) {
+                // the file is malformed past this point; keep what was read before it
+                rejected++;
+                error(e.getMessage() + " (import stopped)");
+            }
+            if (!batch.isEmpty()) {
+                List<RecordFormat.Raw> last = batch;
+                inFlight.add(pool.submit(() -> parse(format, last)));
+            }
+            while (!inFlight.isEmpty()) commit(inFlight.poll());
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to read " + file + ": " + e.getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+        return new ImportReport(read, imported, rejected, batches, errors, System.currentTimeMillis() - start);
+    }
+
+    private void commit(Future<Parsed> future) {
+        Parsed parsed;
+        try {
+            parsed = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Import interrupted.");
+        } catch (ExecutionException e) {
+            throw new RepositoryException("Import failed: " + e.getCause());
+        }
+        List<Task> batch = new ArrayList<>(parsed.tasks.length);
+        for (int i = 0; i < parsed.tasks.length; i++) {
+            Task t = parsed.tasks[i];
+            if (t == null) {
+                rejected++;
+                error("line " + parsed.lines[i] + ": " + parsed.problems[i]);
+                continue;
+            }
+            if (parsed.generatedId[i]) {
+                while (!ids.add(t.getId())) t = withId(t, newId());
+            } else if (!ids.add(t.getId())) {
+                rejected++;
+                error("line " + parsed.lines[i] + ": task id " + t.getId() + " already exists");
+                continue;
+            }
+            batch.add(t);
+        }
+        if (batch.isEmpty()) return;
+        commit.accept(batch);
+        imported += batch.size();
+        batches++;
+    }
+
+    private void error(String message) {
+        if (errors.size() < MAX_ERRORS) errors.add(message);
+    }
+
+    // Runs on a worker.
+    private Parsed parse(RecordFormat format, List<RecordFormat.Raw> raws) {
+        Parsed parsed = new Parsed(raws.size());
+        Map<String, Person> people = new HashMap<>();
+        for (int i = 0; i < raws.size(); i++) {
+            RecordFormat.Raw raw = raws.get(i);
+            parsed.lines[i] = raw.line;
+            try {
+                Map<String, String> record = format.parse(raw.text);
+                String id = trimmed(record.get("id"));
+                parsed.generatedId[i] = id == null;
+                parsed.tasks[i] = toTask(record, id == null ? newId() : id, people);
+            } catch (InvalidDataException e) {
+                parsed.problems[i] = e.getMessage();
+            }
+        }
+        return parsed;
+    }
+
+    private Task toTask(Map<String, String> record, String id, Map<String, Person> people) {
+        if (!ID.matcher(id).matches()) throw new InvalidDataException("invalid id '" + id + "'");
+
+        String title = trimmed(record.get("title"));
+        if (title == null) throw new InvalidDataException("title is required");
+        if (title.indexOf('\n') >= 0 || title.indexOf('\r') >= 0) title = LINE_BREAKS.matcher(title).replaceAll(" ");
+
+        String description = record.get("description");
+        if (description == null) description = "";
+
+        Category category = Category.OTHER;
+        String cat = trimmed(record.get("category"));
+        if (cat != null) category = parseEnum(Category.class, cat, "category");
+
+        Status status = Status.TO_DO;
+        String st = trimmed(record.get("status"));
+        if (st != null) status = parseEnum(Status.class, st, "status");
+        if (status == Status.DONE) throw new InvalidDataException("status DONE is not imported; completed tasks are deleted");
+
+        String assigneeId = trimmed(record.get("assignee"));
+        if (assigneeId == null) throw new InvalidDataException("assignee is required");
+        Person assignee = people.computeIfAbsent(assigneeId, assignees);
+        if (assignee == null) throw new InvalidDataException("person " + assigneeId + " does not exist");
+
+        LocalDate due = null;
+        String d = trimmed(record.get("due"));
+        if (d != null) {
+            try {
+                due = LocalDate.parse(d);
+            } catch (DateTimeParseException e) {
+                throw new InvalidDataException("invalid due date '" + d + "', use yyyy-MM-dd");
+            }
+        }
+
+        String eisenhower = trimmed(record.get("eisenhower"));
+        if (eisenhower != null) {
+            eisenhower = eisenhower.toUpperCase();
+            if (!eisenhower.equals("I") && !eisenhower.equals("II") && !eisenhower.equals("III") && !eisenhower.equals("IV")) throw new InvalidDataException("eisenhower must be I, II, III or IV");
+        }
+        return Task.restore(id, title, description, category, status, assignee, due, eisenhower);
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String what) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase().replace(' ', '_').replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidDataException("unknown " + what + " '" + value + "'");
+        }
+    }
+
+    private static String trimmed(String value) {
+        if (value == null) return null;
+        String t = value.trim();
+        return t.isEmpty() ? null : t;
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private static Task withId(Task t, String id) {
+        return Task.restore(id, t.getTitle(), t.getDescriptionText(), t.getCategory(), t.getStatus(), t.getAssignee(),
+                t.getDueDate(), t.getEisenhower());
+    }
+}
@@ -0,0 +1,321 @@
+package taskmanager.services.workspace;
+
+import taskmanager.core.Task;
+import taskmanager.data.Durability;
+import taskmanager.data.LoadProgress;
+import taskmanager.data.PersonRepository;
+import taskmanager.data.StorageEngine;
+import taskmanager.data.TaskRepository;
+import taskmanager.exceptions.InvalidDataException;
+import taskmanager.exceptions.NotFoundException;
+import taskmanager.exceptions.RepositoryException;
+import taskmanager.services.TaskChangeListener;
+import taskmanager.services.TaskService;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Named projects, each with its own task store, history, undo log and dependencies.
+ *
+ * The "default" project lives in the working directory, as before projects existed;
+ * any other project lives in projects/<name>/. People are shared by all projects.
+ * A project is loaded on first use. The loaded projects are kept in LRU order with an
+ * estimate of the heap each one holds, and when the total passes the budget the least
+ * recently used ones are flushed and closed. The current project, pinned projects
+ * (the one being replicated) and projects kept only in memory are never evicted.
+ *
+ * Cross-project reads snapshot the loaded projects and read the others straight from
+ * disk on a worker pool, without loading them into the workspace.
+ */
+public class Workspace {
+    public static final String DEFAULT_PROJECT = "default";
+    // Rough heap cost of one task with all of TaskService's indexes, besides its title.
+    // Descriptions are in the TextArena, off the heap.
+    private static final long BYTES_PER_TASK = 1500;
+    private static final String NAME_PATTERN = "[A-Za-z0-9_-]{1,40}";
+
+    private final PersonRepository people;
+    private final File root;
+    private final String storage;
+    private final Durability durability;
+    private final long budgetBytes;
+    private final LinkedHashMap<String, Project> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> pinned = new HashSet<>();
+    private final List<Consumer<TaskService>> openListeners = new ArrayList<>();
+    private final LoadProgress progress = new LoadProgress();
+    private String current = DEFAULT_PROJECT;
+
+    private static final class Project implements TaskChangeListener {
+        final String name;
+        final TaskRepository repo;
+        final TaskService service;
+        long estimatedBytes;
+        boolean dirty;
+
+        Project(String name, TaskRepository repo, TaskService service) {
+            this.name = name;
+            this.repo = repo;
+            this.service = service;
+            for (Task t : repo.getAll()) estimatedBytes += estimate(t);
+        }
+
+        @Override
+        public void taskAdded(Task task) {
+            estimatedBytes += estimate(task);
+            dirty = true;
+        }
+
+        @Override
+        public void taskUpdated(Task task) {
+            dirty = true;
+        }
+
+        @Override
+        public void taskRemoved(Task task) {
+            estimatedBytes = Math.max(0, estimatedBytes - estimate(task));
+            dirty = true;
+        }
+
+        void close() {
+            if (dirty) repo.flush();
+            service.close();
+            repo.close();
+        }
+    }
+
+    /**
+     * @param root        directory holding the non-default projects
+     * @param storage     the storage engine of every project, one of StorageEngine.KINDS
+     * @param durability  when each project's changes are forced to disk
+     * @param budgetBytes heap the loaded projects may use before the least recently used are evicted
+     * @throws IllegalArgumentException if storage is not a known engine
+     */
+    public Workspace(PersonRepository people, File root, String storage, Durability durability, long budgetBytes) {
+        if (!StorageEngine.KINDS.contains(storage)) {
+            throw new IllegalArgumentException("Unknown storage '" + storage + "'; use one of " + StorageEngine.KINDS);
+        }
+        this.people = people;
+        this.root = root;
+        this.storage = storage;
+        this.durability = durability;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Called with the service of every project as it is loaded, e.g. to attach listeners.
+     */
+    public synchronized void addOpenListener(Consumer<TaskService> listener) {
+        openListeners.add(listener);
+        for (Project p : loaded.values()) listener.accept(p.service);
+    }
+
+    /**
+     * Progress of the project load under way, or of the last one. Readable without
+     * waiting for the load, unlike the rest of the workspace.
+     */
+    public LoadProgress loadProgress() {
+        return progress;
+    }
+
+    public synchronized String currentName() {
+        return current;
+    }
+
+    /** The current project's service, loading it if needed. */
+    public synchronized TaskService current() {
+        return open(current).service;
+    }
+
+    /** The current project's repository, loading it if needed. */
+    public synchronized TaskRepository currentRepository() {
+        return open(current).repo;
+    }
+
+    /**
+     * The service of a project, loading it if needed. Loading it may evict other
+     * projects, never this one or the current one.
+     */
+    public synchronized TaskService service(String name) {
+        return open(name).service;
+    }
+
+    /**
+     * Makes an existing project current and returns its service.
+     */
+    public synchronized TaskService use(String name) {
+        if (!exists(name)) throw new NotFoundException("Project " + name + " is not found. Create it with 'project create " + name + "'.");
+        Project p = open(name);
+        current = name;
+        evictOverBudget(name); // the previous current project may go now
+        return p.service;
+    }
+
+    public synchronized void create(String name) {
+        checkName(name);
+        if (exists(name)) throw new InvalidDataException("Project " + name + " already exists.");
+        File dir = new File(root, name);
+        if (!dir.mkdirs()) throw new RepositoryException("Failed to create " + dir);
+    }
+
+    /**
+     * Keeps a project loaded whatever the budget.
+     */
+    public synchronized void pin(String name) {
+        pinned.add(name);
+    }
+
+    /** The default project and every directory under the projects root, default first, then by name. */
+    public synchronized List<String> list() {
+        List<String> names = new ArrayList<>();
+        String[] dirs = root.list((d, n) -> new File(d, n).isDirectory() && n.matches(NAME_PATTERN));
+        if (dirs != null) names.addAll(Arrays.asList(dirs));
+        names.remove(DEFAULT_PROJECT);
+        Collections.sort(names);
+        names.add(0, DEFAULT_PROJECT);
+        return names;
+    }
+
+    /**
+     * One line per project: whether it is current, loaded (with its task count and
+     * estimated heap) or on disk only.
+     */
+    public synchronized List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        Map<String, Project> byName = new HashMap<>(loaded); // get() on loaded would count as a use
+        long total = 0;
+        for (String name : list()) {
+            Project p = byName.get(name);
+            StringBuilder sb = new StringBuilder(name.equals(current) ? "* " : "  ").append(name);
+            if (p == null) {
+                sb.append(" - not loaded");
+            } else {
+                total += p.estimatedBytes;
+                sb.append(" - ").append(p.repo.getAll().size()).append(" task(s), ~")
+                        .append(megabytes(p.estimatedBytes)).append(" MB");
+                if (pinned.contains(name)) sb.append(", pinned");
+            }
+            lines.add(sb.toString());
+        }
+        lines.add("Loaded: ~" + megabytes(total) + " MB of a " + megabytes(budgetBytes) + " MB budget");
+        return lines;
+    }
+
+    /**
+     * The tasks of every project that pass the filter, in parallel across projects.
+     * Projects that are not loaded are read from disk and not kept.
+     */
+    public Map<String, List<Task>> acrossAll(Predicate<Task> filter) {
+        List<String> names;
+        Map<String, List<Task>> snapshots = new HashMap<>();
+        synchronized (this) {
+            names = list();
+            for (Project p : loaded.values()) {
+                synchronized (p.service) {
+                    snapshots.put(p.name, new ArrayList<>(p.repo.getAll()));
+                }
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(names.size(), Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "workspace-read");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Map<String, Future<List<Task>>> futures = new LinkedHashMap<>();
+            for (String name : names) {
+                List<Task> snapshot = snapshots.get(name);
+                futures.put(name, pool.submit(() -> {
+                    List<Task> tasks = snapshot != null ? snapshot
+                            : storage.equals(StorageEngine.MEMORY) ? new ArrayList<>() // never loaded, so empty
+                            : TaskRepository.loadSnapshot(people, dirOf(name), storage.equals(StorageEngine.LSM));
+                    List<Task> matches = new ArrayList<>();
+                    for (Task t : tasks) if (filter.test(t)) matches.add(t);
+                    return matches;
+                }));
+            }
+            Map<String, List<Task>> result = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<List<Task>>> e : futures.entrySet()) result.put(e.getKey(), e.getValue().get());
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while reading projects.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RepositoryException("Failed to read projects: " + cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Flushes and closes every loaded project.
+     */
+    public synchronized void close() {
+        for (Project p : loaded.values()) p.close();
+        loaded.clear();
+    }
+
+    private Project open(String name) {
+        Project p = loaded.get(name);
+        if (p != null) return p;
+        if (!exists(name)) throw new NotFoundException("Project " + name + " is not found.");
+        File dir = dirOf(name);
+        progress.start("opening project " + name);
+        try {
+            TaskRepository repo = new TaskRepository(people, StorageEngine.open(storage, dir), durability, progress);
+            TaskService service = new TaskService(people, repo, dir, progress);
+            p = new Project(name, repo, service);
+            service.addListener(p);
+            for (Consumer<TaskService> l : openListeners) l.accept(service);
+            loaded.put(name, p);
+            evictOverBudget(name);
+            return p;
+        } finally {
+            progress.finish();
+        }
+    }
+
+    // Least recently used first; stops when only the current, pinned and in-memory projects
+    // and keep (the project being opened or made current) are left.
+    private void evictOverBudget(String keep) {
+        long total = 0;
+        for (Project p : loaded.values()) total += p.estimatedBytes;
+        Iterator<Project> it = loaded.values().iterator();
+        while (total > budgetBytes && it.hasNext()) {
+            Project p = it.next();
+            if (p.name.equals(keep) || p.name.equals(current) || pinned.contains(p.name) || !p.repo.isPersistent()) continue;
+            synchronized (p.service) {
+                p.close();
+            }
+            it.remove();
+            total -= p.estimatedBytes;
+        }
+    }
+
+    private boolean exists(String name) {
+        return name.equals(DEFAULT_PROJECT) || (name.matches(NAME_PATTERN) && new File(root, name).isDirectory());
+    }
+
+    private File dirOf(String name) {
+        return name.equals(DEFAULT_PROJECT) ? null : new File(root, name);
+    }
+
+    private static void checkName(String name) {
+        if (!name.matches(NAME_PATTERN)) {
+            throw new InvalidDataException("Project names use letters, digits, '-' and '_' (at most 40).");
+        }
+    }
+
+    private static long estimate(Task t) {
+        return BYTES_PER_TASK + 2L * t.getTitle().length();
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f", bytes / (1024.0 * 1024.0));
+    }
+}
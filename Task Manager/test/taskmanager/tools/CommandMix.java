@@ -0,0 +1,112 @@
+package taskmanager.tools;
+
+import taskmanager.core.Person;
+import taskmanager.core.Task;
+
+import java.util.*;
+
+/**
+ * A weighted mix of console commands, e.g. "read=20,search=20,create=15,update=12".
+ *
+ * Each command is a line for CommandParser.execute() plus the answers to the prompts it
+ * asks, so interactive commands such as create and update run unattended.
+ */
+public class CommandMix {
+    public static final String DEFAULT = "read=20,search=20,sort=10,find=10,next=5,complete=5,create=15,update=12,delete=3";
+    private static final List<String> TYPES = Arrays.asList(
+            "read", "search", "sort", "find", "next", "complete", "create", "update", "delete");
+
+    private final String[] types;
+    private final double[] cumulative;
+
+    public static final class Command {
+        private final String type;
+        private final String line;
+        private final String answers;
+
+        Command(String type, String line, String... answers) {
+            this.type = type;
+            this.line = line;
+            this.answers = answers.length == 0 ? "" : String.join("\n", answers) + "\n";
+        }
+
+        public String getType() { return type; }
+
+        public String getLine() { return line; }
+
+        /** What is typed at the command's prompts, one line each. */
+        public String getAnswers() { return answers; }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the spec names an unknown command or has no positive weight
+     */
+    public CommandMix(String spec) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2 || !TYPES.contains(kv[0].trim())) {
+                throw new IllegalArgumentException("Use type=weight pairs with types " + TYPES + ", not '" + part + "'");
+            }
+            double w = Double.parseDouble(kv[1].trim());
+            if (w > 0) weights.put(kv[0].trim(), w);
+        }
+        if (weights.isEmpty()) throw new IllegalArgumentException("The mix has no command with a positive weight");
+        types = weights.keySet().toArray(new String[0]);
+        cumulative = new double[types.length];
+        double sum = 0;
+        for (int i = 0; i < types.length; i++) cumulative[i] = sum += weights.get(types[i]);
+        for (int i = 0; i < types.length; i++) cumulative[i] /= sum;
+    }
+
+    /** The command types in the mix, in the order given. */
+    public List<String> types() {
+        return Arrays.asList(types);
+    }
+
+    /**
+     * The next command, drawn by weight.
+     *
+     * @param tasks the tasks as they are now, for commands that name one
+     */
+    public Command next(WorkloadGenerator gen, List<Task> tasks, List<Person> team) {
+        double r = gen.nextDouble();
+        int i = 0;
+        while (i < types.length - 1 && r >= cumulative[i]) i++;
+        String type = types[i];
+        String person = gen.skewed(team).getId();
+        if (tasks.isEmpty() && (type.equals("update") || type.equals("delete"))) type = "create";
+        switch (type) {
+            case "read":
+                return new Command(type, "read " + person);
+            case "search":
+                return new Command(type, "search " + gen.word());
+            case "sort":
+                return new Command(type, new String[] {"sort due", "sort cat", "sort eisenhower"}[gen.nextInt(3)]);
+            case "find":
+                return new Command(type, new String[] {
+                        "find status=TO_DO assignee=" + person + " order by due limit 20",
+                        "find title~" + gen.word() + " limit 50",
+                        "find assignee=" + person + " order by eisenhower limit 20"}[gen.nextInt(3)]);
+            case "next":
+                return new Command(type, "next " + person + " 5");
+            case "complete": {
+                String w = gen.word();
+                return new Command(type, "complete " + w.substring(0, Math.min(w.length(), 3)));
+            }
+            case "create":
+                return new Command(type, "create /" + gen.category().name().toLowerCase() + " " + gen.title(),
+                        gen.description(), person, gen.consoleDueDate(), new String[] {"I", "II", "III", "IV", ""}[gen.nextInt(5)]);
+            case "update": {
+                String id = tasks.get(gen.nextInt(tasks.size())).getId();
+                switch (gen.nextInt(3)) {
+                    case 0: return new Command(type, "update " + id, "1", gen.nextInt(4) == 0 ? "DONE" : "IN_PROCESS");
+                    case 1: return new Command(type, "update " + id, "4", gen.title());
+                    default: return new Command(type, "update " + id, "3", new String[] {"I", "II", "III", "IV"}[gen.nextInt(4)]);
+                }
+            }
+            default:
+                return new Command(type, "delete " + tasks.get(gen.nextInt(tasks.size())).getId());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package taskmanager.tools;
+
+/**
+ * Counts latencies in log-linear buckets: exact below 64 ns, then 32 buckets per power
+ * of two, so any percentile is within about 3% of the true value. Memory is fixed
+ * however long the run, unlike keeping every sample.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int LINEAR = 64;
+    private static final int BUCKETS = LINEAR + (63 - 6 + 1) * (1 << SUB_BUCKET_BITS);
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+    private long sum;
+
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts[index(v)]++;
+        total++;
+        sum += v;
+        if (v > max) max = v;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /**
+     * The latency at or below which the given fraction of samples fall, e.g. 0.99.
+     * Reports the top of the bucket, so it errs high rather than low.
+     */
+    public long percentile(double fraction) {
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) return Math.min(max, upperBound(i));
+        }
+        return max;
+    }
+
+    private static int index(long v) {
+        if (v < LINEAR) return (int) v;
+        int exponent = 63 - Long.numberOfLeadingZeros(v); // >= 6
+        int sub = (int) (v >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+        return LINEAR + (exponent - 6) * (1 << SUB_BUCKET_BITS) + sub;
+    }
+
+    private static long upperBound(int index) {
+        if (index < LINEAR) return index;
+        int exponent = (index - LINEAR) / (1 << SUB_BUCKET_BITS) + 6;
+        int sub = (index - LINEAR) % (1 << SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) ((1 << SUB_BUCKET_BITS) + sub) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,258 @@
+package taskmanager.tools;
+
+import taskmanager.core.Person;
+import taskmanager.core.Task;
+import taskmanager.data.TaskBlockFile;
+import taskmanager.data.TaskRecordCodec;
+import taskmanager.data.lsm.LsmTaskStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Recovery checks and a read benchmark for LsmTaskStore, with tasks.txt as the baseline.
+ *
+ * Recovery: a store abandoned without close() (as after a crash) comes back with every
+ * write; a torn last log line is dropped and later writes still come back whole; leftover
+ * .tmp files and the inputs of an unfinished compaction are cleaned up; and a writer
+ * process stopped with Runtime.halt() part-way through flushes and compactions loses
+ * nothing it had written.
+ *
+ * Benchmark: --tasks tasks are stored both in an LsmTaskStore and in a tasks.txt, then
+ * reopened; --ops point lookups and range scans of --range ids each report median and
+ * p99. tasks.txt has no index, so both of its reads are a full read of the file, as they
+ * would be for an application that did not keep every task in memory.
+ *
+ *   java -cp out taskmanager.tools.LsmStoreSuite --tasks 100000 --ops 1000 --range 100
+ *
+ * Files are made under --dir (a temporary directory by default, deleted afterwards).
+ * Exits with status 1 if any check fails.
+ */
+public class LsmStoreSuite {
+    private static final int CHILD_RECORDS = 5250; // the last writes are only in the log
+
+    private final List<String> failures = new ArrayList<>();
+    private final WorkloadGenerator gen = new WorkloadGenerator(42, 1.0);
+    private final ArrayList<Person> team = gen.people(10);
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 2 && args[0].equals("--writer")) {
+            writeAndHalt(new File(args[1]));
+            return;
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        int tasks = Integer.parseInt(options.getOrDefault("tasks", "100000"));
+        int ops = Integer.parseInt(options.getOrDefault("ops", "1000"));
+        int range = Integer.parseInt(options.getOrDefault("range", "100"));
+        boolean temporary = !options.containsKey("dir");
+        File root = temporary ? Files.createTempDirectory("lsm").toFile() : new File(options.get("dir"));
+
+        LsmStoreSuite suite = new LsmStoreSuite();
+        try {
+            suite.recovery(new File(root, "recovery"));
+            suite.benchmark(new File(root, "bench"), tasks, ops, range);
+        } finally {
+            if (temporary) deleteTree(root);
+        }
+        if (!suite.failures.isEmpty()) {
+            System.out.println();
+            for (String f : suite.failures) System.out.println("FAILED " + f);
+            System.exit(1);
+        }
+    }
+
+    private void recovery(File dir) throws IOException, InterruptedException {
+        int before = failures.size();
+
+        fresh(dir);
+        Map<String, String> expected = records(0, 300);
+        LsmTaskStore store = new LsmTaskStore(dir, 100, 4);
+        for (Map.Entry<String, String> e : expected.entrySet()) store.put(e.getKey(), e.getValue());
+        String gone = expected.keySet().iterator().next();
+        store.delete(gone);
+        expected.remove(gone);
+        // Abandoned without close(): only the log and the runs flushed so far are on disk.
+        check("writes and deletes survive a store that was not closed", contents(new LsmTaskStore(dir, 100, 4)).equals(expected));
+
+        fresh(dir);
+        store = new LsmTaskStore(dir);
+        Map<String, String> first = records(300, 2);
+        Iterator<Map.Entry<String, String>> it = first.entrySet().iterator();
+        Map.Entry<String, String> kept = it.next(), torn = it.next();
+        store.put(kept.getKey(), kept.getValue());
+        store.put(torn.getKey(), torn.getValue());
+        try (RandomAccessFile wal = new RandomAccessFile(new File(dir, "wal.log"), "rw")) {
+            wal.setLength(wal.length() - 5);
+        }
+        store = new LsmTaskStore(dir);
+        Map.Entry<String, String> later = records(302, 1).entrySet().iterator().next();
+        store.put(later.getKey(), later.getValue());
+        Map<String, String> reopened = contents(new LsmTaskStore(dir));
+        check("a torn last log line is dropped", !reopened.containsKey(torn.getKey()) && kept.getValue().equals(reopened.get(kept.getKey())));
+        check("a write after a torn log line comes back whole", later.getValue().equals(reopened.get(later.getKey())) && reopened.size() == 2);
+
+        fresh(dir);
+        expected = records(400, 250);
+        store = new LsmTaskStore(dir, 50, 100); // five runs, no automatic compaction
+        store.putAll(expected);
+        store.flush();
+        File inputs = new File(dir.getParentFile(), "inputs");
+        fresh(inputs);
+        for (File f : Objects.requireNonNull(dir.listFiles())) {
+            if (f.getName().endsWith(".sst")) Files.copy(f.toPath(), new File(inputs, f.getName()).toPath());
+        }
+        store.compact();
+        // The compacted run is published but the inputs are back, as if deleting them never happened.
+        for (File f : Objects.requireNonNull(inputs.listFiles())) {
+            Files.copy(f.toPath(), new File(dir, f.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.write(new File(dir, "run-00000099-00000099.sst.tmp").toPath(), "#LSM-RUN base=99 top=99\nP|half".getBytes());
+        store = new LsmTaskStore(dir, 50, 100);
+        check("an unfinished compaction leaves one run", store.runCount() == 1);
+        check("an unfinished compaction loses nothing", contents(store).equals(expected));
+        check("leftover .tmp files are removed", !new File(dir, "run-00000099-00000099.sst.tmp").exists());
+        store.close();
+
+        fresh(dir);
+        Process writer = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-cp", System.getProperty("java.class.path"), LsmStoreSuite.class.getName(), "--writer", dir.getPath())
+                .inheritIO().start();
+        int status = writer.waitFor();
+        Map<String, String> written = new LsmStoreSuite().records(0, CHILD_RECORDS); // as the writer made them
+        written.keySet().removeIf(id -> Integer.parseInt(id.substring(1)) % 10 == 0);
+        check("the writer process halted as planned", status == 3);
+        check("a halted writer loses no write it made", contents(new LsmTaskStore(dir)).equals(written));
+
+        System.out.println("recovery: " + (failures.size() == before ? "all checks passed" : (failures.size() - before) + " check(s) failed"));
+    }
+
+    // Run in a separate JVM: writes, deletes and flushes with compactions in the background, then halts.
+    private static void writeAndHalt(File dir) {
+        LsmTaskStore store = new LsmTaskStore(dir, 500, 2);
+        for (Map.Entry<String, String> e : new LsmStoreSuite().records(0, CHILD_RECORDS).entrySet()) {
+            store.put(e.getKey(), e.getValue());
+            if (Integer.parseInt(e.getKey().substring(1)) % 10 == 0) store.delete(e.getKey());
+        }
+        Runtime.getRuntime().halt(3); // no close(), no shutdown hooks
+    }
+
+    private void benchmark(File dir, int count, int ops, int range) {
+        fresh(dir);
+        Map<String, String> records = new TreeMap<>();
+        for (int from = 0; from < count; from += 10_000) {
+            for (Task t : gen.tasks(team, from, Math.min(10_000, count - from))) records.put(t.getId(), TaskRecordCodec.encode(t));
+        }
+        List<String> ids = new ArrayList<>(records.keySet());
+        File lsmDir = new File(dir, "tasks.lsm"), text = new File(dir, "tasks.txt");
+
+        long start = System.nanoTime();
+        LsmTaskStore store = new LsmTaskStore(lsmDir);
+        store.putAll(records);
+        store.close();
+        double lsmWrite = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        TaskBlockFile.write(text, new ArrayList<>(records.values()), true);
+        double textWrite = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        store = new LsmTaskStore(lsmDir);
+        double lsmOpen = (System.nanoTime() - start) / 1e9;
+
+        Random random = new Random(1);
+        LatencyHistogram lsmGets = new LatencyHistogram(), lsmScans = new LatencyHistogram();
+        for (int i = 0; i < ops; i++) {
+            String id = ids.get(random.nextInt(ids.size()));
+            long t0 = System.nanoTime();
+            String found = store.get(id);
+            lsmGets.record(System.nanoTime() - t0);
+            if (!records.get(id).equals(found)) failures.add("lsm lookup of " + id);
+        }
+        for (int i = 0; i < ops; i++) {
+            int at = random.nextInt(Math.max(1, ids.size() - range));
+            String from = ids.get(at), to = at + range < ids.size() ? ids.get(at + range) : null;
+            long t0 = System.nanoTime();
+            List<String> found = store.scan(from, to);
+            lsmScans.record(System.nanoTime() - t0);
+            if (found.size() != Math.min(range, ids.size() - at)) failures.add("lsm scan from " + from);
+        }
+        store.close();
+
+        // Every read of tasks.txt reads the whole file, so a few are enough for stable numbers.
+        int textOps = Math.max(1, Math.min(ops, 20));
+        LatencyHistogram textGets = new LatencyHistogram(), textScans = new LatencyHistogram();
+        for (int i = 0; i < textOps; i++) {
+            String id = ids.get(random.nextInt(ids.size()));
+            long t0 = System.nanoTime();
+            String found = null;
+            for (String line : TaskBlockFile.read(text).getLines()) {
+                if (line.startsWith(id + "|")) {
+                    found = line;
+                    break;
+                }
+            }
+            textGets.record(System.nanoTime() - t0);
+            if (!records.get(id).equals(found)) failures.add("tasks.txt lookup of " + id);
+        }
+        for (int i = 0; i < textOps; i++) {
+            int at = random.nextInt(Math.max(1, ids.size() - range));
+            String from = ids.get(at), to = at + range < ids.size() ? ids.get(at + range) : null;
+            long t0 = System.nanoTime();
+            TreeMap<String, String> found = new TreeMap<>();
+            for (String line : TaskBlockFile.read(text).getLines()) {
+                String id = TaskRecordCodec.idOf(line);
+                if (id.compareTo(from) >= 0 && (to == null || id.compareTo(to) < 0)) found.put(id, line);
+            }
+            textScans.record(System.nanoTime() - t0);
+            if (found.size() != Math.min(range, ids.size() - at)) failures.add("tasks.txt scan from " + from);
+        }
+
+        System.out.println();
+        System.out.printf("%-10s %8s %8s %19s %19s%n", "store", "write", "open", "lookup p50/p99", "scan p50/p99");
+        System.out.printf("%-10s %7.2fs %7.2fs %19s %19s%n", "lsm", lsmWrite, lsmOpen, millis(lsmGets), millis(lsmScans));
+        System.out.printf("%-10s %7.2fs %8s %19s %19s%n", "tasks.txt", textWrite, "-", millis(textGets), millis(textScans));
+        System.out.println("In ms, on " + count + " tasks; scans of " + range + " ids; " + ops + " lsm and " + textOps + " tasks.txt reads each.");
+    }
+
+    // Ids "t00000", "t00001", ... so that the order of ids is the order of i.
+    private Map<String, String> records(int from, int count) {
+        Map<String, String> records = new LinkedHashMap<>();
+        List<Task> tasks = gen.tasks(team, from, count);
+        for (int i = 0; i < count; i++) {
+            String id = String.format("t%05d", from + i);
+            String line = TaskRecordCodec.encode(tasks.get(i));
+            records.put(id, id + line.substring(line.indexOf('|')));
+        }
+        return records;
+    }
+
+    private static Map<String, String> contents(LsmTaskStore store) {
+        Map<String, String> found = new LinkedHashMap<>();
+        for (String line : store.scanAll()) found.put(TaskRecordCodec.idOf(line), line);
+        store.close();
+        return found;
+    }
+
+    private void check(String what, boolean ok) {
+        if (!ok) failures.add("recovery: " + what);
+    }
+
+    private static String millis(LatencyHistogram h) {
+        return String.format("%.3f/%.3f", h.percentile(0.5) / 1e6, h.percentile(0.99) / 1e6);
+    }
+
+    private static void fresh(File dir) {
+        deleteTree(dir);
+        if (!dir.mkdirs()) throw new IllegalStateException("Cannot create " + dir);
+    }
+
+    private static void deleteTree(File f) {
+        File[] children = f.listFiles();
+        if (children != null) for (File c : children) deleteTree(c);
+        f.delete();
+    }
+}
@@ -0,0 +1,234 @@
+package taskmanager.tools;
+
+import taskmanager.console.CommandParser;
+import taskmanager.core.Person;
+import taskmanager.data.PersonRepository;
+import taskmanager.data.TaskRepository;
+import taskmanager.services.TaskService;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a generated command mix through CommandParser.execute() at a fixed rate and
+ * reports throughput and latency percentiles per command type, and whether the heap
+ * kept growing.
+ *
+ * The load is open-loop: command i is due at a time set in advance (Poisson arrivals
+ * by default), whether or not command i-1 has finished. Latency is measured from that
+ * due time, so when the service falls behind, the queueing shows up in the numbers
+ * instead of silently lowering the rate. Service time, from the actual start, is
+ * reported alongside.
+ *
+ * For heap growth the run forces a GC every few seconds and records what is left; a
+ * least-squares slope over the samples after warm-up is the growth rate. The schedule
+ * is moved on by each forced GC so that it is not charged to the commands.
+ *
+ *   java -cp out taskmanager.tools.SoakTest --tasks 100000 --rate 200 --duration 600
+ *
+ * Options (defaults in brackets): --tasks [50000] --people [25] --skew [1.0] --seed [42]
+ * --rate commands per second [100] --duration seconds [60] --warmup seconds [10]
+ * --mix [see CommandMix.DEFAULT] --arrivals poisson|fixed [poisson] --heap-every seconds [5]
+ * --max-growth MB per minute before the run counts as leaking [1.0]
+ * --dir where the data is kept [a temporary directory, deleted afterwards]
+ *
+ * Exits with status 2 if the heap grew faster than --max-growth.
+ */
+public class SoakTest {
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, String> options;
+    private final Map<String, LatencyHistogram> latency = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> serviceTime = new LinkedHashMap<>();
+    private final Map<String, Long> errors = new HashMap<>();
+    private final List<double[]> heapSamples = new ArrayList<>(); // seconds since warm-up, MB after GC
+
+    private SoakTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.println("Options are --name value pairs; see the SoakTest class comment.");
+                System.exit(1);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        boolean leaking = new SoakTest(options).run();
+        if (leaking) System.exit(2);
+    }
+
+    private String option(String name, String fallback) {
+        return options.getOrDefault(name, fallback);
+    }
+
+    private boolean run() throws IOException {
+        int taskCount = Integer.parseInt(option("tasks", "50000"));
+        int peopleCount = Integer.parseInt(option("people", "25"));
+        double skew = Double.parseDouble(option("skew", "1.0"));
+        double rate = Double.parseDouble(option("rate", "100"));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("duration", "60")));
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("warmup", "10")));
+        long heapEveryNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("heap-every", "5")));
+        double maxGrowth = Double.parseDouble(option("max-growth", "1.0"));
+        boolean poisson = option("arrivals", "poisson").equals("poisson");
+        CommandMix mix = new CommandMix(option("mix", CommandMix.DEFAULT));
+        for (String type : mix.types()) {
+            latency.put(type, new LatencyHistogram());
+            serviceTime.put(type, new LatencyHistogram());
+        }
+
+        boolean temporary = !options.containsKey("dir");
+        File dir = temporary ? Files.createTempDirectory("soak").toFile() : new File(options.get("dir"));
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+
+        WorkloadGenerator gen = new WorkloadGenerator(Long.parseLong(option("seed", "42")), skew);
+        ArrayList<Person> team = gen.people(peopleCount);
+        PersonRepository people = new PersonRepository(team);
+        long t0 = System.nanoTime();
+        gen.populate(people, dir, taskCount).close();
+        long t1 = System.nanoTime();
+        TaskRepository repo = new TaskRepository(people, dir);
+        TaskService service = new TaskService(people, repo, dir);
+        long t2 = System.nanoTime();
+        System.out.printf("Generated %d tasks for %d people (skew %.2f) in %.1f s; loaded in %.1f s%n",
+                taskCount, peopleCount, skew, (t1 - t0) / 1e9, (t2 - t1) / 1e9);
+        System.out.printf("Running %s at %.0f/s (%s arrivals) for %d s after %d s of warm-up%n",
+                mix.types(), rate, poisson ? "Poisson" : "fixed", TimeUnit.NANOSECONDS.toSeconds(durationNanos),
+                TimeUnit.NANOSECONDS.toSeconds(warmupNanos));
+
+        CommandParser parser = new CommandParser(service);
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long executed = 0;
+        try {
+            Random arrivals = new Random(7);
+            long start = System.nanoTime();
+            long measureFrom = start + warmupNanos;
+            long end = measureFrom + durationNanos;
+            long nextHeapSample = measureFrom;
+            long nextReport = start + TimeUnit.SECONDS.toNanos(10);
+            double due = start; // when the next command is due, in nanoTime units
+            while (true) {
+                long now = System.nanoTime();
+                if (now >= end) break;
+                if (now >= nextHeapSample) {
+                    long gcTook = sampleHeap(now - measureFrom);
+                    due += gcTook;
+                    end += gcTook;
+                    nextHeapSample = System.nanoTime() + heapEveryNanos;
+                    continue;
+                }
+                if (now >= nextReport) {
+                    console.printf("  %3d s: %d commands, heap %.0f MB%n", TimeUnit.NANOSECONDS.toSeconds(now - start),
+                            executed, heapSamples.isEmpty() ? 0 : heapSamples.get(heapSamples.size() - 1)[1]);
+                    nextReport += TimeUnit.SECONDS.toNanos(10);
+                }
+                if (now < due) {
+                    LockSupport.parkNanos((long) due - now);
+                    continue;
+                }
+
+                CommandMix.Command command = mix.next(gen, repo.getAll(), team);
+                long began = System.nanoTime();
+                try {
+                    parser.execute(command.getLine(), new Scanner(command.getAnswers()));
+                } catch (RuntimeException e) {
+                    errors.merge(command.getType(), 1L, Long::sum);
+                }
+                long finished = System.nanoTime();
+                executed++;
+                if ((long) due >= measureFrom) {
+                    latency.get(command.getType()).record(finished - (long) due);
+                    serviceTime.get(command.getType()).record(finished - began);
+                }
+                due += poisson ? -Math.log(1 - arrivals.nextDouble()) * 1e9 / rate : 1e9 / rate;
+            }
+        } finally {
+            System.setOut(console);
+            service.close();
+            repo.close();
+            if (temporary) deleteTree(dir);
+        }
+        report(rate, durationNanos);
+        return reportHeap(maxGrowth);
+    }
+
+    // Returns how long the forced GC took.
+    private long sampleHeap(long sinceWarmup) {
+        long before = System.nanoTime();
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        long used = rt.totalMemory() - rt.freeMemory();
+        if (sinceWarmup >= 0) heapSamples.add(new double[] {sinceWarmup / 1e9, used / (1024.0 * 1024.0)});
+        return System.nanoTime() - before;
+    }
+
+    private void report(double rate, long durationNanos) {
+        double seconds = durationNanos / 1e9;
+        System.out.println();
+        System.out.printf("%-9s %8s %9s", "command", "count", "per s");
+        for (double p : PERCENTILES) System.out.printf(" %9s", "p" + trim(p * 100));
+        System.out.printf(" %9s %9s %7s%n", "max", "svc p99", "errors");
+        long total = 0, totalErrors = 0;
+        for (Map.Entry<String, LatencyHistogram> e : latency.entrySet()) {
+            LatencyHistogram h = e.getValue();
+            long err = errors.getOrDefault(e.getKey(), 0L);
+            printRow(e.getKey(), h, serviceTime.get(e.getKey()).percentile(0.99), seconds, err);
+            total += h.count();
+            totalErrors += err;
+        }
+        System.out.printf("%-9s %8d %9.1f   (target %.1f/s)%n", "all", total, total / seconds, rate);
+        if (total / seconds < 0.95 * rate) {
+            System.out.println("The service did not keep up with the target rate; latencies include the backlog.");
+        }
+        if (totalErrors > 0) System.out.println(totalErrors + " command(s) failed.");
+        System.out.println("Latencies in ms, from when each command was due.");
+    }
+
+    private static void printRow(String name, LatencyHistogram h, long svcP99, double seconds, long errors) {
+        System.out.printf("%-9s %8d %9.1f", name, h.count(), h.count() / seconds);
+        for (double p : PERCENTILES) System.out.printf(" %9.3f", h.percentile(p) / 1e6);
+        System.out.printf(" %9.3f %9.3f %7d%n", h.max() / 1e6, svcP99 / 1e6, errors);
+    }
+
+    // True if the heap grew faster than maxGrowth MB per minute.
+    private boolean reportHeap(double maxGrowth) {
+        if (heapSamples.size() < 3) {
+            System.out.println("Heap: too few samples to judge growth; run longer or lower --heap-every.");
+            return false;
+        }
+        int n = heapSamples.size();
+        double sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (double[] s : heapSamples) {
+            sx += s[0];
+            sy += s[1];
+            sxx += s[0] * s[0];
+            sxy += s[0] * s[1];
+        }
+        double slope = (n * sxy - sx * sy) / (n * sxx - sx * sx) * 60; // MB per minute
+        double first = heapSamples.get(0)[1], last = heapSamples.get(n - 1)[1];
+        System.out.printf("Heap after GC: %.1f MB at start, %.1f MB at end, trend %+.2f MB/min over %d samples%n",
+                first, last, slope, n);
+        boolean leaking = slope > maxGrowth;
+        System.out.println(leaking
+                ? "Heap keeps growing faster than " + trim(maxGrowth) + " MB/min: likely a leak."
+                : "No sustained heap growth.");
+        return leaking;
+    }
+
+    private static String trim(double d) {
+        return d == Math.rint(d) ? String.valueOf((long) d) : String.valueOf(d);
+    }
+
+    private static void deleteTree(File f) {
+        File[] children = f.listFiles();
+        if (children != null) for (File c : children) deleteTree(c);
+        f.delete();
+    }
+}
@@ -0,0 +1,262 @@
+package taskmanager.tools;
+
+import taskmanager.core.Person;
+import taskmanager.core.Task;
+import taskmanager.data.Durability;
+import taskmanager.data.LoadProgress;
+import taskmanager.data.PersonRepository;
+import taskmanager.data.StorageEngine;
+import taskmanager.data.TaskRecordCodec;
+import taskmanager.data.TaskRepository;
+import taskmanager.exceptions.RepositoryException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Runs the same conformance checks and benchmark against every storage engine, through
+ * TaskRepository as the application uses it, so the engines can be compared head to head.
+ *
+ * Conformance: a new engine loads nothing; adds, batches, updates and deletes show up in
+ * the repository; duplicate ids are refused without side effects; the stamp is stable
+ * while nothing changes and moves when something does; and, for persistent engines, a
+ * new engine on the same directory loads exactly the records written, in the order
+ * TaskRepository.inLoadOrder() promises.
+ *
+ * Benchmark: a bulk load of --tasks tasks in batches, reopening them, then --ops single
+ * adds, updates, deletes and lookups on the full store, with the median and p99 of each,
+ * the update throughput and how many changes each sync to disk covered on average.
+ *
+ * Both run once per engine and durability mode (--durability, e.g. none,batched,always).
+ *
+ *   java -cp out taskmanager.tools.StorageEngineSuite --engines text,lsm,memory --tasks 100000 --ops 100
+ *
+ * Directories are made under --dir (a temporary directory by default, deleted
+ * afterwards). Exits with status 1 if any engine fails a check.
+ */
+public class StorageEngineSuite {
+    private final List<String> failures = new ArrayList<>();
+    private final ArrayList<Person> team;
+    private final PersonRepository people;
+    private final WorkloadGenerator gen = new WorkloadGenerator(42, 1.0);
+
+    private StorageEngineSuite() {
+        team = gen.people(10);
+        people = new PersonRepository(team);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        List<String> engines = Arrays.asList(options.getOrDefault("engines", String.join(",", StorageEngine.KINDS)).split(","));
+        int tasks = Integer.parseInt(options.getOrDefault("tasks", "100000"));
+        int ops = Integer.parseInt(options.getOrDefault("ops", "100"));
+        List<Durability> modes = new ArrayList<>();
+        for (String spec : options.getOrDefault("durability", "none,batched,always").split(",")) modes.add(Durability.parse(spec));
+        boolean temporary = !options.containsKey("dir");
+        File root = temporary ? Files.createTempDirectory("engines").toFile() : new File(options.get("dir"));
+
+        StorageEngineSuite suite = new StorageEngineSuite();
+        try {
+            for (String kind : engines) {
+                for (Durability d : modes) suite.conformance(kind, d, new File(root, kind + "-conformance"));
+            }
+            System.out.println();
+            System.out.printf("%-20s %10s %8s %17s %17s %10s %9s %17s %17s%n", "engine/durability", "bulk add/s", "reopen",
+                    "add p50/p99", "update p50/p99", "updates/s", "per sync", "delete p50/p99", "lookup p50/p99");
+            for (String kind : engines) {
+                for (Durability d : modes) suite.benchmark(kind, d, new File(root, kind + "-bench"), tasks, ops);
+            }
+            System.out.println("Single operations in ms, on a store of " + tasks + " tasks.");
+        } finally {
+            if (temporary) deleteTree(root);
+        }
+        if (!suite.failures.isEmpty()) {
+            System.out.println();
+            for (String f : suite.failures) System.out.println("FAILED " + f);
+            System.exit(1);
+        }
+    }
+
+    private void conformance(String kind, Durability durability, File dir) {
+        fresh(dir);
+        int before = failures.size();
+        String label = kind + "/" + durability;
+        try (Repo r = new Repo(kind, durability, dir)) {
+            TaskRepository repo = r.repo;
+            check(label, "a new engine loads nothing", repo.getAll().isEmpty());
+            boolean persistent = repo.isPersistent();
+
+            List<Task> first = gen.tasks(team, 0, 3);
+            for (Task t : first) repo.add(t);
+            check(label, "added tasks are found", repo.findById(first.get(1).getId()) == first.get(1) && repo.exists(first.get(2).getId()));
+            check(label, "an unknown id is not found", repo.findById("zzzzzzzz") == null && !repo.exists("zzzzzzzz"));
+            check(label, "adding an existing id fails", fails(() -> repo.add(first.get(0))) && repo.getAll().size() == 3);
+
+            List<Task> batch = gen.tasks(team, 3, 500);
+            repo.addAll(batch);
+            check(label, "a batch is added", repo.getAll().size() == 503 && repo.findById(batch.get(499).getId()) != null);
+            List<Task> clash = gen.tasks(team, 503, 2);
+            clash.add(batch.get(7));
+            check(label, "a batch with an existing id adds nothing", fails(() -> repo.addAll(clash)) && repo.getAll().size() == 503);
+            List<Task> twice = gen.tasks(team, 600, 1);
+            twice.add(twice.get(0));
+            check(label, "a batch with a repeated id adds nothing", fails(() -> repo.addAll(twice)) && repo.getAll().size() == 503);
+
+            String stamp = repo.dataStamp();
+            check(label, "the stamp is stable", stamp.equals(repo.dataStamp()));
+            Task changed = batch.get(10);
+            changed.setTitle("Renamed by the conformance suite");
+            changed.setEisenhower("I");
+            repo.update(changed);
+            check(label, "an update moves the stamp", !stamp.equals(repo.dataStamp()));
+            check(label, "a deleted task is gone", repo.delete(batch.get(20).getId()) && repo.findById(batch.get(20).getId()) == null
+                    && !repo.delete(batch.get(20).getId()) && repo.getAll().size() == 502);
+            repo.flush();
+
+            List<String> expected = records(repo.inLoadOrder());
+            r.reopen();
+            List<String> reloaded = records(r.repo.inLoadOrder());
+            if (persistent) {
+                check(label, "a reopened engine loads the same records", new HashSet<>(expected).equals(new HashSet<>(reloaded)));
+                check(label, "records load in the order inLoadOrder() gives", expected.equals(reloaded));
+                r.repo.saveAll();
+                r.reopen();
+                check(label, "saveAll() keeps every record", records(r.repo.inLoadOrder()).equals(expected));
+                check(label, "no temporary file is left behind", !new File(dir, "tasks.txt.tmp").exists());
+            } else {
+                check(label, "a non-persistent engine reopens empty", reloaded.isEmpty());
+            }
+        } catch (RuntimeException e) {
+            failures.add(label + ": " + e);
+        }
+        System.out.println(label + ": " + (failures.size() == before ? "all checks passed" : (failures.size() - before) + " check(s) failed"));
+    }
+
+    private void benchmark(String kind, Durability durability, File dir, int taskCount, int ops) {
+        fresh(dir);
+        String label = kind + "/" + durability;
+        try (Repo r = new Repo(kind, durability, dir)) {
+            long start = System.nanoTime();
+            for (int from = 0; from < taskCount; from += 10_000) {
+                r.repo.addAll(gen.tasks(team, from, Math.min(10_000, taskCount - from)));
+            }
+            r.repo.flush();
+            double bulkSeconds = (System.nanoTime() - start) / 1e9;
+            String reopen = "-";
+            if (r.repo.isPersistent()) {
+                start = System.nanoTime();
+                r.reopen();
+                reopen = String.format("%.2f s", (System.nanoTime() - start) / 1e9);
+            }
+            TaskRepository repo = r.repo;
+            Random random = new Random(1);
+            List<Task> fresh = gen.tasks(team, taskCount, ops);
+            LatencyHistogram adds = new LatencyHistogram(), updates = new LatencyHistogram(),
+                    deletes = new LatencyHistogram(), lookups = new LatencyHistogram();
+            for (Task t : fresh) {
+                long t0 = System.nanoTime();
+                repo.add(t);
+                adds.record(System.nanoTime() - t0);
+            }
+            long updatesStart = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                Task t = repo.getAll().get(random.nextInt(repo.getAll().size()));
+                long t0 = System.nanoTime();
+                t.setTitle(gen.title());
+                repo.update(t);
+                updates.record(System.nanoTime() - t0);
+            }
+            repo.flush(); // the batched writes are part of the cost
+            double updateSeconds = (System.nanoTime() - updatesStart) / 1e9;
+            for (int i = 0; i < ops; i++) {
+                String id = repo.getAll().get(random.nextInt(repo.getAll().size())).getId();
+                long t0 = System.nanoTime();
+                repo.findById(id);
+                lookups.record(System.nanoTime() - t0);
+            }
+            for (int i = 0; i < ops; i++) {
+                String id = repo.getAll().get(random.nextInt(repo.getAll().size())).getId();
+                long t0 = System.nanoTime();
+                repo.delete(id);
+                deletes.record(System.nanoTime() - t0);
+            }
+            System.out.printf("%-20s %10.0f %8s %17s %17s %10.0f %9s %17s %17s%n", label, taskCount / bulkSeconds, reopen,
+                    millis(adds), millis(updates), ops / updateSeconds, perSync(repo.syncStats()), millis(deletes), millis(lookups));
+        } catch (RuntimeException e) {
+            failures.add(label + " benchmark: " + e);
+        }
+    }
+
+    /** A repository over a new engine of one kind, which can be closed and opened again on the same directory. */
+    private final class Repo implements AutoCloseable {
+        final String kind;
+        final Durability durability;
+        final File dir;
+        TaskRepository repo;
+
+        Repo(String kind, Durability durability, File dir) {
+            this.kind = kind;
+            this.durability = durability;
+            this.dir = dir;
+            this.repo = open();
+        }
+
+        void reopen() {
+            repo.close();
+            repo = open();
+        }
+
+        private TaskRepository open() {
+            return new TaskRepository(people, StorageEngine.open(kind, dir), durability, new LoadProgress());
+        }
+
+        @Override
+        public void close() {
+            repo.close();
+        }
+    }
+
+    private void check(String label, String what, boolean ok) {
+        if (!ok) failures.add(label + ": " + what);
+    }
+
+    private static boolean fails(Runnable r) {
+        try {
+            r.run();
+            return false;
+        } catch (RepositoryException e) {
+            return true;
+        }
+    }
+
+    private static List<String> records(List<Task> tasks) {
+        List<String> records = new ArrayList<>(tasks.size());
+        for (Task t : tasks) records.add(TaskRecordCodec.encode(t));
+        return records;
+    }
+
+    // Changes per sync, from "N change(s) written in M sync(s)".
+    private static String perSync(String syncStats) {
+        String[] words = syncStats.split(" ");
+        long changes = Long.parseLong(words[0]), syncs = Long.parseLong(words[4]);
+        return syncs == 0 ? "-" : String.format("%.1f", (double) changes / syncs);
+    }
+
+    private static String millis(LatencyHistogram h) {
+        return String.format("%.3f/%.3f", h.percentile(0.5) / 1e6, h.percentile(0.99) / 1e6);
+    }
+
+    private static void fresh(File dir) {
+        deleteTree(dir);
+        if (!dir.mkdirs()) throw new IllegalStateException("Cannot create " + dir);
+    }
+
+    private static void deleteTree(File f) {
+        File[] children = f.listFiles();
+        if (children != null) for (File c : children) deleteTree(c);
+        f.delete();
+    }
+}
@@ -0,0 +1,167 @@
+package taskmanager.tools;
+
+import taskmanager.core.Category;
+import taskmanager.core.Person;
+import taskmanager.core.Status;
+import taskmanager.core.Task;
+import taskmanager.data.PersonRepository;
+import taskmanager.data.TaskRepository;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Synthetic teams and tasks that look like real data, and the words CommandMix builds
+ * commands from.
+ *
+ * Real data is skewed: a few people hold most of the tasks, a few words make up most
+ * titles and the same handful of searches is typed again and again. Every such choice
+ * here is drawn from a Zipf distribution whose exponent is the skew (0 for uniform,
+ * around 1 for typical data). The same seed gives the same data and the same commands.
+ */
+public class WorkloadGenerator {
+    private static final int VOCABULARY = 2000;
+    private static final int DESCRIPTIONS = 300;
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ra", "te", "su", "no", "vi", "de", "pa", "zo", "re", "li", "ma", "tu", "ne"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Ana", "Boris", "Chen", "Dara", "Elif", "Femi", "Gita", "Hugo", "Ines", "Jon", "Kaya", "Luca", "Mira", "Nils", "Olu", "Priya"
+    };
+    private static final DateTimeFormatter CONSOLE_DATE = DateTimeFormatter.ofPattern("dd MM yyyy");
+
+    private final Random random;
+    private final double skew;
+    private final String[] words;
+    private final String[] descriptions;
+    private final Zipf wordChoice;
+    private final Zipf descriptionChoice;
+    private final Map<Integer, Zipf> listChoice = new HashMap<>();
+    private final LocalDate today = LocalDate.now();
+
+    /** Draws ranks 0..n-1 with P(rank k) proportional to 1 / (k + 1)^skew. */
+    private static final class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double skew) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1.0 / Math.pow(k + 1, skew);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; k++) cumulative[k] /= sum;
+        }
+
+        int next(Random random) {
+            int i = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(cumulative.length - 1, i >= 0 ? i : -i - 1);
+        }
+    }
+
+    public WorkloadGenerator(long seed, double skew) {
+        this.random = new Random(seed);
+        this.skew = skew;
+        this.words = new String[VOCABULARY];
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < VOCABULARY; i++) {
+            String w;
+            do {
+                StringBuilder sb = new StringBuilder();
+                for (int s = 2 + random.nextInt(3); s > 0; s--) sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                w = sb.toString();
+            } while (!seen.add(w));
+            words[i] = w;
+        }
+        this.wordChoice = new Zipf(VOCABULARY, skew);
+        this.descriptions = new String[DESCRIPTIONS];
+        for (int i = 0; i < DESCRIPTIONS; i++) descriptions[i] = sentence(6 + random.nextInt(30));
+        this.descriptionChoice = new Zipf(DESCRIPTIONS, skew);
+    }
+
+    /** A team of the given size with distinct ids 1..n. */
+    public ArrayList<Person> people(int n) {
+        ArrayList<Person> people = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) {
+            people.add(new Person(String.valueOf(i), FIRST_NAMES[(i - 1) % FIRST_NAMES.length] + " " + word().substring(0, 1).toUpperCase() + word()));
+        }
+        return people;
+    }
+
+    /**
+     * Writes n generated tasks to a new tasks.txt in dir, in batches, and returns the
+     * repository holding them.
+     */
+    public TaskRepository populate(PersonRepository people, File dir, int n) {
+        File file = new File(dir, "tasks.txt");
+        if (file.exists() && !file.delete()) throw new IllegalStateException("Cannot replace " + file);
+        TaskRepository repo = new TaskRepository(people, dir);
+        List<Person> team = people.getPeople();
+        for (int from = 0; from < n; from += 10_000) repo.addAll(tasks(team, from, Math.min(10_000, n - from)));
+        return repo;
+    }
+
+    /** Tasks numbered from..from+count-1, with ids that sort in that order. */
+    public List<Task> tasks(List<Person> team, int from, int count) {
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) tasks.add(task(String.format("%08x", i), skewed(team)));
+        return tasks;
+    }
+
+    // Past due dates are allowed here, as in data that has aged; hence restore() rather than the constructor.
+    private Task task(String id, Person assignee) {
+        double s = random.nextDouble();
+        Status status = s < 0.6 ? Status.TO_DO : s < 0.85 ? Status.IN_PROCESS : Status.DONE;
+        LocalDate due = random.nextDouble() < 0.7 ? today.plusDays(random.nextInt(120) - 20) : null;
+        String quadrant = random.nextDouble() < 0.1 ? null : new String[] {"I", "II", "III", "IV"}[random.nextInt(4)];
+        return Task.restore(id, title(), description(), category(), status, assignee, due, quadrant);
+    }
+
+    public String title() {
+        return sentence(2 + random.nextInt(5));
+    }
+
+    public String description() {
+        return descriptions[descriptionChoice.next(random)];
+    }
+
+    /** A word, frequent words more often; used for titles and as search keywords. */
+    public String word() {
+        return words[wordChoice.next(random)];
+    }
+
+    /** An item of a small list such as the team, the first ones more often. */
+    public <T> T skewed(List<T> items) {
+        return items.get(listChoice.computeIfAbsent(items.size(), n -> new Zipf(n, skew)).next(random));
+    }
+
+    public Category category() {
+        Category[] all = Category.values();
+        return all[random.nextInt(all.length)];
+    }
+
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    /** An optional due date as the console asks for it, "" for none. */
+    public String consoleDueDate() {
+        return random.nextBoolean() ? "" : today.plusDays(1 + random.nextInt(60)).format(CONSOLE_DATE);
+    }
+
+    private String sentence(int wordCount) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(word());
+        }
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.toString();
+    }
+}